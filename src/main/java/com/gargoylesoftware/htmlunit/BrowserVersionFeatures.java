@@ -1143,6 +1143,10 @@ public enum BrowserVersionFeatures {
     @BrowserFeature(CHROME)
     JS_OUTER_HTML_THROWS_FOR_DETACHED,
 
+    /** Indicates that {@code performance.getEntries()} contains no navigation entry. */
+    @BrowserFeature(IE)
+    JS_PERFORMANCE_NO_NAVIGATION_ENTRY,
+
     /** Indicates that HTMLPhraseElements returning 'HTMLElement'
      * as class name. */
     @BrowserFeature(FF)
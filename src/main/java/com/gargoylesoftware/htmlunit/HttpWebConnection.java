@@ -33,8 +33,11 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.WeakHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.HostnameVerifier;
@@ -52,10 +55,12 @@ import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpException;
+import org.apache.http.HttpClientConnection;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpRequestInterceptor;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
 import org.apache.http.auth.AuthScheme;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.Credentials;
@@ -82,9 +87,11 @@ import org.apache.http.client.protocol.RequestExpectContinue;
 import org.apache.http.client.protocol.ResponseProcessCookies;
 import org.apache.http.client.utils.URLEncodedUtils;
 import org.apache.http.config.ConnectionConfig;
+import org.apache.http.config.Registry;
 import org.apache.http.config.RegistryBuilder;
 import org.apache.http.config.SocketConfig;
 import org.apache.http.conn.DnsResolver;
+import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.conn.socket.ConnectionSocketFactory;
 import org.apache.http.conn.socket.LayeredConnectionSocketFactory;
 import org.apache.http.conn.ssl.DefaultHostnameVerifier;
@@ -100,6 +107,7 @@ import org.apache.http.impl.client.BasicAuthCache;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.conn.SystemDefaultDnsResolver;
 import org.apache.http.protocol.HttpContext;
 import org.apache.http.protocol.HttpProcessorBuilder;
 import org.apache.http.protocol.RequestContent;
@@ -109,6 +117,7 @@ import org.apache.http.util.TextUtils;
 
 import com.gargoylesoftware.htmlunit.httpclient.HtmlUnitCookieSpecProvider;
 import com.gargoylesoftware.htmlunit.httpclient.HtmlUnitCookieStore;
+import com.gargoylesoftware.htmlunit.httpclient.HtmlUnitHttpRequestExecutor;
 import com.gargoylesoftware.htmlunit.httpclient.HtmlUnitRedirectStrategie;
 import com.gargoylesoftware.htmlunit.httpclient.HtmlUnitSSLConnectionSocketFactory;
 import com.gargoylesoftware.htmlunit.httpclient.SocksConnectionSocketFactory;
@@ -147,6 +156,8 @@ public class HttpWebConnection implements WebConnection {
     private final CookieSpecProvider htmlUnitCookieSpecProvider_;
     private final WebClientOptions usedOptions_;
     private PoolingHttpClientConnectionManager connectionManager_;
+    private volatile DnsResolver dnsResolver_;
+    private final List<WebResponseTimingListener> timingListeners_ = new CopyOnWriteArrayList<>();
 
     /** Authentication cache shared among all threads of a web client. */
     private final AuthCache sharedAuthCache_ = new SynchronizedAuthCache();
@@ -182,8 +193,10 @@ public class HttpWebConnection implements WebConnection {
             }
             final HttpHost hostConfiguration = getHostConfiguration(request);
             final long startTime = System.currentTimeMillis();
+            final WebResponseTiming timing = new WebResponseTiming();
 
             final HttpContext httpContext = getHttpContext();
+            HtmlUnitHttpRequestExecutor.setTiming(httpContext, timing);
             HttpResponse httpResponse = null;
             try {
                 try (CloseableHttpClient closeableHttpClient = builder.build()) {
@@ -210,10 +223,42 @@ public class HttpWebConnection implements WebConnection {
                 httpClientBuilder_.remove(Thread.currentThread());
                 throw e;
             }
+            finally {
+                HtmlUnitHttpRequestExecutor.setTiming(httpContext, null);
+            }
+
+            if (isStreamable(httpResponse)) {
+                final StreamingDownloadedContent streamingBody = new StreamingDownloadedContent();
+                final WebResponse webResponse = makeWebResponse(httpResponse, request, streamingBody,
+                        System.currentTimeMillis() - startTime);
+                webResponse.setTiming(timing);
+                final HttpUriRequest method = httpMethod;
+                try {
+                    streamingBody.startDownload(webClient_.getDownloadExecutor(),
+                        httpResponse.getEntity().getContent(), method::abort,
+                        () -> {
+                            timing.markResponseEnd();
+                            for (final WebResponseTimingListener listener : timingListeners_) {
+                                listener.responseReceived(webResponse);
+                            }
+                        });
+                    return webResponse;
+                }
+                catch (final RejectedExecutionException e) {
+                    // too many downloads in the background (or the client is closed), read the body right here
+                }
+            }
 
             final DownloadedContent downloadedBody = downloadResponseBody(httpResponse);
+            timing.markResponseEnd();
             final long endTime = System.currentTimeMillis();
-            return makeWebResponse(httpResponse, request, downloadedBody, endTime - startTime);
+            final WebResponse webResponse = makeWebResponse(httpResponse, request, downloadedBody,
+                    endTime - startTime);
+            webResponse.setTiming(timing);
+            for (final WebResponseTimingListener listener : timingListeners_) {
+                listener.responseReceived(webResponse);
+            }
+            return webResponse;
         }
         finally {
             if (httpMethod != null) {
@@ -528,6 +573,15 @@ public class HttpWebConnection implements WebConnection {
 
             builder.setDefaultCookieStore(new HtmlUnitCookieStore(webClient_.getCookieManager()));
             builder.setUserAgent(webClient_.getBrowserVersion().getUserAgent());
+            // the connection manager is shared, look up the current resolver for every new connection
+            builder.setDnsResolver(host -> {
+                final DnsResolver dnsResolver = dnsResolver_;
+                if (dnsResolver == null) {
+                    return SystemDefaultDnsResolver.INSTANCE.resolve(host);
+                }
+                return dnsResolver.resolve(host);
+            });
+            builder.setRequestExecutor(new HtmlUnitHttpRequestExecutor());
             httpClientBuilder_.put(currentThread, builder);
         }
 
@@ -679,6 +733,50 @@ public class HttpWebConnection implements WebConnection {
         return virtualHost_;
     }
 
+    /**
+     * Sets the {@link DnsResolver} used for new connections, e.g. a
+     * {@link com.gargoylesoftware.htmlunit.httpclient.CachingDnsResolver}.
+     * This can be done at any time; running requests and already pooled connections are not affected.
+     * @param dnsResolver the resolver to use, {@code null} to use the system resolver
+     */
+    public void setDnsResolver(final DnsResolver dnsResolver) {
+        dnsResolver_ = dnsResolver;
+    }
+
+    /**
+     * Returns the {@link DnsResolver} used for new connections.
+     * @return the resolver or {@code null} if the system resolver is used
+     */
+    public DnsResolver getDnsResolver() {
+        return dnsResolver_;
+    }
+
+    /**
+     * Adds a listener that is notified about the {@link WebResponseTiming} of every received response.
+     * @param listener the listener to add
+     */
+    public void addTimingListener(final WebResponseTimingListener listener) {
+        timingListeners_.add(listener);
+    }
+
+    /**
+     * Removes a timing listener.
+     * @param listener the listener to remove
+     */
+    public void removeTimingListener(final WebResponseTimingListener listener) {
+        timingListeners_.remove(listener);
+    }
+
+    /**
+     * Copies the configuration (virtual host, dns resolver and timing listeners) to the given connection.
+     * @param connection the connection to configure
+     */
+    void copyConfigurationTo(final HttpWebConnection connection) {
+        connection.virtualHost_ = virtualHost_;
+        connection.dnsResolver_ = dnsResolver_;
+        connection.timingListeners_.addAll(timingListeners_);
+    }
+
     /**
      * Converts an HttpMethod into a WebResponse.
      */
@@ -698,6 +796,26 @@ public class HttpWebConnection implements WebConnection {
         return newWebResponseInstance(responseData, loadTime, request);
     }
 
+    /**
+     * Returns whether the body of the response should be downloaded in the background
+     * (see {@link WebClientOptions#isStreamingHtmlParsing()}); this is only done for successful html responses.
+     */
+    private boolean isStreamable(final HttpResponse httpResponse) {
+        if (!webClient_.getOptions().isStreamingHtmlParsing() || httpResponse.getEntity() == null) {
+            return false;
+        }
+        final int statusCode = httpResponse.getStatusLine().getStatusCode();
+        if (statusCode < HttpStatus.SC_OK || statusCode >= HttpStatus.SC_MULTIPLE_CHOICES) {
+            return false;
+        }
+        final Header contentType = httpResponse.getFirstHeader(HttpHeader.CONTENT_TYPE);
+        if (contentType == null) {
+            return false;
+        }
+        final String value = contentType.getValue().toLowerCase(Locale.ROOT);
+        return value.startsWith(MimeType.TEXT_HTML) || value.startsWith(MimeType.APPLICATION_XHTML);
+    }
+
     /**
      * Downloads the response body.
      * @param httpResponse the web server's response
@@ -1127,13 +1245,11 @@ public class HttpWebConnection implements WebConnection {
                 }
             }
 
-            final PoolingHttpClientConnectionManager poolingmgr = new PoolingHttpClientConnectionManager(
+            final PoolingHttpClientConnectionManager poolingmgr = new TimingConnectionManager(
                     RegistryBuilder.<ConnectionSocketFactory>create()
                         .register("http", new SocksConnectionSocketFactory())
                         .register("https", sslSocketFactory)
                         .build(),
-                        null,
-                        null,
                         dnsResolver,
                         connTimeToLive,
                         connTimeToLiveTimeUnit != null ? connTimeToLiveTimeUnit : TimeUnit.MILLISECONDS);
@@ -1165,6 +1281,41 @@ public class HttpWebConnection implements WebConnection {
         }
     }
 
+    /**
+     * {@link PoolingHttpClientConnectionManager} recording the connection setup
+     * into the {@link WebResponseTiming} of the context.
+     */
+    private static final class TimingConnectionManager extends PoolingHttpClientConnectionManager {
+
+        TimingConnectionManager(final Registry<ConnectionSocketFactory> socketFactoryRegistry,
+                final DnsResolver dnsResolver, final long timeToLive, final TimeUnit timeUnit) {
+            super(socketFactoryRegistry, null, null, dnsResolver, timeToLive, timeUnit);
+        }
+
+        @Override
+        public void connect(final HttpClientConnection managedConn, final HttpRoute route,
+                final int connectTimeout, final HttpContext context) throws IOException {
+            final WebResponseTiming timing = HtmlUnitHttpRequestExecutor.getTiming(context);
+            if (timing != null) {
+                timing.markDomainLookupStart();
+            }
+            super.connect(managedConn, route, connectTimeout, context);
+            if (timing != null) {
+                timing.markConnectEnd();
+            }
+        }
+
+        @Override
+        public void upgrade(final HttpClientConnection managedConn, final HttpRoute route,
+                final HttpContext context) throws IOException {
+            super.upgrade(managedConn, route, context);
+            final WebResponseTiming timing = HtmlUnitHttpRequestExecutor.getTiming(context);
+            if (timing != null) {
+                timing.markConnectEnd();
+            }
+        }
+    }
+
     private static String[] split(final String s) {
         if (TextUtils.isBlank(s)) {
             return null;
@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.ConnectionClosedException;
+
+/**
+ * {@link DownloadedContent} filled in the background while the content is
+ * still downloading. The streams returned by {@link #getInputStream()} deliver the bytes
+ * as soon as they are available and block until more content arrives or the download is done.
+ *
+ * @author Ronald Brill
+ */
+final class StreamingDownloadedContent implements DownloadedContent {
+
+    private static final Log LOG = LogFactory.getLog(StreamingDownloadedContent.class);
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private byte[] bytes_ = new byte[BUFFER_SIZE];
+    private int count_;
+    private boolean complete_;
+    private transient boolean cancelled_;
+    private IOException failure_;
+    private transient Future<?> download_;
+    private transient Closeable abort_;
+
+    /**
+     * Starts reading the given stream in the background.
+     * @param executor the executor running the download
+     * @param source the stream to read from; closed at the end
+     * @param abort closed by {@link #cleanUp()} to abort a running download, because
+     *        a thread blocked in a socket read can't be interrupted
+     * @param onComplete called (from the background thread) once the download is finished
+     * @throws RejectedExecutionException if the executor can't run the download
+     */
+    synchronized void startDownload(final ExecutorService executor, final InputStream source,
+            final Closeable abort, final Runnable onComplete) {
+        download_ = executor.submit(() -> download(source, onComplete));
+        abort_ = abort;
+    }
+
+    private void download(final InputStream source, final Runnable onComplete) {
+        try (InputStream in = source) {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while (!isCancelled() && (read = in.read(buffer)) != -1) {
+                append(buffer, read);
+            }
+            finish(null);
+        }
+        catch (final ConnectionClosedException e) {
+            LOG.warn("Connection was closed while reading from stream.", e);
+            finish(null);
+        }
+        catch (final EOFException e) {
+            // this might happen with broken gzip content
+            LOG.warn("EOFException while reading from stream.", e);
+            finish(null);
+        }
+        catch (final IOException e) {
+            finish(e);
+        }
+        finally {
+            onComplete.run();
+        }
+    }
+
+    private synchronized boolean isCancelled() {
+        return cancelled_;
+    }
+
+    private synchronized void append(final byte[] buffer, final int length) {
+        if (count_ + length > bytes_.length) {
+            bytes_ = Arrays.copyOf(bytes_, Math.max(bytes_.length << 1, count_ + length));
+        }
+        System.arraycopy(buffer, 0, bytes_, count_, length);
+        count_ += length;
+        notifyAll();
+    }
+
+    private synchronized void finish(final IOException failure) {
+        failure_ = failure;
+        complete_ = true;
+        notifyAll();
+    }
+
+    /**
+     * Waits until at least the given number of bytes is available or the download is done.
+     * @param size the number of bytes
+     * @return the number of available bytes
+     */
+    synchronized int await(final int size) throws IOException {
+        while (count_ < size && !complete_) {
+            try {
+                wait();
+            }
+            catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the content");
+            }
+        }
+        if (failure_ != null && count_ < size) {
+            throw new IOException("Failed to download the content", failure_);
+        }
+        return count_;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public InputStream getInputStream() {
+        return new ContentInputStream();
+    }
+
+    /**
+     * Stops the download.
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void cleanUp() {
+        cancelled_ = true;
+        if (download_ == null || download_.isDone()) {
+            return;
+        }
+        download_.cancel(true);
+        try {
+            abort_.close();
+        }
+        catch (final IOException e) {
+            LOG.warn("Failed to abort the download.", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * Waits for the first byte to arrive.
+     */
+    @Override
+    public boolean isEmpty() {
+        try {
+            return await(1) == 0;
+        }
+        catch (final IOException e) {
+            return true;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * Waits for the download to complete.
+     */
+    @Override
+    public long length() {
+        try {
+            return await(Integer.MAX_VALUE);
+        }
+        catch (final IOException e) {
+            synchronized (this) {
+                return count_;
+            }
+        }
+    }
+
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        await(Integer.MAX_VALUE);
+        synchronized (this) {
+            out.defaultWriteObject();
+        }
+    }
+
+    /**
+     * Stream reading the content, blocking until enough content is available.
+     */
+    private final class ContentInputStream extends InputStream {
+        private int position_;
+        private int mark_;
+
+        @Override
+        public int read() throws IOException {
+            if (await(position_ + 1) <= position_) {
+                return -1;
+            }
+            synchronized (StreamingDownloadedContent.this) {
+                return bytes_[position_++] & 0xff;
+            }
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            final int available = await(position_ + 1);
+            if (available <= position_) {
+                return -1;
+            }
+            synchronized (StreamingDownloadedContent.this) {
+                final int length = Math.min(len, available - position_);
+                System.arraycopy(bytes_, position_, b, off, length);
+                position_ += length;
+                return length;
+            }
+        }
+
+        @Override
+        public int available() {
+            synchronized (StreamingDownloadedContent.this) {
+                return count_ - position_;
+            }
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public synchronized void mark(final int readlimit) {
+            mark_ = position_;
+        }
+
+        @Override
+        public synchronized void reset() {
+            position_ = mark_;
+        }
+    }
+}
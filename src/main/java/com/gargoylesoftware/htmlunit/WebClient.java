@@ -25,10 +25,15 @@ import static java.nio.charset.StandardCharsets.ISO_8859_1;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.NotSerializableException;
 import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.lang.ref.WeakReference;
 import java.net.MalformedURLException;
@@ -37,6 +42,7 @@ import java.net.URLConnection;
 import java.net.URLDecoder;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.security.KeyStore;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.ConcurrentModificationException;
@@ -49,6 +55,11 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.codec.DecoderException;
 import org.apache.commons.lang3.StringUtils;
@@ -69,9 +80,12 @@ import com.gargoylesoftware.css.parser.CSSErrorHandler;
 import com.gargoylesoftware.htmlunit.activex.javascript.msxml.MSXMLActiveXObjectFactory;
 import com.gargoylesoftware.htmlunit.attachment.AttachmentHandler;
 import com.gargoylesoftware.htmlunit.html.BaseFrameElement;
+import com.gargoylesoftware.htmlunit.html.DomChangeListener;
 import com.gargoylesoftware.htmlunit.html.DomElement;
 import com.gargoylesoftware.htmlunit.html.DomNode;
+import com.gargoylesoftware.htmlunit.html.ElementFromPointHandler;
 import com.gargoylesoftware.htmlunit.html.FrameWindow;
+import com.gargoylesoftware.htmlunit.html.HtmlAttributeChangeListener;
 import com.gargoylesoftware.htmlunit.html.HtmlInlineFrame;
 import com.gargoylesoftware.htmlunit.html.HtmlPage;
 import com.gargoylesoftware.htmlunit.html.parser.HTMLParserListener;
@@ -95,6 +109,7 @@ import com.gargoylesoftware.htmlunit.util.MimeType;
 import com.gargoylesoftware.htmlunit.util.NameValuePair;
 import com.gargoylesoftware.htmlunit.util.TextUtils;
 import com.gargoylesoftware.htmlunit.util.UrlUtils;
+import com.gargoylesoftware.htmlunit.util.WebConnectionWrapper;
 import com.gargoylesoftware.htmlunit.webstart.WebStartHandler;
 
 import net.sourceforge.htmlunit.corejs.javascript.ScriptableObject;
@@ -148,11 +163,15 @@ public class WebClient implements Serializable, AutoCloseable {
     /** Like the Firefox default value for {@code network.http.redirection-limit}. */
     private static final int ALLOWED_REDIRECTIONS_SAME_URL = 20;
 
+    /** The maximum number of responses downloaded in the background at the same time. */
+    private static final int MAX_BACKGROUND_DOWNLOADS = 8;
+
     private transient WebConnection webConnection_;
     private CredentialsProvider credentialsProvider_ = new DefaultCredentialsProvider();
     private CookieManager cookieManager_ = new CookieManager();
     private transient AbstractJavaScriptEngine<?> scriptEngine_;
     private transient List<LoadJob> loadQueue_;
+    private transient ExecutorService downloadExecutor_;
     private final Map<String, String> requestHeaders_ = Collections.synchronizedMap(new HashMap<String, String>(89));
     private IncorrectnessListener incorrectnessListener_ = new IncorrectnessListenerImpl();
     private WebConsole webConsole_;
@@ -1981,9 +2000,38 @@ public class WebClient implements Serializable, AutoCloseable {
             LOG.error("Exception while closing the connection", e);
         }
 
+        synchronized (this) {
+            if (downloadExecutor_ != null) {
+                downloadExecutor_.shutdownNow();
+            }
+        }
+
         cache_.clear();
     }
 
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
+     *
+     * Returns the executor downloading the streamed responses in the background. It runs at most
+     * {@value #MAX_BACKGROUND_DOWNLOADS} downloads at the same time and rejects further ones; it is
+     * shut down by {@link #close()}.
+     * @return the executor
+     */
+    synchronized ExecutorService getDownloadExecutor() {
+        if (downloadExecutor_ == null) {
+            final AtomicInteger threadNumber = new AtomicInteger();
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_BACKGROUND_DOWNLOADS,
+                    MAX_BACKGROUND_DOWNLOADS, 10, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), r -> {
+                        final Thread thread = new Thread(r, "HtmlUnit download " + threadNumber.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            executor.allowCoreThreadTimeOut(true);
+            downloadExecutor_ = executor;
+        }
+        return downloadExecutor_;
+    }
+
     /**
      * <p><span style="color:red">Experimental API: May be changed in next release
      * and may not yet work perfectly!</span></p>
@@ -2115,6 +2163,133 @@ public class WebClient implements Serializable, AutoCloseable {
         return count;
     }
 
+    /**
+     * Creates an independent copy of this client: the windows with their pages, the JavaScript state,
+     * the cookies and the web storage are copied, so that the copy can be used (and modified) without
+     * any effect on this client. This is useful to branch into different interactions from a common state
+     * without reloading the pages and running all the scripts again.
+     * <p>
+     * The copy is made by serializing this client in memory. Handlers, listeners and key stores that are
+     * not serializable are shared by both clients; any other object that is not serializable makes the
+     * fork fail. A custom {@link WebConnection} is shared as well (closing the fork does not close it),
+     * the configuration of the default {@link HttpWebConnection} (virtual host, dns resolver, timing listeners)
+     * is copied. Pending JavaScript jobs (timeouts, intervals) are not copied.
+     * <p>
+     * The fork is a deep copy: the time and memory needed grow with the size of all pages and of the
+     * JavaScript state of this client, comparable to serializing it. This is cheaper than loading the pages
+     * again only if they need expensive requests or scripts to reach the state to branch from.
+     *
+     * @return the copy; has to be closed like any other client
+     * @throws RuntimeException if this client references an object that can neither be copied nor shared
+     */
+    public WebClient fork() {
+        final List<Object> shared = new ArrayList<>();
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new SharingObjectOutputStream(bytes, shared)) {
+                out.writeObject(this);
+            }
+
+            final WebClient fork;
+            try (ObjectInputStream in
+                    = new SharingObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()), shared)) {
+                fork = (WebClient) in.readObject();
+            }
+            if (webConnection_ instanceof HttpWebConnection) {
+                ((HttpWebConnection) webConnection_).copyConfigurationTo((HttpWebConnection) fork.webConnection_);
+            }
+            else {
+                fork.setWebConnection(new SharedWebConnection(webConnection_));
+            }
+            return fork;
+        }
+        catch (final IOException | ClassNotFoundException e) {
+            throw new RuntimeException("Failed to fork the web client", e);
+        }
+    }
+
+    /**
+     * The custom connection of a client used by a fork; it is closed by the original client only.
+     */
+    private static final class SharedWebConnection extends WebConnectionWrapper {
+        SharedWebConnection(final WebConnection webConnection) {
+            super(webConnection);
+        }
+
+        @Override
+        public void close() {
+            // the connection belongs to the forked client
+        }
+    }
+
+    /**
+     * Writes a placeholder for the handlers and listeners that are not serializable.
+     */
+    private static final class SharingObjectOutputStream extends ObjectOutputStream {
+        /** The types of the objects that are shared by the fork if they are not serializable. */
+        private static final Class<?>[] SHARED_TYPES = {AlertHandler.class, ConfirmHandler.class,
+            PromptHandler.class, StatusHandler.class, AttachmentHandler.class, WebStartHandler.class,
+            AppletConfirmHandler.class, OnbeforeunloadHandler.class, PageCreator.class, RefreshHandler.class,
+            ScriptPreProcessor.class, CredentialsProvider.class, IncorrectnessListener.class,
+            HTMLParserListener.class, CSSErrorHandler.class, JavaScriptErrorListener.class, WebWindowListener.class,
+            WebConsole.Logger.class, WebConsole.Formatter.class, DomChangeListener.class,
+            HtmlAttributeChangeListener.class, ElementFromPointHandler.class, KeyStore.class};
+
+        private final List<Object> shared_;
+
+        SharingObjectOutputStream(final OutputStream out, final List<Object> shared) throws IOException {
+            super(out);
+            shared_ = shared;
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected Object replaceObject(final Object obj) throws IOException {
+            if (obj instanceof Serializable) {
+                return obj;
+            }
+            for (final Class<?> type : SHARED_TYPES) {
+                if (type.isInstance(obj)) {
+                    shared_.add(obj);
+                    return new SharedObject(shared_.size() - 1);
+                }
+            }
+            throw new NotSerializableException(obj.getClass().getName());
+        }
+    }
+
+    /**
+     * Replaces the placeholders with the shared objects.
+     */
+    private static final class SharingObjectInputStream extends ObjectInputStream {
+        private final List<Object> shared_;
+
+        SharingObjectInputStream(final InputStream in, final List<Object> shared) throws IOException {
+            super(in);
+            shared_ = shared;
+            enableResolveObject(true);
+        }
+
+        @Override
+        protected Object resolveObject(final Object obj) {
+            if (obj instanceof SharedObject) {
+                return shared_.get(((SharedObject) obj).index_);
+            }
+            return obj;
+        }
+    }
+
+    /**
+     * Placeholder for a shared object.
+     */
+    private static final class SharedObject implements Serializable {
+        private final int index_;
+
+        SharedObject(final int index) {
+            index_ = index;
+        }
+    }
+
     /**
      * When we deserialize, re-initializie transient fields.
      * @param in the object input stream
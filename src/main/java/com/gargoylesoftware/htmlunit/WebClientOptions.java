@@ -52,6 +52,7 @@ public class WebClientOptions implements Serializable {
     private boolean useInsecureSSL_; // default is secure SSL
     private String sslInsecureProtocol_;
     private int maxInMemory_ = 500 * 1024;
+    private boolean streamingHtmlParsing_;
     private int historySizeLimit_ = 50;
     private int historyPageCacheLimit_ = Integer.MAX_VALUE;
     private InetAddress localAddress_;
@@ -537,6 +538,28 @@ public class WebClientOptions implements Serializable {
         maxInMemory_ = maxInMemory;
     }
 
+    /**
+     * Returns whether html responses are parsed while they are still downloading.
+     * @return {@code true} if streaming html parsing is enabled
+     */
+    public boolean isStreamingHtmlParsing() {
+        return streamingHtmlParsing_;
+    }
+
+    /**
+     * If set to {@code true}, the {@link HttpWebConnection} hands out successful html responses
+     * as soon as the headers have arrived and downloads the body in the background; the parser
+     * consumes the content (and executes the scripts) while the rest of the body is still loading.
+     * The body of streamed responses is always kept in memory, {@link #getMaxInMemory()} is ignored.
+     * At most eight responses per client are downloaded in the background; further responses are
+     * downloaded completely before they are handed out.
+     * Default is {@code false}.
+     * @param enabled whether to parse html while downloading
+     */
+    public void setStreamingHtmlParsing(final boolean enabled) {
+        streamingHtmlParsing_ = enabled;
+    }
+
     /**
      * Returns the maximum number of {@link Page pages} kept in {@link WebWindow#getHistory()}.
      * @return the maximum number of pages in history
@@ -58,6 +58,7 @@ public class WebResponse implements Serializable {
     private WebResponseData responseData_;
     private WebRequest request_;
     private boolean defaultCharsetUtf8_;
+    private WebResponseTiming timing_;
 
     /**
      * Constructs with all data.
@@ -280,6 +281,23 @@ public class WebResponse implements Serializable {
         return loadTime_;
     }
 
+    /**
+     * Returns the network timing of this response.
+     * @return the timing or {@code null} if not available (e.g. the response was not loaded by
+     *         the {@link HttpWebConnection})
+     */
+    public WebResponseTiming getTiming() {
+        return timing_;
+    }
+
+    /**
+     * Sets the network timing of this response.
+     * @param timing the timing
+     */
+    public void setTiming(final WebResponseTiming timing) {
+        timing_ = timing;
+    }
+
     /**
      * Clean up the response data.
      */
@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit;
+
+import java.io.Serializable;
+
+/**
+ * The network timing of a single request/response.
+ * <p>
+ * All the values are offsets in milliseconds relative to the {@link #getStartTime() start time}
+ * of the request and follow the naming and the rules of the W3C Resource Timing specification:
+ * if a phase was not required (e.g. because a pooled connection was reused), the value of the phase
+ * is the end of the previous phase.
+ * <p>
+ * The values are written by the thread doing the request (or downloading the body in the background)
+ * and may be read by any other thread.
+ *
+ * @author Ronald Brill
+ */
+public class WebResponseTiming implements Serializable {
+
+    private static final long NOT_SET = -1;
+
+    private final long startTime_;
+    private final transient long startNanos_;
+
+    private volatile long domainLookupStart_ = NOT_SET;
+    private volatile long domainLookupEnd_ = NOT_SET;
+    private volatile long connectStart_ = NOT_SET;
+    private volatile long secureConnectionStart_ = NOT_SET;
+    private volatile long connectEnd_ = NOT_SET;
+    private volatile long requestStart_ = NOT_SET;
+    private volatile long requestEnd_ = NOT_SET;
+    private volatile long responseStart_ = NOT_SET;
+    private volatile long responseEnd_ = NOT_SET;
+
+    /**
+     * Creates a new instance; the start time is now.
+     */
+    public WebResponseTiming() {
+        startTime_ = System.currentTimeMillis();
+        startNanos_ = System.nanoTime();
+    }
+
+    private long now() {
+        return System.nanoTime() - startNanos_;
+    }
+
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
+     *
+     * Marks the start of the connection setup (the end of waiting for a free connection).
+     */
+    public void markDomainLookupStart() {
+        domainLookupStart_ = now();
+    }
+
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
+     *
+     * Marks the end of the host name resolution, this is also the start of the connect.
+     */
+    public void markConnectStart() {
+        domainLookupEnd_ = now();
+        connectStart_ = domainLookupEnd_;
+    }
+
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
+     *
+     * Marks the start of the TLS handshake.
+     */
+    public void markSecureConnectionStart() {
+        secureConnectionStart_ = now();
+    }
+
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
+     *
+     * Marks the end of the connection setup.
+     */
+    public void markConnectEnd() {
+        connectEnd_ = now();
+    }
+
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
+     *
+     * Marks the start of sending the request.
+     */
+    public void markRequestStart() {
+        requestStart_ = now();
+    }
+
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
+     *
+     * Marks the end of sending the request.
+     */
+    public void markRequestEnd() {
+        requestEnd_ = now();
+    }
+
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
+     *
+     * Marks the arrival of the response header.
+     */
+    public void markResponseStart() {
+        responseStart_ = now();
+    }
+
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
+     *
+     * Marks the end of reading (and decompressing) the response body.
+     */
+    public void markResponseEnd() {
+        responseEnd_ = now();
+    }
+
+    private static double toMillis(final long nanos) {
+        return nanos / 1_000_000d;
+    }
+
+    private static long valueOr(final long value, final long fallback) {
+        if (value == NOT_SET) {
+            return fallback;
+        }
+        return value;
+    }
+
+    /**
+     * Returns the time (milliseconds since the epoch) the request was started.
+     * @return the start time
+     */
+    public long getStartTime() {
+        return startTime_;
+    }
+
+    /**
+     * Returns the time the request had to wait for a connection; this is 0 if a new connection was opened.
+     * @return the queue wait time
+     */
+    public double getQueueWait() {
+        if (domainLookupStart_ != NOT_SET) {
+            return toMillis(domainLookupStart_);
+        }
+        return toMillis(valueOr(requestStart_, 0));
+    }
+
+    /**
+     * Returns the start of the host name lookup.
+     * @return the offset
+     */
+    public double getDomainLookupStart() {
+        return toMillis(rawDomainLookupStart());
+    }
+
+    private long rawDomainLookupStart() {
+        return valueOr(domainLookupStart_, valueOr(requestStart_, 0));
+    }
+
+    /**
+     * Returns the end of the host name lookup.
+     * @return the offset
+     */
+    public double getDomainLookupEnd() {
+        return toMillis(rawDomainLookupEnd());
+    }
+
+    private long rawDomainLookupEnd() {
+        return valueOr(domainLookupEnd_, rawDomainLookupStart());
+    }
+
+    /**
+     * Returns the start of the connect.
+     * @return the offset
+     */
+    public double getConnectStart() {
+        return toMillis(rawConnectStart());
+    }
+
+    private long rawConnectStart() {
+        return valueOr(connectStart_, rawDomainLookupEnd());
+    }
+
+    /**
+     * Returns the start of the TLS handshake; 0 if no TLS handshake was done.
+     * @return the offset
+     */
+    public double getSecureConnectionStart() {
+        return toMillis(valueOr(secureConnectionStart_, 0));
+    }
+
+    /**
+     * Returns the end of the connection setup (including the TLS handshake).
+     * @return the offset
+     */
+    public double getConnectEnd() {
+        return toMillis(rawConnectEnd());
+    }
+
+    private long rawConnectEnd() {
+        return valueOr(connectEnd_, rawConnectStart());
+    }
+
+    /**
+     * Returns the start of sending the request.
+     * @return the offset
+     */
+    public double getRequestStart() {
+        return toMillis(rawRequestStart());
+    }
+
+    private long rawRequestStart() {
+        return valueOr(requestStart_, rawConnectEnd());
+    }
+
+    /**
+     * Returns the time the request was completely sent.
+     * @return the offset
+     */
+    public double getRequestEnd() {
+        return toMillis(rawRequestEnd());
+    }
+
+    private long rawRequestEnd() {
+        return valueOr(requestEnd_, rawRequestStart());
+    }
+
+    /**
+     * Returns the time the response header arrived.
+     * @return the offset
+     */
+    public double getResponseStart() {
+        return toMillis(rawResponseStart());
+    }
+
+    private long rawResponseStart() {
+        return valueOr(responseStart_, rawRequestEnd());
+    }
+
+    /**
+     * Returns the time the response body was completely read. As the body is decompressed while reading,
+     * this includes the decompression time.
+     * @return the offset
+     */
+    public double getResponseEnd() {
+        return toMillis(valueOr(responseEnd_, rawResponseStart()));
+    }
+
+    /**
+     * Returns the time spent in the host name lookup.
+     * @return the duration
+     */
+    public double getDomainLookupDuration() {
+        return getDomainLookupEnd() - getDomainLookupStart();
+    }
+
+    /**
+     * Returns the time spent to establish the connection (including the TLS handshake).
+     * @return the duration
+     */
+    public double getConnectDuration() {
+        return getConnectEnd() - getConnectStart();
+    }
+
+    /**
+     * Returns the time spent for the TLS handshake.
+     * @return the duration
+     */
+    public double getSecureConnectionDuration() {
+        if (secureConnectionStart_ == NOT_SET) {
+            return 0;
+        }
+        return getConnectEnd() - getSecureConnectionStart();
+    }
+
+    /**
+     * Returns the time between sending the request and the arrival of the first response byte.
+     * @return the duration
+     */
+    public double getTimeToFirstByte() {
+        return getResponseStart() - getRequestStart();
+    }
+
+    /**
+     * Returns the time spent for reading the response body.
+     * @return the duration
+     */
+    public double getDownloadDuration() {
+        return getResponseEnd() - getResponseStart();
+    }
+
+    /**
+     * Returns the overall time.
+     * @return the duration
+     */
+    public double getDuration() {
+        return getResponseEnd();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "WebResponseTiming[queue=" + getQueueWait()
+                + ", dns=" + getDomainLookupDuration()
+                + ", connect=" + getConnectDuration()
+                + ", tls=" + getSecureConnectionDuration()
+                + ", requestStart=" + getRequestStart()
+                + ", requestEnd=" + getRequestEnd()
+                + ", responseStart=" + getResponseStart()
+                + ", responseEnd=" + getResponseEnd() + "]";
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit;
+
+/**
+ * A listener notified by the {@link HttpWebConnection} every time a response was
+ * completely received.
+ *
+ * @author Ronald Brill
+ * @see HttpWebConnection#addTimingListener(WebResponseTimingListener)
+ */
+public interface WebResponseTimingListener {
+
+    /**
+     * A response was received; the timing is available from {@link WebResponse#getTiming()}.
+     * This is called from the thread that made the request.
+     *
+     * @param webResponse the response
+     */
+    void responseReceived(WebResponse webResponse);
+}
@@ -30,6 +30,7 @@ import org.xml.sax.Attributes;
 import com.gargoylesoftware.htmlunit.BrowserVersion;
 import com.gargoylesoftware.htmlunit.SgmlPage;
 import com.gargoylesoftware.htmlunit.javascript.configuration.JavaScriptConfiguration;
+import com.gargoylesoftware.htmlunit.util.StringInterner;
 
 /**
  * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
@@ -785,14 +786,15 @@ public class DefaultElementFactory implements ElementFactory {
 
         final Map<String, DomAttr> attributeMap = new LinkedHashMap<>(attributes.getLength());
         for (int i = 0; i < attributes.getLength(); i++) {
-            final String qName = attributes.getQName(i);
+            final String qName = StringInterner.internName(attributes.getQName(i));
             // browsers consider only first attribute (ex: <div id='foo' id='something'>...</div>)
             if (!attributeMap.containsKey(qName)) {
                 String namespaceURI = attributes.getURI(i);
                 if (namespaceURI != null && namespaceURI.isEmpty()) {
                     namespaceURI = null;
                 }
-                final DomAttr newAttr = new DomAttr(page, namespaceURI, qName, attributes.getValue(i), true);
+                final DomAttr newAttr = new DomAttr(page, StringInterner.internName(namespaceURI), qName,
+                        StringInterner.internValue(attributes.getValue(i)), true);
                 attributeMap.put(qName, newAttr);
             }
         }
@@ -109,8 +109,18 @@ public class DomAttr extends DomNamespaceNode implements Attr {
      */
     @Override
     public void setValue(final String value) {
+        final DomNode owner = getParentNode();
+        if (owner != null) {
+            owner.checkNotFrozen();
+        }
+
         value_ = value;
         specified_ = true;
+
+        if (owner instanceof DomElement
+                && ("class".equalsIgnoreCase(getName()) || "id".equalsIgnoreCase(getName()))) {
+            ((DomElement) owner).notifyIndexedAttributeChanged();
+        }
     }
 
     /**
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.html;
+
+import java.util.List;
+
+/**
+ * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
+ *
+ * A {@link DomChangeListener} that is able to process the changes of a DOM change batch in one pass.
+ * While a batch is running (see {@link HtmlPage#startDomChangeBatch()}) the node additions and deletions
+ * are not reported one by one to this listener but collected and delivered together at the end of the batch.
+ * <p>
+ * Only listeners whose data may be stale while the batch is running should implement this;
+ * {@link HtmlPage#flushDomChangeBatch()} delivers the collected changes early.
+ *
+ * @author Ronald Brill
+ */
+public interface DomChangeBatchListener extends DomChangeListener {
+
+    /**
+     * Notification that the nodes of a batch have been added or deleted.
+     *
+     * @param events the node addition and deletion events in the order they happened
+     */
+    void nodesChanged(List<DomChangeEvent> events);
+}
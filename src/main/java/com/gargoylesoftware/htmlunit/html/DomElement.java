@@ -20,6 +20,10 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.Serializable;
 import java.io.StringWriter;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -43,8 +47,6 @@ import org.w3c.dom.Node;
 import org.w3c.dom.TypeInfo;
 
 import com.gargoylesoftware.css.parser.CSSException;
-import com.gargoylesoftware.css.parser.selector.Selector;
-import com.gargoylesoftware.css.parser.selector.SelectorList;
 import com.gargoylesoftware.css.parser.selector.SelectorSpecificity;
 import com.gargoylesoftware.htmlunit.BrowserVersion;
 import com.gargoylesoftware.htmlunit.Page;
@@ -56,7 +58,7 @@ import com.gargoylesoftware.htmlunit.javascript.AbstractJavaScriptEngine;
 import com.gargoylesoftware.htmlunit.javascript.HtmlUnitContextFactory;
 import com.gargoylesoftware.htmlunit.javascript.JavaScriptEngine;
 import com.gargoylesoftware.htmlunit.javascript.SimpleScriptable;
-import com.gargoylesoftware.htmlunit.javascript.host.css.CSSStyleSheet;
+import com.gargoylesoftware.htmlunit.javascript.host.css.CompiledSelector;
 import com.gargoylesoftware.htmlunit.javascript.host.event.Event;
 import com.gargoylesoftware.htmlunit.javascript.host.event.EventTarget;
 import com.gargoylesoftware.htmlunit.javascript.host.event.MouseEvent;
@@ -112,8 +114,7 @@ public class DomElement extends DomNamespaceNode implements Element {
         super(namespaceURI, qualifiedName, page);
         if (attributes != null && !attributes.isEmpty()) {
             attributes_ = new NamedAttrNodeMapImpl(this, isAttributeCaseSensitive(), attributes);
-            for (final DomAttr entry : attributes_.values()) {
-                entry.setParentNode(this);
+            for (final DomAttr entry : attributes.values()) {
                 final String attrNamespaceURI = entry.getNamespaceURI();
                 if (attrNamespaceURI != null) {
                     namespaces_.put(attrNamespaceURI, entry.getPrefix());
@@ -301,11 +302,11 @@ public class DomElement extends DomNamespaceNode implements Element {
      */
     protected void printOpeningTagContentAsXml(final PrintWriter printWriter) {
         printWriter.print(getTagName());
-        for (final Map.Entry<String, DomAttr> entry : attributes_.entrySet()) {
+        for (final String name : attributes_.keySet()) {
             printWriter.print(" ");
-            printWriter.print(entry.getKey());
+            printWriter.print(name);
             printWriter.print("=\"");
-            printWriter.print(StringUtils.escapeXmlAttributeValue(entry.getValue().getNodeValue()));
+            printWriter.print(StringUtils.escapeXmlAttributeValue(attributes_.getValueDirect(name)));
             printWriter.print("\"");
         }
     }
@@ -380,9 +381,9 @@ public class DomElement extends DomNamespaceNode implements Element {
      */
     @Override
     public String getAttribute(final String attributeName) {
-        final DomAttr attr = attributes_.get(attributeName);
-        if (attr != null) {
-            return attr.getNodeValue();
+        final String value = attributes_.getValue(attributeName);
+        if (value != null) {
+            return value;
         }
         return ATTRIBUTE_NOT_DEFINED;
     }
@@ -394,9 +395,9 @@ public class DomElement extends DomNamespaceNode implements Element {
      * @return the value of the attribute or {@link #ATTRIBUTE_NOT_DEFINED} or {@link #ATTRIBUTE_VALUE_EMPTY}
      */
     public String getAttributeDirect(final String attributeName) {
-        final DomAttr attr = attributes_.getDirect(attributeName);
-        if (attr != null) {
-            return attr.getNodeValue();
+        final String value = attributes_.getValueDirect(attributeName);
+        if (value != null) {
+            return value;
         }
         return ATTRIBUTE_NOT_DEFINED;
     }
@@ -407,7 +408,7 @@ public class DomElement extends DomNamespaceNode implements Element {
      */
     @Override
     public void removeAttribute(final String attributeName) {
-        attributes_.remove(attributeName);
+        attributes_.removeDirect(attributeName);
     }
 
     /**
@@ -444,7 +445,7 @@ public class DomElement extends DomNamespaceNode implements Element {
     public final boolean hasAttributeNS(final String namespaceURI, final String localName) {
         final String qualifiedName = getQualifiedName(namespaceURI, localName);
         if (qualifiedName != null) {
-            return attributes_.get(qualifiedName) != null;
+            return attributes_.containsKey(qualifiedName);
         }
         return false;
     }
@@ -501,13 +502,31 @@ public class DomElement extends DomNamespaceNode implements Element {
     protected void setAttributeNS(final String namespaceURI, final String qualifiedName,
             final String attributeValue, final boolean notifyAttributeChangeListeners,
             final boolean notifyMutationObservers) {
-        final String value = attributeValue;
-        final DomAttr newAttr = new DomAttr(getPage(), namespaceURI, qualifiedName, value, true);
-        newAttr.setParentNode(this);
-        attributes_.put(qualifiedName, newAttr);
+        attributes_.putValue(namespaceURI, qualifiedName, qualifiedName, attributeValue);
 
         if (namespaceURI != null) {
-            namespaces_.put(namespaceURI, newAttr.getPrefix());
+            final int colonPosition = qualifiedName.indexOf(':');
+            namespaces_.put(namespaceURI, colonPosition == -1 ? null : qualifiedName.substring(0, colonPosition));
+        }
+    }
+
+    /**
+     * Creates the nodes of all attributes to allow concurrent reads.
+     * @see HtmlPage#freeze()
+     */
+    void createAttributeNodes() {
+        attributes_.createNodes();
+    }
+
+    /**
+     * Informs the page that the value of the {@code id} or the {@code class} attribute has changed.
+     */
+    void notifyIndexedAttributeChanged() {
+        if (isAttachedToPage()) {
+            final HtmlPage page = getHtmlPageOrNull();
+            if (page != null) {
+                page.notifyIndexedAttributeChanged(this);
+            }
         }
     }
 
@@ -684,7 +703,7 @@ public class DomElement extends DomNamespaceNode implements Element {
     public DomNode cloneNode(final boolean deep) {
         final DomElement clone = (DomElement) super.cloneNode(deep);
         clone.attributes_ = new NamedAttrNodeMapImpl(clone, isAttributeCaseSensitive());
-        clone.attributes_.putAll(attributes_);
+        clone.attributes_.copyFrom(attributes_);
         return clone;
     }
 
@@ -1530,11 +1549,11 @@ public class DomElement extends DomNamespaceNode implements Element {
     public boolean matches(final String selectorString) {
         try {
             final BrowserVersion browserVersion = getPage().getWebClient().getBrowserVersion();
-            final SelectorList selectorList = getSelectorList(selectorString, browserVersion);
+            final List<CompiledSelector> compiledSelectors = getCompiledSelectors(selectorString, browserVersion);
 
-            if (selectorList != null) {
-                for (Selector selector : selectorList) {
-                    if (CSSStyleSheet.selects(browserVersion, selector, this, null, true)) {
+            if (compiledSelectors != null) {
+                for (final CompiledSelector selector : compiledSelectors) {
+                    if (selector.matches(browserVersion, this, null, true, null)) {
                         return true;
                     }
                 }
@@ -1557,14 +1576,25 @@ public class DomElement extends DomNamespaceNode implements Element {
 
 /**
  * The {@link NamedNodeMap} to store the node attributes.
+ * The attributes are stored as flat parallel arrays of names and values; the {@link DomAttr}
+ * nodes are only created if someone asks for them. Once created, the node holds the value.
  */
 class NamedAttrNodeMapImpl implements Map<String, DomAttr>, NamedNodeMap, Serializable {
     protected static final NamedAttrNodeMapImpl EMPTY_MAP = new NamedAttrNodeMapImpl();
-    private static final DomAttr[] EMPTY_ARRAY = new DomAttr[0];
+    private static final String[] EMPTY_STRINGS = new String[0];
+    private static final int INITIAL_CAPACITY = 4;
+
+    private int size_;
+    /** The keys (the names fixed for case insensitive elements). */
+    private String[] keys_ = EMPTY_STRINGS;
+    /** The qualified names. */
+    private String[] names_ = EMPTY_STRINGS;
+    private String[] values_ = EMPTY_STRINGS;
+    /** The namespace URIs of the attributes not set as node; {@code null} as long as no attribute has one. */
+    private String[] namespaceURIs_;
+    /** The attribute nodes; {@code null} as long as no node was requested. */
+    private DomAttr[] nodes_;
 
-    private final Map<String, DomAttr> map_ = new LinkedHashMap<>();
-    private boolean dirty_ = false;
-    private DomAttr[] attrPositions_ = EMPTY_ARRAY;
     private final DomElement domNode_;
     private final boolean caseSensitive_;
 
@@ -1586,7 +1616,248 @@ class NamedAttrNodeMapImpl implements Map<String, DomAttr>, NamedNodeMap, Serial
     NamedAttrNodeMapImpl(final DomElement domNode, final boolean caseSensitive,
             final Map<String, DomAttr> attributes) {
         this(domNode, caseSensitive);
-        putAll(attributes);
+        ensureCapacity(attributes.size());
+        for (final Map.Entry<String, DomAttr> entry : attributes.entrySet()) {
+            final DomAttr attr = entry.getValue();
+            if (isPlain(attr)) {
+                putValue(attr.getNamespaceURI(), entry.getKey(), attr.getQualifiedName(), attr.getValue());
+            }
+            else {
+                attr.setParentNode(domNode);
+                put(entry.getKey(), attr);
+            }
+        }
+    }
+
+    /**
+     * Plain attributes can be stored as name and value only.
+     */
+    private static boolean isPlain(final DomAttr attr) {
+        return attr.getClass() == DomAttr.class && attr.getSpecified();
+    }
+
+    /**
+     * Copies all attributes of the given map; only the nodes set from outside are shared.
+     * @param other the map to copy
+     */
+    void copyFrom(final NamedAttrNodeMapImpl other) {
+        ensureCapacity(other.size_);
+        for (int i = 0; i < other.size_; i++) {
+            final DomAttr node = other.nodes_ == null ? null : other.nodes_[i];
+            if (node == null) {
+                putValue(other.getNamespaceURI(i), other.keys_[i], other.names_[i], other.values_[i]);
+            }
+            else if (isPlain(node) && node.getParentNode() == other.domNode_) {
+                // created by the other map, the namespace is still stored there
+                putValue(other.getNamespaceURI(i), other.keys_[i], other.names_[i], node.getValue());
+            }
+            else {
+                put(other.keys_[i], node);
+            }
+        }
+    }
+
+    private String fixName(final String name) {
+        if (caseSensitive_) {
+            return name;
+        }
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    private int indexOf(final String key) {
+        for (int i = 0; i < size_; i++) {
+            if (key.equals(keys_[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void ensureCapacity(final int capacity) {
+        if (capacity <= keys_.length) {
+            return;
+        }
+        final int newCapacity = Math.max(capacity, Math.max(INITIAL_CAPACITY, keys_.length << 1));
+        keys_ = Arrays.copyOf(keys_, newCapacity);
+        names_ = Arrays.copyOf(names_, newCapacity);
+        values_ = Arrays.copyOf(values_, newCapacity);
+        if (namespaceURIs_ != null) {
+            namespaceURIs_ = Arrays.copyOf(namespaceURIs_, newCapacity);
+        }
+        if (nodes_ != null) {
+            nodes_ = Arrays.copyOf(nodes_, newCapacity);
+        }
+    }
+
+    private String getNamespaceURI(final int index) {
+        return namespaceURIs_ == null ? null : namespaceURIs_[index];
+    }
+
+    private String getValue(final int index) {
+        if (nodes_ != null && nodes_[index] != null) {
+            return nodes_[index].getValue();
+        }
+        return values_[index];
+    }
+
+    /**
+     * Returns the node for the given index, creates it if needed.
+     */
+    private DomAttr getNode(final int index) {
+        if (nodes_ == null) {
+            nodes_ = new DomAttr[keys_.length];
+        }
+        DomAttr node = nodes_[index];
+        if (node == null) {
+            node = new DomAttr(domNode_.getPage(), getNamespaceURI(index), names_[index], values_[index], true);
+            node.setParentNode(domNode_);
+            nodes_[index] = node;
+            values_[index] = null;
+        }
+        return node;
+    }
+
+    private int add(final String key, final String qualifiedName) {
+        ensureCapacity(size_ + 1);
+        final int index = size_++;
+        keys_[index] = key;
+        names_[index] = qualifiedName;
+        return index;
+    }
+
+    private void removeAt(final int index) {
+        domNode_.checkNotFrozen();
+        final String key = keys_[index];
+        final int moved = size_ - index - 1;
+        if (moved > 0) {
+            System.arraycopy(keys_, index + 1, keys_, index, moved);
+            System.arraycopy(names_, index + 1, names_, index, moved);
+            System.arraycopy(values_, index + 1, values_, index, moved);
+            if (namespaceURIs_ != null) {
+                System.arraycopy(namespaceURIs_, index + 1, namespaceURIs_, index, moved);
+            }
+            if (nodes_ != null) {
+                System.arraycopy(nodes_, index + 1, nodes_, index, moved);
+            }
+        }
+        size_--;
+        keys_[size_] = null;
+        names_[size_] = null;
+        values_[size_] = null;
+        if (namespaceURIs_ != null) {
+            namespaceURIs_[size_] = null;
+        }
+        if (nodes_ != null) {
+            nodes_[size_] = null;
+        }
+        indexedAttributeChanged(key);
+    }
+
+    private void indexedAttributeChanged(final String key) {
+        if ("class".equals(key) || "id".equals(key)) {
+            domNode_.notifyIndexedAttributeChanged();
+        }
+    }
+
+    /**
+     * Sets the value of an attribute without creating a node; an existing node is replaced.
+     * @param namespaceURI the namespace URI
+     * @param key the key
+     * @param qualifiedName the qualified name
+     * @param value the value
+     */
+    void putValue(final String namespaceURI, final String key, final String qualifiedName, final String value) {
+        domNode_.checkNotFrozen();
+        final String name = fixName(key);
+        int index = indexOf(name);
+        if (index < 0) {
+            index = add(name, qualifiedName);
+        }
+        else {
+            names_[index] = qualifiedName;
+            if (nodes_ != null) {
+                nodes_[index] = null;
+            }
+        }
+
+        if (value != null && value.isEmpty()) {
+            values_[index] = DomElement.ATTRIBUTE_VALUE_EMPTY;
+        }
+        else {
+            values_[index] = value;
+        }
+
+        if (namespaceURI != null && namespaceURIs_ == null) {
+            namespaceURIs_ = new String[keys_.length];
+        }
+        if (namespaceURIs_ != null) {
+            namespaceURIs_[index] = namespaceURI;
+        }
+        indexedAttributeChanged(name);
+    }
+
+    /**
+     * Returns the value of the attribute without creating a node.
+     * @param key the key
+     * @return the value or {@code null}
+     */
+    String getValue(final String key) {
+        final int index = indexOf(fixName(key));
+        if (index < 0) {
+            return null;
+        }
+        return getValue(index);
+    }
+
+    /**
+     * Fast access to the value; the key has to be fixed already.
+     * @param key the key
+     * @return the value or {@code null}
+     */
+    String getValueDirect(final String key) {
+        final int index = indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+        return getValue(index);
+    }
+
+    /**
+     * Removes the attribute without creating a node.
+     * @param key the key
+     */
+    void removeDirect(final String key) {
+        final int index = indexOf(fixName(key));
+        if (index > -1) {
+            removeAt(index);
+        }
+    }
+
+    /**
+     * Creates the nodes of all attributes; afterwards reading the attributes doesn't modify this map.
+     */
+    void createNodes() {
+        for (int i = 0; i < size_; i++) {
+            getNode(i);
+        }
+    }
+
+    /**
+     * Returns the qualified name of the attribute at the given position.
+     * @param index the index
+     * @return the qualified name
+     */
+    String getName(final int index) {
+        return names_[index];
+    }
+
+    /**
+     * Returns the value of the attribute at the given position without creating a node.
+     * @param index the index
+     * @return the value
+     */
+    String getValueAt(final int index) {
+        return getValue(index);
     }
 
     /**
@@ -1605,13 +1876,6 @@ class NamedAttrNodeMapImpl implements Map<String, DomAttr>, NamedNodeMap, Serial
         return get(name);
     }
 
-    private String fixName(final String name) {
-        if (caseSensitive_) {
-            return name;
-        }
-        return name.toLowerCase(Locale.ROOT);
-    }
-
     /**
      * {@inheritDoc}
      */
@@ -1628,14 +1892,10 @@ class NamedAttrNodeMapImpl implements Map<String, DomAttr>, NamedNodeMap, Serial
      */
     @Override
     public Node item(final int index) {
-        if (index < 0 || index >= map_.size()) {
+        if (index < 0 || index >= size_) {
             return null;
         }
-        if (dirty_) {
-            attrPositions_ = map_.values().toArray(attrPositions_);
-            dirty_ = false;
-        }
-        return attrPositions_[index];
+        return getNode(index);
     }
 
     /**
@@ -1678,9 +1938,28 @@ class NamedAttrNodeMapImpl implements Map<String, DomAttr>, NamedNodeMap, Serial
      */
     @Override
     public DomAttr put(final String key, final DomAttr value) {
+        domNode_.checkNotFrozen();
         final String name = fixName(key);
-        dirty_ = true;
-        return map_.put(name, value);
+        int index = indexOf(name);
+        DomAttr old = null;
+        if (index < 0) {
+            index = add(name, value.getQualifiedName());
+        }
+        else {
+            old = getNode(index);
+            names_[index] = value.getQualifiedName();
+        }
+
+        if (nodes_ == null) {
+            nodes_ = new DomAttr[keys_.length];
+        }
+        nodes_[index] = value;
+        values_[index] = null;
+        if (namespaceURIs_ != null) {
+            namespaceURIs_[index] = null;
+        }
+        indexedAttributeChanged(name);
+        return old;
     }
 
     /**
@@ -1689,9 +1968,12 @@ class NamedAttrNodeMapImpl implements Map<String, DomAttr>, NamedNodeMap, Serial
     @Override
     public DomAttr remove(final Object key) {
         if (key instanceof String) {
-            final String name = fixName((String) key);
-            dirty_ = true;
-            return map_.remove(name);
+            final int index = indexOf(fixName((String) key));
+            if (index > -1) {
+                final DomAttr old = getNode(index);
+                removeAt(index);
+                return old;
+            }
         }
         return null;
     }
@@ -1701,8 +1983,9 @@ class NamedAttrNodeMapImpl implements Map<String, DomAttr>, NamedNodeMap, Serial
      */
     @Override
     public void clear() {
-        dirty_ = true;
-        map_.clear();
+        while (size_ > 0) {
+            removeAt(size_ - 1);
+        }
     }
 
     /**
@@ -1722,8 +2005,7 @@ class NamedAttrNodeMapImpl implements Map<String, DomAttr>, NamedNodeMap, Serial
     @Override
     public boolean containsKey(final Object key) {
         if (key instanceof String) {
-            final String name = fixName((String) key);
-            return map_.containsKey(name);
+            return indexOf(fixName((String) key)) > -1;
         }
         return false;
     }
@@ -1734,26 +2016,27 @@ class NamedAttrNodeMapImpl implements Map<String, DomAttr>, NamedNodeMap, Serial
     @Override
     public DomAttr get(final Object key) {
         if (key instanceof String) {
-            final String name = fixName((String) key);
-            return map_.get(name);
+            final int index = indexOf(fixName((String) key));
+            if (index > -1) {
+                return getNode(index);
+            }
         }
         return null;
     }
 
-    /**
-     * Fast access.
-     * @param key the key
-     */
-    protected DomAttr getDirect(final String key) {
-        return map_.get(key);
-    }
-
     /**
      * {@inheritDoc}
      */
     @Override
     public boolean containsValue(final Object value) {
-        return map_.containsValue(value);
+        if (nodes_ != null) {
+            for (int i = 0; i < size_; i++) {
+                if (nodes_[i] == value) {
+                    return true;
+                }
+            }
+        }
+        return false;
     }
 
     /**
@@ -1761,7 +2044,22 @@ class NamedAttrNodeMapImpl implements Map<String, DomAttr>, NamedNodeMap, Serial
      */
     @Override
     public Set<Map.Entry<String, DomAttr>> entrySet() {
-        return map_.entrySet();
+        return new AbstractSet<Map.Entry<String, DomAttr>>() {
+            @Override
+            public Iterator<Map.Entry<String, DomAttr>> iterator() {
+                return new AttributeIterator<Map.Entry<String, DomAttr>>() {
+                    @Override
+                    protected Map.Entry<String, DomAttr> get(final int index) {
+                        return new AbstractMap.SimpleImmutableEntry<>(keys_[index], getNode(index));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size_;
+            }
+        };
     }
 
     /**
@@ -1769,7 +2067,7 @@ class NamedAttrNodeMapImpl implements Map<String, DomAttr>, NamedNodeMap, Serial
      */
     @Override
     public boolean isEmpty() {
-        return map_.isEmpty();
+        return size_ == 0;
     }
 
     /**
@@ -1777,7 +2075,27 @@ class NamedAttrNodeMapImpl implements Map<String, DomAttr>, NamedNodeMap, Serial
      */
     @Override
     public Set<String> keySet() {
-        return map_.keySet();
+        return new AbstractSet<String>() {
+            @Override
+            public Iterator<String> iterator() {
+                return new AttributeIterator<String>() {
+                    @Override
+                    protected String get(final int index) {
+                        return keys_[index];
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(final Object o) {
+                return containsKey(o);
+            }
+
+            @Override
+            public int size() {
+                return size_;
+            }
+        };
     }
 
     /**
@@ -1785,7 +2103,7 @@ class NamedAttrNodeMapImpl implements Map<String, DomAttr>, NamedNodeMap, Serial
      */
     @Override
     public int size() {
-        return map_.size();
+        return size_;
     }
 
     /**
@@ -1793,6 +2111,56 @@ class NamedAttrNodeMapImpl implements Map<String, DomAttr>, NamedNodeMap, Serial
      */
     @Override
     public Collection<DomAttr> values() {
-        return map_.values();
+        return new AbstractCollection<DomAttr>() {
+            @Override
+            public Iterator<DomAttr> iterator() {
+                return new AttributeIterator<DomAttr>() {
+                    @Override
+                    protected DomAttr get(final int index) {
+                        return getNode(index);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size_;
+            }
+        };
+    }
+
+    /**
+     * Iterates over the attributes in insertion order.
+     * @param <E> the element type
+     */
+    private abstract class AttributeIterator<E> implements Iterator<E> {
+        private int next_;
+        private int last_ = -1;
+
+        protected abstract E get(int index);
+
+        @Override
+        public boolean hasNext() {
+            return next_ < size_;
+        }
+
+        @Override
+        public E next() {
+            if (next_ >= size_) {
+                throw new NoSuchElementException();
+            }
+            last_ = next_++;
+            return get(last_);
+        }
+
+        @Override
+        public void remove() {
+            if (last_ < 0) {
+                throw new IllegalStateException();
+            }
+            removeAt(last_);
+            next_ = last_;
+            last_ = -1;
+        }
     }
 }
@@ -20,6 +20,7 @@ import com.gargoylesoftware.htmlunit.SgmlPage;
 import com.gargoylesoftware.htmlunit.WebAssert;
 import com.gargoylesoftware.htmlunit.html.xpath.XPathHelper;
 import com.gargoylesoftware.htmlunit.javascript.host.dom.Document;
+import com.gargoylesoftware.htmlunit.util.StringInterner;
 
 /**
  * Intermediate base class for DOM Nodes that have namespaces. That includes HtmlElement and HtmlAttr.
@@ -52,8 +53,8 @@ public abstract class DomNamespaceNode extends DomNode {
         if (qualifiedName.indexOf(':') != -1) {
             namespaceURI_ = namespaceURI;
             final int colonPosition = qualifiedName_.indexOf(':');
-            localName_ = qualifiedName_.substring(colonPosition + 1);
-            prefix_ = qualifiedName_.substring(0, colonPosition);
+            localName_ = StringInterner.internName(qualifiedName_.substring(colonPosition + 1));
+            prefix_ = StringInterner.internName(qualifiedName_.substring(0, colonPosition));
         }
         else {
             namespaceURI_ = namespaceURI;
@@ -61,7 +62,7 @@ public abstract class DomNamespaceNode extends DomNode {
             prefix_ = null;
         }
 
-        localNameLC_ = localName_.toLowerCase(Locale.ROOT);
+        localNameLC_ = StringInterner.internName(localName_.toLowerCase(Locale.ROOT));
     }
 
     /**
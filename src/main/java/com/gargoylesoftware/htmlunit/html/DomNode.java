@@ -16,6 +16,7 @@ package com.gargoylesoftware.htmlunit.html;
 
 import static com.gargoylesoftware.htmlunit.BrowserVersionFeatures.DOM_NORMALIZE_REMOVE_CHILDREN;
 import static com.gargoylesoftware.htmlunit.BrowserVersionFeatures.QUERYSELECTORALL_NOT_IN_QUIRKS;
+import static com.gargoylesoftware.htmlunit.BrowserVersionFeatures.QUERYSELECTOR_CSS3_PSEUDO_REQUIRE_ATTACHED_NODE;
 import static com.gargoylesoftware.htmlunit.BrowserVersionFeatures.XPATH_ATTRIBUTE_CASE_SENSITIVE;
 import static com.gargoylesoftware.htmlunit.BrowserVersionFeatures.XPATH_SELECTION_NAMESPACES;
 
@@ -25,8 +26,10 @@ import java.io.PrintWriter;
 import java.io.Serializable;
 import java.io.StringWriter;
 import java.nio.charset.Charset;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
@@ -45,8 +48,12 @@ import com.gargoylesoftware.css.parser.CSSErrorHandler;
 import com.gargoylesoftware.css.parser.CSSException;
 import com.gargoylesoftware.css.parser.CSSOMParser;
 import com.gargoylesoftware.css.parser.CSSParseException;
+import com.gargoylesoftware.css.parser.condition.Condition;
+import com.gargoylesoftware.css.parser.condition.Condition.ConditionType;
 import com.gargoylesoftware.css.parser.javacc.CSS3Parser;
+import com.gargoylesoftware.css.parser.selector.ElementSelector;
 import com.gargoylesoftware.css.parser.selector.Selector;
+import com.gargoylesoftware.css.parser.selector.Selector.SelectorType;
 import com.gargoylesoftware.css.parser.selector.SelectorList;
 import com.gargoylesoftware.htmlunit.BrowserVersion;
 import com.gargoylesoftware.htmlunit.BrowserVersionFeatures;
@@ -55,12 +62,11 @@ import com.gargoylesoftware.htmlunit.Page;
 import com.gargoylesoftware.htmlunit.SgmlPage;
 import com.gargoylesoftware.htmlunit.WebAssert;
 import com.gargoylesoftware.htmlunit.WebClient;
-import com.gargoylesoftware.htmlunit.html.HtmlElement.DisplayStyle;
 import com.gargoylesoftware.htmlunit.html.xpath.XPathHelper;
 import com.gargoylesoftware.htmlunit.javascript.SimpleScriptable;
-import com.gargoylesoftware.htmlunit.javascript.host.css.CSSStyleDeclaration;
+import com.gargoylesoftware.htmlunit.javascript.host.css.AncestorFilter;
 import com.gargoylesoftware.htmlunit.javascript.host.css.CSSStyleSheet;
-import com.gargoylesoftware.htmlunit.javascript.host.css.StyleAttributes;
+import com.gargoylesoftware.htmlunit.javascript.host.css.CompiledSelector;
 import com.gargoylesoftware.htmlunit.javascript.host.event.Event;
 import com.gargoylesoftware.htmlunit.javascript.host.html.HTMLDocument;
 import com.gargoylesoftware.htmlunit.javascript.host.html.HTMLElement;
@@ -119,6 +125,12 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
     /** The name of the "element" property. Used when watching property change events. */
     public static final String PROPERTY_ELEMENT = "element";
 
+    /** The gap between the document order labels of consecutive nodes. */
+    private static final long DOCUMENT_ORDER_GAP = 1L << 16;
+
+    /** The parsed and validated selector lists shared by all nodes. */
+    private static final SelectorListCache SELECTOR_LIST_CACHE = new SelectorListCache();
+
     /** The owning page of this node. */
     private SgmlPage page_;
 
@@ -170,6 +182,17 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
 
     private boolean attachedToPage_;
 
+    /**
+     * The label of this node in document order, 0 if not assigned.
+     * Only valid as long as the node is attached to the page.
+     */
+    private long documentOrder_;
+
+    /**
+     * Incremented whenever a node is added to or removed from the subtree of this node.
+     */
+    private int subtreeModificationCount_;
+
     private transient Object listeners_lock_ = new Object();
 
     /** The listeners which are to be notified of characterData change. */
@@ -513,6 +536,21 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
             return 0; // strange, no constant available?
         }
 
+        final DomNode otherNode = (DomNode) other;
+        if (hasDocumentOrder() && otherNode.hasDocumentOrder()
+                && page_ == otherNode.page_ && parent_ != null && otherNode.parent_ != null) {
+            if (documentOrder_ < otherNode.documentOrder_) {
+                if (isAncestorOf(otherNode)) {
+                    return DOCUMENT_POSITION_CONTAINED_BY | DOCUMENT_POSITION_FOLLOWING;
+                }
+                return DOCUMENT_POSITION_FOLLOWING;
+            }
+            if (otherNode.isAncestorOf(this)) {
+                return DOCUMENT_POSITION_CONTAINS | DOCUMENT_POSITION_PRECEDING;
+            }
+            return DOCUMENT_POSITION_PRECEDING;
+        }
+
         // get ancestors of both
         final List<Node> myAncestors = getAncestors();
         final List<Node> otherAncestors = ((DomNode) other).getAncestors();
@@ -554,6 +592,198 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
         return DOCUMENT_POSITION_PRECEDING;
     }
 
+    /**
+     * Compares the document order of this node and the given one using the labels only.
+     * @param other the other node
+     * @return a negative value if this node comes first, a positive one if the other
+     *         node comes first and 0 if the labels can't be used
+     */
+    int compareDocumentOrder(final DomNode other) {
+        if (hasDocumentOrder() && other.hasDocumentOrder()
+                && page_ == other.page_ && parent_ != null && other.parent_ != null) {
+            return Long.compare(documentOrder_, other.documentOrder_);
+        }
+        return 0;
+    }
+
+    /**
+     * Throws an {@link IllegalStateException} if this node is part of a frozen page.
+     * @see HtmlPage#freeze()
+     */
+    void checkNotFrozen() {
+        if (isAttachedToPage() && page_ instanceof HtmlPage && ((HtmlPage) page_).isFrozen()) {
+            throw new IllegalStateException("The page is frozen and can not be modified.");
+        }
+    }
+
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
+     *
+     * Returns a counter that is incremented whenever a node is added to or removed from the subtree
+     * of this node (before the {@link DomChangeListener}s are notified). Caches depending on the
+     * structure of the subtree can remember the value to check if they are still valid.
+     *
+     * @return the modification count of the subtree
+     */
+    public int getSubtreeModificationCount() {
+        return subtreeModificationCount_;
+    }
+
+    /**
+     * Returns whether the document order label of this node can be used.
+     */
+    private boolean hasDocumentOrder() {
+        return documentOrder_ != 0 && attachedToPage_;
+    }
+
+    /**
+     * Returns the document order label of this node, 0 if not assigned.
+     * @return the document order label
+     */
+    long getDocumentOrder() {
+        return documentOrder_;
+    }
+
+    /**
+     * Assigns the document order labels of this node and its descendants after they have been added to the page.
+     * The labels are taken from the gap between the preceding and the following node;
+     * if the gap is too small, the labels around the preceding node are spread to make room.
+     */
+    private void assignDocumentOrder() {
+        final DomNode root = getPage();
+        if (root == null || parent_ == null) {
+            return;
+        }
+
+        DomNode preceding = parent_;
+        if (parent_.firstChild_ != this) {
+            preceding = previousSibling_;
+            while (preceding.firstChild_ != null) {
+                preceding = preceding.getLastChild();
+            }
+        }
+        DomNode following = null;
+        for (DomNode node = this; node != null && following == null; node = node.parent_) {
+            following = node.nextSibling_;
+        }
+
+        final long start = preceding.documentOrder_;
+        if (start == 0) {
+            root.renumberDocumentOrder();
+            return;
+        }
+        int count = 0;
+        for (DomNode node = this; node != null; node = node.nextInDocumentOrder(this)) {
+            count++;
+        }
+
+        final long end = following == null ? Long.MAX_VALUE : following.documentOrder_;
+        final long step = Math.min(DOCUMENT_ORDER_GAP, (end - start) / (count + 1));
+        if (step <= 0) {
+            if (!preceding.spreadDocumentOrder(following, count)) {
+                root.renumberDocumentOrder();
+            }
+            return;
+        }
+
+        long label = start;
+        for (DomNode node = this; node != null; node = node.nextInDocumentOrder(this)) {
+            label += step;
+            node.documentOrder_ = label;
+        }
+    }
+
+    /**
+     * Makes room for the given number of nodes between this node and the following one by labeling
+     * the nodes of the smallest surrounding range of labels again that is sparse enough.
+     * The ranges are aligned powers of two, a range of 2<sup>n</sup> labels may hold up to
+     * 2<sup>n/2</sup> nodes; this keeps the amortized number of labels changed per insertion
+     * logarithmic in the size of the page, instead of labeling the whole page again.
+     * @param following the node following the inserted ones, may be {@code null}
+     * @param count the number of inserted nodes, following this node in document order
+     * @return {@code false} if there is no such range
+     */
+    private boolean spreadDocumentOrder(final DomNode following, final int count) {
+        final long start = documentOrder_;
+        DomNode first = this;
+        DomNode last = null;
+        long nodes = count + 1;
+        for (int level = 1; level < Long.SIZE - 1; level++) {
+            final long mask = (1L << level) - 1;
+            final long low = Math.max(1, start & ~mask);
+            final long high = start | mask;
+
+            for (DomNode node = first.previousInDocumentOrder();
+                    node != null && node.documentOrder_ >= low;
+                    node = node.previousInDocumentOrder()) {
+                first = node;
+                nodes++;
+            }
+            for (DomNode node = last == null ? following : last.nextInDocumentOrder(null);
+                    node != null && node.documentOrder_ != 0 && node.documentOrder_ <= high;
+                    node = node.nextInDocumentOrder(null)) {
+                last = node;
+                nodes++;
+            }
+
+            if (nodes <= 1L << (level / 2)) {
+                final long step = (high - low + 1) / (nodes + 1);
+                long label = low;
+                DomNode node = first;
+                for (long i = 0; i < nodes; i++) {
+                    label += step;
+                    node.documentOrder_ = label;
+                    node = node.nextInDocumentOrder(null);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Labels this node and all its descendants again, using the full gap between all nodes.
+     */
+    private void renumberDocumentOrder() {
+        long label = 0;
+        for (DomNode node = this; node != null; node = node.nextInDocumentOrder(this)) {
+            label += DOCUMENT_ORDER_GAP;
+            node.documentOrder_ = label;
+        }
+    }
+
+    /**
+     * Returns the previous node in document order.
+     */
+    private DomNode previousInDocumentOrder() {
+        if (parent_ == null) {
+            return null;
+        }
+        if (parent_.firstChild_ == this) {
+            return parent_;
+        }
+        DomNode node = previousSibling_;
+        while (node.firstChild_ != null) {
+            node = node.getLastChild();
+        }
+        return node;
+    }
+
+    /**
+     * Returns the next node in document order, without leaving the subtree of the given root.
+     */
+    private DomNode nextInDocumentOrder(final DomNode root) {
+        if (firstChild_ != null) {
+            return firstChild_;
+        }
+        for (DomNode node = this; node != root && node != null; node = node.parent_) {
+            if (node.nextSibling_ != null) {
+                return node.nextSibling_;
+            }
+        }
+        return null;
+    }
+
     /**
      * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
      *
@@ -740,37 +970,14 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
         final Page page = getPage();
         final WebClient webClient = page.getEnclosingWindow().getWebClient();
         if (webClient.getOptions().isCssEnabled() && webClient.isJavaScriptEnabled()) {
-            // display: iterate top to bottom, because if a parent is display:none,
-            // there's nothing that a child can do to override it
-            final List<Node> ancestors = getAncestors();
-            final ArrayList<CSSStyleDeclaration> styles = new ArrayList<>(ancestors.size());
-
-            for (final Node node : ancestors) {
-                if (node instanceof HtmlElement && ((HtmlElement) node).isHidden()) {
-                    return false;
-                }
-
-                final Object scriptableObject = ((DomNode) node).getScriptableObject();
-                if (scriptableObject instanceof HTMLElement) {
-                    final HTMLElement elem = (HTMLElement) scriptableObject;
-                    final CSSStyleDeclaration style = elem.getWindow().getComputedStyle(elem, null);
-                    if (DisplayStyle.NONE.value().equals(style.getDisplay())) {
-                        return false;
+            // the state of the nearest element covers all ancestors
+            for (DomNode node = this; node != null; node = node.getParentNode()) {
+                if (node instanceof HtmlElement) {
+                    final Object scriptableObject = node.getScriptableObject();
+                    if (scriptableObject instanceof HTMLElement) {
+                        return ((HTMLElement) scriptableObject).getWindow().isDisplayed((HtmlElement) node);
                     }
-                    styles.add(style);
-                }
-            }
-
-            // visibility: iterate bottom to top, because children can override
-            // the visibility used by parent nodes
-            for (int i = styles.size() - 1; i >= 0; i--) {
-                final CSSStyleDeclaration style = styles.get(i);
-                final String visibility = style.getStyleAttribute(StyleAttributes.Definition.VISIBILITY);
-                if (visibility.length() > 5) {
-                    if ("visible".equals(visibility)) {
-                        return true;
-                    }
-                    if ("hidden".equals(visibility) || "collapse".equals(visibility)) {
+                    if (((HtmlElement) node).isHidden()) {
                         return false;
                     }
                 }
@@ -901,6 +1108,7 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
         newnode.scriptObject_ = null;
         newnode.firstChild_ = null;
         newnode.attachedToPage_ = false;
+        newnode.documentOrder_ = 0;
 
         // if deep, clone the children too.
         if (deep) {
@@ -968,8 +1176,19 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
 
         if (domNode instanceof DomDocumentFragment) {
             final DomDocumentFragment fragment = (DomDocumentFragment) domNode;
-            for (final DomNode child : fragment.getChildren()) {
-                appendChild(child);
+            final HtmlPage htmlPage = getHtmlPageOrNull();
+            if (htmlPage != null) {
+                htmlPage.startDomChangeBatch();
+            }
+            try {
+                for (final DomNode child : fragment.getChildren()) {
+                    appendChild(child);
+                }
+            }
+            finally {
+                if (htmlPage != null) {
+                    htmlPage.endDomChangeBatch();
+                }
             }
         }
         else {
@@ -993,6 +1212,7 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
      * @param node the node to append to this node's children
      */
     private void basicAppend(final DomNode node) {
+        checkNotFrozen();
         node.setPage(getPage());
         if (firstChild_ == null) {
             firstChild_ = node;
@@ -1015,8 +1235,19 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
     public Node insertBefore(final Node newChild, final Node refChild) {
         if (newChild instanceof DomDocumentFragment) {
             final DomDocumentFragment fragment = (DomDocumentFragment) newChild;
-            for (final DomNode child : fragment.getChildren()) {
-                insertBefore(child, refChild);
+            final HtmlPage htmlPage = getHtmlPageOrNull();
+            if (htmlPage != null) {
+                htmlPage.startDomChangeBatch();
+            }
+            try {
+                for (final DomNode child : fragment.getChildren()) {
+                    insertBefore(child, refChild);
+                }
+            }
+            finally {
+                if (htmlPage != null) {
+                    htmlPage.endDomChangeBatch();
+                }
             }
         }
         else {
@@ -1065,6 +1296,7 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
      * @param node the node to insert before this node
      */
     private void basicInsertBefore(final DomNode node) {
+        parent_.checkNotFrozen();
         node.setPage(page_);
         if (parent_.firstChild_ == this) {
             parent_.firstChild_ = node;
@@ -1083,6 +1315,8 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
         domNode.attachedToPage_ = isAttachedToPage();
 
         if (isAttachedToPage()) {
+            domNode.assignDocumentOrder();
+
             // trigger events
             final Page page = getPage();
             if (null != page && page.isHtmlPage()) {
@@ -1176,6 +1410,7 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
      * Cuts off all relationships this node has with siblings and parents.
      */
     protected void basicRemove() {
+        checkNotFrozen();
         if (parent_ != null && parent_.firstChild_ == this) {
             parent_.firstChild_ = nextSibling_;
         }
@@ -1193,8 +1428,10 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
         previousSibling_ = null;
         parent_ = null;
         attachedToPage_ = false;
+        documentOrder_ = 0;
         for (DomNode descendant : getDescendants()) {
             descendant.attachedToPage_ = false;
+            descendant.documentOrder_ = 0;
         }
     }
 
@@ -1731,10 +1968,13 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
      * @param event the DomChangeEvent to be propagated
      */
     protected void fireNodeAdded(final DomChangeEvent event) {
+        subtreeModificationCount_++;
         final List<DomChangeListener> listeners = safeGetDomListeners();
         if (listeners != null) {
             for (final DomChangeListener listener : listeners) {
-                listener.nodeAdded(event);
+                if (!deferDomChange(listener, event)) {
+                    listener.nodeAdded(event);
+                }
             }
         }
         if (parent_ != null) {
@@ -1807,10 +2047,13 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
      * @param event the DomChangeEvent to be propagated
      */
     protected void fireNodeDeleted(final DomChangeEvent event) {
+        subtreeModificationCount_++;
         final List<DomChangeListener> listeners = safeGetDomListeners();
         if (listeners != null) {
             for (final DomChangeListener listener : listeners) {
-                listener.nodeDeleted(event);
+                if (!deferDomChange(listener, event)) {
+                    listener.nodeDeleted(event);
+                }
             }
         }
         if (parent_ != null) {
@@ -1818,6 +2061,16 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
         }
     }
 
+    private boolean deferDomChange(final DomChangeListener listener, final DomChangeEvent event) {
+        if (listener instanceof DomChangeBatchListener) {
+            final SgmlPage page = getPage();
+            if (page != null && page.isHtmlPage()) {
+                return ((HtmlPage) page).deferDomChange((DomChangeBatchListener) listener, event);
+            }
+        }
+        return false;
+    }
+
     private List<DomChangeListener> safeGetDomListeners() {
         synchronized (listeners_lock_) {
             if (domListeners_ == null) {
@@ -1849,28 +2102,115 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
      * @return list of all found nodes
      */
     public DomNodeList<DomNode> querySelectorAll(final String selectors) {
+        return new StaticDomNodeList(querySelectorAll(selectors, false));
+    }
+
+    /**
+     * Retrieves the matching descendants in document order.
+     * @param selectors one or more CSS selectors separated by commas
+     * @param firstOnly whether to stop at the first match
+     * @return the matching elements
+     */
+    private List<DomNode> querySelectorAll(final String selectors, final boolean firstOnly) {
         try {
             final BrowserVersion browserVersion = getPage().getWebClient().getBrowserVersion();
-            final SelectorList selectorList = getSelectorList(selectors, browserVersion);
+            final List<CompiledSelector> compiledSelectors = getCompiledSelectors(selectors, browserVersion);
 
             final List<DomNode> elements = new ArrayList<>();
-            if (selectorList != null) {
+            if (compiledSelectors != null) {
+                if (compiledSelectors.size() == 1) {
+                    final CompiledSelector compiledSelector = compiledSelectors.get(0);
+                    final List<DomElement> candidates = getIndexedCandidates(compiledSelector.getSelector());
+                    if (candidates != null) {
+                        for (final DomElement candidate : candidates) {
+                            if (compiledSelector.matches(browserVersion, candidate, null, true, null)) {
+                                elements.add(candidate);
+                                if (firstOnly) {
+                                    break;
+                                }
+                            }
+                        }
+                        return elements;
+                    }
+                }
+
+                // the filter always contains the ancestors of the current child
+                final AncestorFilter ancestors = AncestorFilter.forAncestorsOf(this);
+                if (this instanceof DomElement) {
+                    ancestors.push((DomElement) this);
+                }
+                final Deque<DomElement> path = new ArrayDeque<>();
+
                 for (final DomElement child : getDomElementDescendants()) {
-                    for (Selector selector : selectorList) {
-                        if (CSSStyleSheet.selects(browserVersion, selector, child, null, true)) {
+                    final DomNode parent = child.getParentNode();
+                    while (!path.isEmpty() && path.peek() != parent) {
+                        ancestors.pop(path.pop());
+                    }
+                    final boolean complete = parent == this || !path.isEmpty();
+
+                    for (final CompiledSelector selector : compiledSelectors) {
+                        if (selector.matches(browserVersion, child, null, true, complete ? ancestors : null)) {
                             elements.add(child);
                             break;
                         }
                     }
+                    if (firstOnly && !elements.isEmpty()) {
+                        break;
+                    }
+
+                    if (complete) {
+                        ancestors.push(child);
+                        path.push(child);
+                    }
                 }
             }
-            return new StaticDomNodeList(elements);
+            return elements;
         }
         catch (final IOException e) {
             throw new CSSException("Error parsing CSS selectors from '" + selectors + "': " + e.getMessage());
         }
     }
 
+    /**
+     * Returns the candidates for a compound selector like {@code #id}, {@code tag}, {@code .class} or
+     * {@code tag.class} from the element index of the page. The candidates are descendants of this node in
+     * document order and contain (at least) all matching descendants.
+     * @param selector the selector
+     * @return the candidates or {@code null} if the selector is not supported or this node is not attached
+     */
+    private List<DomElement> getIndexedCandidates(final Selector selector) {
+        if (selector.getSelectorType() != SelectorType.ELEMENT_NODE_SELECTOR) {
+            return null;
+        }
+        final HtmlPage htmlPage = getPage().isHtmlPage() ? (HtmlPage) getPage() : null;
+        if (htmlPage == null || (this != htmlPage && !isAttachedToPage())) {
+            return null;
+        }
+
+        final ElementSelector es = (ElementSelector) selector;
+        String className = null;
+        final List<Condition> conditions = es.getConditions();
+        if (conditions != null) {
+            for (final Condition condition : conditions) {
+                if (condition.getConditionType() == ConditionType.ID_CONDITION) {
+                    return htmlPage.getIndexedElementsById(this, condition.getValue());
+                }
+                if (className == null && condition.getConditionType() == ConditionType.CLASS_CONDITION) {
+                    className = condition.getValue();
+                }
+            }
+        }
+
+        if (className != null && className.indexOf('\\') == -1) {
+            return htmlPage.getIndexedElementsByClassName(this, className);
+        }
+        final String name = es.getLocalNameLowerCase();
+        if (name != null) {
+            return htmlPage.getIndexedElementsByTagName(this, name);
+        }
+        return null;
+    }
+
     /**
      * Returns the {@link SelectorList}.
      * @param selectors the selectors
@@ -1880,6 +2220,43 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
      */
     protected SelectorList getSelectorList(final String selectors, final BrowserVersion browserVersion)
             throws IOException {
+        final SelectorListCache.Selectors entry = getSelectorListEntry(selectors, browserVersion);
+        return entry == null ? null : entry.getSelectorList();
+    }
+
+    /**
+     * Returns the compiled selectors.
+     * @param selectors the selectors
+     * @param browserVersion the {@link BrowserVersion}
+     * @return the compiled selectors or {@code null}
+     * @throws IOException if an error occurs
+     */
+    List<CompiledSelector> getCompiledSelectors(final String selectors, final BrowserVersion browserVersion)
+            throws IOException {
+        final SelectorListCache.Selectors entry = getSelectorListEntry(selectors, browserVersion);
+        return entry == null ? null : entry.getCompiledSelectors();
+    }
+
+    private SelectorListCache.Selectors getSelectorListEntry(final String selectors,
+            final BrowserVersion browserVersion) throws IOException {
+        int documentMode = 9;
+        if (browserVersion.hasFeature(QUERYSELECTORALL_NOT_IN_QUIRKS)) {
+            final Object sobj = getPage().getScriptableObject();
+            if (sobj instanceof HTMLDocument) {
+                documentMode = ((HTMLDocument) sobj).getDocumentMode();
+            }
+        }
+
+        final SelectorListCache.Selectors entry = SELECTOR_LIST_CACHE.get(selectors, browserVersion, documentMode);
+        if (entry != null) {
+            // the validation of some pseudo classes depends on the state of this node
+            if (hasFeature(QUERYSELECTOR_CSS3_PSEUDO_REQUIRE_ATTACHED_NODE)
+                    && !isAttachedToPage() && !hasChildNodes()) {
+                CSSStyleSheet.validateSelectors(entry.getSelectorList(), documentMode, this);
+            }
+            return entry;
+        }
+
         final CSSOMParser parser = new CSSOMParser(new CSS3Parser());
         final CheckErrorHandler errorHandler = new CheckErrorHandler();
         parser.setErrorHandler(errorHandler);
@@ -1890,18 +2267,11 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
             throw new CSSException("Invalid selectors: " + selectors);
         }
 
-        if (selectorList != null) {
-            int documentMode = 9;
-            if (browserVersion.hasFeature(QUERYSELECTORALL_NOT_IN_QUIRKS)) {
-                final Object sobj = getPage().getScriptableObject();
-                if (sobj instanceof HTMLDocument) {
-                    documentMode = ((HTMLDocument) sobj).getDocumentMode();
-                }
-            }
-            CSSStyleSheet.validateSelectors(selectorList, documentMode, this);
-
+        if (selectorList == null) {
+            return null;
         }
-        return selectorList;
+        CSSStyleSheet.validateSelectors(selectorList, documentMode, this);
+        return SELECTOR_LIST_CACHE.put(selectors, browserVersion, documentMode, selectorList);
     }
 
     /**
@@ -1912,7 +2282,7 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
      */
     @SuppressWarnings("unchecked")
     public <N extends DomNode> N querySelector(final String selectors) {
-        final DomNodeList<DomNode> list = querySelectorAll(selectors);
+        final List<DomNode> list = querySelectorAll(selectors, true);
         if (!list.isEmpty()) {
             return (N) list.get(0);
         }
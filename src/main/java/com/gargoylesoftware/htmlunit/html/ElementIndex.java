@@ -0,0 +1,331 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.html;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Index of the elements of an {@link HtmlPage} by local name, by id and by class token.
+ * The page creates the index on first use and keeps it up to date while nodes are
+ * added and removed and while id and class attributes change, for all kinds of elements.
+ * <p>
+ * The index only provides candidates: the local names are compared case insensitive and
+ * the class attribute is split at any whitespace, callers still have to check each element.
+ * <p>
+ * Changes are synchronized, reads are not: each bucket publishes its elements as an array in
+ * document order that is only replaced (on the first read after a change), never modified.
+ * The descendants of a node are found by the range of their document order labels.
+ *
+ * @author Ronald Brill
+ */
+final class ElementIndex {
+
+    private static final Comparator<DomElement> DOCUMENT_POSITION_COMPARATOR
+                = new HtmlPage.DocumentPositionComparator();
+
+    private final Map<String, Bucket> tagNames_ = new ConcurrentHashMap<>();
+    private final Map<String, Bucket> ids_ = new ConcurrentHashMap<>();
+    private final Map<String, Bucket> classNames_ = new ConcurrentHashMap<>();
+    /** The id each element is registered with. */
+    private final Map<DomElement, String> idValues_ = new IdentityHashMap<>();
+    /** The class tokens each element is registered with. */
+    private final Map<DomElement, String[]> classTokens_ = new IdentityHashMap<>();
+
+    /**
+     * Creates the index for all elements below the given node.
+     * @param root the root node, usually the page
+     */
+    ElementIndex(final DomNode root) {
+        for (final DomElement element : root.getDomElementDescendants()) {
+            addElement(element);
+        }
+    }
+
+    /**
+     * Adds the element and all its descendants.
+     * @param element the element that has been added to the page
+     */
+    synchronized void add(final DomElement element) {
+        addElement(element);
+        for (final DomElement child : element.getDomElementDescendants()) {
+            addElement(child);
+        }
+    }
+
+    /**
+     * Removes the element and all its descendants.
+     * @param element the element that has been removed from the page
+     */
+    synchronized void remove(final DomElement element) {
+        removeElement(element);
+        for (final DomElement child : element.getDomElementDescendants()) {
+            removeElement(child);
+        }
+    }
+
+    /**
+     * Registers the element again with its current id and the current tokens of its class attribute.
+     * @param element the element whose id or class attribute has changed
+     */
+    synchronized void updateAttributes(final DomElement element) {
+        final Bucket bucket = tagNames_.get(key(element.getLowercaseName()));
+        if (bucket != null && bucket.elements_.contains(element)) {
+            removeId(element);
+            removeClasses(element);
+            addId(element);
+            addClasses(element);
+        }
+    }
+
+    /**
+     * Returns the descendants of the given node with the local name of the given tag name (case insensitive);
+     * the prefix of a qualified name is ignored.
+     * @param root the node to search below
+     * @param tagName the tag name
+     * @return the elements in document order, not modifiable
+     */
+    List<DomElement> getElementsByTagName(final DomNode root, final String tagName) {
+        return collect(root, tagNames_.get(key(tagName.substring(tagName.indexOf(':') + 1))));
+    }
+
+    /**
+     * Returns the descendants of the given node having the given id.
+     * @param root the node to search below
+     * @param id the id
+     * @return the elements in document order, not modifiable
+     */
+    List<DomElement> getElementsById(final DomNode root, final String id) {
+        return collect(root, ids_.get(id));
+    }
+
+    /**
+     * Returns the descendants of the given node having the given class token.
+     * @param root the node to search below
+     * @param className a single class name
+     * @return the elements in document order, not modifiable
+     */
+    List<DomElement> getElementsByClassName(final DomNode root, final String className) {
+        return collect(root, classNames_.get(className));
+    }
+
+    /**
+     * Creates the arrays of all buckets, so that reads don't have to wait for each other.
+     */
+    synchronized void prepare() {
+        for (final Bucket bucket : tagNames_.values()) {
+            bucket.getElements();
+        }
+        for (final Bucket bucket : ids_.values()) {
+            bucket.getElements();
+        }
+        for (final Bucket bucket : classNames_.values()) {
+            bucket.getElements();
+        }
+    }
+
+    private List<DomElement> collect(final DomNode root, final Bucket bucket) {
+        if (bucket == null) {
+            return Collections.emptyList();
+        }
+
+        DomElement[] elements = bucket.elements();
+        if (elements == null) {
+            synchronized (this) {
+                elements = bucket.getElements();
+            }
+        }
+
+        if (root == root.getPage()) {
+            return Collections.unmodifiableList(Arrays.asList(elements));
+        }
+
+        final long low = root.getDocumentOrder();
+        if (low == 0 || !root.isAttachedToPage()) {
+            final List<DomElement> result = new ArrayList<>();
+            for (final DomElement element : elements) {
+                if (element != root && root.isAncestorOf(element)) {
+                    result.add(element);
+                }
+            }
+            return Collections.unmodifiableList(result);
+        }
+
+        // the descendants are labeled between the root and the node following the subtree
+        long high = Long.MAX_VALUE;
+        for (DomNode node = root; node != null; node = node.getParentNode()) {
+            final DomNode next = node.getNextSibling();
+            if (next != null) {
+                high = next.getDocumentOrder();
+                break;
+            }
+        }
+
+        int from = 0;
+        int to = elements.length;
+        while (from < to) {
+            final int middle = (from + to) >>> 1;
+            if (elements[middle].getDocumentOrder() <= low) {
+                from = middle + 1;
+            }
+            else {
+                to = middle;
+            }
+        }
+        to = from;
+        while (to < elements.length && elements[to].getDocumentOrder() < high) {
+            to++;
+        }
+        return Collections.unmodifiableList(Arrays.asList(elements).subList(from, to));
+    }
+
+    private void addElement(final DomElement element) {
+        register(tagNames_, key(element.getLowercaseName()), element);
+        addId(element);
+        addClasses(element);
+    }
+
+    private void removeElement(final DomElement element) {
+        unregister(tagNames_, key(element.getLowercaseName()), element);
+        removeId(element);
+        removeClasses(element);
+    }
+
+    private void addId(final DomElement element) {
+        final String id = element.getId();
+        if (id.isEmpty()) {
+            return;
+        }
+
+        idValues_.put(element, id);
+        register(ids_, id, element);
+    }
+
+    private void removeId(final DomElement element) {
+        final String id = idValues_.remove(element);
+        if (id != null) {
+            unregister(ids_, id, element);
+        }
+    }
+
+    private void addClasses(final DomElement element) {
+        final String value = element.getAttribute("class");
+        if (DomElement.ATTRIBUTE_NOT_DEFINED == value || DomElement.ATTRIBUTE_VALUE_EMPTY == value) {
+            return;
+        }
+
+        final String[] tokens = StringUtils.split(value);
+        if (tokens.length > 0) {
+            classTokens_.put(element, tokens);
+            for (final String token : tokens) {
+                register(classNames_, token, element);
+            }
+        }
+    }
+
+    private void removeClasses(final DomElement element) {
+        final String[] tokens = classTokens_.remove(element);
+        if (tokens != null) {
+            for (final String token : tokens) {
+                unregister(classNames_, token, element);
+            }
+        }
+    }
+
+    private static void register(final Map<String, Bucket> map, final String key, final DomElement element) {
+        Bucket bucket = map.get(key);
+        if (bucket == null) {
+            bucket = new Bucket();
+            map.put(key, bucket);
+        }
+        if (bucket.elements_.add(element)) {
+            bucket.elementsInOrder_ = null;
+        }
+    }
+
+    private static void unregister(final Map<String, Bucket> map, final String key, final DomElement element) {
+        final Bucket bucket = map.get(key);
+        if (bucket != null && bucket.elements_.remove(element)) {
+            bucket.elementsInOrder_ = null;
+            if (bucket.elements_.isEmpty()) {
+                map.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Folds the case of every char the way {@link String#equalsIgnoreCase(String)} compares them.
+     */
+    private static String key(final String name) {
+        char[] chars = null;
+        for (int i = 0; i < name.length(); i++) {
+            final char c = name.charAt(i);
+            final char folded = Character.toLowerCase(Character.toUpperCase(c));
+            if (folded != c) {
+                if (chars == null) {
+                    chars = name.toCharArray();
+                }
+                chars[i] = folded;
+            }
+        }
+        if (chars == null) {
+            return name;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * The elements registered with one key.
+     */
+    private static final class Bucket {
+        /** The elements, only accessed while holding the lock of the index. */
+        private final Set<DomElement> elements_ = new HashSet<>();
+        /** The elements in document order, {@code null} after a change. */
+        private volatile DomElement[] elementsInOrder_;
+
+        /**
+         * Returns the elements in document order without locking.
+         * @return the elements or {@code null} if they have to be sorted first
+         */
+        DomElement[] elements() {
+            return elementsInOrder_;
+        }
+
+        /**
+         * Returns the elements in document order, sorts them if necessary;
+         * has to be called while holding the lock of the index.
+         * @return the elements
+         */
+        DomElement[] getElements() {
+            DomElement[] elements = elementsInOrder_;
+            if (elements == null) {
+                elements = elements_.toArray(new DomElement[elements_.size()]);
+                Arrays.sort(elements, DOCUMENT_POSITION_COMPARATOR);
+                elementsInOrder_ = elements;
+            }
+            return elements;
+        }
+    }
+}
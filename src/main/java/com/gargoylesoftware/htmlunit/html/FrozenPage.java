@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.html;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * A read only view of a frozen {@link HtmlPage} that can be queried from many threads in parallel.
+ * Use {@link HtmlPage#freeze()} to get one.
+ * <p>
+ * The CSS selector queries, the XPath queries and the attribute access of the frozen DOM don't modify
+ * anything and therefore run in parallel; the element index of the page is complete when the page
+ * gets frozen and is read without locking. Text extraction depends on the computed styles which are
+ * calculated lazily; {@link #asText(DomNode)} serializes these calls.
+ *
+ * @author Ronald Brill
+ */
+public final class FrozenPage {
+
+    private final HtmlPage page_;
+    private final Object textLock_ = new Object();
+
+    /**
+     * Creates a new instance.
+     * @param page the frozen page
+     */
+    FrozenPage(final HtmlPage page) {
+        page_ = page;
+    }
+
+    /**
+     * Returns the frozen page.
+     * @return the page
+     */
+    public HtmlPage getPage() {
+        return page_;
+    }
+
+    /**
+     * Retrieves all element nodes of the page that match the specified selectors.
+     * @param selectors one or more CSS selectors separated by commas
+     * @return the matching elements in document order
+     * @see DomNode#querySelectorAll(String)
+     */
+    public DomNodeList<DomNode> querySelectorAll(final String selectors) {
+        return page_.querySelectorAll(selectors);
+    }
+
+    /**
+     * Returns the first element of the page that matches the specified selectors.
+     * @param selectors one or more CSS selectors separated by commas
+     * @param <N> the node type
+     * @return the first matching element or {@code null}
+     * @see DomNode#querySelector(String)
+     */
+    public <N extends DomNode> N querySelector(final String selectors) {
+        return page_.querySelector(selectors);
+    }
+
+    /**
+     * Evaluates the specified XPath expression from the page.
+     * @param xpathExpr the XPath expression to evaluate
+     * @param <T> the type of the results
+     * @return the elements which match the specified XPath expression
+     * @see DomNode#getByXPath(String)
+     */
+    public <T> List<T> getByXPath(final String xpathExpr) {
+        return page_.getByXPath(xpathExpr);
+    }
+
+    /**
+     * Returns the textual representation of the given node of the page.
+     * @param node the node
+     * @return the text
+     * @see DomNode#asText()
+     */
+    public String asText(final DomNode node) {
+        synchronized (textLock_) {
+            return node.asText();
+        }
+    }
+
+    /**
+     * Applies all extraction rules to this page in parallel using the common fork join pool.
+     * @param rules the rules
+     * @param <T> the result type
+     * @return the results in the order of the rules
+     */
+    public <T> List<T> extract(final List<? extends Function<? super FrozenPage, ? extends T>> rules) {
+        return rules.parallelStream()
+                    .map(rule -> rule.apply(this))
+                    .collect(Collectors.toList());
+    }
+}
@@ -534,6 +534,7 @@ public class HtmlImage extends HtmlElement {
                     request.setCharset(page.getCharset());
                     request.setAdditionalHeader(HttpHeader.REFERER, page.getUrl().toExternalForm());
                     imageWebResponse_ = webClient.loadWebResponse(request);
+                    page.addResourceResponse(imageWebResponse_, "img");
                 }
             }
 
@@ -200,6 +200,10 @@ public class HtmlLink extends HtmlElement {
             }
             try {
                 cachedWebResponse_ = webclient.loadWebResponse(request);
+                final SgmlPage page = getPage();
+                if (page instanceof HtmlPage) {
+                    ((HtmlPage) page).addResourceResponse(cachedWebResponse_, "link");
+                }
                 final int statusCode = cachedWebResponse_.getStatusCode();
                 final boolean successful = statusCode >= HttpStatus.SC_OK
                                                 && statusCode < HttpStatus.SC_MULTIPLE_CHOICES;
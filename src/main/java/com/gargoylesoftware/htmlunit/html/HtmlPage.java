@@ -37,12 +37,14 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
@@ -74,6 +76,7 @@ import com.gargoylesoftware.htmlunit.WebAssert;
 import com.gargoylesoftware.htmlunit.WebClient;
 import com.gargoylesoftware.htmlunit.WebRequest;
 import com.gargoylesoftware.htmlunit.WebResponse;
+import com.gargoylesoftware.htmlunit.WebResponseTiming;
 import com.gargoylesoftware.htmlunit.WebWindow;
 import com.gargoylesoftware.htmlunit.html.impl.SelectableTextInput;
 import com.gargoylesoftware.htmlunit.html.impl.SimpleRange;
@@ -148,6 +151,9 @@ public class HtmlPage extends SgmlPage {
 
     private static final Comparator<DomElement> documentPositionComparator = new DocumentPositionComparator();
 
+    /** The maximum number of resource timing entries, the default of the browsers. */
+    private static final int RESOURCE_TIMING_BUFFER_SIZE = 150;
+
     private HTMLParserDOMBuilder domBuilder_;
     private transient Charset originalCharset_;
 
@@ -157,10 +163,16 @@ public class HtmlPage extends SgmlPage {
             = Collections.synchronizedMap(new HashMap<String, SortedSet<DomElement>>());
 
     private SortedSet<BaseFrameElement> frameElements_ = new TreeSet<>(documentPositionComparator);
+    private transient ElementIndex elementIndex_;
+    private boolean frozen_;
+    private transient FrozenPage frozenPage_;
+    private transient int domChangeBatchDepth_;
+    private transient Map<DomChangeBatchListener, List<DomChangeEvent>> domChangeBatch_;
     private int parserCount_;
     private int snippetParserCount_;
     private int inlineSnippetParserCount_;
     private Collection<HtmlAttributeChangeListener> attributeListeners_;
+    private transient List<ResourceTimingEntry> resourceTimings_;
     private final Object lock_ = new String(); // used for synchronization
     private List<PostponedAction> afterLoadActions_ = Collections.synchronizedList(new ArrayList<PostponedAction>());
     private boolean cleaning_;
@@ -179,6 +191,11 @@ public class HtmlPage extends SgmlPage {
     static class DocumentPositionComparator implements Comparator<DomElement>, Serializable {
         @Override
         public int compare(final DomElement elt1, final DomElement elt2) {
+            final int order = elt1.compareDocumentOrder(elt2);
+            if (order != 0) {
+                return order;
+            }
+
             final short relation = elt1.compareDocumentPosition(elt2);
             if (relation == 0) {
                 return 0; // same node
@@ -344,6 +361,158 @@ public class HtmlPage extends SgmlPage {
         }
     }
 
+    /**
+     * Creates an independent copy of this page using {@link WebClient#fork()}: the copy lives in its own
+     * {@link WebClient} with copies of all windows, the JavaScript state, the cookies and the web storage.
+     * Like {@link WebClient#fork()} this copies the whole client, not only this page; see there for the costs.
+     *
+     * @return the copy of this page, use {@code getWebClient()} to get (and later close) the new client
+     * @throws IllegalStateException if this page is not the current page of its window
+     */
+    public HtmlPage fork() {
+        final WebWindow window = getEnclosingWindow();
+        final WebClient webClient = getWebClient();
+        final int index = webClient.getWebWindows().indexOf(window);
+        if (index < 0 || window.getEnclosedPage() != this) {
+            throw new IllegalStateException("Only the current page of an open window can be forked.");
+        }
+        return (HtmlPage) webClient.fork().getWebWindows().get(index).getEnclosedPage();
+    }
+
+    /**
+     * Freezes this page to run many read only queries on it in parallel.
+     * <p>
+     * Afterwards the DOM of this page can not be modified anymore, all attempts throw an
+     * {@link IllegalStateException}. The pending JavaScript jobs of the window are removed
+     * if this page is still the enclosed page. Frames are not frozen.
+     * <p>
+     * Call this from the thread that loaded the page, before handing out the {@link FrozenPage}
+     * to other threads.
+     *
+     * @return the read only view of this page
+     */
+    public synchronized FrozenPage freeze() {
+        if (frozenPage_ == null) {
+            if (!frozen_) {
+                final WebWindow window = getEnclosingWindow();
+                if (window != null && window.getEnclosedPage() == this) {
+                    window.getJobManager().removeAllJobs();
+                }
+
+                // create everything that is otherwise created lazily while reading
+                getElementIndex().prepare();
+                for (final DomElement element : getDomElementDescendants()) {
+                    element.createAttributeNodes();
+                }
+                frozen_ = true;
+            }
+            frozenPage_ = new FrozenPage(this);
+        }
+        return frozenPage_;
+    }
+
+    /**
+     * Computes the styles of all elements of this page in one pass and puts them into the cache that
+     * {@link DomNode#isDisplayed()}, {@link DomNode#asText()} and {@code window.getComputedStyle()} use.
+     * The CSS selectors of independent subtrees are matched in parallel on the common fork join pool.
+     * <p>
+     * Useful before checking the visibility of many elements; it does nothing if JavaScript is disabled.
+     */
+    public void resolveComputedStyles() {
+        final DomElement root = getDocumentElement();
+        final WebWindow window = getEnclosingWindow();
+        if (root == null || window == null) {
+            return;
+        }
+        final Object scriptable = window.getScriptableObject();
+        if (scriptable instanceof Window) {
+            ((Window) scriptable).resolveComputedStyles(root, ForkJoinPool.commonPool());
+        }
+    }
+
+    /**
+     * Returns whether this page has been frozen.
+     * @return {@code true} if {@link #freeze()} was called
+     */
+    public boolean isFrozen() {
+        return frozen_;
+    }
+
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
+     *
+     * Starts a DOM change batch. Until the matching {@link #endDomChangeBatch()} the node additions and
+     * deletions are not reported one by one to the {@link DomChangeBatchListener}s; they get all changes
+     * together at the end of the (outermost) batch. All other listeners are still notified immediately.
+     * <p>
+     * Always call {@link #endDomChangeBatch()} in a finally block.
+     */
+    public void startDomChangeBatch() {
+        if (domChangeBatchDepth_ == 0) {
+            domChangeBatch_ = new LinkedHashMap<>();
+        }
+        domChangeBatchDepth_++;
+    }
+
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
+     *
+     * Ends a DOM change batch started by {@link #startDomChangeBatch()}. If this is the outermost batch,
+     * the collected changes are delivered.
+     */
+    public void endDomChangeBatch() {
+        if (domChangeBatchDepth_ == 0) {
+            return;
+        }
+
+        domChangeBatchDepth_--;
+        if (domChangeBatchDepth_ == 0) {
+            final Map<DomChangeBatchListener, List<DomChangeEvent>> batch = domChangeBatch_;
+            domChangeBatch_ = null;
+            deliverDomChangeBatch(batch);
+        }
+    }
+
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
+     *
+     * Delivers the changes collected so far by the running DOM change batch (if any).
+     * Used before reading data that depends on these changes.
+     */
+    public void flushDomChangeBatch() {
+        if (domChangeBatch_ != null && !domChangeBatch_.isEmpty()) {
+            final Map<DomChangeBatchListener, List<DomChangeEvent>> batch = domChangeBatch_;
+            domChangeBatch_ = new LinkedHashMap<>();
+            deliverDomChangeBatch(batch);
+        }
+    }
+
+    private static void deliverDomChangeBatch(final Map<DomChangeBatchListener, List<DomChangeEvent>> batch) {
+        for (final Map.Entry<DomChangeBatchListener, List<DomChangeEvent>> entry : batch.entrySet()) {
+            entry.getKey().nodesChanged(entry.getValue());
+        }
+    }
+
+    /**
+     * Collects the event for the listener if a DOM change batch is running.
+     * @param listener the listener
+     * @param event the node addition or deletion event
+     * @return {@code true} if the event was collected, {@code false} if the listener has to be notified now
+     */
+    boolean deferDomChange(final DomChangeBatchListener listener, final DomChangeEvent event) {
+        if (domChangeBatch_ == null) {
+            return false;
+        }
+
+        List<DomChangeEvent> events = domChangeBatch_.get(listener);
+        if (events == null) {
+            events = new ArrayList<>();
+            domChangeBatch_.put(listener, events);
+        }
+        events.add(event);
+        return true;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -1034,6 +1203,7 @@ public class HtmlPage extends SgmlPage {
         // loadWebResponse check the cache for the web response
         // AND also fixes the request url for the following cache lookups
         final WebResponse response = client.loadWebResponse(request);
+        addResourceResponse(response, "script");
 
         // now we can look into the cache with the fixed request for
         // a cached script
@@ -1717,6 +1887,65 @@ public class HtmlPage extends SgmlPage {
         return list;
     }
 
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
+     *
+     * Returns the candidates for {@code getElementsByTagName()} from the tag name index of this page.
+     * Only the local name of the tag name is compared, case insensitive.
+     *
+     * @param root the node to search below; has to be attached to this page
+     * @param tagName the tag name
+     * @return the descendants of the root having the tag name, in document order
+     */
+    public List<DomElement> getIndexedElementsByTagName(final DomNode root, final String tagName) {
+        return getElementIndex().getElementsByTagName(root, tagName);
+    }
+
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
+     *
+     * Returns the candidates for {@code getElementsByClassName()} from the class index of this page.
+     * The class attribute of the elements is split at any whitespace.
+     *
+     * @param root the node to search below; has to be attached to this page
+     * @param className a single class name
+     * @return the descendants of the root having the class, in document order
+     */
+    public List<DomElement> getIndexedElementsByClassName(final DomNode root, final String className) {
+        return getElementIndex().getElementsByClassName(root, className);
+    }
+
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
+     *
+     * Returns the candidates for an id selector from the element index of this page. Unlike
+     * {@link #getElementsById(String)} the index covers all kinds of elements, not only HTML elements.
+     *
+     * @param root the node to search below; has to be attached to this page
+     * @param id the id
+     * @return the descendants of the root having the id, in document order
+     */
+    public List<DomElement> getIndexedElementsById(final DomNode root, final String id) {
+        return getElementIndex().getElementsById(root, id);
+    }
+
+    private ElementIndex getElementIndex() {
+        if (elementIndex_ == null) {
+            elementIndex_ = new ElementIndex(this);
+        }
+        return elementIndex_;
+    }
+
+    /**
+     * Updates the element index after the id or the class attribute of the element has changed.
+     * @param element the element
+     */
+    void notifyIndexedAttributeChanged(final DomElement element) {
+        if (elementIndex_ != null) {
+            elementIndex_.updateAttributes(element);
+        }
+    }
+
     /**
      * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
      *
@@ -1725,6 +1954,9 @@ public class HtmlPage extends SgmlPage {
     void notifyNodeAdded(final DomNode node) {
         if (node instanceof DomElement) {
             addMappedElement((DomElement) node, true);
+            if (elementIndex_ != null) {
+                elementIndex_.add((DomElement) node);
+            }
 
             if (node instanceof BaseFrameElement) {
                 frameElements_.add((BaseFrameElement) node);
@@ -1748,6 +1980,9 @@ public class HtmlPage extends SgmlPage {
      * @param node the node that has just been removed from the tree
      */
     void notifyNodeRemoved(final DomNode node) {
+        if (elementIndex_ != null && node instanceof DomElement) {
+            elementIndex_.remove((DomElement) node);
+        }
         if (node instanceof HtmlElement) {
             removeMappedElement((HtmlElement) node, true, true);
 
@@ -1967,6 +2202,12 @@ public class HtmlPage extends SgmlPage {
 
         result.idMap_ = Collections.synchronizedMap(new HashMap<String, SortedSet<DomElement>>());
         result.nameMap_ = Collections.synchronizedMap(new HashMap<String, SortedSet<DomElement>>());
+        result.elementIndex_ = null;
+        result.frozen_ = false;
+        result.frozenPage_ = null;
+        result.domChangeBatchDepth_ = 0;
+        result.domChangeBatch_ = null;
+        result.resourceTimings_ = null;
 
         return result;
     }
@@ -1998,6 +2239,56 @@ public class HtmlPage extends SgmlPage {
         return result;
     }
 
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
+     *
+     * Records a response loaded for this page (a script, a style sheet, an image or the response of a
+     * XMLHttpRequest) for the resource entries of {@code performance}; only the url and the timing are kept.
+     * Responses without timing and responses already recorded (taken from the cache) are ignored.
+     * Like in the browsers at most {@value #RESOURCE_TIMING_BUFFER_SIZE} entries are recorded, later
+     * responses are dropped.
+     *
+     * @param response the response
+     * @param initiatorType the initiator type of the entry, like {@code script} or {@code img}
+     */
+    public void addResourceResponse(final WebResponse response, final String initiatorType) {
+        if (response == null || response.getTiming() == null) {
+            return;
+        }
+        final WebResponseTiming timing = response.getTiming();
+        synchronized (lock_) {
+            if (resourceTimings_ == null) {
+                resourceTimings_ = new ArrayList<>();
+            }
+            if (resourceTimings_.size() >= RESOURCE_TIMING_BUFFER_SIZE) {
+                return;
+            }
+            for (final ResourceTimingEntry entry : resourceTimings_) {
+                if (entry.getTiming() == timing) {
+                    return;
+                }
+            }
+            resourceTimings_.add(new ResourceTimingEntry(response.getWebRequest().getUrl().toExternalForm(),
+                    initiatorType, timing));
+        }
+    }
+
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
+     *
+     * Returns the entries recorded by {@link #addResourceResponse(WebResponse, String)}.
+     *
+     * @return the entries in the order the resources were loaded
+     */
+    public List<ResourceTimingEntry> getResourceTimings() {
+        synchronized (lock_) {
+            if (resourceTimings_ == null) {
+                return Collections.emptyList();
+            }
+            return new ArrayList<>(resourceTimings_);
+        }
+    }
+
     /**
      * Adds an HtmlAttributeChangeListener to the listener list.
      * The listener is registered for all attributes of all HtmlElements contained in this page.
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.html;
+
+import com.gargoylesoftware.htmlunit.WebResponseTiming;
+
+/**
+ * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
+ *
+ * A resource loaded for a page, as recorded for the resource entries of {@code performance}.
+ * Only the data of the entry is kept, not the response itself.
+ *
+ * @author Ronald Brill
+ */
+public final class ResourceTimingEntry {
+
+    private final String name_;
+    private final String initiatorType_;
+    private final WebResponseTiming timing_;
+
+    /**
+     * Creates a new instance.
+     * @param name the name (url) of the resource
+     * @param initiatorType the initiator type, like {@code script} or {@code img}
+     * @param timing the network timing of the response
+     */
+    ResourceTimingEntry(final String name, final String initiatorType, final WebResponseTiming timing) {
+        name_ = name;
+        initiatorType_ = initiatorType;
+        timing_ = timing;
+    }
+
+    /**
+     * Returns the name (url) of the resource.
+     * @return the name
+     */
+    public String getName() {
+        return name_;
+    }
+
+    /**
+     * Returns the initiator type.
+     * @return the initiator type
+     */
+    public String getInitiatorType() {
+        return initiatorType_;
+    }
+
+    /**
+     * Returns the network timing of the response.
+     * @return the timing
+     */
+    public WebResponseTiming getTiming() {
+        return timing_;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.html;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.gargoylesoftware.css.parser.selector.Selector;
+import com.gargoylesoftware.css.parser.selector.SelectorList;
+import com.gargoylesoftware.htmlunit.BrowserVersion;
+import com.gargoylesoftware.htmlunit.javascript.host.css.CompiledSelector;
+
+/**
+ * A bounded, thread safe cache of the parsed and validated selector lists used by
+ * {@link DomNode#querySelectorAll(String)} and {@link DomElement#matches(String)}, together with
+ * their compiled form; the matching itself takes no lock. The least recently used entries are dropped first.
+ *
+ * @author Ronald Brill
+ */
+final class SelectorListCache {
+
+    private static final int MAX_SIZE = 1000;
+
+    private final Map<Key, Selectors> lists_ = Collections.synchronizedMap(
+            new LinkedHashMap<Key, Selectors>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<Key, Selectors> eldest) {
+                    return size() > MAX_SIZE;
+                }
+            });
+
+    /**
+     * Returns the cached selector list.
+     * @param selectors the selectors text
+     * @param browserVersion the browser version
+     * @param documentMode the document mode used for the validation
+     * @return the cached selectors or {@code null}
+     */
+    Selectors get(final String selectors, final BrowserVersion browserVersion, final int documentMode) {
+        return lists_.get(new Key(selectors, browserVersion, documentMode));
+    }
+
+    /**
+     * Caches a valid selector list.
+     * @param selectors the selectors text
+     * @param browserVersion the browser version
+     * @param documentMode the document mode used for the validation
+     * @param selectorList the selector list
+     * @return the cached selectors
+     */
+    Selectors put(final String selectors, final BrowserVersion browserVersion, final int documentMode,
+            final SelectorList selectorList) {
+        final Selectors entry = new Selectors(selectorList);
+        lists_.put(new Key(selectors, browserVersion, documentMode), entry);
+        return entry;
+    }
+
+    /**
+     * A selector list and its compiled selectors.
+     */
+    static final class Selectors {
+        private final SelectorList selectorList_;
+        private final List<CompiledSelector> compiledSelectors_;
+
+        Selectors(final SelectorList selectorList) {
+            selectorList_ = selectorList;
+            final List<CompiledSelector> compiledSelectors = new ArrayList<>(selectorList.size());
+            for (final Selector selector : selectorList) {
+                compiledSelectors.add(CompiledSelector.compile(selector));
+            }
+            compiledSelectors_ = Collections.unmodifiableList(compiledSelectors);
+        }
+
+        /**
+         * @return the selector list
+         */
+        SelectorList getSelectorList() {
+            return selectorList_;
+        }
+
+        /**
+         * @return the compiled selectors, in the order of the selector list
+         */
+        List<CompiledSelector> getCompiledSelectors() {
+            return compiledSelectors_;
+        }
+    }
+
+    private static final class Key {
+        private final String selectors_;
+        private final BrowserVersion browserVersion_;
+        private final int documentMode_;
+
+        Key(final String selectors, final BrowserVersion browserVersion, final int documentMode) {
+            selectors_ = selectors;
+            browserVersion_ = browserVersion;
+            documentMode_ = documentMode;
+        }
+
+        @Override
+        public int hashCode() {
+            return (selectors_.hashCode() * 31 + System.identityHashCode(browserVersion_)) * 31 + documentMode_;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return browserVersion_ == other.browserVersion_
+                    && documentMode_ == other.documentMode_
+                    && selectors_.equals(other.selectors_);
+        }
+    }
+}
@@ -28,19 +28,23 @@ import java.nio.charset.Charset;
 import java.util.ArrayDeque;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.reflect.FieldUtils;
 import org.apache.commons.lang3.tuple.Triple;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.apache.xerces.parsers.AbstractSAXParser;
 import org.apache.xerces.xni.Augmentations;
 import org.apache.xerces.xni.QName;
 import org.apache.xerces.xni.XMLAttributes;
 import org.apache.xerces.xni.XNIException;
 import org.apache.xerces.xni.parser.XMLInputSource;
-import org.apache.xerces.xni.parser.XMLParserConfiguration;
 import org.w3c.dom.Node;
 import org.xml.sax.Attributes;
 import org.xml.sax.ContentHandler;
@@ -75,11 +79,13 @@ import com.gargoylesoftware.htmlunit.html.parser.HTMLParserDOMBuilder;
 import com.gargoylesoftware.htmlunit.html.parser.HTMLParserListener;
 import com.gargoylesoftware.htmlunit.javascript.host.html.HTMLBodyElement;
 import com.gargoylesoftware.htmlunit.javascript.host.html.HTMLDocument;
+import com.gargoylesoftware.htmlunit.util.StringInterner;
 
 import net.sourceforge.htmlunit.cyberneko.HTMLConfiguration;
 import net.sourceforge.htmlunit.cyberneko.HTMLElements;
 import net.sourceforge.htmlunit.cyberneko.HTMLEventInfo;
 import net.sourceforge.htmlunit.cyberneko.HTMLScanner;
+import net.sourceforge.htmlunit.cyberneko.HTMLTagBalancer;
 import net.sourceforge.htmlunit.cyberneko.HTMLTagBalancingListener;
 
 /**
@@ -165,15 +171,28 @@ final class HtmlUnitNekoDOMBuilder extends AbstractSAXParser
 
     private enum HeadParsed { YES, SYNTHESIZED, NO }
 
-    private final HTMLParser htmlParser_;
-    private final HtmlPage page_;
+    private static final Log LOG = LogFactory.getLog(HtmlUnitNekoDOMBuilder.class);
+
+    /** The maximum number of idle builders kept per configuration. */
+    private static final int MAX_IDLE_BUILDERS = 4;
+
+    /** The idle builders, by configuration; guarded by itself. */
+    private static final Map<Triple<Boolean, Boolean, Boolean>, Deque<HtmlUnitNekoDOMBuilder>> IDLE_BUILDERS
+        = new HashMap<>();
+
+    /** Set once the reset of the Neko tag balancer failed; the builders are not reused anymore. */
+    private static final AtomicBoolean REUSE_DISABLED = new AtomicBoolean();
+
+    private final Triple<Boolean, Boolean, Boolean> elementsKey_;
+    private HTMLParser htmlParser_;
+    private HtmlPage page_;
 
     private Locator locator_;
     private final Deque<DomNode> stack_ = new ArrayDeque<>();
 
     /** Did the snippet tried to overwrite the start node? */
     private boolean snippetStartNodeOverwritten_;
-    private final int initialSize_;
+    private int initialSize_;
     private DomNode currentNode_;
     private StringBuilder characters_;
     private HtmlUnitNekoDOMBuilder.HeadParsed headParsed_ = HeadParsed.NO;
@@ -185,6 +204,8 @@ final class HtmlUnitNekoDOMBuilder extends AbstractSAXParser
     private static final String FEATURE_AUGMENTATIONS = "http://cyberneko.org/html/features/augmentations";
     private static final String FEATURE_PARSE_NOSCRIPT
         = "http://cyberneko.org/html/features/parse-noscript-content";
+    /** The feature enabling the parsing of fragments. */
+    static final String FEATURE_FRAGMENT = "http://cyberneko.org/html/features/balance-tags/document-fragment";
 
     /**
      * Parses and then inserts the specified HTML content into the HTML content currently being parsed.
@@ -208,14 +229,59 @@ final class HtmlUnitNekoDOMBuilder extends AbstractSAXParser
     }
 
     /**
-     * Creates a new builder for parsing the specified response contents.
+     * Returns a builder for parsing the specified response contents. The builder is taken from
+     * the idle builders if possible; call {@link #release()} once the
+     * parsing is done to allow the reuse.
+     * @param htmlParser the parser
      * @param node the location at which to insert the new content
      * @param url the page's URL
+     * @param htmlContent the content (used for error reporting only); may be null
+     * @return the builder
      */
-    HtmlUnitNekoDOMBuilder(final HTMLParser htmlParser,
+    static HtmlUnitNekoDOMBuilder obtain(final HTMLParser htmlParser,
                                 final DomNode node, final URL url, final String htmlContent) {
-        super(createConfiguration(node.getPage().getWebClient().getBrowserVersion()));
+        final Triple<Boolean, Boolean, Boolean> key =
+                elementsKey(node.getPage().getWebClient().getBrowserVersion());
+        HtmlUnitNekoDOMBuilder builder;
+        synchronized (IDLE_BUILDERS) {
+            final Deque<HtmlUnitNekoDOMBuilder> idle = IDLE_BUILDERS.get(key);
+            builder = idle == null ? null : idle.poll();
+        }
+        if (builder == null) {
+            builder = new HtmlUnitNekoDOMBuilder(key);
+        }
+        builder.init(htmlParser, node, url, htmlContent);
+        return builder;
+    }
 
+    /**
+     * Creates a new builder; the costly Xerces/Neko configuration is created only once per builder.
+     * @param elementsKey the key of the {@link HTMLElements} to use
+     */
+    private HtmlUnitNekoDOMBuilder(final Triple<Boolean, Boolean, Boolean> elementsKey) {
+        super(new HTMLConfiguration(ELEMENTS.get(elementsKey)));
+        elementsKey_ = elementsKey;
+
+        try {
+            setFeature(FEATURE_AUGMENTATIONS, true);
+            setFeature(HTMLScanner.ALLOW_SELFCLOSING_IFRAME, false);
+
+            setContentHandler(this);
+            setLexicalHandler(this); //comments and CDATA
+        }
+        catch (final SAXException e) {
+            throw new ObjectInstantiationException("unable to create HTML parser", e);
+        }
+    }
+
+    /**
+     * Prepares this builder for parsing the specified response contents.
+     * @param htmlParser the parser
+     * @param node the location at which to insert the new content
+     * @param url the page's URL
+     * @param htmlContent the content (used for error reporting only); may be null
+     */
+    private void init(final HTMLParser htmlParser, final DomNode node, final URL url, final String htmlContent) {
         htmlParser_ = htmlParser;
         page_ = (HtmlPage) node.getPage();
 
@@ -230,18 +296,27 @@ final class HtmlUnitNekoDOMBuilder extends AbstractSAXParser
         if (reportErrors) {
             fConfiguration.setErrorHandler(new HtmlUnitNekoHTMLErrorHandler(listener, url, htmlContent));
         }
+        else {
+            fConfiguration.setErrorHandler(null);
+        }
 
         try {
-            setFeature(FEATURE_AUGMENTATIONS, true);
-            if (!webClient.getBrowserVersion().hasFeature(HTML_ATTRIBUTE_LOWER_CASE)) {
+            if (webClient.getBrowserVersion().hasFeature(HTML_ATTRIBUTE_LOWER_CASE)) {
+                setProperty("http://cyberneko.org/html/properties/names/attrs", "lower");
+            }
+            else {
                 setProperty("http://cyberneko.org/html/properties/names/attrs", "no-change");
             }
             setFeature("http://cyberneko.org/html/features/report-errors", reportErrors);
             setFeature(FEATURE_PARSE_NOSCRIPT, !webClient.isJavaScriptEnabled());
-            setFeature(HTMLScanner.ALLOW_SELFCLOSING_IFRAME, false);
 
-            setContentHandler(this);
-            setLexicalHandler(this); //comments and CDATA
+            // the features the parser may change for a single document
+            setFeature(FEATURE_FRAGMENT, false);
+            setFeature(HTMLScanner.ALLOW_SELFCLOSING_TAGS, false);
+            setFeature(HTMLScanner.IGNORE_SPECIFIED_CHARSET, false);
+            setFeature(HTMLScanner.SCRIPT_STRIP_CDATA_DELIMS, false);
+            setFeature(HTMLScanner.STYLE_STRIP_CDATA_DELIMS, false);
+            setProperty(HTMLTagBalancer.FRAGMENT_CONTEXT_STACK, null);
         }
         catch (final SAXException e) {
             throw new ObjectInstantiationException("unable to create HTML parser", e);
@@ -250,16 +325,74 @@ final class HtmlUnitNekoDOMBuilder extends AbstractSAXParser
     }
 
     /**
-     * Create the configuration depending on the simulated browser
-     * @param webClient the current WebClient
-     * @return the configuration
+     * Releases all references to the parsed document and makes this builder available
+     * for the next parse.
+     * Only call this if the parsing was successful; builders in an undefined state should be dropped.
      */
-    private static XMLParserConfiguration createConfiguration(final BrowserVersion browserVersion) {
-        final HTMLElements elements = ELEMENTS.get(
-                Triple.of(browserVersion.hasFeature(HTML_COMMAND_TAG),
+    void release() {
+        htmlParser_ = null;
+        page_ = null;
+        locator_ = null;
+        stack_.clear();
+        snippetStartNodeOverwritten_ = false;
+        currentNode_ = null;
+        characters_ = null;
+        headParsed_ = HeadParsed.NO;
+        body_ = null;
+        lastTagWasSynthesized_ = false;
+        formWaitingForLostChildren_ = null;
+        insideSvg_ = false;
+        fConfiguration.setErrorHandler(null);
+
+        if (REUSE_DISABLED.get() || !resetTagBalancer()) {
+            return;
+        }
+        synchronized (IDLE_BUILDERS) {
+            final Deque<HtmlUnitNekoDOMBuilder> idle =
+                    IDLE_BUILDERS.computeIfAbsent(elementsKey_, k -> new ArrayDeque<>(MAX_IDLE_BUILDERS));
+            if (idle.size() < MAX_IDLE_BUILDERS) {
+                idle.push(this);
+            }
+        }
+    }
+
+    /**
+     * The Neko tag balancer does not reset its complete state at the start of a new document
+     * (open form, inline elements, buffered end elements, lost text).
+     * @return false if the reset was not possible; the builder must not be reused in this case
+     */
+    private boolean resetTagBalancer() {
+        try {
+            final Object tagBalancer = FieldUtils.readField(fConfiguration, "fTagBalancer", true);
+            final Object inlineStack = FieldUtils.readField(tagBalancer, "fInlineStack", true);
+            FieldUtils.writeField(inlineStack, "top", 0, true);
+            FieldUtils.writeField(tagBalancer, "fOpenedForm", false, true);
+            FieldUtils.writeField(tagBalancer, "fOpenedSvg", false, true);
+            FieldUtils.writeField(tagBalancer, "forcedStartElement_", false, true);
+            FieldUtils.writeField(tagBalancer, "forcedEndElement_", false, true);
+            ((List<?>) FieldUtils.readField(tagBalancer, "endElementsBuffer_", true)).clear();
+            ((List<?>) FieldUtils.readField(tagBalancer, "discardedStartElements", true)).clear();
+            final Object lostText = FieldUtils.readField(tagBalancer, "lostText_", true);
+            ((List<?>) FieldUtils.readField(lostText, "entries", true)).clear();
+            return true;
+        }
+        catch (final IllegalAccessException | RuntimeException e) {
+            if (REUSE_DISABLED.compareAndSet(false, true)) {
+                LOG.warn("Unable to reset the Neko tag balancer, the HTML parser builders are not reused", e);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Returns the key of the {@link HTMLElements} to use for the simulated browser.
+     * @param browserVersion the browser version
+     * @return the key
+     */
+    private static Triple<Boolean, Boolean, Boolean> elementsKey(final BrowserVersion browserVersion) {
+        return Triple.of(browserVersion.hasFeature(HTML_COMMAND_TAG),
                         browserVersion.hasFeature(HTML_ISINDEX_TAG),
-                        browserVersion.hasFeature(HTML_MAIN_TAG)));
-        return new HTMLConfiguration(elements);
+                        browserVersion.hasFeature(HTML_MAIN_TAG));
     }
 
     /**
@@ -349,6 +482,10 @@ final class HtmlUnitNekoDOMBuilder extends AbstractSAXParser
             qName = "select";
         }
 
+        // the names are shared by all elements of all pages
+        namespaceURI = StringInterner.internName(namespaceURI);
+        qName = StringInterner.internName(qName);
+
         final ElementFactory factory =
                 htmlParser_.getElementFactory(page_, namespaceURI, qName, insideSvg_, false);
         if (factory == HtmlUnitNekoHtmlParser.SVG_FACTORY) {
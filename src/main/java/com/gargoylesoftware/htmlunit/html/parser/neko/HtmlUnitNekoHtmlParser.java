@@ -133,8 +133,8 @@ public final class HtmlUnitNekoHtmlParser implements HTMLParser {
         final HtmlPage htmlPage = (HtmlPage) page;
         final URL url = htmlPage.getUrl();
 
-        final HtmlUnitNekoDOMBuilder domBuilder = new HtmlUnitNekoDOMBuilder(this, parent, url, source);
-        domBuilder.setFeature("http://cyberneko.org/html/features/balance-tags/document-fragment", true);
+        final HtmlUnitNekoDOMBuilder domBuilder = HtmlUnitNekoDOMBuilder.obtain(this, parent, url, source);
+        domBuilder.setFeature(HtmlUnitNekoDOMBuilder.FEATURE_FRAGMENT, true);
         // build fragment context stack
         DomNode node = context;
         final List<QName> ancestors = new ArrayList<>();
@@ -163,6 +163,7 @@ public final class HtmlUnitNekoHtmlParser implements HTMLParser {
             htmlPage.registerParsingEnd();
             htmlPage.registerSnippetParsingEnd();
         }
+        domBuilder.release();
     }
 
     /**
@@ -202,7 +203,7 @@ public final class HtmlUnitNekoHtmlParser implements HTMLParser {
         webWindow.setEnclosedPage(page);
 
         final URL url = webResponse.getWebRequest().getUrl();
-        final HtmlUnitNekoDOMBuilder domBuilder = new HtmlUnitNekoDOMBuilder(this, page, url, null);
+        final HtmlUnitNekoDOMBuilder domBuilder = HtmlUnitNekoDOMBuilder.obtain(this, page, url, null);
 
         Charset charset = webResponse.getContentCharsetOrNull();
         try {
@@ -245,7 +246,9 @@ public final class HtmlUnitNekoHtmlParser implements HTMLParser {
             page.registerParsingEnd();
         }
 
-        addBodyToPageIfNecessary(page, true, domBuilder.getBody() != null);
+        final boolean hasBody = domBuilder.getBody() != null;
+        domBuilder.release();
+        addBodyToPageIfNecessary(page, true, hasBody);
     }
 
     /**
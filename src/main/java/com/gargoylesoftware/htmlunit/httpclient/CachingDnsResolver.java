@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.httpclient;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.conn.DnsResolver;
+import org.apache.http.impl.conn.SystemDefaultDnsResolver;
+
+/**
+ * A {@link DnsResolver} that keeps the results of the underlying resolver in memory.
+ * <p>
+ * Successful lookups are cached for the configured time to live, failed lookups
+ * (host not found) for the configured negative time to live; if the cache is full the least
+ * recently used host is dropped. Static overrides
+ * take precedence over the cache and the underlying resolver; this is handy for tests
+ * or to point a host to a different server without touching the system configuration.
+ * <p>
+ * The resolver also records hit/miss counts and the time spent in the underlying
+ * resolver.
+ *
+ * @author Ronald Brill
+ * @see com.gargoylesoftware.htmlunit.HttpWebConnection#setDnsResolver(DnsResolver)
+ */
+public class CachingDnsResolver implements DnsResolver {
+
+    /** The default time to live of a successful lookup; same as the JDK default. */
+    public static final long DEFAULT_TTL = TimeUnit.SECONDS.toMillis(30);
+
+    /** The default time to live of a failed lookup; same as the JDK default. */
+    public static final long DEFAULT_NEGATIVE_TTL = TimeUnit.SECONDS.toMillis(10);
+
+    /** The default maximum number of cached hosts. */
+    public static final int DEFAULT_MAX_ENTRIES = 1024;
+
+    private final DnsResolver delegate_;
+    private final long ttl_;
+    private final long negativeTtl_;
+    private final int maxEntries_;
+
+    /** The cached lookups in access order; guarded by itself. */
+    private final Map<String, Entry> cache_;
+    private final Map<String, InetAddress[]> overrides_ = new ConcurrentHashMap<>();
+
+    private final AtomicLong hitCount_ = new AtomicLong();
+    private final AtomicLong missCount_ = new AtomicLong();
+    private final AtomicLong lookupTimeNanos_ = new AtomicLong();
+
+    /**
+     * Creates a new instance using the system resolver and the default settings.
+     */
+    public CachingDnsResolver() {
+        this(SystemDefaultDnsResolver.INSTANCE);
+    }
+
+    /**
+     * Creates a new instance using the default settings.
+     * @param delegate the resolver doing the real lookups
+     */
+    public CachingDnsResolver(final DnsResolver delegate) {
+        this(delegate, DEFAULT_TTL, DEFAULT_NEGATIVE_TTL, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Creates a new instance.
+     * @param delegate the resolver doing the real lookups
+     * @param ttl the time (in milliseconds) a successful lookup is cached, 0 disables the caching
+     * @param negativeTtl the time (in milliseconds) a failed lookup is cached, 0 disables the caching
+     * @param maxEntries the maximum number of cached hosts
+     */
+    public CachingDnsResolver(final DnsResolver delegate, final long ttl, final long negativeTtl,
+            final int maxEntries) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("Delegate resolver must not be null");
+        }
+        if (ttl < 0 || negativeTtl < 0) {
+            throw new IllegalArgumentException("TTL must not be negative");
+        }
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be greater than zero");
+        }
+        delegate_ = delegate;
+        ttl_ = ttl;
+        negativeTtl_ = negativeTtl;
+        maxEntries_ = maxEntries;
+        cache_ = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries_;
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public InetAddress[] resolve(final String host) throws UnknownHostException {
+        final String key = host.toLowerCase(Locale.ROOT);
+
+        final InetAddress[] override = overrides_.get(key);
+        if (override != null) {
+            hitCount_.incrementAndGet();
+            return override.clone();
+        }
+
+        final long now = System.currentTimeMillis();
+        final Entry entry;
+        synchronized (cache_) {
+            entry = cache_.get(key);
+            if (entry != null && entry.expires_ <= now) {
+                cache_.remove(key);
+            }
+        }
+        if (entry != null && entry.expires_ > now) {
+            hitCount_.incrementAndGet();
+            if (entry.addresses_ == null) {
+                throw new UnknownHostException(host);
+            }
+            return entry.addresses_.clone();
+        }
+
+        missCount_.incrementAndGet();
+        final long start = System.nanoTime();
+        try {
+            final InetAddress[] addresses = delegate_.resolve(host);
+            lookupTimeNanos_.addAndGet(System.nanoTime() - start);
+            if (ttl_ > 0 && addresses != null && addresses.length > 0) {
+                put(key, new Entry(addresses.clone(), now + ttl_));
+            }
+            return addresses;
+        }
+        catch (final UnknownHostException e) {
+            lookupTimeNanos_.addAndGet(System.nanoTime() - start);
+            if (negativeTtl_ > 0) {
+                put(key, new Entry(null, now + negativeTtl_));
+            }
+            throw e;
+        }
+    }
+
+    private void put(final String key, final Entry entry) {
+        synchronized (cache_) {
+            cache_.put(key, entry);
+        }
+    }
+
+    /**
+     * Resolves the given host always to the given addresses, bypassing the cache
+     * and the underlying resolver.
+     * @param host the host name
+     * @param addresses the addresses to use for this host
+     */
+    public void addOverride(final String host, final InetAddress... addresses) {
+        if (addresses == null || addresses.length == 0) {
+            throw new IllegalArgumentException("At least one address is required");
+        }
+        overrides_.put(host.toLowerCase(Locale.ROOT), addresses.clone());
+    }
+
+    /**
+     * Removes the override for the given host.
+     * @param host the host name
+     */
+    public void removeOverride(final String host) {
+        overrides_.remove(host.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Removes all cached lookups; the overrides are not touched.
+     */
+    public void clearCache() {
+        synchronized (cache_) {
+            cache_.clear();
+        }
+    }
+
+    /**
+     * Resets all statistic counters.
+     */
+    public void resetStatistics() {
+        hitCount_.set(0);
+        missCount_.set(0);
+        lookupTimeNanos_.set(0);
+    }
+
+    /**
+     * Returns the number of lookups answered from the cache or the overrides.
+     * @return the hit count
+     */
+    public long getHitCount() {
+        return hitCount_.get();
+    }
+
+    /**
+     * Returns the number of lookups forwarded to the underlying resolver.
+     * @return the miss count
+     */
+    public long getMissCount() {
+        return missCount_.get();
+    }
+
+    /**
+     * Returns the ratio of lookups answered without calling the underlying resolver.
+     * @return the hit rate between 0 and 1, 0 if there was no lookup so far
+     */
+    public double getHitRate() {
+        final long hits = hitCount_.get();
+        final long total = hits + missCount_.get();
+        if (total == 0) {
+            return 0;
+        }
+        return (double) hits / total;
+    }
+
+    /**
+     * Returns the total time spent in the underlying resolver.
+     * @param unit the time unit of the result
+     * @return the total lookup time
+     */
+    public long getTotalLookupTime(final TimeUnit unit) {
+        return unit.convert(lookupTimeNanos_.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the average time spent in the underlying resolver per miss.
+     * @param unit the time unit of the result
+     * @return the average lookup time, 0 if there was no miss so far
+     */
+    public long getAverageLookupTime(final TimeUnit unit) {
+        final long misses = missCount_.get();
+        if (misses == 0) {
+            return 0;
+        }
+        return unit.convert(lookupTimeNanos_.get() / misses, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the number of currently cached hosts (including expired ones not yet removed).
+     * @return the cache size
+     */
+    public int getCacheSize() {
+        synchronized (cache_) {
+            return cache_.size();
+        }
+    }
+
+    private static final class Entry {
+        private final InetAddress[] addresses_;
+        private final long expires_;
+
+        Entry(final InetAddress[] addresses, final long expires) {
+            addresses_ = addresses;
+            expires_ = expires;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.httpclient;
+
+import java.io.IOException;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestExecutor;
+
+import com.gargoylesoftware.htmlunit.WebResponseTiming;
+
+/**
+ * {@link HttpRequestExecutor} recording the request and response phases
+ * into the {@link WebResponseTiming} of the context.
+ *
+ * @author Ronald Brill
+ */
+public class HtmlUnitHttpRequestExecutor extends HttpRequestExecutor {
+    private static final String TIMING = "htmlunit.timing";
+
+    /**
+     * Sets the timing to record the current request into.
+     * @param context the HttpContext
+     * @param timing the timing, {@code null} to disable the recording
+     */
+    public static void setTiming(final HttpContext context, final WebResponseTiming timing) {
+        if (timing == null) {
+            context.removeAttribute(TIMING);
+        }
+        else {
+            context.setAttribute(TIMING, timing);
+        }
+    }
+
+    /**
+     * Returns the timing to record the current request into.
+     * @param context the HttpContext
+     * @return the timing or {@code null}
+     */
+    public static WebResponseTiming getTiming(final HttpContext context) {
+        if (context == null) {
+            return null;
+        }
+        return (WebResponseTiming) context.getAttribute(TIMING);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected HttpResponse doSendRequest(final HttpRequest request, final HttpClientConnection conn,
+            final HttpContext context) throws IOException, HttpException {
+        final WebResponseTiming timing = getTiming(context);
+        if (timing != null) {
+            timing.markRequestStart();
+        }
+        final HttpResponse response = super.doSendRequest(request, conn, context);
+        if (timing != null) {
+            timing.markRequestEnd();
+        }
+        return response;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected HttpResponse doReceiveResponse(final HttpRequest request, final HttpClientConnection conn,
+            final HttpContext context) throws HttpException, IOException {
+        final HttpResponse response = super.doReceiveResponse(request, conn, context);
+        final WebResponseTiming timing = getTiming(context);
+        if (timing != null) {
+            timing.markResponseStart();
+        }
+        return response;
+    }
+}
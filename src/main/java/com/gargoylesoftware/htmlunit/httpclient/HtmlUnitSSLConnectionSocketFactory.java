@@ -49,6 +49,7 @@ import org.apache.http.protocol.HttpContext;
 import org.apache.http.ssl.SSLContexts;
 
 import com.gargoylesoftware.htmlunit.WebClientOptions;
+import com.gargoylesoftware.htmlunit.WebResponseTiming;
 
 /**
  * Socket factory offering facilities for insecure SSL and for SOCKS proxy support.
@@ -141,6 +142,31 @@ public final class HtmlUnitSSLConnectionSocketFactory extends SSLConnectionSocke
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Socket createSocket(final HttpContext context) throws IOException {
+        final WebResponseTiming timing = HtmlUnitHttpRequestExecutor.getTiming(context);
+        if (timing != null) {
+            timing.markConnectStart();
+        }
+        return super.createSocket(context);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Socket createLayeredSocket(final Socket socket, final String target, final int port,
+            final HttpContext context) throws IOException {
+        final WebResponseTiming timing = HtmlUnitHttpRequestExecutor.getTiming(context);
+        if (timing != null) {
+            timing.markSecureConnectionStart();
+        }
+        return super.createLayeredSocket(socket, target, port, context);
+    }
+
     /**
      * Connect via socket.
      * @param connectTimeout the timeout
@@ -175,6 +201,10 @@ public final class HtmlUnitSSLConnectionSocketFactory extends SSLConnectionSocke
                 throw new ConnectTimeoutException("Connect to " + socksProxyAddress + " timed out");
             }
 
+            final WebResponseTiming timing = HtmlUnitHttpRequestExecutor.getTiming(context);
+            if (timing != null) {
+                timing.markSecureConnectionStart();
+            }
             final Socket sslSocket = getSSLSocketFactory().createSocket(underlying, socksProxy.getHostName(),
                     socksProxy.getPort(), true);
             configureSocket((SSLSocket) sslSocket, context);
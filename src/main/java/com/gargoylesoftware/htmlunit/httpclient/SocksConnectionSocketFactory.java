@@ -23,6 +23,8 @@ import org.apache.http.HttpHost;
 import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.protocol.HttpContext;
 
+import com.gargoylesoftware.htmlunit.WebResponseTiming;
+
 /**
  * SOCKS aware {@link org.apache.http.conn.socket.ConnectionSocketFactory}.
  *
@@ -57,6 +59,11 @@ public class SocksConnectionSocketFactory extends PlainConnectionSocketFactory {
      */
     @Override
     public Socket createSocket(final HttpContext context) throws IOException {
+        final WebResponseTiming timing = HtmlUnitHttpRequestExecutor.getTiming(context);
+        if (timing != null) {
+            timing.markConnectStart();
+        }
+
         final HttpHost socksProxy = getSocksProxy(context);
         if (socksProxy != null) {
             return createSocketWithSocksProxy(socksProxy);
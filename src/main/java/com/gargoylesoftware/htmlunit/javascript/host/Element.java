@@ -28,6 +28,7 @@ import static com.gargoylesoftware.htmlunit.javascript.configuration.SupportedBr
 import static com.gargoylesoftware.htmlunit.javascript.configuration.SupportedBrowser.IE;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
@@ -39,13 +40,16 @@ import org.xml.sax.SAXException;
 
 import com.gargoylesoftware.css.parser.CSSException;
 import com.gargoylesoftware.htmlunit.html.DomAttr;
+import com.gargoylesoftware.htmlunit.html.DomChangeEvent;
 import com.gargoylesoftware.htmlunit.html.DomCharacterData;
 import com.gargoylesoftware.htmlunit.html.DomComment;
 import com.gargoylesoftware.htmlunit.html.DomElement;
 import com.gargoylesoftware.htmlunit.html.DomNode;
 import com.gargoylesoftware.htmlunit.html.DomText;
+import com.gargoylesoftware.htmlunit.html.HtmlAttributeChangeEvent;
 import com.gargoylesoftware.htmlunit.html.HtmlElement;
 import com.gargoylesoftware.htmlunit.html.HtmlElement.DisplayStyle;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
 import com.gargoylesoftware.htmlunit.javascript.NamedNodeMap;
 import com.gargoylesoftware.htmlunit.javascript.configuration.JsxClass;
 import com.gargoylesoftware.htmlunit.javascript.configuration.JsxConstructor;
@@ -127,10 +131,10 @@ public class Element extends Node {
          * Should be called only on construction.
          */
         final DomElement htmlElt = (DomElement) domNode;
-        for (final DomAttr attr : htmlElt.getAttributesMap().values()) {
-            final String eventName = attr.getName().toLowerCase(Locale.ROOT);
+        for (final String name : htmlElt.getAttributesMap().keySet()) {
+            final String eventName = name.toLowerCase(Locale.ROOT);
             if (eventName.startsWith("on")) {
-                createEventHandler(eventName.substring(2), attr.getValue());
+                createEventHandler(eventName.substring(2), htmlElt.getAttributeDirect(name));
             }
         }
     }
@@ -233,6 +237,11 @@ public class Element extends Node {
                 protected boolean isMatching(final DomNode nodeToMatch) {
                     return true;
                 }
+
+                @Override
+                protected EffectOnCache getEffectOnCache(final DomChangeEvent event, final boolean added) {
+                    return getEffectOnCacheOfMatchingDescendants(event, added);
+                }
             };
         }
         else {
@@ -241,6 +250,21 @@ public class Element extends Node {
                 protected boolean isMatching(final DomNode nodeToMatch) {
                     return tagNameLC.equalsIgnoreCase(nodeToMatch.getNodeName());
                 }
+
+                @Override
+                protected Iterable<DomNode> getCandidates() {
+                    final DomNode domNode = getDomNodeOrNull();
+                    final HtmlPage page = domNode.getHtmlPageOrNull();
+                    if (page == null || !domNode.isAttachedToPage()) {
+                        return super.getCandidates();
+                    }
+                    return Collections.unmodifiableList(page.getIndexedElementsByTagName(domNode, tagNameLC));
+                }
+
+                @Override
+                protected EffectOnCache getEffectOnCache(final DomChangeEvent event, final boolean added) {
+                    return getEffectOnCacheOfMatchingDescendants(event, added);
+                }
             };
         }
 
@@ -666,6 +690,34 @@ public class Element extends Node {
                 }
                 return true;
             }
+
+            @Override
+            protected Iterable<DomNode> getCandidates() {
+                final DomNode domNode = getDomNodeOrNull();
+                final HtmlPage page = domNode.getHtmlPageOrNull();
+                if (page == null || !domNode.isAttachedToPage()) {
+                    return super.getCandidates();
+                }
+                for (final String aClassName : classNames) {
+                    if (!aClassName.isEmpty()) {
+                        return Collections.unmodifiableList(page.getIndexedElementsByClassName(domNode, aClassName));
+                    }
+                }
+                return super.getCandidates();
+            }
+
+            @Override
+            protected EffectOnCache getEffectOnCache(final DomChangeEvent event, final boolean added) {
+                return getEffectOnCacheOfMatchingDescendants(event, added);
+            }
+
+            @Override
+            protected EffectOnCache getEffectOnCache(final HtmlAttributeChangeEvent event) {
+                if ("class".equalsIgnoreCase(event.getName())) {
+                    return EffectOnCache.RESET;
+                }
+                return EffectOnCache.NONE;
+            }
         };
 
         return collection;
@@ -909,13 +961,24 @@ public class Element extends Node {
             return;
         }
 
-        domNode.removeAllChildren();
-        getWindow().clearComputedStylesUpToRoot(this);
+        final HtmlPage htmlPage = domNode.getHtmlPageOrNull();
+        if (htmlPage != null) {
+            htmlPage.startDomChangeBatch();
+        }
+        try {
+            domNode.removeAllChildren();
+            getWindow().clearComputedStylesUpToRoot(this);
 
-        final boolean addChildForNull = getBrowserVersion().hasFeature(JS_INNER_HTML_ADD_CHILD_FOR_NULL_VALUE);
-        if ((value == null && addChildForNull) || (value != null && !"".equals(value))) {
-            final String valueAsString = Context.toString(value);
-            parseHtmlSnippet(domNode, valueAsString);
+            final boolean addChildForNull = getBrowserVersion().hasFeature(JS_INNER_HTML_ADD_CHILD_FOR_NULL_VALUE);
+            if ((value == null && addChildForNull) || (value != null && !"".equals(value))) {
+                final String valueAsString = Context.toString(value);
+                parseHtmlSnippet(domNode, valueAsString);
+            }
+        }
+        finally {
+            if (htmlPage != null) {
+                htmlPage.endDomChangeBatch();
+            }
         }
     }
 
@@ -29,20 +29,25 @@ import static com.gargoylesoftware.htmlunit.javascript.configuration.SupportedBr
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.lang.ref.WeakReference;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.WeakHashMap;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.lang3.StringUtils;
@@ -66,8 +71,10 @@ import com.gargoylesoftware.htmlunit.WebClient;
 import com.gargoylesoftware.htmlunit.WebWindow;
 import com.gargoylesoftware.htmlunit.WebWindowNotFoundException;
 import com.gargoylesoftware.htmlunit.html.BaseFrameElement;
+import com.gargoylesoftware.htmlunit.html.CharacterDataChangeEvent;
+import com.gargoylesoftware.htmlunit.html.CharacterDataChangeListener;
+import com.gargoylesoftware.htmlunit.html.DomChangeBatchListener;
 import com.gargoylesoftware.htmlunit.html.DomChangeEvent;
-import com.gargoylesoftware.htmlunit.html.DomChangeListener;
 import com.gargoylesoftware.htmlunit.html.DomElement;
 import com.gargoylesoftware.htmlunit.html.DomNode;
 import com.gargoylesoftware.htmlunit.html.FrameWindow;
@@ -76,6 +83,7 @@ import com.gargoylesoftware.htmlunit.html.HtmlAttributeChangeEvent;
 import com.gargoylesoftware.htmlunit.html.HtmlAttributeChangeListener;
 import com.gargoylesoftware.htmlunit.html.HtmlButton;
 import com.gargoylesoftware.htmlunit.html.HtmlElement;
+import com.gargoylesoftware.htmlunit.html.HtmlElement.DisplayStyle;
 import com.gargoylesoftware.htmlunit.html.HtmlEmbed;
 import com.gargoylesoftware.htmlunit.html.HtmlForm;
 import com.gargoylesoftware.htmlunit.html.HtmlFrame;
@@ -102,7 +110,11 @@ import com.gargoylesoftware.htmlunit.javascript.configuration.JsxSetter;
 import com.gargoylesoftware.htmlunit.javascript.host.crypto.Crypto;
 import com.gargoylesoftware.htmlunit.javascript.host.css.CSS2Properties;
 import com.gargoylesoftware.htmlunit.javascript.host.css.CSSStyleSheet;
+import com.gargoylesoftware.htmlunit.javascript.host.css.CascadeResolver;
+import com.gargoylesoftware.htmlunit.javascript.host.css.LayoutBoxCache;
+import com.gargoylesoftware.htmlunit.javascript.host.css.MediaQueryCache;
 import com.gargoylesoftware.htmlunit.javascript.host.css.MediaQueryList;
+import com.gargoylesoftware.htmlunit.javascript.host.css.StyleAttributes;
 import com.gargoylesoftware.htmlunit.javascript.host.css.StyleMedia;
 import com.gargoylesoftware.htmlunit.javascript.host.css.StyleSheetList;
 import com.gargoylesoftware.htmlunit.javascript.host.dom.Document;
@@ -183,6 +195,17 @@ public class Window extends EventTarget implements Function, AutoCloseable {
      */
     private static final int MIN_TIMER_DELAY = 1;
 
+    /** Display state: not computed yet. */
+    private static final int DISPLAY_UNKNOWN = -1;
+    /** Display state: neither the element nor an ancestor sets the visibility. */
+    private static final int DISPLAY_INHERIT = 0;
+    /** Display state: visible. */
+    private static final int DISPLAY_VISIBLE = 1;
+    /** Display state: hidden by the visibility of the element or an ancestor. */
+    private static final int DISPLAY_HIDDEN = 2;
+    /** Display state: hidden by display 'none' or the 'hidden' attribute of the element or an ancestor. */
+    private static final int DISPLAY_NONE = 3;
+
     private Document document_;
     private DocumentProxy documentProxy_;
     private Navigator navigator_;
@@ -204,6 +227,8 @@ public class Window extends EventTarget implements Function, AutoCloseable {
     private Crypto crypto_;
 
     private CSSPropertiesCache cssPropertiesCache_ = new CSSPropertiesCache();
+    private transient LayoutBoxCache layoutBoxCache_ = new LayoutBoxCache();
+    private transient MediaQueryCache mediaQueryCache_ = new MediaQueryCache();
 
     private final EnumMap<Type, Storage> storages_ = new EnumMap<>(Type.class);
 
@@ -223,80 +248,259 @@ public class Window extends EventTarget implements Function, AutoCloseable {
      * Cache computed styles when possible, because their calculation is very expensive.
      * We use a weak hash map because we don't want this cache to be the only reason
      * nodes are kept around in the JVM, if all other references to them are gone.
+     * <p>
+     * Changes don't scan the cache; the changed nodes get a generation stamp instead, either
+     * for the node itself or for the whole subtree rooted at the node. A cached style is valid
+     * as long as neither its node nor one of its ancestors got a newer stamp; a successful check moves
+     * the entry to the current generation, so it is not checked again until the next change.
+     * If there are more stamps than cached styles, all entries are checked once and the stamps are dropped.
      */
     private static final class CSSPropertiesCache implements Serializable {
-        private transient WeakHashMap<Element, Map<String, CSS2Properties>> computedStyles_ = new WeakHashMap<>();
+        /** The number of stamps that are always kept, even if there are less cached styles. */
+        private static final int MIN_STAMPS = 64;
+
+        private transient WeakHashMap<Element, CacheEntry> computedStyles_ = new WeakHashMap<>();
+        private transient WeakHashMap<DomNode, Long> nodeStamps_ = new WeakHashMap<>();
+        private transient WeakHashMap<DomNode, Long> subtreeStamps_ = new WeakHashMap<>();
+        /** The element whose style was computed last, per parent; candidates for style sharing. */
+        private transient WeakHashMap<DomNode, WeakReference<Element>> lastStyledChildren_ = new WeakHashMap<>();
+        private long generation_;
 
         public synchronized CSS2Properties get(final Element element, final String normalizedPseudo) {
-            final Map<String, CSS2Properties> elementMap = computedStyles_.get(element);
-            if (elementMap != null) {
-                return elementMap.get(normalizedPseudo);
+            final CacheEntry entry = getValidEntry(element);
+            if (entry != null) {
+                return entry.styles_.get(normalizedPseudo);
             }
             return null;
         }
 
         public synchronized void put(final Element element, final String normalizedPseudo, final CSS2Properties style) {
-            Map<String, CSS2Properties> elementMap = computedStyles_.get(element);
-            if (elementMap == null) {
-                elementMap = new WeakHashMap<>();
-                computedStyles_.put(element, elementMap);
+            CacheEntry entry = getValidEntry(element);
+            if (entry == null) {
+                entry = new CacheEntry(generation_);
+                computedStyles_.put(element, entry);
+            }
+            entry.styles_.put(normalizedPseudo, style);
+
+            if (normalizedPseudo == null) {
+                final DomNode parent = element.getDomNodeOrDie().getParentNode();
+                if (parent != null) {
+                    lastStyledChildren_.put(parent, new WeakReference<>(element));
+                }
+            }
+        }
+
+        /**
+         * Returns the child of the given parent whose style (without pseudo element) was computed last.
+         * @param parent the parent
+         * @return the child or {@code null}
+         */
+        public synchronized Element getLastStyledChild(final DomNode parent) {
+            final WeakReference<Element> ref = lastStyledChildren_.get(parent);
+            if (ref != null) {
+                return ref.get();
+            }
+            return null;
+        }
+
+        private CacheEntry getValidEntry(final Element element) {
+            final CacheEntry entry = computedStyles_.get(element);
+            if (entry != null && !revalidate(element, entry)) {
+                computedStyles_.remove(element);
+                return null;
+            }
+            return entry;
+        }
+
+        /**
+         * Checks the entry and moves it to the current generation if it is still valid.
+         * @param element the element of the entry
+         * @param entry the entry
+         * @return whether the entry is valid
+         */
+        private boolean revalidate(final Element element, final CacheEntry entry) {
+            if (entry.generation_ == generation_) {
+                return true;
+            }
+            if (!isValid(element.getDomNodeOrDie(), entry.generation_)) {
+                return false;
+            }
+            entry.generation_ = generation_;
+            return true;
+        }
+
+        /**
+         * Drops the stamps if there are more of them than cached styles; all entries are checked
+         * (and moved to the current generation) before, so the stamps are not needed anymore.
+         */
+        private void compactStamps() {
+            final int stamps = nodeStamps_.size() + subtreeStamps_.size();
+            if (stamps <= MIN_STAMPS || stamps <= computedStyles_.size()) {
+                return;
+            }
+
+            for (final Iterator<Map.Entry<Element, CacheEntry>> it = computedStyles_.entrySet().iterator();
+                    it.hasNext();) {
+                final Map.Entry<Element, CacheEntry> mapEntry = it.next();
+                if (!revalidate(mapEntry.getKey(), mapEntry.getValue())) {
+                    it.remove();
+                }
+            }
+            nodeStamps_.clear();
+            subtreeStamps_.clear();
+        }
+
+        private boolean isValid(final DomNode node, final long generation) {
+            if (generation == generation_) {
+                // nothing changed since then
+                return true;
+            }
+            if (isNewer(nodeStamps_.get(node), generation)) {
+                return false;
             }
-            elementMap.put(normalizedPseudo, style);
-        }
-
-        public synchronized void nodeChanged(final DomNode changed, final boolean clearParents) {
-            final Iterator<Map.Entry<Element, Map<String, CSS2Properties>>> i = computedStyles_.entrySet().iterator();
-            while (i.hasNext()) {
-                final Map.Entry<Element, Map<String, CSS2Properties>> entry = i.next();
-                final DomNode node = entry.getKey().getDomNodeOrDie();
-                if (changed == node
-                    || changed.getParentNode() == node.getParentNode()
-                    || changed.isAncestorOf(node)
-                    || clearParents && node.isAncestorOf(changed)) {
-                    i.remove();
+            if (!subtreeStamps_.isEmpty()) {
+                for (DomNode n = node; n != null; n = n.getParentNode()) {
+                    if (isNewer(subtreeStamps_.get(n), generation)) {
+                        return false;
+                    }
                 }
             }
+            return true;
+        }
+
+        private static boolean isNewer(final Long stamp, final long generation) {
+            return stamp != null && stamp.longValue() > generation;
+        }
+
+        public synchronized boolean isEmpty() {
+            return computedStyles_.isEmpty();
+        }
+
+        /**
+         * Returns the display state of the element if it was stored since the last change.
+         * @param element the element
+         * @return the display state or {@code DISPLAY_UNKNOWN}
+         */
+        public synchronized int getDisplayState(final Element element) {
+            final CacheEntry entry = computedStyles_.get(element);
+            if (entry != null && entry.displayGeneration_ == generation_) {
+                return entry.displayState_;
+            }
+            return DISPLAY_UNKNOWN;
+        }
 
-            // maybe this is a better solution but i have to think a bit more about this
-            //
-            //            if (computedStyles_.isEmpty()) {
-            //                return;
-            //            }
-            //
-            //            // remove all siblings
-            //            DomNode parent = changed.getParentNode();
-            //            if (parent != null) {
-            //                for (DomNode sibling : parent.getChildNodes()) {
-            //                    computedStyles_.remove(sibling.getScriptableObject());
-            //                }
-            //
-            //                if (clearParents) {
-            //                    // remove all parents
-            //                    while (parent != null) {
-            //                        computedStyles_.remove(parent.getScriptableObject());
-            //                        parent = parent.getParentNode();
-            //                    }
-            //                }
-            //            }
-            //
-            //            // remove changed itself and all descendants
-            //            computedStyles_.remove(changed.getScriptableObject());
-            //            for (DomNode descendant : changed.getDescendants()) {
-            //                computedStyles_.remove(descendant.getScriptableObject());
-            //            }
+        /**
+         * Stores the display state of the element; it stays valid until the next change.
+         * @param element the element
+         * @param displayState the display state
+         */
+        public synchronized void putDisplayState(final Element element, final int displayState) {
+            CacheEntry entry = getValidEntry(element);
+            if (entry == null) {
+                entry = new CacheEntry(generation_);
+                computedStyles_.put(element, entry);
+            }
+            entry.displayState_ = displayState;
+            entry.displayGeneration_ = generation_;
+        }
+
+        /**
+         * Invalidates the styles of the changed node and its descendants.
+         * @param changed the changed node
+         * @param parent the parent of the changed node at the time of the change
+         * @param clearSiblings whether to invalidate the siblings (and their descendants) also
+         * @param clearParents whether to invalidate the ancestors also
+         */
+        public synchronized void nodeChanged(final DomNode changed, final DomNode parent,
+                final boolean clearSiblings, final boolean clearParents) {
+            if (computedStyles_.isEmpty()) {
+                return;
+            }
+
+            final Long stamp = Long.valueOf(++generation_);
+            subtreeStamps_.put(changed, stamp);
+            if (parent != null) {
+                if (clearSiblings) {
+                    stampChildren(parent, stamp);
+                }
+                if (clearParents) {
+                    for (DomNode ancestor = parent; ancestor != null; ancestor = ancestor.getParentNode()) {
+                        nodeStamps_.put(ancestor, stamp);
+                    }
+                }
+            }
+            compactStamps();
+        }
+
+        /**
+         * Same as calling {@link #nodeChanged(DomNode, DomNode, boolean, boolean)} without clearing the parents
+         * for every changed node, but with only one new generation.
+         * @param changed the added or removed nodes
+         * @param parents the parents of the changed nodes at the time of the change
+         * @param clearSiblings whether to invalidate the children of the parents also
+         */
+        public synchronized void nodesChanged(final Set<DomNode> changed, final Set<DomNode> parents,
+                final boolean clearSiblings) {
+            if (computedStyles_.isEmpty()) {
+                return;
+            }
+
+            final Long stamp = Long.valueOf(++generation_);
+            for (final DomNode node : changed) {
+                subtreeStamps_.put(node, stamp);
+            }
+            if (clearSiblings) {
+                for (final DomNode parent : parents) {
+                    if (parent != null) {
+                        stampChildren(parent, stamp);
+                    }
+                }
+            }
+            compactStamps();
+        }
+
+        private void stampChildren(final DomNode parent, final Long stamp) {
+            for (DomNode child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+                if (child instanceof DomElement) {
+                    subtreeStamps_.put(child, stamp);
+                }
+            }
         }
 
         public synchronized void clear() {
             computedStyles_.clear();
+            nodeStamps_.clear();
+            subtreeStamps_.clear();
+            lastStyledChildren_.clear();
         }
 
-        public synchronized Map<String, CSS2Properties> remove(final Element element) {
-            return computedStyles_.remove(element);
+        public synchronized void remove(final Element element) {
+            computedStyles_.remove(element);
+            // the display states of the descendants depend on the removed style
+            generation_++;
         }
 
         private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
             in.defaultReadObject();
             computedStyles_ = new WeakHashMap<>();
+            nodeStamps_ = new WeakHashMap<>();
+            subtreeStamps_ = new WeakHashMap<>();
+            lastStyledChildren_ = new WeakHashMap<>();
+        }
+    }
+
+    /**
+     * The computed styles of one element together with the generation they were computed in.
+     */
+    private static final class CacheEntry {
+        /** The generation the styles were computed in or last found valid in. */
+        private long generation_;
+        private final Map<String, CSS2Properties> styles_ = new HashMap<>();
+        private int displayState_ = DISPLAY_UNKNOWN;
+        private long displayGeneration_ = -1;
+
+        CacheEntry(final long generation) {
+            generation_ = generation;
         }
     }
 
@@ -322,7 +526,7 @@ public class Window extends EventTarget implements Function, AutoCloseable {
     }
 
     /**
-     * Restores the transient {@link #cssPropertiesCache_} map during deserialization.
+     * Restores the transient {@link #cssPropertiesCache_} map and the other caches during deserialization.
      * @param stream the stream to read the object from
      * @throws IOException if an IO error occurs
      * @throws ClassNotFoundException if a class is not found
@@ -330,6 +534,8 @@ public class Window extends EventTarget implements Function, AutoCloseable {
     private void readObject(final ObjectInputStream stream) throws IOException, ClassNotFoundException {
         stream.defaultReadObject();
         cssPropertiesCache_ = new CSSPropertiesCache();
+        layoutBoxCache_ = new LayoutBoxCache();
+        mediaQueryCache_ = new MediaQueryCache();
     }
 
     /**
@@ -973,6 +1179,7 @@ public class Window extends EventTarget implements Function, AutoCloseable {
 
             final DomHtmlAttributeChangeListenerImpl listener = new DomHtmlAttributeChangeListenerImpl();
             page.addDomChangeListener(listener);
+            page.addCharacterDataChangeListener(listener);
 
             if (page.isHtmlPage()) {
                 ((HtmlPage) page).addHtmlAttributeChangeListener(listener);
@@ -1856,6 +2063,11 @@ public class Window extends EventTarget implements Function, AutoCloseable {
             }
         }
 
+        final HtmlPage htmlPage = e.getDomNodeOrDie().getHtmlPageOrNull();
+        if (htmlPage != null) {
+            htmlPage.flushDomChangeBatch();
+        }
+
         final CSS2Properties styleFromCache = cssPropertiesCache_.get(e, normalizedPseudo);
         if (styleFromCache != null) {
             return styleFromCache;
@@ -1865,14 +2077,20 @@ public class Window extends EventTarget implements Function, AutoCloseable {
         final Object ownerDocument = e.getOwnerDocument();
         if (ownerDocument instanceof HTMLDocument) {
             final StyleSheetList sheets = ((HTMLDocument) ownerDocument).getStyleSheets();
-            final boolean trace = LOG.isTraceEnabled();
-            for (int i = 0; i < sheets.getLength(); i++) {
-                final CSSStyleSheet sheet = (CSSStyleSheet) sheets.item(i);
-                if (sheet.isActive() && sheet.isEnabled()) {
-                    if (trace) {
-                        LOG.trace("modifyIfNecessary: " + sheet + ", " + style + ", " + e);
+            final CSS2Properties sharedStyle = getSharableStyle(e, normalizedPseudo, sheets);
+            if (sharedStyle != null) {
+                style.shareLocalModifications(sharedStyle);
+            }
+            else {
+                final boolean trace = LOG.isTraceEnabled();
+                for (int i = 0; i < sheets.getLength(); i++) {
+                    final CSSStyleSheet sheet = (CSSStyleSheet) sheets.item(i);
+                    if (sheet.isActive() && sheet.isEnabled()) {
+                        if (trace) {
+                            LOG.trace("modifyIfNecessary: " + sheet + ", " + style + ", " + e);
+                        }
+                        sheet.modifyIfNecessary(style, e, normalizedPseudo);
                     }
-                    sheet.modifyIfNecessary(style, e, normalizedPseudo);
                 }
             }
 
@@ -1881,6 +2099,52 @@ public class Window extends EventTarget implements Function, AutoCloseable {
         return style;
     }
 
+    /**
+     * Returns the computed style of a sibling the given element can share the result of the cascade with.
+     * Only the sibling whose style was computed last is checked; this covers lists and tables
+     * processed in document order. Nothing is shared if any rule depends on siblings.
+     * @param element the element
+     * @param normalizedPseudo the pseudo element
+     * @param sheets the style sheets of the document
+     * @return the computed style of an equivalent sibling or {@code null}
+     */
+    private CSS2Properties getSharableStyle(final Element element, final String normalizedPseudo,
+            final StyleSheetList sheets) {
+        if (normalizedPseudo != null) {
+            return null;
+        }
+        final DomElement domElement = element.getDomNodeOrDie();
+        final DomNode parent = domElement.getParentNode();
+        if (parent == null) {
+            return null;
+        }
+
+        final Element candidate = cssPropertiesCache_.getLastStyledChild(parent);
+        if (candidate == null || candidate == element) {
+            return null;
+        }
+        if (!CSSStyleSheet.isStyleEquivalent(domElement, candidate.getDomNodeOrDie())
+                || hasSiblingSelectors(sheets)) {
+            return null;
+        }
+        return cssPropertiesCache_.get(candidate, null);
+    }
+
+    /**
+     * Returns whether any of the given style sheets has rules depending on siblings.
+     * @param sheets the style sheets
+     * @return whether there are sibling dependent selectors
+     */
+    private static boolean hasSiblingSelectors(final StyleSheetList sheets) {
+        for (int i = 0; i < sheets.getLength(); i++) {
+            final CSSStyleSheet sheet = (CSSStyleSheet) sheets.item(i);
+            if (sheet.hasSiblingSelectors()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Returns the current selection.
      * @return the current selection
@@ -2034,11 +2298,175 @@ public class Window extends EventTarget implements Function, AutoCloseable {
         }
     }
 
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
+     *
+     * Computes the styles (without pseudo element) of the given element and all its descendants in one pass
+     * and puts them into the computed style cache; styles that are already cached are kept.
+     * The selectors are matched on the given pool, independent subtrees in parallel; the styles
+     * are built afterwards on the calling thread.
+     *
+     * @param root the root of the subtree
+     * @param pool the pool to match the selectors on
+     */
+    public void resolveComputedStyles(final DomElement root, final ForkJoinPool pool) {
+        final HtmlPage htmlPage = root.getHtmlPageOrNull();
+        if (htmlPage != null) {
+            htmlPage.flushDomChangeBatch();
+        }
+
+        final Object ownerDocument = ((Element) root.getScriptableObject()).getOwnerDocument();
+        if (!(ownerDocument instanceof HTMLDocument)) {
+            return;
+        }
+
+        final List<DomElement> pending = new ArrayList<>();
+        final List<Element> pendingElements = new ArrayList<>();
+        addIfNotCached(root, pending, pendingElements);
+        for (final DomElement element : root.getDomElementDescendants()) {
+            addIfNotCached(element, pending, pendingElements);
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        final List<CSSStyleSheet> sheets = new ArrayList<>();
+        final StyleSheetList sheetList = ((HTMLDocument) ownerDocument).getStyleSheets();
+        for (int i = 0; i < sheetList.getLength(); i++) {
+            final CSSStyleSheet sheet = (CSSStyleSheet) sheetList.item(i);
+            if (sheet.isActive() && sheet.isEnabled()) {
+                sheets.add(sheet);
+            }
+        }
+
+        final List<CascadeResolver.Cascade> cascades =
+                new CascadeResolver(getBrowserVersion(), sheets).match(pending, pool);
+
+        final Map<CascadeResolver.Cascade, CSS2Properties> styles = new IdentityHashMap<>();
+        for (int i = 0; i < pendingElements.size(); i++) {
+            final Element element = pendingElements.get(i);
+            final CSS2Properties style = new CSS2Properties(element.getStyle());
+            final CascadeResolver.Cascade cascade = cascades.get(i);
+            final CSS2Properties sharedStyle = styles.get(cascade);
+            if (sharedStyle != null) {
+                style.shareLocalModifications(sharedStyle);
+            }
+            else {
+                cascade.applyTo(style);
+                styles.put(cascade, style);
+            }
+            cssPropertiesCache_.put(element, null, style);
+        }
+    }
+
+    private void addIfNotCached(final DomElement domElement, final List<DomElement> pending,
+            final List<Element> pendingElements) {
+        final Object scriptable = domElement.getScriptableObject();
+        if (scriptable instanceof Element) {
+            final Element element = (Element) scriptable;
+            if (cssPropertiesCache_.get(element, null) == null) {
+                pending.add(domElement);
+                pendingElements.add(element);
+            }
+        }
+    }
+
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
+     *
+     * Returns whether the given element is displayed according to its 'hidden' attribute and to the
+     * display and visibility of its computed style and of the computed styles of its ancestors.
+     * The result for every element on the way is cached together with its computed style; an element
+     * whose parent result is cached only needs its own computed style.
+     *
+     * @param element the element
+     * @return whether the element is displayed
+     * @see DomNode#isDisplayed()
+     */
+    public boolean isDisplayed(final HtmlElement element) {
+        final Deque<HtmlElement> uncached = new ArrayDeque<>();
+        int state = DISPLAY_INHERIT;
+        for (DomNode node = element; node != null; node = node.getParentNode()) {
+            if (node instanceof HtmlElement) {
+                final HtmlElement htmlElement = (HtmlElement) node;
+                final Object scriptable = htmlElement.getScriptableObject();
+                if (scriptable instanceof Element) {
+                    final int cached = cssPropertiesCache_.getDisplayState((Element) scriptable);
+                    if (cached != DISPLAY_UNKNOWN) {
+                        state = cached;
+                        break;
+                    }
+                }
+                uncached.push(htmlElement);
+            }
+        }
+
+        // top to bottom, every element starts with the state of its parent
+        while (!uncached.isEmpty()) {
+            state = computeDisplayState(uncached.pop(), state);
+        }
+        return state != DISPLAY_NONE && state != DISPLAY_HIDDEN;
+    }
+
+    private int computeDisplayState(final HtmlElement element, final int parentState) {
+        final Object scriptable = element.getScriptableObject();
+
+        int state = parentState;
+        if (parentState == DISPLAY_NONE || element.isHidden()) {
+            // if a parent is display:none, there's nothing that a child can do to override it
+            state = DISPLAY_NONE;
+        }
+        else if (scriptable instanceof HTMLElement) {
+            final CSS2Properties style = getComputedStyle(scriptable, null);
+            if (DisplayStyle.NONE.value().equals(style.getDisplay())) {
+                state = DISPLAY_NONE;
+            }
+            else {
+                // children can override the visibility used by parent nodes
+                final String visibility = style.getStyleAttribute(StyleAttributes.Definition.VISIBILITY);
+                if (visibility.length() > 5) {
+                    if ("visible".equals(visibility)) {
+                        state = DISPLAY_VISIBLE;
+                    }
+                    else if ("hidden".equals(visibility) || "collapse".equals(visibility)) {
+                        state = DISPLAY_HIDDEN;
+                    }
+                }
+            }
+        }
+
+        if (scriptable instanceof Element) {
+            cssPropertiesCache_.putDisplayState((Element) scriptable, state);
+        }
+        return state;
+    }
+
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
+     *
+     * Returns the layout boxes holding the geometry calculated for the elements of this window.
+     * @return the layout boxes
+     */
+    public LayoutBoxCache getLayoutBoxCache() {
+        return layoutBoxCache_;
+    }
+
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
+     *
+     * Returns the results of the media lists evaluated for this window.
+     * @return the media query results
+     */
+    public MediaQueryCache getMediaQueryCache() {
+        return mediaQueryCache_;
+    }
+
     /**
      * Clears the computed styles.
      */
     public void clearComputedStyles() {
         cssPropertiesCache_.clear();
+        layoutBoxCache_.allStylesChanged();
     }
 
     /**
@@ -2047,6 +2475,7 @@ public class Window extends EventTarget implements Function, AutoCloseable {
      */
     public void clearComputedStyles(final Element element) {
         cssPropertiesCache_.remove(element);
+        layoutBoxCache_.styleChanged(element.getDomNodeOrDie(), true);
     }
 
     /**
@@ -2056,10 +2485,12 @@ public class Window extends EventTarget implements Function, AutoCloseable {
      */
     public void clearComputedStylesUpToRoot(final Element element) {
         cssPropertiesCache_.remove(element);
+        layoutBoxCache_.styleChanged(element.getDomNodeOrDie(), true);
 
         Element parent = element.getParentElement();
         while (parent != null) {
             cssPropertiesCache_.remove(parent);
+            layoutBoxCache_.styleChanged(parent.getDomNodeOrDie(), false);
             parent = parent.getParentElement();
         }
     }
@@ -2090,21 +2521,26 @@ public class Window extends EventTarget implements Function, AutoCloseable {
      *
      * <ul>
      *   <li>are actually the same node as the node that changed</li>
-     *   <li>are siblings of the node that changed</li>
      *   <li>are descendants of the node that changed</li>
+     *   <li>are siblings of the node that changed (or their descendants), if any rule depends on siblings</li>
+     *   <li>are ancestors of the node that changed, if the changed attribute affects the parents</li>
      * </ul>
      *
      * <p>Additionally, whenever a <tt>style</tt> node or a <tt>link</tt> node with <tt>rel=stylesheet</tt> is added or
      * removed, all elements should be removed from the computed style cache.</p>
+     *
+     * <p>The layout boxes depending on added, removed or changed nodes (including text) are reset; for the
+     * nodes whose styles may have changed a check of their geometry is recorded.</p>
      */
-    private class DomHtmlAttributeChangeListenerImpl implements DomChangeListener, HtmlAttributeChangeListener {
+    private class DomHtmlAttributeChangeListenerImpl
+            implements DomChangeBatchListener, HtmlAttributeChangeListener, CharacterDataChangeListener {
 
         /**
          * {@inheritDoc}
          */
         @Override
         public void nodeAdded(final DomChangeEvent event) {
-            nodeChanged(event.getChangedNode(), null);
+            nodeChanged(event.getChangedNode(), event.getParentNode(), null);
         }
 
         /**
@@ -2112,7 +2548,46 @@ public class Window extends EventTarget implements Function, AutoCloseable {
          */
         @Override
         public void nodeDeleted(final DomChangeEvent event) {
-            nodeChanged(event.getChangedNode(), null);
+            nodeChanged(event.getChangedNode(), event.getParentNode(), null);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void nodesChanged(final List<DomChangeEvent> events) {
+            if (cssPropertiesCache_.isEmpty() && layoutBoxCache_.isEmpty()) {
+                return;
+            }
+
+            final Set<DomNode> changed = new HashSet<>();
+            final Set<DomNode> parents = new HashSet<>();
+            for (final DomChangeEvent event : events) {
+                final DomNode node = event.getChangedNode();
+                if (isStyleSheet(node)) {
+                    clearComputedStyles();
+                    return;
+                }
+                changed.add(node);
+                parents.add(event.getParentNode());
+            }
+
+            final boolean siblingSelectors = hasSiblingSelectors();
+            if (!layoutBoxCache_.isEmpty()) {
+                for (final DomChangeEvent event : events) {
+                    layoutChanged(event.getChangedNode(), event.getParentNode(), null, siblingSelectors);
+                }
+            }
+            cssPropertiesCache_.nodesChanged(changed, parents, siblingSelectors);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void characterDataChanged(final CharacterDataChangeEvent event) {
+            final DomNode changed = event.getCharacterData();
+            layoutBoxCache_.nodeChanged(changed, changed.getParentNode());
         }
 
         /**
@@ -2120,7 +2595,8 @@ public class Window extends EventTarget implements Function, AutoCloseable {
          */
         @Override
         public void attributeAdded(final HtmlAttributeChangeEvent event) {
-            nodeChanged(event.getHtmlElement(), event.getName());
+            final HtmlElement element = event.getHtmlElement();
+            nodeChanged(element, element.getParentNode(), event.getName());
         }
 
         /**
@@ -2128,7 +2604,8 @@ public class Window extends EventTarget implements Function, AutoCloseable {
          */
         @Override
         public void attributeRemoved(final HtmlAttributeChangeEvent event) {
-            nodeChanged(event.getHtmlElement(), event.getName());
+            final HtmlElement element = event.getHtmlElement();
+            nodeChanged(element, element.getParentNode(), event.getName());
         }
 
         /**
@@ -2136,26 +2613,71 @@ public class Window extends EventTarget implements Function, AutoCloseable {
          */
         @Override
         public void attributeReplaced(final HtmlAttributeChangeEvent event) {
-            nodeChanged(event.getHtmlElement(), event.getName());
+            final HtmlElement element = event.getHtmlElement();
+            nodeChanged(element, element.getParentNode(), event.getName());
         }
 
-        private void nodeChanged(final DomNode changed, final String attribName) {
+        private void nodeChanged(final DomNode changed, final DomNode parent, final String attribName) {
             // If a stylesheet was changed, all of our calculations could be off; clear the cache.
-            if (changed instanceof HtmlStyle) {
+            if (isStyleSheet(changed)) {
                 clearComputedStyles();
                 return;
             }
-            if (changed instanceof HtmlLink) {
-                final String rel = ((HtmlLink) changed).getRelAttribute().toLowerCase(Locale.ROOT);
-                if ("stylesheet".equals(rel)) {
-                    clearComputedStyles();
-                    return;
-                }
+            if (!layoutBoxCache_.isEmpty()) {
+                layoutChanged(changed, parent, attribName, hasSiblingSelectors());
+            }
+            if (cssPropertiesCache_.isEmpty()) {
+                return;
             }
 
             // Apparently it wasn't a stylesheet that changed; be semi-smart about what we evict and when.
             final boolean clearParents = ATTRIBUTES_AFFECTING_PARENT.contains(attribName);
-            cssPropertiesCache_.nodeChanged(changed, clearParents);
+            cssPropertiesCache_.nodeChanged(changed, parent, hasSiblingSelectors(), clearParents);
+        }
+
+        private void layoutChanged(final DomNode changed, final DomNode parent, final String attribName,
+                final boolean siblingSelectors) {
+            if (attribName == null) {
+                layoutBoxCache_.nodeChanged(changed, parent);
+            }
+            else {
+                layoutBoxCache_.contentChanged(changed);
+            }
+
+            // the same nodes as the ones evicted from the computed style cache
+            if (siblingSelectors && parent != null) {
+                layoutBoxCache_.styleChanged(parent, true);
+            }
+            else {
+                layoutBoxCache_.styleChanged(changed, true);
+            }
+            if (ATTRIBUTES_AFFECTING_PARENT.contains(attribName)) {
+                for (DomNode ancestor = parent; ancestor != null; ancestor = ancestor.getParentNode()) {
+                    layoutBoxCache_.styleChanged(ancestor, false);
+                }
+            }
+        }
+
+        /**
+         * Siblings only have to be evicted if some rule depends on them.
+         */
+        private boolean hasSiblingSelectors() {
+            final Document document = getDocument();
+            if (document == null) {
+                return true;
+            }
+            return Window.hasSiblingSelectors(document.getStyleSheets());
+        }
+
+        private boolean isStyleSheet(final DomNode node) {
+            if (node instanceof HtmlStyle) {
+                return true;
+            }
+            if (node instanceof HtmlLink) {
+                final String rel = ((HtmlLink) node).getRelAttribute().toLowerCase(Locale.ROOT);
+                return "stylesheet".equals(rel);
+            }
+            return false;
         }
     }
 
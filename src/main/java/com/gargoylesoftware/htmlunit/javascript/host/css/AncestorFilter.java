@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.javascript.host.css;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.gargoylesoftware.htmlunit.html.DomElement;
+import com.gargoylesoftware.htmlunit.html.DomNode;
+
+/**
+ * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
+ *
+ * A counting Bloom filter of the tag names, ids and classes of the ancestors of an element.
+ * {@link CompiledSelector} uses it to reject most candidates of selectors with descendant
+ * or child combinators without walking up the tree.
+ * <p>
+ * While traversing the DOM in document order {@link #push(DomElement)} an element before visiting
+ * its descendants and {@link #pop(DomElement)} it afterwards. The tag name, the id and the class
+ * attribute of the pushed elements must not change in between.
+ *
+ * @author Ronald Brill
+ */
+public final class AncestorFilter {
+
+    private static final int BITS = 11;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private static final int TAG_SALT = 0x1b873593;
+    private static final int ID_SALT = 0x5bd1e995;
+    private static final int CLASS_SALT = 0x27d4eb2f;
+
+    private final int[] counts_ = new int[1 << BITS];
+
+    /**
+     * Creates a filter containing all element ancestors of the given node.
+     * @param node the node
+     * @return the filter
+     */
+    public static AncestorFilter forAncestorsOf(final DomNode node) {
+        final AncestorFilter filter = new AncestorFilter();
+        for (DomNode ancestor = node.getParentNode(); ancestor != null; ancestor = ancestor.getParentNode()) {
+            if (ancestor instanceof DomElement) {
+                filter.push((DomElement) ancestor);
+            }
+        }
+        return filter;
+    }
+
+    /**
+     * Adds the element.
+     * @param element the element
+     */
+    public void push(final DomElement element) {
+        update(element, 1);
+    }
+
+    /**
+     * Removes an element added before.
+     * @param element the element
+     */
+    public void pop(final DomElement element) {
+        update(element, -1);
+    }
+
+    private void update(final DomElement element, final int delta) {
+        update(tagKey(element.getLowercaseName()), delta);
+
+        final String id = element.getId();
+        if (!id.isEmpty()) {
+            update(idKey(id), delta);
+        }
+
+        final String classes = element.getAttributeDirect("class");
+        if (!classes.isEmpty()) {
+            for (final String token : StringUtils.split(classes)) {
+                update(classKey(token), delta);
+            }
+        }
+    }
+
+    private void update(final int key, final int delta) {
+        counts_[key & MASK] += delta;
+        counts_[(key >>> BITS) & MASK] += delta;
+    }
+
+    /**
+     * Returns whether all the keys may be contained. {@code false} means that
+     * at least one of the keys is definitely not contained.
+     * @param keys the keys, see {@link #tagKey(String)}, {@link #idKey(String)} and {@link #classKey(String)}
+     * @return {@code false} if at least one of the keys is not contained
+     */
+    boolean mayContainAll(final int[] keys) {
+        for (final int key : keys) {
+            if (counts_[key & MASK] == 0 || counts_[(key >>> BITS) & MASK] == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param lowercaseName the lower case tag name
+     * @return the key of the tag name
+     */
+    static int tagKey(final String lowercaseName) {
+        return mix(lowercaseName.hashCode() ^ TAG_SALT);
+    }
+
+    /**
+     * @param id the id
+     * @return the key of the id
+     */
+    static int idKey(final String id) {
+        return mix(id.hashCode() ^ ID_SALT);
+    }
+
+    /**
+     * @param className the class name
+     * @return the key of the class name
+     */
+    static int classKey(final String className) {
+        return mix(className.hashCode() ^ CLASS_SALT);
+    }
+
+    private static int mix(final int value) {
+        int h = value * 0x9e3779b9;
+        h ^= h >>> 15;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h;
+    }
+}
@@ -91,6 +91,10 @@ public class CSSStyleRule extends CSSRule {
     @JsxSetter
     public void setSelectorText(final String selectorText) {
         ((CSSStyleRuleImpl) getRule()).setSelectorText(selectorText);
+        final CSSStyleSheet sheet = getParentStyleSheet();
+        if (sheet != null) {
+            sheet.resetRuleIndex();
+        }
     }
 
     /**
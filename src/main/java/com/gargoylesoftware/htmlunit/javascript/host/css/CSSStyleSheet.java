@@ -33,12 +33,14 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Pattern;
 
@@ -68,7 +70,6 @@ import com.gargoylesoftware.css.parser.CSSParseException;
 import com.gargoylesoftware.css.parser.InputSource;
 import com.gargoylesoftware.css.parser.LexicalUnit;
 import com.gargoylesoftware.css.parser.condition.Condition;
-import com.gargoylesoftware.css.parser.condition.Condition.ConditionType;
 import com.gargoylesoftware.css.parser.javacc.CSS3Parser;
 import com.gargoylesoftware.css.parser.media.MediaQuery;
 import com.gargoylesoftware.css.parser.selector.ChildSelector;
@@ -76,12 +77,9 @@ import com.gargoylesoftware.css.parser.selector.DescendantSelector;
 import com.gargoylesoftware.css.parser.selector.DirectAdjacentSelector;
 import com.gargoylesoftware.css.parser.selector.ElementSelector;
 import com.gargoylesoftware.css.parser.selector.GeneralAdjacentSelector;
-import com.gargoylesoftware.css.parser.selector.PseudoElementSelector;
 import com.gargoylesoftware.css.parser.selector.Selector;
-import com.gargoylesoftware.css.parser.selector.Selector.SelectorType;
 import com.gargoylesoftware.css.parser.selector.SelectorList;
 import com.gargoylesoftware.css.parser.selector.SelectorListImpl;
-import com.gargoylesoftware.css.parser.selector.SimpleSelector;
 import com.gargoylesoftware.htmlunit.BrowserVersion;
 import com.gargoylesoftware.htmlunit.Cache;
 import com.gargoylesoftware.htmlunit.FailingHttpStatusCodeException;
@@ -91,6 +89,7 @@ import com.gargoylesoftware.htmlunit.WebRequest;
 import com.gargoylesoftware.htmlunit.WebResponse;
 import com.gargoylesoftware.htmlunit.WebWindow;
 import com.gargoylesoftware.htmlunit.html.DisabledElement;
+import com.gargoylesoftware.htmlunit.html.DomAttr;
 import com.gargoylesoftware.htmlunit.html.DomElement;
 import com.gargoylesoftware.htmlunit.html.DomNode;
 import com.gargoylesoftware.htmlunit.html.DomText;
@@ -152,8 +151,11 @@ public class CSSStyleSheet extends StyleSheet {
     /** The CSS import rules and their corresponding stylesheets. */
     private final Map<CSSImportRuleImpl, CSSStyleSheet> imports_ = new HashMap<>();
 
-    /** cache parsed media strings */
-    private static final transient Map<String, MediaListImpl> media_ = new HashMap<>();
+    /** The rule hash used to find the rules for an element, built on first use. */
+    private transient StyleRuleIndex ruleIndex_;
+
+    /** cache parsed media strings, shared by all web clients */
+    private static final transient Map<String, MediaListImpl> media_ = new ConcurrentHashMap<>();
 
     /** This stylesheet's URI (used to resolved contained @import rules). */
     private String uri_;
@@ -263,9 +265,10 @@ public class CSSStyleSheet extends StyleSheet {
 
         final BrowserVersion browser = getBrowserVersion();
         final DomElement e = element.getDomNodeOrDie();
-        final List<CSSStyleSheetImpl.SelectorEntry> matchingRules =
-                selects(getRuleIndex(), this, browser, e, pseudoElement, false);
-        for (CSSStyleSheetImpl.SelectorEntry entry : matchingRules) {
+        final List<StyleRuleIndex.Entry> matchingRules =
+                selects(getRuleIndex().getCandidates(this, e), browser, e, AncestorFilter.forAncestorsOf(e),
+                        pseudoElement, false);
+        for (StyleRuleIndex.Entry entry : matchingRules) {
             final CSSStyleDeclarationImpl dec = entry.getRule().getStyle();
             style.applyStyleFromSelector(dec, entry.getSelector());
         }
@@ -297,6 +300,7 @@ public class CSSStyleSheet extends StyleSheet {
                 // loadWebResponse check the cache for the web response
                 // AND also fixes the request url for the following cache lookups
                 response = client.loadWebResponse(request);
+                page.addResourceResponse(response, "css");
             }
             else {
                 // Use link.
@@ -392,94 +396,8 @@ public class CSSStyleSheet extends StyleSheet {
      */
     public static boolean selects(final BrowserVersion browserVersion, final Selector selector,
             final DomElement element, final String pseudoElement, final boolean fromQuerySelectorAll) {
-        switch (selector.getSelectorType()) {
-            case ELEMENT_NODE_SELECTOR:
-                final ElementSelector es = (ElementSelector) selector;
-                final String name = es.getLocalNameLowerCase();
-                if (name == null || name.equals(element.getLowercaseName())) {
-                    final List<Condition> conditions = es.getConditions();
-                    if (conditions != null) {
-                        for (Condition condition : conditions) {
-                            if (!selects(browserVersion, condition, element, fromQuerySelectorAll)) {
-                                return false;
-                            }
-                        }
-                    }
-                    return true;
-                }
-                return false;
-
-            case CHILD_SELECTOR:
-                final DomNode parentNode = element.getParentNode();
-                if (parentNode == element.getPage()) {
-                    return false;
-                }
-                if (!(parentNode instanceof HtmlElement)) {
-                    return false; // for instance parent is a DocumentFragment
-                }
-                final ChildSelector cs = (ChildSelector) selector;
-                return selects(browserVersion, cs.getSimpleSelector(), element, pseudoElement, fromQuerySelectorAll)
-                    && selects(browserVersion, cs.getAncestorSelector(), (HtmlElement) parentNode,
-                            pseudoElement, fromQuerySelectorAll);
-
-            case DESCENDANT_SELECTOR:
-                final DescendantSelector ds = (DescendantSelector) selector;
-                final SimpleSelector simpleSelector = ds.getSimpleSelector();
-                if (selects(browserVersion, simpleSelector, element, pseudoElement, fromQuerySelectorAll)) {
-                    DomNode ancestor = element;
-                    if (simpleSelector.getSelectorType() != SelectorType.PSEUDO_ELEMENT_SELECTOR) {
-                        ancestor = ancestor.getParentNode();
-                    }
-                    final Selector dsAncestorSelector = ds.getAncestorSelector();
-                    while (ancestor instanceof HtmlElement) {
-                        if (selects(browserVersion, dsAncestorSelector, (HtmlElement) ancestor, pseudoElement,
-                                fromQuerySelectorAll)) {
-                            return true;
-                        }
-                        ancestor = ancestor.getParentNode();
-                    }
-                }
-                return false;
-
-            case DIRECT_ADJACENT_SELECTOR:
-                final DirectAdjacentSelector das = (DirectAdjacentSelector) selector;
-                if (selects(browserVersion, das.getSimpleSelector(), element, pseudoElement, fromQuerySelectorAll)) {
-                    DomNode prev = element.getPreviousSibling();
-                    while (prev != null && !(prev instanceof HtmlElement)) {
-                        prev = prev.getPreviousSibling();
-                    }
-                    return prev != null
-                            && selects(browserVersion, das.getSelector(),
-                                    (HtmlElement) prev, pseudoElement, fromQuerySelectorAll);
-                }
-                return false;
-
-            case GENERAL_ADJACENT_SELECTOR:
-                final GeneralAdjacentSelector gas = (GeneralAdjacentSelector) selector;
-                if (selects(browserVersion, gas.getSimpleSelector(), element, pseudoElement, fromQuerySelectorAll)) {
-                    for (DomNode prev1 = element.getPreviousSibling(); prev1 != null;
-                                                        prev1 = prev1.getPreviousSibling()) {
-                        if (prev1 instanceof HtmlElement
-                            && selects(browserVersion, gas.getSelector(), (HtmlElement) prev1,
-                                    pseudoElement, fromQuerySelectorAll)) {
-                            return true;
-                        }
-                    }
-                }
-                return false;
-            case PSEUDO_ELEMENT_SELECTOR:
-                if (pseudoElement != null && pseudoElement.length() != 0 && pseudoElement.charAt(0) == ':') {
-                    final String pseudoName = ((PseudoElementSelector) selector).getLocalName();
-                    return pseudoName.equals(pseudoElement.substring(1));
-                }
-                return false;
-
-            default:
-                if (LOG.isErrorEnabled()) {
-                    LOG.error("Unknown CSS selector type '" + selector.getSelectorType() + "'.");
-                }
-                return false;
-        }
+        return CompiledSelector.compile(selector)
+                .matches(browserVersion, element, pseudoElement, fromQuerySelectorAll, null);
     }
 
     /**
@@ -499,19 +417,14 @@ public class CSSStyleSheet extends StyleSheet {
                 return condition.getValue().equals(element.getId());
 
             case CLASS_CONDITION:
-                String v3 = condition.getValue();
-                if (v3.indexOf('\\') > -1) {
-                    v3 = UNESCAPE_SELECTOR.matcher(v3).replaceAll("$1");
-                }
+                final String v3 = unescapeSelector(condition.getValue());
                 final String a3 = element.getAttributeDirect("class");
                 return selectsWhitespaceSeparated(v3, a3);
 
             case ATTRIBUTE_CONDITION:
                 String value = condition.getValue();
                 if (value != null) {
-                    if (value.indexOf('\\') > -1) {
-                        value = UNESCAPE_SELECTOR.matcher(value).replaceAll("$1");
-                    }
+                    value = unescapeSelector(value);
                     final String attrValue = element.getAttribute(condition.getLocalName());
                     return ATTRIBUTE_NOT_DEFINED != attrValue && attrValue.equals(value);
                 }
@@ -566,6 +479,18 @@ public class CSSStyleSheet extends StyleSheet {
         }
     }
 
+    /**
+     * Removes the backslashes escaping brackets, dots and colons in a selector value.
+     * @param value the value of a condition
+     * @return the unescaped value
+     */
+    static String unescapeSelector(final String value) {
+        if (value.indexOf('\\') > -1) {
+            return UNESCAPE_SELECTOR.matcher(value).replaceAll("$1");
+        }
+        return value;
+    }
+
     private static boolean selects(final String condition, final String attribute, final char separator) {
         // attribute.equals(condition)
         // || attribute.startsWith(condition + " ") || attriubte.endsWith(" " + condition)
@@ -599,7 +524,7 @@ public class CSSStyleSheet extends StyleSheet {
         return attribute.equals(condition);
     }
 
-    private static boolean selectsWhitespaceSeparated(final String condition, final String attribute) {
+    static boolean selectsWhitespaceSeparated(final String condition, final String attribute) {
         final int conditionLength = condition.length();
         if (conditionLength < 1) {
             return false;
@@ -629,11 +554,8 @@ public class CSSStyleSheet extends StyleSheet {
 
     private static boolean selectsPseudoClass(final BrowserVersion browserVersion,
             final Condition condition, final DomElement element, final boolean fromQuerySelectorAll) {
-        if (browserVersion.hasFeature(QUERYSELECTORALL_NOT_IN_QUIRKS)) {
-            final Object sobj = element.getPage().getScriptableObject();
-            if (sobj instanceof HTMLDocument && ((HTMLDocument) sobj).getDocumentMode() < 8) {
-                return false;
-            }
+        if (isPseudoClassDisabled(browserVersion, element)) {
+            return false;
         }
 
         final String value = condition.getValue();
@@ -788,43 +710,114 @@ public class CSSStyleSheet extends StyleSheet {
                 }
                 else if (value.startsWith("not(")) {
                     final String selectors = value.substring(value.indexOf('(') + 1, value.length() - 1);
-                    final AtomicBoolean errorOccured = new AtomicBoolean(false);
-                    final CSSErrorHandler errorHandler = new CSSErrorHandler() {
-                        @Override
-                        public void warning(final CSSParseException exception) throws CSSException {
-                            // ignore
-                        }
+                    final SelectorList selectorList = parseNotSelectors(selectors);
+                    validateSelectors(selectorList, 9, element);
 
-                        @Override
-                        public void fatalError(final CSSParseException exception) throws CSSException {
-                            errorOccured.set(true);
-                        }
+                    return !selects(browserVersion, selectorList.get(0), element,
+                            null, fromQuerySelectorAll);
+                }
+                return false;
+        }
+    }
 
-                        @Override
-                        public void error(final CSSParseException exception) throws CSSException {
-                            errorOccured.set(true);
-                        }
-                    };
-                    final CSSOMParser parser = new CSSOMParser(new CSS3Parser());
-                    parser.setErrorHandler(errorHandler);
-                    try {
-                        final SelectorList selectorList = parser.parseSelectors(selectors);
-                        if (errorOccured.get() || selectorList == null || selectorList.size() != 1) {
-                            throw new CSSException("Invalid selectors: " + selectors);
-                        }
+    /**
+     * Parses the argument of the not() pseudo class.
+     * @param selectors the argument
+     * @return the selector list containing exactly one selector
+     * @throws CSSException if the argument is not a single valid selector
+     */
+    static SelectorList parseNotSelectors(final String selectors) throws CSSException {
+        final AtomicBoolean errorOccured = new AtomicBoolean(false);
+        final CSSErrorHandler errorHandler = new CSSErrorHandler() {
+            @Override
+            public void warning(final CSSParseException exception) throws CSSException {
+                // ignore
+            }
 
-                        validateSelectors(selectorList, 9, element);
+            @Override
+            public void fatalError(final CSSParseException exception) throws CSSException {
+                errorOccured.set(true);
+            }
 
-                        return !selects(browserVersion, selectorList.get(0), element,
-                                null, fromQuerySelectorAll);
-                    }
-                    catch (final IOException e) {
-                        throw new CSSException("Error parsing CSS selectors from '" + selectors + "': "
-                                + e.getMessage());
-                    }
-                }
+            @Override
+            public void error(final CSSParseException exception) throws CSSException {
+                errorOccured.set(true);
+            }
+        };
+        final CSSOMParser parser = new CSSOMParser(new CSS3Parser());
+        parser.setErrorHandler(errorHandler);
+        try {
+            final SelectorList selectorList = parser.parseSelectors(selectors);
+            if (errorOccured.get() || selectorList == null || selectorList.size() != 1) {
+                throw new CSSException("Invalid selectors: " + selectors);
+            }
+            return selectorList;
+        }
+        catch (final IOException e) {
+            throw new CSSException("Error parsing CSS selectors from '" + selectors + "': "
+                    + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns whether pseudo classes never match for the given element (IE in quirks mode).
+     * @param browserVersion the browser version
+     * @param element the element
+     * @return {@code true} if pseudo classes never match
+     */
+    static boolean isPseudoClassDisabled(final BrowserVersion browserVersion, final DomElement element) {
+        if (browserVersion.hasFeature(QUERYSELECTORALL_NOT_IN_QUIRKS)) {
+            final Object sobj = element.getPage().getScriptableObject();
+            if (sobj instanceof HTMLDocument && ((HTMLDocument) sobj).getDocumentMode() < 8) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether no selector without sibling dependencies (see {@link #hasSiblingSelectors()})
+     * can distinguish the two siblings, so they can share the result of the cascade.
+     * This is the case if they have the same type, the same attributes and the same state
+     * regarding the pseudo classes {@code :focus}, {@code :hover}, {@code :checked} and {@code :empty}.
+     *
+     * @param element the element to compute the style for
+     * @param sibling a sibling of the element
+     * @return whether the style computed for the sibling applies to the element also
+     */
+    public static boolean isStyleEquivalent(final DomElement element, final DomElement sibling) {
+        if (element.getClass() != sibling.getClass()
+                || !element.getQualifiedName().equals(sibling.getQualifiedName())
+                || element.getParentNode() != sibling.getParentNode()) {
+            return false;
+        }
+        if (element instanceof HtmlCheckBoxInput
+                || element instanceof HtmlRadioButtonInput
+                || element instanceof HtmlOption
+                || element.isMouseOver()
+                || sibling.isMouseOver()) {
+            return false;
+        }
+
+        final Map<String, DomAttr> attributes = element.getAttributesMap();
+        if (attributes.size() != sibling.getAttributesMap().size()) {
+            return false;
+        }
+        for (final String name : attributes.keySet()) {
+            if (!sibling.hasAttribute(name)
+                    || !element.getAttributeDirect(name).equals(sibling.getAttributeDirect(name))) {
                 return false;
+            }
         }
+
+        final HtmlPage htmlPage = element.getHtmlPageOrNull();
+        if (htmlPage != null) {
+            final DomElement focus = htmlPage.getFocusedElement();
+            if (focus == element || focus == sibling) {
+                return false;
+            }
+        }
+        return isEmpty(element) == isEmpty(sibling);
     }
 
     private static boolean isEmpty(final DomElement element) {
@@ -837,12 +830,22 @@ public class CSSStyleSheet extends StyleSheet {
     }
 
     private static boolean getNth(final String nth, final int index) {
+        final int[] ab = parseNth(nth);
+        return selectsNth(ab[0], ab[1], index);
+    }
+
+    /**
+     * Parses the argument of the nth-child() like pseudo classes.
+     * @param nth the argument ('odd', 'even' or 'an+b')
+     * @return the factor a and the offset b
+     */
+    static int[] parseNth(final String nth) {
         if ("odd".equalsIgnoreCase(nth)) {
-            return index % 2 != 0;
+            return new int[] {2, 1};
         }
 
         if ("even".equalsIgnoreCase(nth)) {
-            return index % 2 == 0;
+            return new int[] {2, 0};
         }
 
         // an+b
@@ -866,12 +869,23 @@ public class CSSStyleSheet extends StyleSheet {
             value = value.substring(1);
         }
         final int b = NumberUtils.toInt(value, 0);
+        return new int[] {a, b};
+    }
+
+    /**
+     * Returns whether the (one based) index is matched by 'an+b' for some n &gt;= 0.
+     * @param a the factor
+     * @param b the offset
+     * @param index the index of the element
+     * @return {@code true} if the index is matched
+     */
+    static boolean selectsNth(final int a, final int b, final int index) {
         if (a == 0) {
             return index == b && b > 0;
         }
 
-        final double n = (index - b) / (double) a;
-        return n >= 0 && n % 1 == 0;
+        final int diff = index - b;
+        return diff % a == 0 && diff / a >= 0;
     }
 
     /**
@@ -935,6 +949,11 @@ public class CSSStyleSheet extends StyleSheet {
      * @return the media parsed from the specified input source
      */
     static MediaListImpl parseMedia(final CSSErrorHandler errorHandler, final String mediaString) {
+        if (mediaString == null) {
+            // the concurrent cache does not support null keys
+            return new MediaListImpl(null);
+        }
+
         MediaListImpl media = media_.get(mediaString);
         if (media != null) {
             return media;
@@ -1115,7 +1134,14 @@ public class CSSStyleSheet extends StyleSheet {
         }
 
         // reset our index also
-        getWrappedSheet().resetRuleIndex();
+        resetRuleIndex();
+    }
+
+    /**
+     * Drops the rule index; it is built again on next use.
+     */
+    void resetRuleIndex() {
+        ruleIndex_ = null;
     }
 
     private int fixIndex(int index) {
@@ -1246,8 +1272,19 @@ public class CSSStyleSheet extends StyleSheet {
         enabled_ = enabled;
     }
 
+    /**
+     * Returns whether any rule of this sheet (or of the imported sheets) may match an element
+     * depending on its siblings, e.g. {@code h1 + p} or {@code li:first-child}.
+     * If not, a change of an element can't change the style of its siblings.
+     * @return whether there are sibling dependent selectors
+     */
+    public boolean hasSiblingSelectors() {
+        return getRuleIndex().hasSiblingSelectors();
+    }
+
     /**
      * Returns whether the specified {@link MediaList} is active or not.
+     * The result is cached per window until the window size or the screen size changes.
      * @param scriptable the scriptable
      * @param mediaList the media list
      * @return whether the specified {@link MediaList} is active or not
@@ -1257,6 +1294,19 @@ public class CSSStyleSheet extends StyleSheet {
             return true;
         }
 
+        final Window window = scriptable.getWindow();
+        final MediaQueryCache cache = window.getMediaQueryCache();
+        final Boolean cached = cache.get(window.getWebWindow(), mediaList);
+        if (cached != null) {
+            return cached.booleanValue();
+        }
+
+        final boolean active = evaluate(scriptable, mediaList);
+        cache.put(mediaList, active);
+        return active;
+    }
+
+    private static boolean evaluate(final SimpleScriptable scriptable, final MediaListImpl mediaList) {
         for (int i = 0; i < mediaList.getLength(); i++) {
             final MediaQuery mediaQuery = mediaList.mediaQuery(i);
             boolean isActive = isActive(scriptable, mediaQuery);
@@ -1583,47 +1633,26 @@ public class CSSStyleSheet extends StyleSheet {
         }
     }
 
-    private CSSStyleSheetImpl.CSSStyleSheetRuleIndex getRuleIndex() {
-        final CSSStyleSheetImpl styleSheet = getWrappedSheet();
-        CSSStyleSheetImpl.CSSStyleSheetRuleIndex index = styleSheet.getRuleIndex();
-
+    private StyleRuleIndex getRuleIndex() {
+        StyleRuleIndex index = ruleIndex_;
         if (index == null) {
-            index = new CSSStyleSheetImpl.CSSStyleSheetRuleIndex();
-            final CSSRuleListImpl ruleList = styleSheet.getCssRules();
+            index = new StyleRuleIndex();
+            final CSSRuleListImpl ruleList = getWrappedSheet().getCssRules();
             index(index, ruleList, new HashSet<String>());
 
-            styleSheet.setRuleIndex(index);
+            ruleIndex_ = index;
         }
         return index;
     }
 
-    private void index(final CSSStyleSheetImpl.CSSStyleSheetRuleIndex index, final CSSRuleListImpl ruleList,
+    private void index(final StyleRuleIndex index, final CSSRuleListImpl ruleList,
             final Set<String> alreadyProcessing) {
 
         for (AbstractCSSRuleImpl rule : ruleList.getRules()) {
             if (rule instanceof CSSStyleRuleImpl) {
                 final CSSStyleRuleImpl styleRule = (CSSStyleRuleImpl) rule;
-                final SelectorList selectors = styleRule.getSelectors();
-                for (Selector selector : selectors) {
-                    final SimpleSelector simpleSel = selector.getSimpleSelector();
-                    if (SelectorType.ELEMENT_NODE_SELECTOR == simpleSel.getSelectorType()) {
-                        final ElementSelector es = (ElementSelector) simpleSel;
-                        boolean wasClass = false;
-                        final List<Condition> conds = es.getConditions();
-                        if (conds != null && conds.size() == 1) {
-                            final Condition c = conds.get(0);
-                            if (ConditionType.CLASS_CONDITION == c.getConditionType()) {
-                                index.addClassSelector(es, c.getValue(), selector, styleRule);
-                                wasClass = true;
-                            }
-                        }
-                        if (!wasClass) {
-                            index.addElementSelector(es, selector, styleRule);
-                        }
-                    }
-                    else {
-                        index.addOtherSelector(selector, styleRule);
-                    }
+                for (Selector selector : styleRule.getSelectors()) {
+                    index.add(selector, styleRule);
                 }
             }
             else if (rule instanceof CSSImportRuleImpl) {
@@ -1663,35 +1692,45 @@ public class CSSStyleSheet extends StyleSheet {
         }
     }
 
-    private List<CSSStyleSheetImpl.SelectorEntry> selects(
-                            final CSSStyleSheetImpl.CSSStyleSheetRuleIndex index,
-                            final SimpleScriptable scriptable,
-                            final BrowserVersion browserVersion, final DomElement element,
-                            final String pseudoElement, final boolean fromQuerySelectorAll) {
-
-        final List<CSSStyleSheetImpl.SelectorEntry> matchingRules = new ArrayList<>();
+    /**
+     * Builds the rule index and evaluates its media lists, so that
+     * {@link #matchingRules(BrowserVersion, DomElement, AncestorFilter, Set)} only reads this sheet afterwards.
+     * @return the indexes with active media lists
+     */
+    Set<StyleRuleIndex> prepareMatching() {
+        final Set<StyleRuleIndex> active = Collections.newSetFromMap(new IdentityHashMap<>());
+        getRuleIndex().collectActive(this, active);
+        return active;
+    }
 
-        if (CSSStyleSheet.isActive(scriptable, index.getMediaList())) {
-            final String elementName = element.getLowercaseName();
-            final String[] classes = StringUtils.split(element.getAttributeDirect("class"), null, -1);
-            final Iterator<CSSStyleSheetImpl.SelectorEntry> iter =
-                    index.getSelectorEntriesIteratorFor(elementName, classes);
+    /**
+     * Returns the rules matching the given element in source order; doesn't modify anything
+     * and can therefore be called from many threads in parallel.
+     * @param browserVersion the browser version
+     * @param element the element
+     * @param ancestors the filter containing the ancestors of the element
+     * @param activeIndexes the result of {@link #prepareMatching()}
+     * @return the matching rules
+     */
+    List<StyleRuleIndex.Entry> matchingRules(final BrowserVersion browserVersion, final DomElement element,
+            final AncestorFilter ancestors, final Set<StyleRuleIndex> activeIndexes) {
+        return selects(getRuleIndex().getCandidates(activeIndexes::contains, element),
+                browserVersion, element, ancestors, null, false);
+    }
 
-            CSSStyleSheetImpl.SelectorEntry entry = iter.next();
-            while (null != entry) {
-                if (CSSStyleSheet.selects(browserVersion, entry.getSelector(),
-                                            element, pseudoElement, fromQuerySelectorAll)) {
-                    matchingRules.add(entry);
-                }
-                entry = iter.next();
-            }
+    private static List<StyleRuleIndex.Entry> selects(
+                            final List<StyleRuleIndex.Entry> candidates,
+                            final BrowserVersion browserVersion, final DomElement element,
+                            final AncestorFilter ancestors,
+                            final String pseudoElement, final boolean fromQuerySelectorAll) {
 
-            for (CSSStyleSheetImpl.CSSStyleSheetRuleIndex child : index.getChildren()) {
-                matchingRules.addAll(selects(child, scriptable, browserVersion,
-                                                    element, pseudoElement, fromQuerySelectorAll));
+        final List<StyleRuleIndex.Entry> matchingRules = new ArrayList<>();
+        for (StyleRuleIndex.Entry entry : candidates) {
+            if (entry.getCompiledSelector()
+                    .matches(browserVersion, element, pseudoElement, fromQuerySelectorAll, ancestors)) {
+                matchingRules.add(entry);
             }
         }
-
         return matchingRules;
     }
 }
@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.javascript.host.css;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.gargoylesoftware.htmlunit.BrowserVersion;
+import com.gargoylesoftware.htmlunit.html.DomElement;
+import com.gargoylesoftware.htmlunit.html.DomNode;
+
+/**
+ * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
+ *
+ * Matches the rules of a list of style sheets against many elements at once.
+ * <p>
+ * The constructor builds the rule indexes and evaluates the media lists on the calling thread.
+ * Afterwards matching only reads the DOM and the style sheets; {@link #match(List, ForkJoinPool)}
+ * splits the elements into ranges of consecutive elements (in document order that are
+ * whole subtrees most of the time) and matches the ranges in parallel. Inside a range the
+ * {@link AncestorFilter} is maintained top-down instead of being built again for every element,
+ * and an element equivalent to its previous sibling takes over the sibling's result.
+ * <p>
+ * The DOM must not be modified while matching.
+ *
+ * @author Ronald Brill
+ */
+public final class CascadeResolver {
+
+    /** The number of elements below which a range is not split any further. */
+    private static final int THRESHOLD = 256;
+
+    private final BrowserVersion browserVersion_;
+    private final List<CSSStyleSheet> sheets_;
+    private final List<Set<StyleRuleIndex>> activeIndexes_;
+    private final boolean siblingSelectors_;
+
+    /**
+     * Creates a new instance.
+     * @param browserVersion the browser version
+     * @param sheets the active and enabled style sheets in cascade order
+     */
+    public CascadeResolver(final BrowserVersion browserVersion, final List<CSSStyleSheet> sheets) {
+        browserVersion_ = browserVersion;
+        sheets_ = new ArrayList<>(sheets);
+        activeIndexes_ = new ArrayList<>(sheets.size());
+        boolean siblingSelectors = false;
+        for (final CSSStyleSheet sheet : sheets_) {
+            activeIndexes_.add(sheet.prepareMatching());
+            siblingSelectors |= sheet.hasSiblingSelectors();
+        }
+        siblingSelectors_ = siblingSelectors;
+    }
+
+    /**
+     * Matches the rules against all the given elements.
+     * @param elements the elements in document order
+     * @param pool the pool to run the matching on
+     * @return the matched rules, one entry per element in the same order; equivalent siblings
+     *         share the same {@link Cascade} instance
+     */
+    public List<Cascade> match(final List<DomElement> elements, final ForkJoinPool pool) {
+        final DomElement[] elementArray = elements.toArray(new DomElement[elements.size()]);
+        final Cascade[] cascades = new Cascade[elementArray.length];
+        pool.invoke(new MatchTask(elementArray, cascades, 0, elementArray.length));
+        return Arrays.asList(cascades);
+    }
+
+    private void matchRange(final DomElement[] elements, final Cascade[] cascades, final int from, final int to) {
+        final AncestorFilter filter = new AncestorFilter();
+        // the current ancestors together with their positions; -1 for the ones outside of the range
+        final Deque<DomElement> chain = new ArrayDeque<>();
+        final Deque<Integer> positions = new ArrayDeque<>();
+
+        for (int i = from; i < to; i++) {
+            final DomElement element = elements[i];
+            final DomNode parent = element.getParentNode();
+
+            int previousSibling = -1;
+            while (!chain.isEmpty() && chain.peekLast() != parent) {
+                filter.pop(chain.removeLast());
+                previousSibling = positions.removeLast();
+            }
+            if (chain.isEmpty()) {
+                // start of the range or a new tree
+                previousSibling = -1;
+                final Deque<DomElement> ancestors = new ArrayDeque<>();
+                for (DomNode ancestor = parent; ancestor != null; ancestor = ancestor.getParentNode()) {
+                    if (ancestor instanceof DomElement) {
+                        ancestors.addFirst((DomElement) ancestor);
+                    }
+                }
+                for (final DomElement ancestor : ancestors) {
+                    chain.addLast(ancestor);
+                    positions.addLast(-1);
+                    filter.push(ancestor);
+                }
+            }
+
+            if (previousSibling > -1
+                    && !siblingSelectors_
+                    && CSSStyleSheet.isStyleEquivalent(element, elements[previousSibling])) {
+                cascades[i] = cascades[previousSibling];
+            }
+            else {
+                final List<List<StyleRuleIndex.Entry>> rules = new ArrayList<>(sheets_.size());
+                for (int s = 0; s < sheets_.size(); s++) {
+                    rules.add(sheets_.get(s).matchingRules(browserVersion_, element, filter, activeIndexes_.get(s)));
+                }
+                cascades[i] = new Cascade(rules);
+            }
+
+            chain.addLast(element);
+            positions.addLast(i);
+            filter.push(element);
+        }
+    }
+
+    /**
+     * Matches a range of elements, splits it if it is too large.
+     */
+    private final class MatchTask extends RecursiveAction {
+        private final DomElement[] elements_;
+        private final Cascade[] cascades_;
+        private final int from_;
+        private final int to_;
+
+        MatchTask(final DomElement[] elements, final Cascade[] cascades, final int from, final int to) {
+            elements_ = elements;
+            cascades_ = cascades;
+            from_ = from;
+            to_ = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to_ - from_ <= THRESHOLD) {
+                matchRange(elements_, cascades_, from_, to_);
+            }
+            else {
+                final int middle = (from_ + to_) >>> 1;
+                invokeAll(new MatchTask(elements_, cascades_, from_, middle),
+                        new MatchTask(elements_, cascades_, middle, to_));
+            }
+        }
+    }
+
+    /**
+     * The rules matching an element.
+     */
+    public static final class Cascade {
+        private final List<List<StyleRuleIndex.Entry>> rules_;
+
+        Cascade(final List<List<StyleRuleIndex.Entry>> rules) {
+            rules_ = rules;
+        }
+
+        /**
+         * Applies the matched rules to the given style, like
+         * {@link CSSStyleSheet#modifyIfNecessary(ComputedCSSStyleDeclaration,
+         * com.gargoylesoftware.htmlunit.javascript.host.Element, String)} does for every sheet.
+         * @param style the style to modify
+         */
+        public void applyTo(final ComputedCSSStyleDeclaration style) {
+            for (final List<StyleRuleIndex.Entry> sheetRules : rules_) {
+                for (final StyleRuleIndex.Entry entry : sheetRules) {
+                    style.applyStyleFromSelector(entry.getRule().getStyle(), entry.getSelector());
+                }
+            }
+        }
+    }
+}
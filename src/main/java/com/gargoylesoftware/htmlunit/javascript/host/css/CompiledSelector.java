@@ -0,0 +1,556 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.javascript.host.css;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.gargoylesoftware.css.parser.CSSException;
+import com.gargoylesoftware.css.parser.condition.Condition;
+import com.gargoylesoftware.css.parser.selector.ChildSelector;
+import com.gargoylesoftware.css.parser.selector.DescendantSelector;
+import com.gargoylesoftware.css.parser.selector.DirectAdjacentSelector;
+import com.gargoylesoftware.css.parser.selector.ElementSelector;
+import com.gargoylesoftware.css.parser.selector.GeneralAdjacentSelector;
+import com.gargoylesoftware.css.parser.selector.PseudoElementSelector;
+import com.gargoylesoftware.css.parser.selector.Selector;
+import com.gargoylesoftware.css.parser.selector.Selector.SelectorType;
+import com.gargoylesoftware.css.parser.selector.SelectorList;
+import com.gargoylesoftware.css.parser.selector.SimpleSelector;
+import com.gargoylesoftware.htmlunit.BrowserVersion;
+import com.gargoylesoftware.htmlunit.html.DomElement;
+import com.gargoylesoftware.htmlunit.html.DomNode;
+import com.gargoylesoftware.htmlunit.html.HtmlElement;
+
+/**
+ * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
+ *
+ * A {@link Selector} compiled into a tree of matchers. The matching starts with the rightmost
+ * compound selector and works from there to the left (up the ancestors and back the siblings).
+ * Everything that only depends on the selector (the unescaped class names, the arguments of
+ * the nth-child() like pseudo classes, the argument of not()) is prepared once.
+ * <p>
+ * If an {@link AncestorFilter} is provided, selectors with descendant or child combinators
+ * are rejected without walking up the tree, if a tag name, id or class required for an
+ * ancestor is definitely not present.
+ * <p>
+ * Compiled selectors are immutable and can be used by many threads in parallel; there is no global
+ * cache, the users keep the compiled form together with the selector (like the style rule index).
+ *
+ * @author Ronald Brill
+ */
+public final class CompiledSelector {
+
+    private static final Log LOG = LogFactory.getLog(CompiledSelector.class);
+
+    private static final int[] NO_KEYS = new int[0];
+
+    private final Selector selector_;
+    private final Matcher matcher_;
+    private final int[] ancestorKeys_;
+
+    private CompiledSelector(final Selector selector) {
+        selector_ = selector;
+        matcher_ = compileSelector(selector);
+
+        final List<Integer> keys = new ArrayList<>();
+        switch (selector.getSelectorType()) {
+            case DESCENDANT_SELECTOR:
+                final DescendantSelector ds = (DescendantSelector) selector;
+                if (ds.getSimpleSelector().getSelectorType() != SelectorType.PSEUDO_ELEMENT_SELECTOR) {
+                    collectAncestorKeys(ds.getAncestorSelector(), keys);
+                }
+                break;
+
+            case CHILD_SELECTOR:
+                collectAncestorKeys(((ChildSelector) selector).getAncestorSelector(), keys);
+                break;
+
+            default:
+        }
+
+        if (keys.isEmpty()) {
+            ancestorKeys_ = NO_KEYS;
+        }
+        else {
+            ancestorKeys_ = new int[keys.size()];
+            for (int i = 0; i < ancestorKeys_.length; i++) {
+                ancestorKeys_[i] = keys.get(i);
+            }
+        }
+    }
+
+    /**
+     * Compiles the given selector; keep the result if the selector is used more than once.
+     * @param selector the selector
+     * @return the compiled selector
+     */
+    public static CompiledSelector compile(final Selector selector) {
+        return new CompiledSelector(selector);
+    }
+
+    /**
+     * Returns the selector this was compiled from.
+     * @return the selector
+     */
+    public Selector getSelector() {
+        return selector_;
+    }
+
+    /**
+     * Returns {@code true} if this selector selects the specified element.
+     *
+     * @param browserVersion the browser version
+     * @param element the element to test
+     * @param pseudoElement the pseudo element to match, (can be {@code null})
+     * @param fromQuerySelectorAll whether this is called from {@link DomNode#querySelectorAll(String)}
+     * @param ancestors the filter containing the ancestors of the element (can be {@code null})
+     * @return {@code true} if it does apply, {@code false} if it doesn't apply
+     */
+    public boolean matches(final BrowserVersion browserVersion, final DomElement element,
+            final String pseudoElement, final boolean fromQuerySelectorAll, final AncestorFilter ancestors) {
+        if (ancestors != null && !ancestors.mayContainAll(ancestorKeys_)) {
+            return false;
+        }
+        return matcher_.matches(browserVersion, element, pseudoElement, fromQuerySelectorAll);
+    }
+
+    /**
+     * Collects the keys of everything the ancestors of the element have to provide
+     * to be matched by the given ancestor part of a selector.
+     */
+    private static void collectAncestorKeys(final Selector selector, final List<Integer> keys) {
+        switch (selector.getSelectorType()) {
+            case ELEMENT_NODE_SELECTOR:
+                final ElementSelector es = (ElementSelector) selector;
+                final String name = es.getLocalNameLowerCase();
+                if (name != null) {
+                    keys.add(AncestorFilter.tagKey(name));
+                }
+                final List<Condition> conditions = es.getConditions();
+                if (conditions != null) {
+                    for (final Condition condition : conditions) {
+                        switch (condition.getConditionType()) {
+                            case ID_CONDITION:
+                                keys.add(AncestorFilter.idKey(condition.getValue()));
+                                break;
+
+                            case CLASS_CONDITION:
+                                keys.add(AncestorFilter.classKey(CSSStyleSheet.unescapeSelector(condition.getValue())));
+                                break;
+
+                            default:
+                        }
+                    }
+                }
+                break;
+
+            case DESCENDANT_SELECTOR:
+                final DescendantSelector ds = (DescendantSelector) selector;
+                collectAncestorKeys(ds.getSimpleSelector(), keys);
+                collectAncestorKeys(ds.getAncestorSelector(), keys);
+                break;
+
+            case CHILD_SELECTOR:
+                final ChildSelector cs = (ChildSelector) selector;
+                collectAncestorKeys(cs.getSimpleSelector(), keys);
+                collectAncestorKeys(cs.getAncestorSelector(), keys);
+                break;
+
+            case DIRECT_ADJACENT_SELECTOR:
+                collectAncestorKeys(((DirectAdjacentSelector) selector).getSimpleSelector(), keys);
+                break;
+
+            case GENERAL_ADJACENT_SELECTOR:
+                collectAncestorKeys(((GeneralAdjacentSelector) selector).getSimpleSelector(), keys);
+                break;
+
+            default:
+        }
+    }
+
+    private static Matcher compileSelector(final Selector selector) {
+        switch (selector.getSelectorType()) {
+            case ELEMENT_NODE_SELECTOR:
+                final ElementSelector es = (ElementSelector) selector;
+                final List<Condition> conditions = es.getConditions();
+                final ConditionMatcher[] conditionMatchers;
+                if (conditions == null) {
+                    conditionMatchers = new ConditionMatcher[0];
+                }
+                else {
+                    conditionMatchers = new ConditionMatcher[conditions.size()];
+                    for (int i = 0; i < conditionMatchers.length; i++) {
+                        conditionMatchers[i] = compileCondition(conditions.get(i));
+                    }
+                }
+                return new ElementMatcher(es.getLocalNameLowerCase(), conditionMatchers);
+
+            case CHILD_SELECTOR:
+                final ChildSelector cs = (ChildSelector) selector;
+                return new ChildMatcher(compileSelector(cs.getSimpleSelector()),
+                        compileSelector(cs.getAncestorSelector()));
+
+            case DESCENDANT_SELECTOR:
+                final DescendantSelector ds = (DescendantSelector) selector;
+                final SimpleSelector simpleSelector = ds.getSimpleSelector();
+                return new DescendantMatcher(compileSelector(simpleSelector),
+                        compileSelector(ds.getAncestorSelector()),
+                        simpleSelector.getSelectorType() == SelectorType.PSEUDO_ELEMENT_SELECTOR);
+
+            case DIRECT_ADJACENT_SELECTOR:
+                final DirectAdjacentSelector das = (DirectAdjacentSelector) selector;
+                return new DirectAdjacentMatcher(compileSelector(das.getSimpleSelector()),
+                        compileSelector(das.getSelector()));
+
+            case GENERAL_ADJACENT_SELECTOR:
+                final GeneralAdjacentSelector gas = (GeneralAdjacentSelector) selector;
+                return new GeneralAdjacentMatcher(compileSelector(gas.getSimpleSelector()),
+                        compileSelector(gas.getSelector()));
+
+            case PSEUDO_ELEMENT_SELECTOR:
+                return new PseudoElementMatcher(((PseudoElementSelector) selector).getLocalName());
+
+            default:
+                return new UnknownMatcher(selector.getSelectorType());
+        }
+    }
+
+    private static ConditionMatcher compileCondition(final Condition condition) {
+        switch (condition.getConditionType()) {
+            case ID_CONDITION:
+                return new IdMatcher(condition.getValue());
+
+            case CLASS_CONDITION:
+                return new ClassMatcher(CSSStyleSheet.unescapeSelector(condition.getValue()));
+
+            case PSEUDO_CLASS_CONDITION:
+                final String value = condition.getValue();
+                if (value.startsWith("nth-child(")) {
+                    return new NthMatcher(condition, false, false);
+                }
+                if (value.startsWith("nth-last-child(")) {
+                    return new NthMatcher(condition, true, false);
+                }
+                if (value.startsWith("nth-of-type(")) {
+                    return new NthMatcher(condition, false, true);
+                }
+                if (value.startsWith("nth-last-of-type(")) {
+                    return new NthMatcher(condition, true, true);
+                }
+                if (value.startsWith("not(")) {
+                    return new NotMatcher(value.substring(value.indexOf('(') + 1, value.length() - 1));
+                }
+                return new InterpretedConditionMatcher(condition);
+
+            default:
+                return new InterpretedConditionMatcher(condition);
+        }
+    }
+
+    /**
+     * Matches an element against a compiled (part of a) selector.
+     */
+    private interface Matcher {
+        boolean matches(BrowserVersion browserVersion, DomElement element, String pseudoElement,
+                boolean fromQuerySelectorAll);
+    }
+
+    /**
+     * Matches an element against a compiled condition.
+     */
+    private interface ConditionMatcher {
+        boolean matches(BrowserVersion browserVersion, DomElement element, boolean fromQuerySelectorAll);
+    }
+
+    private static final class ElementMatcher implements Matcher {
+        private final String lowercaseName_;
+        private final ConditionMatcher[] conditions_;
+
+        ElementMatcher(final String lowercaseName, final ConditionMatcher[] conditions) {
+            lowercaseName_ = lowercaseName;
+            conditions_ = conditions;
+        }
+
+        @Override
+        public boolean matches(final BrowserVersion browserVersion, final DomElement element,
+                final String pseudoElement, final boolean fromQuerySelectorAll) {
+            if (lowercaseName_ != null && !lowercaseName_.equals(element.getLowercaseName())) {
+                return false;
+            }
+            for (final ConditionMatcher condition : conditions_) {
+                if (!condition.matches(browserVersion, element, fromQuerySelectorAll)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class ChildMatcher implements Matcher {
+        private final Matcher simple_;
+        private final Matcher parent_;
+
+        ChildMatcher(final Matcher simple, final Matcher parent) {
+            simple_ = simple;
+            parent_ = parent;
+        }
+
+        @Override
+        public boolean matches(final BrowserVersion browserVersion, final DomElement element,
+                final String pseudoElement, final boolean fromQuerySelectorAll) {
+            final DomNode parentNode = element.getParentNode();
+            if (parentNode == element.getPage()) {
+                return false;
+            }
+            if (!(parentNode instanceof HtmlElement)) {
+                return false; // for instance parent is a DocumentFragment
+            }
+            return simple_.matches(browserVersion, element, pseudoElement, fromQuerySelectorAll)
+                    && parent_.matches(browserVersion, (HtmlElement) parentNode, pseudoElement,
+                            fromQuerySelectorAll);
+        }
+    }
+
+    private static final class DescendantMatcher implements Matcher {
+        private final Matcher simple_;
+        private final Matcher ancestor_;
+        private final boolean pseudoElement_;
+
+        DescendantMatcher(final Matcher simple, final Matcher ancestor, final boolean pseudoElement) {
+            simple_ = simple;
+            ancestor_ = ancestor;
+            pseudoElement_ = pseudoElement;
+        }
+
+        @Override
+        public boolean matches(final BrowserVersion browserVersion, final DomElement element,
+                final String pseudoElement, final boolean fromQuerySelectorAll) {
+            if (!simple_.matches(browserVersion, element, pseudoElement, fromQuerySelectorAll)) {
+                return false;
+            }
+
+            DomNode ancestor = element;
+            if (!pseudoElement_) {
+                ancestor = ancestor.getParentNode();
+            }
+            while (ancestor instanceof HtmlElement) {
+                if (ancestor_.matches(browserVersion, (HtmlElement) ancestor, pseudoElement, fromQuerySelectorAll)) {
+                    return true;
+                }
+                ancestor = ancestor.getParentNode();
+            }
+            return false;
+        }
+    }
+
+    private static final class DirectAdjacentMatcher implements Matcher {
+        private final Matcher simple_;
+        private final Matcher previous_;
+
+        DirectAdjacentMatcher(final Matcher simple, final Matcher previous) {
+            simple_ = simple;
+            previous_ = previous;
+        }
+
+        @Override
+        public boolean matches(final BrowserVersion browserVersion, final DomElement element,
+                final String pseudoElement, final boolean fromQuerySelectorAll) {
+            if (!simple_.matches(browserVersion, element, pseudoElement, fromQuerySelectorAll)) {
+                return false;
+            }
+
+            DomNode prev = element.getPreviousSibling();
+            while (prev != null && !(prev instanceof HtmlElement)) {
+                prev = prev.getPreviousSibling();
+            }
+            return prev != null
+                    && previous_.matches(browserVersion, (HtmlElement) prev, pseudoElement, fromQuerySelectorAll);
+        }
+    }
+
+    private static final class GeneralAdjacentMatcher implements Matcher {
+        private final Matcher simple_;
+        private final Matcher previous_;
+
+        GeneralAdjacentMatcher(final Matcher simple, final Matcher previous) {
+            simple_ = simple;
+            previous_ = previous;
+        }
+
+        @Override
+        public boolean matches(final BrowserVersion browserVersion, final DomElement element,
+                final String pseudoElement, final boolean fromQuerySelectorAll) {
+            if (!simple_.matches(browserVersion, element, pseudoElement, fromQuerySelectorAll)) {
+                return false;
+            }
+
+            for (DomNode prev = element.getPreviousSibling(); prev != null; prev = prev.getPreviousSibling()) {
+                if (prev instanceof HtmlElement
+                        && previous_.matches(browserVersion, (HtmlElement) prev, pseudoElement,
+                                fromQuerySelectorAll)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class PseudoElementMatcher implements Matcher {
+        private final String name_;
+
+        PseudoElementMatcher(final String name) {
+            name_ = name;
+        }
+
+        @Override
+        public boolean matches(final BrowserVersion browserVersion, final DomElement element,
+                final String pseudoElement, final boolean fromQuerySelectorAll) {
+            if (pseudoElement != null && pseudoElement.length() != 0 && pseudoElement.charAt(0) == ':') {
+                return name_.equals(pseudoElement.substring(1));
+            }
+            return false;
+        }
+    }
+
+    private static final class UnknownMatcher implements Matcher {
+        private final SelectorType type_;
+
+        UnknownMatcher(final SelectorType type) {
+            type_ = type;
+        }
+
+        @Override
+        public boolean matches(final BrowserVersion browserVersion, final DomElement element,
+                final String pseudoElement, final boolean fromQuerySelectorAll) {
+            if (LOG.isErrorEnabled()) {
+                LOG.error("Unknown CSS selector type '" + type_ + "'.");
+            }
+            return false;
+        }
+    }
+
+    private static final class IdMatcher implements ConditionMatcher {
+        private final String id_;
+
+        IdMatcher(final String id) {
+            id_ = id;
+        }
+
+        @Override
+        public boolean matches(final BrowserVersion browserVersion, final DomElement element,
+                final boolean fromQuerySelectorAll) {
+            return id_.equals(element.getId());
+        }
+    }
+
+    private static final class ClassMatcher implements ConditionMatcher {
+        private final String className_;
+
+        ClassMatcher(final String className) {
+            className_ = className;
+        }
+
+        @Override
+        public boolean matches(final BrowserVersion browserVersion, final DomElement element,
+                final boolean fromQuerySelectorAll) {
+            return CSSStyleSheet.selectsWhitespaceSeparated(className_, element.getAttributeDirect("class"));
+        }
+    }
+
+    private static final class NthMatcher implements ConditionMatcher {
+        private final boolean fromEnd_;
+        private final boolean ofType_;
+        private final int factor_;
+        private final int offset_;
+
+        NthMatcher(final Condition condition, final boolean fromEnd, final boolean ofType) {
+            final String value = condition.getValue();
+            final int[] ab = CSSStyleSheet.parseNth(value.substring(value.indexOf('(') + 1, value.length() - 1));
+            fromEnd_ = fromEnd;
+            ofType_ = ofType;
+            factor_ = ab[0];
+            offset_ = ab[1];
+        }
+
+        @Override
+        public boolean matches(final BrowserVersion browserVersion, final DomElement element,
+                final boolean fromQuerySelectorAll) {
+            if (CSSStyleSheet.isPseudoClassDisabled(browserVersion, element)) {
+                return false;
+            }
+
+            final String type = element.getNodeName();
+            int index = 0;
+            for (DomNode n = element; n != null; n = fromEnd_ ? n.getNextSibling() : n.getPreviousSibling()) {
+                if (n instanceof DomElement && (!ofType_ || n.getNodeName().equals(type))) {
+                    index++;
+                }
+            }
+            return CSSStyleSheet.selectsNth(factor_, offset_, index);
+        }
+    }
+
+    private static final class NotMatcher implements ConditionMatcher {
+        private final SelectorList selectorList_;
+        private final CompiledSelector selector_;
+        private final String error_;
+
+        NotMatcher(final String selectors) {
+            SelectorList selectorList = null;
+            String error = null;
+            try {
+                selectorList = CSSStyleSheet.parseNotSelectors(selectors);
+            }
+            catch (final CSSException e) {
+                error = e.getMessage();
+            }
+            selectorList_ = selectorList;
+            selector_ = selectorList == null ? null : new CompiledSelector(selectorList.get(0));
+            error_ = error;
+        }
+
+        @Override
+        public boolean matches(final BrowserVersion browserVersion, final DomElement element,
+                final boolean fromQuerySelectorAll) {
+            if (CSSStyleSheet.isPseudoClassDisabled(browserVersion, element)) {
+                return false;
+            }
+            if (error_ != null) {
+                throw new CSSException(error_);
+            }
+
+            CSSStyleSheet.validateSelectors(selectorList_, 9, element);
+            return !selector_.matches(browserVersion, element, null, fromQuerySelectorAll, null);
+        }
+    }
+
+    private static final class InterpretedConditionMatcher implements ConditionMatcher {
+        private final Condition condition_;
+
+        InterpretedConditionMatcher(final Condition condition) {
+            condition_ = condition;
+        }
+
+        @Override
+        public boolean matches(final BrowserVersion browserVersion, final DomElement element,
+                final boolean fromQuerySelectorAll) {
+            return CSSStyleSheet.selects(browserVersion, condition_, element, fromQuerySelectorAll);
+        }
+    }
+}
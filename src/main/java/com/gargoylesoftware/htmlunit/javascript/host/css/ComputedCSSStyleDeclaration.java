@@ -201,22 +201,16 @@ public class ComputedCSSStyleDeclaration extends CSSStyleDeclaration {
      * Local modifications maintained here rather than in the element. We use a sorted
      * map so that results are deterministic and thus easily testable.
      */
-    private final SortedMap<String, StyleElement> localModifications_ = new TreeMap<>();
+    private SortedMap<String, StyleElement> localModifications_ = new TreeMap<>();
 
-    /** The computed, cached width of the element to which this computed style belongs (no padding, borders, etc). */
-    private Integer width_;
+    /** Whether {@link #localModifications_} is shared with the style of an equivalent element. */
+    private boolean localModificationsShared_;
 
     /**
-     * The computed, cached height of the element to which this computed style belongs (no padding, borders, etc),
-     * taking child elements into account.
+     * The layout box of the element to which this computed style belongs, holding the computed, cached
+     * width, heights and top; it survives changes of the style that don't affect the geometry.
      */
-    private Integer height_;
-
-    /**
-     * The computed, cached height of the element to which this computed style belongs (no padding, borders, etc),
-     * <b>not</b> taking child elements into account.
-     */
-    private Integer height2_;
+    private transient LayoutBoxCache.Box layoutBox_;
 
     /** The computed, cached horizontal padding (left + right) of the element to which this computed style belongs. */
     private Integer paddingHorizontal_;
@@ -230,9 +224,6 @@ public class ComputedCSSStyleDeclaration extends CSSStyleDeclaration {
     /** The computed, cached vertical border (top + bottom) of the element to which this computed style belongs. */
     private Integer borderVertical_;
 
-    /** The computed, cached top of the element to which this computed style belongs. */
-    private Integer top_;
-
     /**
      * Creates an instance.
      */
@@ -292,7 +283,7 @@ public class ComputedCSSStyleDeclaration extends CSSStyleDeclaration {
             }
         }
         final StyleElement element = new StyleElement(name, newValue, priority, specificity);
-        localModifications_.put(name, element);
+        getOwnLocalModifications().put(name, element);
     }
 
     /**
@@ -305,7 +296,28 @@ public class ComputedCSSStyleDeclaration extends CSSStyleDeclaration {
      */
     public void setDefaultLocalStyleAttribute(final String name, final String newValue) {
         final StyleElement element = new StyleElement(name, newValue, "", SelectorSpecificity.DEFAULT_STYLE_ATTRIBUTE);
-        localModifications_.put(name, element);
+        getOwnLocalModifications().put(name, element);
+    }
+
+    /**
+     * Takes over the local modifications of the style computed for an equivalent element
+     * (same defaults and same matching rules) instead of applying the style sheets again.
+     * Both styles share the modifications until one of them is modified.
+     *
+     * @param style the style of the equivalent element
+     */
+    public void shareLocalModifications(final ComputedCSSStyleDeclaration style) {
+        localModifications_ = style.localModifications_;
+        localModificationsShared_ = true;
+        style.localModificationsShared_ = true;
+    }
+
+    private SortedMap<String, StyleElement> getOwnLocalModifications() {
+        if (localModificationsShared_) {
+            localModifications_ = new TreeMap<>(localModifications_);
+            localModificationsShared_ = false;
+        }
+        return localModifications_;
     }
 
     @Override
@@ -979,6 +991,50 @@ public class ComputedCSSStyleDeclaration extends CSSStyleDeclaration {
         });
     }
 
+    /**
+     * Returns the layout box of the element to which this computed style belongs.
+     * @return the layout box
+     */
+    private LayoutBoxCache.Box getLayoutBox() {
+        final boolean validate = layoutBox_ == null;
+        layoutBox_ = getWindow().getLayoutBoxCache().getBox(this, validate);
+        return layoutBox_;
+    }
+
+    /**
+     * Returns the values of the properties the calculated width, heights and top depend on;
+     * a layout box stays valid as long as they don't change.
+     * @return the values
+     */
+    String getGeometry() {
+        final StringBuilder geometry = new StringBuilder();
+        geometry.append(getDisplay()).append(';')
+            .append(getPositionWithInheritance()).append(';')
+            .append(getCssFloat()).append(';')
+            .append(getStyleAttribute(BOX_SIZING, true)).append(';')
+            .append(getStyleAttribute(OVERFLOW, true)).append(';')
+            .append(getStyleAttribute(WIDTH, true)).append(';')
+            .append(getStyleAttribute(HEIGHT, true)).append(';')
+            .append(getTopWithInheritance()).append(';')
+            .append(getBottomWithInheritance()).append(';')
+            .append(getLeftWithInheritance()).append(';')
+            .append(getRightWithInheritance()).append(';')
+            .append(getMarginTop()).append(';')
+            .append(getMarginBottom()).append(';')
+            .append(getMarginLeft()).append(';')
+            .append(getMarginRight()).append(';')
+            .append(getPaddingTop()).append(';')
+            .append(getPaddingBottom()).append(';')
+            .append(getPaddingLeft()).append(';')
+            .append(getPaddingRight()).append(';')
+            .append(getBorderTopWidth()).append(';')
+            .append(getBorderBottomWidth()).append(';')
+            .append(getBorderLeftWidth()).append(';')
+            .append(getBorderRightWidth()).append(';')
+            .append(getFontSize());
+        return geometry.toString();
+    }
+
     /**
      * Returns the element's width in pixels, possibly including its padding and border.
      * @param includeBorder whether or not to include the border width in the returned value
@@ -1007,20 +1063,21 @@ public class ComputedCSSStyleDeclaration extends CSSStyleDeclaration {
     }
 
     private int getCalculatedWidth() {
-        if (width_ != null) {
-            return width_.intValue();
+        final LayoutBoxCache.Box box = getLayoutBox();
+        if (box.width_ != null) {
+            return box.width_.intValue();
         }
 
         final Element element = getElement();
         final DomNode node = element.getDomNodeOrDie();
         if (!node.mayBeDisplayed()) {
-            width_ = Integer.valueOf(0);
+            box.width_ = Integer.valueOf(0);
             return 0;
         }
 
         final String display = getDisplay();
         if (NONE.equals(display)) {
-            width_ = Integer.valueOf(0);
+            box.width_ = Integer.valueOf(0);
             return 0;
         }
 
@@ -1043,6 +1100,7 @@ public class ComputedCSSStyleDeclaration extends CSSStyleDeclaration {
                     || ABSOLUTE.equals(getStyleAttribute(POSITION, true))) {
                 // We're floating; simplistic approximation: text content * pixels per character.
                 width = node.getTextContent().length() * getBrowserVersion().getPixesPerChar();
+                box.contentWidth_ = true;
             }
             else if (BLOCK.equals(display)) {
                 if (element instanceof HTMLBodyElement) {
@@ -1064,6 +1122,7 @@ public class ComputedCSSStyleDeclaration extends CSSStyleDeclaration {
                 final String text = node.asText();
                 // default font for buttons is a bit smaller than the body font size
                 width = 10 + (int) (text.length() * getBrowserVersion().getPixesPerChar() * 0.9);
+                box.contentWidth_ = true;
             }
             else if (node instanceof HtmlTextInput || node instanceof HtmlPasswordInput) {
                 final BrowserVersion browserVersion = getBrowserVersion();
@@ -1084,6 +1143,7 @@ public class ComputedCSSStyleDeclaration extends CSSStyleDeclaration {
             else {
                 // Inline elements take up however much space is required by their children.
                 width = getContentWidth();
+                box.contentWidth_ = true;
             }
         }
         else if (AUTO.equals(styleWidth)) {
@@ -1098,7 +1158,7 @@ public class ComputedCSSStyleDeclaration extends CSSStyleDeclaration {
             });
         }
 
-        width_ = Integer.valueOf(width);
+        box.width_ = Integer.valueOf(width);
         return width;
     }
 
@@ -1172,20 +1232,22 @@ public class ComputedCSSStyleDeclaration extends CSSStyleDeclaration {
      * @return the element's calculated height, taking both relevant CSS and the element's children into account
      */
     private int getCalculatedHeight() {
-        if (height_ != null) {
-            return height_.intValue();
+        final LayoutBoxCache.Box box = getLayoutBox();
+        if (box.height_ != null) {
+            return box.height_.intValue();
         }
 
         if (super.getHeight().isEmpty()) {
             final int contentHeight = getContentHeight();
             if (contentHeight > 0) {
-                height_ = Integer.valueOf(contentHeight);
-                return height_;
+                box.height_ = Integer.valueOf(contentHeight);
+                return contentHeight;
             }
         }
 
-        height_ = Integer.valueOf(getEmptyHeight());
-        return height_;
+        final int height = getEmptyHeight();
+        box.height_ = Integer.valueOf(height);
+        return height;
     }
 
     /**
@@ -1196,18 +1258,19 @@ public class ComputedCSSStyleDeclaration extends CSSStyleDeclaration {
      *         elements
      */
     private int getEmptyHeight() {
-        if (height2_ != null) {
-            return height2_.intValue();
+        final LayoutBoxCache.Box box = getLayoutBox();
+        if (box.emptyHeight_ != null) {
+            return box.emptyHeight_.intValue();
         }
 
         final DomNode node = getElement().getDomNodeOrDie();
         if (!node.mayBeDisplayed()) {
-            height2_ = Integer.valueOf(0);
+            box.emptyHeight_ = Integer.valueOf(0);
             return 0;
         }
 
         if (NONE.equals(getDisplay())) {
-            height2_ = Integer.valueOf(0);
+            box.emptyHeight_ = Integer.valueOf(0);
             return 0;
         }
 
@@ -1215,7 +1278,7 @@ public class ComputedCSSStyleDeclaration extends CSSStyleDeclaration {
         final int windowHeight = elem.getWindow().getWebWindow().getInnerHeight();
 
         if (elem instanceof HTMLBodyElement) {
-            height2_ = windowHeight;
+            box.emptyHeight_ = Integer.valueOf(windowHeight);
             return windowHeight;
         }
 
@@ -1280,7 +1343,7 @@ public class ComputedCSSStyleDeclaration extends CSSStyleDeclaration {
             height = defaultHeight;
         }
 
-        height2_ = Integer.valueOf(height);
+        box.emptyHeight_ = Integer.valueOf(height);
         return height;
     }
 
@@ -1369,8 +1432,9 @@ public class ComputedCSSStyleDeclaration extends CSSStyleDeclaration {
      * @return the computed top (Y coordinate), relative to the node's parent's top edge
      */
     public int getTop(final boolean includeMargin, final boolean includeBorder, final boolean includePadding) {
+        final LayoutBoxCache.Box box = getLayoutBox();
         int top = 0;
-        if (null == top_) {
+        if (null == box.top_) {
             final String p = getPositionWithInheritance();
             if (ABSOLUTE.equals(p)) {
                 top = getTopForAbsolutePositionWithInheritance();
@@ -1388,7 +1452,8 @@ public class ComputedCSSStyleDeclaration extends CSSStyleDeclaration {
                         final String display = style.getDisplay();
                         if (isBlock(display)) {
                             int prevTop = 0;
-                            if (style.top_ == null) {
+                            final LayoutBoxCache.Box prevBox = style.getLayoutBox();
+                            if (prevBox.top_ == null) {
                                 final String prevPosition = style.getPositionWithInheritance();
                                 if (ABSOLUTE.equals(prevPosition)) {
                                     prevTop += style.getTopForAbsolutePositionWithInheritance();
@@ -1402,7 +1467,7 @@ public class ComputedCSSStyleDeclaration extends CSSStyleDeclaration {
                             }
                             else {
                                 prevHadComputedTop = true;
-                                prevTop += style.top_;
+                                prevTop += prevBox.top_;
                             }
                             prevTop += style.getCalculatedHeight(true, true);
                             final int margin = pixelValue(style.getMarginTop());
@@ -1418,10 +1483,10 @@ public class ComputedCSSStyleDeclaration extends CSSStyleDeclaration {
                     top += pixelValue(t);
                 }
             }
-            top_ = Integer.valueOf(top);
+            box.top_ = Integer.valueOf(top);
         }
         else {
-            top = top_.intValue();
+            top = box.top_.intValue();
         }
 
         if (includeMargin) {
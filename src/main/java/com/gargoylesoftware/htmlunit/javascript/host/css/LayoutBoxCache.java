@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.javascript.host.css;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import com.gargoylesoftware.htmlunit.WebWindow;
+import com.gargoylesoftware.htmlunit.html.DomNode;
+import com.gargoylesoftware.htmlunit.javascript.host.Element;
+
+/**
+ * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
+ *
+ * The layout boxes of the elements of a window, holding the geometry calculated by
+ * {@link ComputedCSSStyleDeclaration} (width, heights and top).
+ * <p>
+ * Unlike the computed styles a box survives style changes that don't affect the geometry. Every box
+ * remembers the geometry relevant properties of the style it was calculated from; style changes are only
+ * recorded and compared with them at the next geometry query. DOM and text changes reset the boxes
+ * depending on the changed node right away: the node itself and its descendants, the ancestors and the
+ * siblings of the node and of its ancestors (only their top).
+ *
+ * @author Ronald Brill
+ */
+public final class LayoutBoxCache {
+
+    private final Map<DomNode, Box> boxes_ = new WeakHashMap<>();
+    /** The nodes whose styles have to be checked, together with whether to check their descendants also. */
+    private final Map<DomNode, Boolean> pendingStyleChecks_ = new WeakHashMap<>();
+    private boolean pendingStyleCheckAll_;
+    private int innerWidth_;
+    private int innerHeight_;
+
+    /**
+     * Returns the box of the element of the given style, creates it if necessary.
+     * Pending style checks are processed first.
+     * @param style the computed style of the element
+     * @param validate whether to compare the box with the style, because the style was not used before
+     * @return the box
+     */
+    synchronized Box getBox(final ComputedCSSStyleDeclaration style, final boolean validate) {
+        final Element element = style.getElement();
+        processPending(element.getWindow().getWebWindow());
+
+        final DomNode node = element.getDomNodeOrDie();
+        Box box = boxes_.get(node);
+        if (box == null) {
+            box = new Box();
+            box.geometry_ = style.getGeometry();
+            boxes_.put(node, box);
+        }
+        else if (validate) {
+            check(node, box, style);
+        }
+        return box;
+    }
+
+    /**
+     * Returns whether there are no boxes.
+     * @return whether there are no boxes
+     */
+    public synchronized boolean isEmpty() {
+        return boxes_.isEmpty();
+    }
+
+    /**
+     * Records that the computed style of the given node and maybe of its descendants changed.
+     * @param node the node
+     * @param descendants whether the styles of the descendants may have changed also
+     */
+    public synchronized void styleChanged(final DomNode node, final boolean descendants) {
+        if (!boxes_.isEmpty()) {
+            if (descendants) {
+                pendingStyleChecks_.put(node, Boolean.TRUE);
+            }
+            else if (!pendingStyleChecks_.containsKey(node)) {
+                pendingStyleChecks_.put(node, Boolean.FALSE);
+            }
+        }
+    }
+
+    /**
+     * Records that all computed styles may have changed.
+     */
+    public synchronized void allStylesChanged() {
+        if (!boxes_.isEmpty()) {
+            pendingStyleCheckAll_ = true;
+        }
+    }
+
+    /**
+     * Resets the boxes depending on the given node, because it was added or removed or its content changed.
+     * @param changed the changed node
+     * @param parent the parent of the changed node at the time of the change
+     */
+    public synchronized void nodeChanged(final DomNode changed, final DomNode parent) {
+        if (!boxes_.isEmpty()) {
+            invalidate(changed, parent);
+        }
+    }
+
+    /**
+     * Resets the box of the given element if its geometry depends on its content, because an attribute
+     * that may be rendered (like the value of a button) changed.
+     * @param changed the changed element
+     */
+    public synchronized void contentChanged(final DomNode changed) {
+        final Box box = boxes_.get(changed);
+        if (box != null && box.contentWidth_) {
+            invalidate(changed, changed.getParentNode());
+        }
+    }
+
+    /**
+     * Resets all boxes.
+     */
+    public synchronized void clear() {
+        for (final Box box : boxes_.values()) {
+            box.reset();
+        }
+        pendingStyleChecks_.clear();
+        pendingStyleCheckAll_ = false;
+    }
+
+    private void processPending(final WebWindow webWindow) {
+        final int innerWidth = webWindow.getInnerWidth();
+        final int innerHeight = webWindow.getInnerHeight();
+        if (innerWidth != innerWidth_ || innerHeight != innerHeight_) {
+            innerWidth_ = innerWidth;
+            innerHeight_ = innerHeight;
+            clear();
+        }
+
+        if (pendingStyleCheckAll_) {
+            pendingStyleCheckAll_ = false;
+            pendingStyleChecks_.clear();
+            for (final DomNode node : new ArrayList<>(boxes_.keySet())) {
+                check(node);
+            }
+        }
+        else if (!pendingStyleChecks_.isEmpty()) {
+            final Map<DomNode, Boolean> pending = new HashMap<>(pendingStyleChecks_);
+            pendingStyleChecks_.clear();
+            for (final Map.Entry<DomNode, Boolean> entry : pending.entrySet()) {
+                final DomNode node = entry.getKey();
+                check(node);
+                if (entry.getValue().booleanValue()) {
+                    for (final DomNode descendant : node.getDescendants()) {
+                        check(descendant);
+                    }
+                }
+            }
+        }
+    }
+
+    private void check(final DomNode node) {
+        final Box box = boxes_.get(node);
+        if (box != null && node.isAttachedToPage()) {
+            final Element element = node.getScriptableObject();
+            check(node, box, element.getWindow().getComputedStyle(element, null));
+        }
+    }
+
+    private void check(final DomNode node, final Box box, final ComputedCSSStyleDeclaration style) {
+        final String geometry = style.getGeometry();
+        if (!geometry.equals(box.geometry_)) {
+            box.geometry_ = geometry;
+            invalidate(node, node.getParentNode());
+        }
+    }
+
+    private void invalidate(final DomNode changed, final DomNode parent) {
+        // the width of the descendants depends on the width properties of their ancestors
+        resetSubtree(changed);
+
+        for (DomNode ancestor = parent; ancestor != null; ancestor = ancestor.getParentNode()) {
+            // the top depends on the previous siblings, the top of absolute positioned elements on all siblings
+            for (DomNode child = ancestor.getFirstChild(); child != null; child = child.getNextSibling()) {
+                final Box box = boxes_.get(child);
+                if (box != null) {
+                    box.top_ = null;
+                }
+            }
+
+            // the height (and the width of inline elements) depends on the children
+            final Box box = boxes_.get(ancestor);
+            if (box != null) {
+                box.reset();
+            }
+        }
+    }
+
+    private void resetSubtree(final DomNode root) {
+        final Box rootBox = boxes_.get(root);
+        if (rootBox != null) {
+            rootBox.reset();
+        }
+        for (final DomNode descendant : root.getDescendants()) {
+            final Box box = boxes_.get(descendant);
+            if (box != null) {
+                box.reset();
+            }
+        }
+    }
+
+    /**
+     * The geometry of one element; boxes are never replaced, only reset.
+     */
+    static final class Box {
+        /** The width (no padding, borders, etc). */
+        Integer width_;
+        /** Whether the width depends on the content of the element. */
+        boolean contentWidth_;
+        /** The height (no padding, borders, etc), taking child elements into account. */
+        Integer height_;
+        /** The height (no padding, borders, etc), <b>not</b> taking child elements into account. */
+        Integer emptyHeight_;
+        /** The top. */
+        Integer top_;
+        /** The geometry relevant properties of the style the values were calculated from. */
+        String geometry_;
+
+        void reset() {
+            width_ = null;
+            contentWidth_ = false;
+            height_ = null;
+            emptyHeight_ = null;
+            top_ = null;
+        }
+    }
+}
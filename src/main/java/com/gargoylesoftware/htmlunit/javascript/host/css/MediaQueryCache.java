@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.javascript.host.css;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import com.gargoylesoftware.css.dom.MediaListImpl;
+import com.gargoylesoftware.htmlunit.WebClientOptions;
+import com.gargoylesoftware.htmlunit.WebWindow;
+
+/**
+ * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
+ *
+ * The results of the media lists evaluated for a window. They only depend on the size of the window
+ * and on the screen settings of the {@link WebClientOptions}; the results are dropped as soon as one
+ * of them is different from the values the results were evaluated with.
+ *
+ * @author Ronald Brill
+ */
+public final class MediaQueryCache {
+
+    private final Map<MediaListImpl, Boolean> results_ = new WeakHashMap<>();
+    private int innerWidth_;
+    private int innerHeight_;
+    private int screenWidth_;
+    private int screenHeight_;
+
+    /**
+     * Returns the cached result for the given media list.
+     * @param webWindow the window the media list is evaluated for
+     * @param mediaList the media list
+     * @return the result or {@code null} if not evaluated with the current window and screen size
+     */
+    synchronized Boolean get(final WebWindow webWindow, final MediaListImpl mediaList) {
+        final WebClientOptions options = webWindow.getWebClient().getOptions();
+        final int innerWidth = webWindow.getInnerWidth();
+        final int innerHeight = webWindow.getInnerHeight();
+        final int screenWidth = options.getScreenWidth();
+        final int screenHeight = options.getScreenHeight();
+        if (innerWidth != innerWidth_ || innerHeight != innerHeight_
+                || screenWidth != screenWidth_ || screenHeight != screenHeight_) {
+            innerWidth_ = innerWidth;
+            innerHeight_ = innerHeight;
+            screenWidth_ = screenWidth;
+            screenHeight_ = screenHeight;
+            results_.clear();
+            return null;
+        }
+        return results_.get(mediaList);
+    }
+
+    /**
+     * Stores the result for the given media list, evaluated with the size checked by the
+     * preceding {@link #get(WebWindow, MediaListImpl)}.
+     * @param mediaList the media list
+     * @param active the result
+     */
+    synchronized void put(final MediaListImpl mediaList, final boolean active) {
+        results_.put(mediaList, Boolean.valueOf(active));
+    }
+}
@@ -0,0 +1,386 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.javascript.host.css;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import com.gargoylesoftware.css.dom.CSSStyleRuleImpl;
+import com.gargoylesoftware.css.dom.MediaListImpl;
+import com.gargoylesoftware.css.parser.condition.Condition;
+import com.gargoylesoftware.css.parser.condition.Condition.ConditionType;
+import com.gargoylesoftware.css.parser.selector.ChildSelector;
+import com.gargoylesoftware.css.parser.selector.DescendantSelector;
+import com.gargoylesoftware.css.parser.selector.ElementSelector;
+import com.gargoylesoftware.css.parser.selector.Selector;
+import com.gargoylesoftware.css.parser.selector.Selector.SelectorType;
+import com.gargoylesoftware.css.parser.selector.SimpleSelector;
+import com.gargoylesoftware.htmlunit.html.DomElement;
+import com.gargoylesoftware.htmlunit.javascript.SimpleScriptable;
+
+/**
+ * The rule hash of a {@link CSSStyleSheet}.
+ * Every selector is stored in exactly one bucket, chosen from the rightmost compound selector:
+ * the id if there is one, otherwise the first class, otherwise the first attribute name,
+ * otherwise the tag name. Selectors without any of them end up in the universal bucket.
+ * An element only has to be tested against the selectors of the buckets
+ * for its own id, classes, attribute names and tag name.
+ * <p>
+ * The rules of nested media rules and of imported style sheets are stored in child indexes
+ * together with their media list.
+ *
+ * @author Ronald Brill
+ */
+final class StyleRuleIndex {
+
+    private static final Comparator<Entry> SOURCE_ORDER_COMPARATOR = Comparator.comparingInt(Entry::getPosition);
+
+    private final StyleRuleIndex root_;
+    private final MediaListImpl mediaList_;
+    private final List<StyleRuleIndex> children_ = new ArrayList<>();
+
+    private final Map<String, List<Entry>> ids_ = new HashMap<>();
+    private final Map<String, List<Entry>> classes_ = new HashMap<>();
+    private final Map<String, List<Entry>> attributes_ = new HashMap<>();
+    private final Map<String, List<Entry>> tags_ = new HashMap<>();
+    private final List<Entry> universal_ = new ArrayList<>();
+
+    /** The number of selectors in the whole tree, only maintained by the root. */
+    private int size_;
+    /** Whether any selector of the whole tree depends on the siblings, only maintained by the root. */
+    private boolean siblingSelectors_;
+
+    /**
+     * Creates a new root index.
+     */
+    StyleRuleIndex() {
+        this(null, new MediaListImpl(null));
+    }
+
+    private StyleRuleIndex(final StyleRuleIndex root, final MediaListImpl mediaList) {
+        root_ = root == null ? this : root;
+        mediaList_ = mediaList;
+    }
+
+    /**
+     * Returns the media list all rules of this index depend on.
+     * @return the media list
+     */
+    MediaListImpl getMediaList() {
+        return mediaList_;
+    }
+
+    /**
+     * Adds a child index for the rules depending on the given media list.
+     * @param mediaList the media list
+     * @return the new child index
+     */
+    StyleRuleIndex addMedia(final MediaListImpl mediaList) {
+        final StyleRuleIndex child = new StyleRuleIndex(root_, mediaList);
+        children_.add(child);
+        return child;
+    }
+
+    /**
+     * Adds the selector to the bucket matching its rightmost compound selector.
+     * @param selector the selector
+     * @param rule the rule the selector belongs to
+     */
+    void add(final Selector selector, final CSSStyleRuleImpl rule) {
+        final Entry entry = new Entry(selector, rule, root_.size_++);
+        if (!root_.siblingSelectors_ && dependsOnSiblings(selector)) {
+            root_.siblingSelectors_ = true;
+        }
+
+        final SimpleSelector simple = selector.getSimpleSelector();
+        if (SelectorType.ELEMENT_NODE_SELECTOR != simple.getSelectorType()) {
+            universal_.add(entry);
+            return;
+        }
+
+        final ElementSelector es = (ElementSelector) simple;
+        String className = null;
+        String attributeName = null;
+        final List<Condition> conditions = es.getConditions();
+        if (conditions != null) {
+            for (final Condition condition : conditions) {
+                switch (condition.getConditionType()) {
+                    case ID_CONDITION:
+                        register(ids_, condition.getValue(), entry);
+                        return;
+
+                    case CLASS_CONDITION:
+                        if (className == null) {
+                            className = CSSStyleSheet.unescapeSelector(condition.getValue());
+                        }
+                        break;
+
+                    case ATTRIBUTE_CONDITION:
+                        if (attributeName == null && condition.getLocalName() != null) {
+                            attributeName = condition.getLocalName().toLowerCase(Locale.ROOT);
+                        }
+                        break;
+
+                    default:
+                }
+            }
+        }
+
+        if (className != null) {
+            register(classes_, className, entry);
+        }
+        else if (attributeName != null) {
+            register(attributes_, attributeName, entry);
+        }
+        else if (es.getLocalNameLowerCase() != null) {
+            register(tags_, es.getLocalNameLowerCase(), entry);
+        }
+        else {
+            universal_.add(entry);
+        }
+    }
+
+    /**
+     * Returns whether any selector of this index (including the child indexes) may match an element
+     * depending on its siblings, like {@code a + b}, {@code a ~ b}, {@code :first-child}
+     * or {@code :nth-of-type()}.
+     * @return whether there are sibling dependent selectors
+     */
+    boolean hasSiblingSelectors() {
+        return root_.siblingSelectors_;
+    }
+
+    private static boolean dependsOnSiblings(final Selector selector) {
+        switch (selector.getSelectorType()) {
+            case DIRECT_ADJACENT_SELECTOR:
+            case GENERAL_ADJACENT_SELECTOR:
+                return true;
+
+            case DESCENDANT_SELECTOR:
+                final DescendantSelector ds = (DescendantSelector) selector;
+                return dependsOnSiblings(ds.getSimpleSelector()) || dependsOnSiblings(ds.getAncestorSelector());
+
+            case CHILD_SELECTOR:
+                final ChildSelector cs = (ChildSelector) selector;
+                return dependsOnSiblings(cs.getSimpleSelector()) || dependsOnSiblings(cs.getAncestorSelector());
+
+            case ELEMENT_NODE_SELECTOR:
+                final List<Condition> conditions = ((ElementSelector) selector).getConditions();
+                if (conditions != null) {
+                    for (final Condition condition : conditions) {
+                        if (ConditionType.PSEUDO_CLASS_CONDITION == condition.getConditionType()) {
+                            // also covers nested ones like :not(:first-child)
+                            final String value = condition.getValue();
+                            if (value.contains("-child") || value.contains("-of-type")) {
+                                return true;
+                            }
+                        }
+                    }
+                }
+                return false;
+
+            default:
+                return false;
+        }
+    }
+
+    private static void register(final Map<String, List<Entry>> buckets, final String key, final Entry entry) {
+        List<Entry> bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = new ArrayList<>();
+            buckets.put(key, bucket);
+        }
+        bucket.add(entry);
+    }
+
+    /**
+     * Returns the selectors of all active media that may match the given element in source order.
+     * @param scriptable the scriptable used to evaluate the media lists
+     * @param element the element
+     * @return the candidates; the caller still has to match them
+     */
+    List<Entry> getCandidates(final SimpleScriptable scriptable, final DomElement element) {
+        return getCandidates(index -> CSSStyleSheet.isActive(scriptable, index.mediaList_), element);
+    }
+
+    /**
+     * Returns the selectors of the given indexes that may match the given element in source order.
+     * @param activeMedia decides whether the rules of an index (and its children) are used
+     * @param element the element
+     * @return the candidates; the caller still has to match them
+     */
+    List<Entry> getCandidates(final Predicate<StyleRuleIndex> activeMedia, final DomElement element) {
+        final String[] classes = classTokens(element);
+        final List<String> attributes = attributeNames(element);
+
+        final List<Entry> candidates = new ArrayList<>();
+        collect(activeMedia, element, classes, attributes, candidates);
+        candidates.sort(SOURCE_ORDER_COMPARATOR);
+        return candidates;
+    }
+
+    /**
+     * Adds this index and all child indexes whose media lists are active to the given set.
+     * @param scriptable the scriptable used to evaluate the media lists
+     * @param active the set to add to
+     */
+    void collectActive(final SimpleScriptable scriptable, final Set<StyleRuleIndex> active) {
+        if (CSSStyleSheet.isActive(scriptable, mediaList_)) {
+            active.add(this);
+            for (final StyleRuleIndex child : children_) {
+                child.collectActive(scriptable, active);
+            }
+        }
+    }
+
+    private void collect(final Predicate<StyleRuleIndex> activeMedia, final DomElement element,
+            final String[] classes, final List<String> attributes, final List<Entry> candidates) {
+        if (!activeMedia.test(this)) {
+            return;
+        }
+
+        if (!ids_.isEmpty()) {
+            final String id = element.getId();
+            if (!id.isEmpty()) {
+                addAll(ids_.get(id), candidates);
+            }
+        }
+        if (!classes_.isEmpty()) {
+            for (final String cls : classes) {
+                addAll(classes_.get(cls), candidates);
+            }
+        }
+        if (!attributes_.isEmpty()) {
+            for (final String name : attributes) {
+                addAll(attributes_.get(name), candidates);
+            }
+        }
+        addAll(tags_.get(element.getLowercaseName()), candidates);
+        candidates.addAll(universal_);
+
+        for (final StyleRuleIndex child : children_) {
+            child.collect(activeMedia, element, classes, attributes, candidates);
+        }
+    }
+
+    private static void addAll(final List<Entry> bucket, final List<Entry> candidates) {
+        if (bucket != null) {
+            candidates.addAll(bucket);
+        }
+    }
+
+    /**
+     * Returns the distinct class tokens of the element.
+     */
+    private static String[] classTokens(final DomElement element) {
+        final String value = element.getAttributeDirect("class");
+        if (DomElement.ATTRIBUTE_NOT_DEFINED == value) {
+            return ArrayUtils.EMPTY_STRING_ARRAY;
+        }
+
+        final String[] tokens = StringUtils.split(value);
+        if (tokens.length < 2) {
+            return tokens;
+        }
+        final List<String> distinct = new ArrayList<>(tokens.length);
+        for (final String token : tokens) {
+            if (!distinct.contains(token)) {
+                distinct.add(token);
+            }
+        }
+        return distinct.toArray(new String[distinct.size()]);
+    }
+
+    /**
+     * Returns the distinct lower case attribute names of the element; for prefixed names
+     * the local name is part of the result also.
+     */
+    private static List<String> attributeNames(final DomElement element) {
+        if (!element.hasAttributes()) {
+            return Collections.emptyList();
+        }
+
+        final List<String> names = new ArrayList<>();
+        for (final String name : element.getAttributesMap().keySet()) {
+            final String lcName = name.toLowerCase(Locale.ROOT);
+            if (!names.contains(lcName)) {
+                names.add(lcName);
+            }
+            final int colon = lcName.indexOf(':');
+            if (colon > -1) {
+                final String localName = lcName.substring(colon + 1);
+                if (!names.contains(localName)) {
+                    names.add(localName);
+                }
+            }
+        }
+        return names;
+    }
+
+    /**
+     * A selector of a style rule together with its position in the style sheet.
+     */
+    static final class Entry {
+        private final Selector selector_;
+        private final CompiledSelector compiledSelector_;
+        private final CSSStyleRuleImpl rule_;
+        private final int position_;
+
+        Entry(final Selector selector, final CSSStyleRuleImpl rule, final int position) {
+            selector_ = selector;
+            compiledSelector_ = CompiledSelector.compile(selector);
+            rule_ = rule;
+            position_ = position;
+        }
+
+        /**
+         * @return the selector
+         */
+        Selector getSelector() {
+            return selector_;
+        }
+
+        /**
+         * @return the compiled selector
+         */
+        CompiledSelector getCompiledSelector() {
+            return compiledSelector_;
+        }
+
+        /**
+         * @return the rule
+         */
+        CSSStyleRuleImpl getRule() {
+            return rule_;
+        }
+
+        /**
+         * @return the position in source order
+         */
+        int getPosition() {
+            return position_;
+        }
+    }
+}
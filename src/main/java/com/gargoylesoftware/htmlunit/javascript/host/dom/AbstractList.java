@@ -65,7 +65,9 @@ public class AbstractList extends SimpleScriptable implements Function {
         /** No effect, cache is still valid. */
         NONE,
         /** Cache is not valid anymore and should be reset. */
-        RESET
+        RESET,
+        /** The matching elements of the added node follow the cached ones and can be appended. */
+        APPEND
     }
 
     private boolean avoidObjectDetection_;
@@ -77,6 +79,11 @@ public class AbstractList extends SimpleScriptable implements Function {
      */
     private List<DomNode> cachedElements_;
 
+    /**
+     * The {@link DomNode#getSubtreeModificationCount()} of the reference node the cache corresponds to.
+     */
+    private int cachedModificationCount_;
+
     private boolean listenerRegistered_;
 
     /**
@@ -128,6 +135,7 @@ public class AbstractList extends SimpleScriptable implements Function {
         attributeChangeSensitive_ = attributeChangeSensitive;
         cachedElements_ = initialElements;
         if (initialElements != null) {
+            cachedModificationCount_ = domNode.getSubtreeModificationCount();
             registerListener();
         }
     }
@@ -223,11 +231,21 @@ public class AbstractList extends SimpleScriptable implements Function {
         // a bit strange but we like to avoid sync
         List<DomNode> cachedElements = cachedElements_;
 
+        final DomNode domNode = getDomNodeOrNull();
+        if (cachedElements != null && domNode != null
+                && cachedModificationCount_ != domNode.getSubtreeModificationCount()) {
+            // the subtree was changed without notification
+            cachedElements = null;
+        }
+
         if (cachedElements == null) {
             if (getParentScope() == null) {
                 cachedElements = new ArrayList<>();
             }
             else {
+                if (domNode != null) {
+                    cachedModificationCount_ = domNode.getSubtreeModificationCount();
+                }
                 cachedElements = computeElements();
             }
             cachedElements_ = cachedElements;
@@ -574,7 +592,7 @@ public class AbstractList extends SimpleScriptable implements Function {
          */
         @Override
         public void nodeAdded(final DomChangeEvent event) {
-            clearCache();
+            handleChangeOnCache(event, true);
         }
 
         /**
@@ -582,7 +600,7 @@ public class AbstractList extends SimpleScriptable implements Function {
          */
         @Override
         public void nodeDeleted(final DomChangeEvent event) {
-            clearCache();
+            handleChangeOnCache(event, false);
         }
 
         /**
@@ -625,9 +643,30 @@ public class AbstractList extends SimpleScriptable implements Function {
             if (EffectOnCache.NONE == effectOnCache) {
                 return;
             }
-            if (EffectOnCache.RESET == effectOnCache) {
-                clearCache();
+            clearCache();
+        }
+
+        private void handleChangeOnCache(final DomChangeEvent event, final boolean added) {
+            final AbstractList nodes = nodeList_.get();
+            if (null == nodes || null == nodes.cachedElements_) {
+                return;
             }
+
+            // the cache can only be kept if it was up to date before this change
+            final DomNode domNode = nodes.getDomNodeOrNull();
+            final int modificationCount = domNode == null ? 0 : domNode.getSubtreeModificationCount();
+            if (domNode != null && nodes.cachedModificationCount_ + 1 == modificationCount) {
+                final EffectOnCache effectOnCache = nodes.getEffectOnCache(event, added);
+                if (EffectOnCache.NONE == effectOnCache) {
+                    nodes.cachedModificationCount_ = modificationCount;
+                    return;
+                }
+                if (EffectOnCache.APPEND == effectOnCache && nodes.appendToCache(event.getChangedNode())) {
+                    nodes.cachedModificationCount_ = modificationCount;
+                    return;
+                }
+            }
+            clearCache();
         }
 
         private void clearCache() {
@@ -648,6 +687,77 @@ public class AbstractList extends SimpleScriptable implements Function {
         return EffectOnCache.RESET;
     }
 
+    /**
+     * Gets the effect of the addition or removal of a node below the reference node
+     * on this collection's cache.
+     * @param event the change event
+     * @param added {@code true} if the node has been added, {@code false} if it has been removed
+     * @return the effect on cache
+     */
+    protected EffectOnCache getEffectOnCache(final DomChangeEvent event, final boolean added) {
+        return EffectOnCache.RESET;
+    }
+
+    /**
+     * Implementation of {@link #getEffectOnCache(DomChangeEvent, boolean)} for collections made of
+     * all descendants of the reference node accepted by {@link #isMatching(DomNode)}: changes without
+     * matching elements don't affect the cache and added elements are appended if possible.
+     * @param event the change event
+     * @param added {@code true} if the node has been added, {@code false} if it has been removed
+     * @return the effect on cache
+     */
+    protected EffectOnCache getEffectOnCacheOfMatchingDescendants(final DomChangeEvent event,
+            final boolean added) {
+        final DomNode node = event.getChangedNode();
+        if (node == getDomNodeOrNull() || !containsMatching(node)) {
+            return EffectOnCache.NONE;
+        }
+        if (added) {
+            return EffectOnCache.APPEND;
+        }
+        return EffectOnCache.RESET;
+    }
+
+    private boolean containsMatching(final DomNode node) {
+        if (node instanceof DomElement && isMatching(node)) {
+            return true;
+        }
+        for (final DomElement element : node.getDomElementDescendants()) {
+            if (isMatching(element)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Appends the matching elements of the added node to the cache if they all follow the cached ones.
+     * @param node the added node
+     * @return {@code false} if the elements can't be appended
+     */
+    private boolean appendToCache(final DomNode node) {
+        final List<DomNode> cachedElements = cachedElements_;
+        if (!cachedElements.isEmpty()) {
+            final DomNode last = cachedElements.get(cachedElements.size() - 1);
+            if ((last.compareDocumentPosition(node) & DomNode.DOCUMENT_POSITION_FOLLOWING) == 0) {
+                return false;
+            }
+        }
+
+        // the previous list might still be in use
+        final List<DomNode> elements = new ArrayList<>(cachedElements);
+        if (node instanceof DomElement && isMatching(node)) {
+            elements.add(node);
+        }
+        for (final DomElement element : node.getDomElementDescendants()) {
+            if (isMatching(element)) {
+                elements.add(element);
+            }
+        }
+        cachedElements_ = elements;
+        return true;
+    }
+
     /**
      * Gets the scriptable for the provided element that may already be the right scriptable.
      * @param object the object for which to get the scriptable
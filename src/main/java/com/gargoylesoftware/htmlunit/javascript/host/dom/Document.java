@@ -72,6 +72,7 @@ import com.gargoylesoftware.htmlunit.WebClient;
 import com.gargoylesoftware.htmlunit.WebResponse;
 import com.gargoylesoftware.htmlunit.WebWindow;
 import com.gargoylesoftware.htmlunit.html.BaseFrameElement;
+import com.gargoylesoftware.htmlunit.html.DomChangeEvent;
 import com.gargoylesoftware.htmlunit.html.DomComment;
 import com.gargoylesoftware.htmlunit.html.DomDocumentFragment;
 import com.gargoylesoftware.htmlunit.html.DomElement;
@@ -761,6 +762,11 @@ public class Document extends Node {
                 protected boolean isMatching(final DomNode node) {
                     return true;
                 }
+
+                @Override
+                protected EffectOnCache getEffectOnCache(final DomChangeEvent event, final boolean added) {
+                    return getEffectOnCacheOfMatchingDescendants(event, added);
+                }
             };
         }
         else {
@@ -769,6 +775,21 @@ public class Document extends Node {
                 protected boolean isMatching(final DomNode node) {
                     return tagName.equalsIgnoreCase(node.getNodeName());
                 }
+
+                @Override
+                protected Iterable<DomNode> getCandidates() {
+                    final DomNode domNode = getDomNodeOrNull();
+                    if (domNode instanceof HtmlPage) {
+                        return Collections.unmodifiableList(
+                                ((HtmlPage) domNode).getIndexedElementsByTagName(domNode, tagName));
+                    }
+                    return super.getCandidates();
+                }
+
+                @Override
+                protected EffectOnCache getEffectOnCache(final DomChangeEvent event, final boolean added) {
+                    return getEffectOnCacheOfMatchingDescendants(event, added);
+                }
             };
         }
 
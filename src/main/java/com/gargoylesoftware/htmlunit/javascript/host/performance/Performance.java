@@ -14,10 +14,19 @@
  */
 package com.gargoylesoftware.htmlunit.javascript.host.performance;
 
+import static com.gargoylesoftware.htmlunit.BrowserVersionFeatures.JS_PERFORMANCE_NO_NAVIGATION_ENTRY;
 import static com.gargoylesoftware.htmlunit.javascript.configuration.SupportedBrowser.CHROME;
 import static com.gargoylesoftware.htmlunit.javascript.configuration.SupportedBrowser.FF;
 import static com.gargoylesoftware.htmlunit.javascript.configuration.SupportedBrowser.IE;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import com.gargoylesoftware.htmlunit.Page;
+import com.gargoylesoftware.htmlunit.WebResponse;
+import com.gargoylesoftware.htmlunit.WebResponseTiming;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+import com.gargoylesoftware.htmlunit.html.ResourceTimingEntry;
 import com.gargoylesoftware.htmlunit.javascript.SimpleScriptable;
 import com.gargoylesoftware.htmlunit.javascript.configuration.JsxClass;
 import com.gargoylesoftware.htmlunit.javascript.configuration.JsxConstructor;
@@ -25,6 +34,10 @@ import com.gargoylesoftware.htmlunit.javascript.configuration.JsxFunction;
 import com.gargoylesoftware.htmlunit.javascript.configuration.JsxGetter;
 import com.gargoylesoftware.htmlunit.javascript.host.event.EventTarget;
 
+import net.sourceforge.htmlunit.corejs.javascript.Context;
+import net.sourceforge.htmlunit.corejs.javascript.Scriptable;
+import net.sourceforge.htmlunit.corejs.javascript.Undefined;
+
 /**
  * A JavaScript object for {@code Performance}.
  *
@@ -62,7 +75,14 @@ public class Performance extends EventTarget {
     @JsxGetter
     public PerformanceTiming getTiming() {
         if (timing_ == null) {
-            final PerformanceTiming timing = new PerformanceTiming();
+            final WebResponseTiming responseTiming = getResponseTiming();
+            final PerformanceTiming timing;
+            if (responseTiming == null) {
+                timing = new PerformanceTiming();
+            }
+            else {
+                timing = new PerformanceTiming(responseTiming);
+            }
             timing.setParentScope(getParentScope());
             timing.setPrototype(getPrototype(timing.getClass()));
             timing_ = timing;
@@ -71,6 +91,96 @@ public class Performance extends EventTarget {
         return timing_;
     }
 
+    private WebResponse getPageResponse() {
+        final Page page = getWindow().getWebWindow().getEnclosedPage();
+        if (page == null) {
+            return null;
+        }
+        return page.getWebResponse();
+    }
+
+    private WebResponseTiming getResponseTiming() {
+        final WebResponse response = getPageResponse();
+        if (response == null) {
+            return null;
+        }
+        return response.getTiming();
+    }
+
+    private List<PerformanceEntry> entries() {
+        final List<PerformanceEntry> entries = new ArrayList<>();
+        final WebResponse response = getPageResponse();
+        if (response == null || response.getTiming() == null) {
+            return entries;
+        }
+
+        final long timeOrigin = response.getTiming().getStartTime();
+        if (!getBrowserVersion().hasFeature(JS_PERFORMANCE_NO_NAVIGATION_ENTRY)) {
+            final PerformanceNavigationTiming navigation = new PerformanceNavigationTiming();
+            navigation.setParentScope(getParentScope());
+            navigation.setPrototype(getPrototype(navigation.getClass()));
+            navigation.initialize(response.getWebRequest().getUrl().toExternalForm(), "navigation",
+                    "navigation", response.getTiming(), timeOrigin);
+            entries.add(navigation);
+        }
+
+        final Page page = getWindow().getWebWindow().getEnclosedPage();
+        if (page instanceof HtmlPage) {
+            for (final ResourceTimingEntry resource : ((HtmlPage) page).getResourceTimings()) {
+                final PerformanceResourceTiming entry = new PerformanceResourceTiming();
+                entry.setParentScope(getParentScope());
+                entry.setPrototype(getPrototype(entry.getClass()));
+                entry.initialize(resource.getName(), "resource", resource.getInitiatorType(),
+                        resource.getTiming(), timeOrigin);
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Returns all performance entries.
+     * @return the entries
+     */
+    @JsxFunction
+    public Scriptable getEntries() {
+        return Context.getCurrentContext().newArray(getParentScope(), entries().toArray());
+    }
+
+    /**
+     * Returns all performance entries of the given type.
+     * @param type the type
+     * @return the entries
+     */
+    @JsxFunction
+    public Scriptable getEntriesByType(final String type) {
+        final List<Object> result = new ArrayList<>();
+        for (final PerformanceEntry entry : entries()) {
+            if (entry.getEntryType().equals(type)) {
+                result.add(entry);
+            }
+        }
+        return Context.getCurrentContext().newArray(getParentScope(), result.toArray());
+    }
+
+    /**
+     * Returns all performance entries with the given name and (optional) type.
+     * @param name the name
+     * @param type the type
+     * @return the entries
+     */
+    @JsxFunction
+    public Scriptable getEntriesByName(final String name, final Object type) {
+        final String entryType = Undefined.isUndefined(type) ? null : Context.toString(type);
+        final List<Object> result = new ArrayList<>();
+        for (final PerformanceEntry entry : entries()) {
+            if (entry.getName().equals(name) && (entryType == null || entry.getEntryType().equals(entryType))) {
+                result.add(entry);
+            }
+        }
+        return Context.getCurrentContext().newArray(getParentScope(), result.toArray());
+    }
+
     /**
      * @return a timestamp
      */
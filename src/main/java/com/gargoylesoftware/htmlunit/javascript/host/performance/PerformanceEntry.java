@@ -20,15 +20,22 @@ import static com.gargoylesoftware.htmlunit.javascript.configuration.SupportedBr
 import com.gargoylesoftware.htmlunit.javascript.SimpleScriptable;
 import com.gargoylesoftware.htmlunit.javascript.configuration.JsxClass;
 import com.gargoylesoftware.htmlunit.javascript.configuration.JsxConstructor;
+import com.gargoylesoftware.htmlunit.javascript.configuration.JsxGetter;
 
 /**
  * A JavaScript object for {@code PerformanceEntry}.
  *
  * @author Ahmed Ashour
+ * @author Ronald Brill
  */
 @JsxClass
 public class PerformanceEntry extends SimpleScriptable {
 
+    private String name_ = "";
+    private String entryType_ = "";
+    private double startTime_;
+    private double duration_;
+
     /**
      * Creates an instance.
      */
@@ -36,4 +43,49 @@ public class PerformanceEntry extends SimpleScriptable {
     public PerformanceEntry() {
     }
 
+    /**
+     * Initializes this entry.
+     * @param name the name
+     * @param entryType the type
+     * @param startTime the start time
+     * @param duration the duration
+     */
+    void initialize(final String name, final String entryType, final double startTime, final double duration) {
+        name_ = name;
+        entryType_ = entryType;
+        startTime_ = startTime;
+        duration_ = duration;
+    }
+
+    /**
+     * @return the name
+     */
+    @JsxGetter
+    public String getName() {
+        return name_;
+    }
+
+    /**
+     * @return the entry type
+     */
+    @JsxGetter
+    public String getEntryType() {
+        return entryType_;
+    }
+
+    /**
+     * @return the start time
+     */
+    @JsxGetter
+    public double getStartTime() {
+        return startTime_;
+    }
+
+    /**
+     * @return the duration
+     */
+    @JsxGetter
+    public double getDuration() {
+        return duration_;
+    }
 }
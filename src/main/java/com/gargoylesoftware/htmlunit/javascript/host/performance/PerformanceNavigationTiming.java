@@ -19,6 +19,7 @@ import static com.gargoylesoftware.htmlunit.javascript.configuration.SupportedBr
 
 import com.gargoylesoftware.htmlunit.javascript.configuration.JsxClass;
 import com.gargoylesoftware.htmlunit.javascript.configuration.JsxConstructor;
+import com.gargoylesoftware.htmlunit.javascript.configuration.JsxGetter;
 
 /**
  * A JavaScript object for {@code PerformanceNavigationTiming}.
@@ -35,4 +36,12 @@ public class PerformanceNavigationTiming extends PerformanceResourceTiming {
     @JsxConstructor({CHROME, FF})
     public PerformanceNavigationTiming() {
     }
+
+    /**
+     * @return the navigation type
+     */
+    @JsxGetter
+    public String getType() {
+        return "navigate";
+    }
 }
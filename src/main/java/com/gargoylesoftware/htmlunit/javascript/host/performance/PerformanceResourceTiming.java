@@ -17,17 +17,24 @@ package com.gargoylesoftware.htmlunit.javascript.host.performance;
 import static com.gargoylesoftware.htmlunit.javascript.configuration.SupportedBrowser.CHROME;
 import static com.gargoylesoftware.htmlunit.javascript.configuration.SupportedBrowser.FF;
 
+import com.gargoylesoftware.htmlunit.WebResponseTiming;
 import com.gargoylesoftware.htmlunit.javascript.configuration.JsxClass;
 import com.gargoylesoftware.htmlunit.javascript.configuration.JsxConstructor;
+import com.gargoylesoftware.htmlunit.javascript.configuration.JsxGetter;
 
 /**
  * A JavaScript object for {@code PerformanceResourceTiming}.
  *
  * @author Ahmed Ashour
+ * @author Ronald Brill
  */
 @JsxClass
 public class PerformanceResourceTiming extends PerformanceEntry {
 
+    private WebResponseTiming timing_;
+    private double offset_;
+    private String initiatorType_ = "";
+
     /**
      * Creates an instance.
      */
@@ -35,4 +42,102 @@ public class PerformanceResourceTiming extends PerformanceEntry {
     public PerformanceResourceTiming() {
     }
 
+    /**
+     * Initializes this entry from the network timing of a response.
+     * @param name the name (url)
+     * @param entryType the type
+     * @param initiatorType the initiator type
+     * @param timing the timing
+     * @param timeOrigin the time (milliseconds since the epoch) all values are relative to
+     */
+    void initialize(final String name, final String entryType, final String initiatorType,
+            final WebResponseTiming timing, final long timeOrigin) {
+        offset_ = timing.getStartTime() - timeOrigin;
+        initialize(name, entryType, offset_, timing.getDuration());
+        initiatorType_ = initiatorType;
+        timing_ = timing;
+    }
+
+    /**
+     * @return the initiator type
+     */
+    @JsxGetter
+    public String getInitiatorType() {
+        return initiatorType_;
+    }
+
+    /**
+     * @return the fetchStart
+     */
+    @JsxGetter
+    public double getFetchStart() {
+        return offset_;
+    }
+
+    /**
+     * @return the domainLookupStart
+     */
+    @JsxGetter
+    public double getDomainLookupStart() {
+        return timing_ == null ? 0 : offset_ + timing_.getDomainLookupStart();
+    }
+
+    /**
+     * @return the domainLookupEnd
+     */
+    @JsxGetter
+    public double getDomainLookupEnd() {
+        return timing_ == null ? 0 : offset_ + timing_.getDomainLookupEnd();
+    }
+
+    /**
+     * @return the connectStart
+     */
+    @JsxGetter
+    public double getConnectStart() {
+        return timing_ == null ? 0 : offset_ + timing_.getConnectStart();
+    }
+
+    /**
+     * @return the secureConnectionStart
+     */
+    @JsxGetter
+    public double getSecureConnectionStart() {
+        if (timing_ == null || timing_.getSecureConnectionStart() == 0) {
+            return 0;
+        }
+        return offset_ + timing_.getSecureConnectionStart();
+    }
+
+    /**
+     * @return the connectEnd
+     */
+    @JsxGetter
+    public double getConnectEnd() {
+        return timing_ == null ? 0 : offset_ + timing_.getConnectEnd();
+    }
+
+    /**
+     * @return the requestStart
+     */
+    @JsxGetter
+    public double getRequestStart() {
+        return timing_ == null ? 0 : offset_ + timing_.getRequestStart();
+    }
+
+    /**
+     * @return the responseStart
+     */
+    @JsxGetter
+    public double getResponseStart() {
+        return timing_ == null ? 0 : offset_ + timing_.getResponseStart();
+    }
+
+    /**
+     * @return the responseEnd
+     */
+    @JsxGetter
+    public double getResponseEnd() {
+        return timing_ == null ? 0 : offset_ + timing_.getResponseEnd();
+    }
 }
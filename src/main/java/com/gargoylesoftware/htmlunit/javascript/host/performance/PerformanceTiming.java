@@ -17,6 +17,7 @@ package com.gargoylesoftware.htmlunit.javascript.host.performance;
 import static com.gargoylesoftware.htmlunit.javascript.configuration.SupportedBrowser.CHROME;
 import static com.gargoylesoftware.htmlunit.javascript.configuration.SupportedBrowser.FF;
 
+import com.gargoylesoftware.htmlunit.WebResponseTiming;
 import com.gargoylesoftware.htmlunit.javascript.SimpleScriptable;
 import com.gargoylesoftware.htmlunit.javascript.configuration.JsxClass;
 import com.gargoylesoftware.htmlunit.javascript.configuration.JsxConstructor;
@@ -24,7 +25,8 @@ import com.gargoylesoftware.htmlunit.javascript.configuration.JsxGetter;
 
 /**
  * A JavaScript object for {@code PerformanceTiming}.
- * This implementation is a simple mock for the moment.
+ * The network related values are taken from the {@link WebResponseTiming} of the page
+ * (if available), all the other values are simulated.
  *
  * @author Ahmed Ashour
  * @author Ronald Brill
@@ -79,6 +81,35 @@ public class PerformanceTiming extends SimpleScriptable {
         fetchStart_ = now;
     }
 
+    /**
+     * Creates an instance based on the network timing of the page response.
+     * @param timing the timing
+     */
+    public PerformanceTiming(final WebResponseTiming timing) {
+        final long start = timing.getStartTime();
+
+        domainLookupStart_ = start + Math.round(timing.getDomainLookupStart());
+        domainLookupEnd_ = start + Math.round(timing.getDomainLookupEnd());
+
+        connectStart_ = start + Math.round(timing.getConnectStart());
+        connectEnd_ = start + Math.round(timing.getConnectEnd());
+
+        responseStart_ = start + Math.round(timing.getResponseStart());
+        responseEnd_ = start + Math.round(timing.getResponseEnd());
+
+        // the dom related things are still simulated
+        loadEventStart_ = responseEnd_;
+        loadEventEnd_ = loadEventStart_ + 1L;
+        domLoading_ = responseEnd_;
+        domInteractive_ = responseEnd_;
+        domContentLoadedEventStart_ = responseEnd_;
+        domContentLoadedEventEnd_ = domContentLoadedEventStart_ + 1L;
+        domComplete_ = domContentLoadedEventEnd_;
+
+        navigationStart_ = start;
+        fetchStart_ = start;
+    }
+
     /**
      * @return a domainLookupStart
      */
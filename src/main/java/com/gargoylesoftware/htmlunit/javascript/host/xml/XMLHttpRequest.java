@@ -725,6 +725,9 @@ public class XMLHttpRequest extends XMLHttpRequestEventTarget {
                 }
             }
             final WebResponse webResponse = wc.loadWebResponse(webRequest_);
+            if (containingPage_ != null) {
+                containingPage_.addResourceResponse(webResponse, "xmlhttprequest");
+            }
             if (LOG.isDebugEnabled()) {
                 LOG.debug("Web response loaded successfully.");
             }
@@ -27,6 +27,7 @@ import com.gargoylesoftware.htmlunit.SgmlPage;
 import com.gargoylesoftware.htmlunit.html.DomAttr;
 import com.gargoylesoftware.htmlunit.html.DomElement;
 import com.gargoylesoftware.htmlunit.html.ElementFactory;
+import com.gargoylesoftware.htmlunit.util.StringInterner;
 
 /**
  * Element factory which creates elements by calling the constructor on a
@@ -127,14 +128,15 @@ public class SvgElementFactory implements ElementFactory {
         if (attributes != null) {
             attributeMap = new LinkedHashMap<>(attributes.getLength());
             for (int i = 0; i < attributes.getLength(); i++) {
-                final String qName = attributes.getQName(i);
+                final String qName = StringInterner.internName(attributes.getQName(i));
                 // browsers consider only first attribute (ex: <div id='foo' id='something'>...</div>)
                 if (!attributeMap.containsKey(qName)) {
                     String namespaceURI = attributes.getURI(i);
                     if (namespaceURI != null && namespaceURI.isEmpty()) {
                         namespaceURI = null;
                     }
-                    final DomAttr newAttr = new DomAttr(page, namespaceURI, qName, attributes.getValue(i), true);
+                    final DomAttr newAttr = new DomAttr(page, StringInterner.internName(namespaceURI), qName,
+                            StringInterner.internValue(attributes.getValue(i)), true);
                     attributeMap.put(qName, newAttr);
                 }
             }
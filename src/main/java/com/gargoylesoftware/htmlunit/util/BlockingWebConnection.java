@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.net.URL;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.WebConnection;
+import com.gargoylesoftware.htmlunit.WebRequest;
+import com.gargoylesoftware.htmlunit.WebResponse;
+
+/**
+ * Extension of {@link FalsifyingWebConnection} that answers all requests matching a
+ * blocklist with an empty response instead of asking the wrapped connection.
+ * <p>
+ * The blocklist uses the (basic) syntax of the EasyList/Adblock Plus filter lists:
+ * <ul>
+ *   <li>{@code ||example.com^} blocks the host and all its subdomains</li>
+ *   <li>{@code |http://example.com/ads} matches at the start of the address,
+ *       a trailing {@code |} at the end of the address</li>
+ *   <li>{@code /banner/*.gif} matches anywhere in the address; {@code *} is a wildcard,
+ *       {@code ^} a separator char (anything but a letter, a digit or one of {@code _-.%})</li>
+ *   <li>{@code @@} marks an exception rule; requests matching an exception are never blocked</li>
+ *   <li>lines starting with {@code !} or {@code [} are comments</li>
+ * </ul>
+ * Element hiding rules ({@code ##}), regular expression rules ({@code /.../}) and rules with
+ * options ({@code $...}) are ignored. Matching is case insensitive.
+ * <p>
+ * The rules are compiled into a host index and an Aho-Corasick automaton, the time
+ * to check a request depends on the length of the URL but not on the number of rules.
+ *
+ * @author Ronald Brill
+ */
+public class BlockingWebConnection extends FalsifyingWebConnection {
+
+    private final UrlRuleSet blockingRules_ = new UrlRuleSet();
+    private final UrlRuleSet exceptionRules_ = new UrlRuleSet();
+    private final AtomicLong blockedCount_ = new AtomicLong();
+
+    /**
+     * Constructs a WebConnection object wrapping provided WebConnection.
+     * @param webConnection the webConnection that does the real work
+     * @throws IllegalArgumentException if the connection is {@code null}
+     */
+    public BlockingWebConnection(final WebConnection webConnection) throws IllegalArgumentException {
+        super(webConnection);
+    }
+
+    /**
+     * Constructs an instance and places itself as connection of the WebClient.
+     * @param webClient the WebClient which WebConnection should be wrapped
+     * @throws IllegalArgumentException if the WebClient is {@code null}
+     */
+    public BlockingWebConnection(final WebClient webClient) throws IllegalArgumentException {
+        super(webClient);
+    }
+
+    /**
+     * Adds a rule.
+     * @param rule the rule
+     * @return true if the rule was added, false if the rule is a comment or not supported
+     */
+    public boolean addRule(final String rule) {
+        if (rule == null) {
+            return false;
+        }
+        String text = rule.trim();
+        if (text.isEmpty() || text.charAt(0) == '!' || text.charAt(0) == '['
+                || text.contains("##") || text.contains("#@#") || text.contains("#?#")) {
+            return false;
+        }
+
+        boolean exception = false;
+        if (text.startsWith("@@")) {
+            exception = true;
+            text = text.substring(2);
+        }
+        if (text.length() > 1 && text.charAt(0) == '/' && text.charAt(text.length() - 1) == '/') {
+            // regular expression
+            return false;
+        }
+        if (text.indexOf('$') > -1) {
+            // options are not supported
+            return false;
+        }
+
+        if (exception) {
+            return exceptionRules_.add(text);
+        }
+        return blockingRules_.add(text);
+    }
+
+    /**
+     * Adds all rules from the given filter list (one rule per line).
+     * @param reader the reader to read the list from
+     * @return the number of added rules
+     * @throws IOException in case of error reading the list
+     */
+    public int addRules(final Reader reader) throws IOException {
+        final BufferedReader bufferedReader = reader instanceof BufferedReader
+                ? (BufferedReader) reader : new BufferedReader(reader);
+        int count = 0;
+        String line;
+        while ((line = bufferedReader.readLine()) != null) {
+            if (addRule(line)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of active rules (blocking rules and exceptions).
+     * @return the number of rules
+     */
+    public int getRuleCount() {
+        return blockingRules_.size() + exceptionRules_.size();
+    }
+
+    /**
+     * Returns the number of requests blocked so far.
+     * @return the number of blocked requests
+     */
+    public long getBlockedCount() {
+        return blockedCount_.get();
+    }
+
+    /**
+     * Returns whether requests to the given URL are blocked.
+     * @param url the URL to check
+     * @return true if blocked
+     */
+    public boolean isBlocked(final URL url) {
+        final String address = url.toExternalForm().toLowerCase(Locale.ROOT);
+
+        int hostStart = address.indexOf("://");
+        int hostEnd = -1;
+        if (hostStart > -1) {
+            hostStart += 3;
+            final String host = url.getHost();
+            if (host != null && !host.isEmpty()) {
+                hostStart = address.indexOf(host.toLowerCase(Locale.ROOT), hostStart);
+                if (hostStart > -1) {
+                    hostEnd = hostStart + host.length();
+                }
+            }
+        }
+        if (hostEnd < 0) {
+            hostStart = 0;
+            hostEnd = 0;
+        }
+
+        return blockingRules_.matches(address, hostStart, hostEnd)
+                && !exceptionRules_.matches(address, hostStart, hostEnd);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Blocked requests are answered by {@link #createBlockedResponse(WebRequest)}.
+     */
+    @Override
+    public WebResponse getResponse(final WebRequest request) throws IOException {
+        if (isBlocked(request.getUrl())) {
+            blockedCount_.incrementAndGet();
+            return createBlockedResponse(request);
+        }
+        return super.getResponse(request);
+    }
+
+    /**
+     * Creates the response for a blocked request. The default is an empty text response;
+     * subclasses may override.
+     * @param request the blocked request
+     * @return the response
+     * @throws IOException if an encoding problem occurred
+     */
+    protected WebResponse createBlockedResponse(final WebRequest request) throws IOException {
+        return createWebResponse(request, "", MimeType.TEXT_PLAIN);
+    }
+}
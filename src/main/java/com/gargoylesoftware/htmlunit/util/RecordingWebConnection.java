@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.util;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+
+import com.gargoylesoftware.htmlunit.HttpHeader;
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.WebConnection;
+import com.gargoylesoftware.htmlunit.WebRequest;
+import com.gargoylesoftware.htmlunit.WebResponse;
+
+/**
+ * Wrapper around a "real" WebConnection that uses the wrapped web connection
+ * to do the real job and records all received responses into an archive file.
+ * The archive can be replayed using a {@link ReplayWebConnection} (e.g. to run
+ * performance tests without any network) or exported as HAR file.<br>
+ * <br>
+ * Example:
+ * <pre>
+ * final WebClient client = new WebClient();
+ * try (RecordingWebConnection connection = new RecordingWebConnection(client, new File("site.huar"))) {
+ *     client.getPage("http://www.htmlunit.org/");
+ * }
+ * </pre>
+ * The responses are looked up by http method, URL and request body; if the same request
+ * is done more than once, the last response wins. The archive is only usable
+ * after the connection was closed.
+ *
+ * @author Ronald Brill
+ */
+public class RecordingWebConnection extends WebConnectionWrapper {
+
+    private final File file_;
+    private final DataOutputStream out_;
+    private final Map<String, long[]> index_ = new LinkedHashMap<>();
+    private boolean closed_;
+
+    /**
+     * Wraps a web connection to record the received responses.
+     * @param webConnection the webConnection that does the real work
+     * @param file the archive file to write; an existing file will be overwritten
+     * @throws IOException in case of problems writing the file
+     */
+    public RecordingWebConnection(final WebConnection webConnection, final File file) throws IOException {
+        super(webConnection);
+        file_ = file;
+        out_ = open(file);
+    }
+
+    /**
+     * Constructs an instance and places itself as connection of the WebClient.
+     * @param webClient the WebClient which WebConnection should be wrapped
+     * @param file the archive file to write; an existing file will be overwritten
+     * @throws IOException in case of problems writing the file
+     */
+    public RecordingWebConnection(final WebClient webClient, final File file) throws IOException {
+        super(webClient);
+        file_ = file;
+        out_ = open(file);
+    }
+
+    private static DataOutputStream open(final File file) throws IOException {
+        final DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file.toPath())));
+        out.writeInt(WebArchive.MAGIC);
+        out.writeInt(WebArchive.VERSION);
+        return out;
+    }
+
+    /**
+     * Returns the archive file.
+     * @return the file
+     */
+    public File getFile() {
+        return file_;
+    }
+
+    /**
+     * Returns the number of different requests recorded so far.
+     * @return the number of entries
+     */
+    public synchronized int getEntryCount() {
+        return index_.size();
+    }
+
+    /**
+     * Calls the wrapped webconnection and records the received response.
+     * {@inheritDoc}
+     */
+    @Override
+    public WebResponse getResponse(final WebRequest request) throws IOException {
+        final long startTime = System.currentTimeMillis();
+        final WebResponse response = super.getResponse(request);
+
+        final byte[] body;
+        try (InputStream in = response.getContentAsStream()) {
+            body = IOUtils.toByteArray(in);
+        }
+
+        // the body is already decoded, the length has to match the stored body
+        final List<NameValuePair> headers = new ArrayList<>(response.getResponseHeaders());
+        final boolean hadLength =
+                headers.removeIf(header -> HttpHeader.CONTENT_LENGTH.equalsIgnoreCase(header.getName()));
+        headers.removeIf(header -> "content-encoding".equalsIgnoreCase(header.getName())
+                || "transfer-encoding".equalsIgnoreCase(header.getName()));
+        if (hadLength) {
+            headers.add(new NameValuePair(HttpHeader.CONTENT_LENGTH, Integer.toString(body.length)));
+        }
+
+        final String method = request.getHttpMethod().name();
+        final String url = WebArchive.normalizeUrl(request.getUrl());
+        final long bodyHash = WebArchive.bodyHash(request);
+
+        synchronized (this) {
+            if (closed_) {
+                throw new IOException("RecordingWebConnection already closed");
+            }
+
+            final long offset = out_.size();
+            writeString(method);
+            writeString(url);
+            out_.writeLong(bodyHash);
+            out_.writeLong(startTime);
+            out_.writeLong(response.getLoadTime());
+            writeString(request.getAdditionalHeader(HttpHeader.CONTENT_TYPE));
+            writeString(request.getRequestBody());
+            out_.writeInt(response.getStatusCode());
+            writeString(response.getStatusMessage());
+            out_.writeInt(headers.size());
+            for (final NameValuePair header : headers) {
+                writeString(header.getName());
+                writeString(header.getValue());
+            }
+            out_.writeInt(body.length);
+            out_.write(body);
+
+            if (out_.size() == Integer.MAX_VALUE) {
+                throw new IOException("Archive " + file_ + " exceeds the maximum size of 2GB");
+            }
+
+            final long keyHash = WebArchive.keyHash(method, url, bodyHash);
+            index_.put(method + ' ' + url + ' ' + bodyHash, new long[] {keyHash, offset});
+        }
+
+        return response;
+    }
+
+    private void writeString(final String value) throws IOException {
+        if (value == null) {
+            out_.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = value.getBytes(UTF_8);
+        out_.writeInt(bytes.length);
+        out_.write(bytes);
+    }
+
+    /**
+     * Writes the index, closes the archive and the wrapped connection.
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (!closed_) {
+                closed_ = true;
+                try {
+                    writeIndex();
+                }
+                finally {
+                    out_.close();
+                }
+            }
+        }
+        super.close();
+    }
+
+    private void writeIndex() throws IOException {
+        final int slotCount = WebArchive.slotCount(index_.size());
+        final long[] slots = new long[slotCount * 2];
+        final int mask = slotCount - 1;
+        for (final long[] entry : index_.values()) {
+            int slot = (int) entry[0] & mask;
+            while (slots[slot * 2 + 1] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot * 2] = entry[0];
+            slots[slot * 2 + 1] = entry[1];
+        }
+
+        final long indexOffset = out_.size();
+        out_.writeInt(slotCount);
+        for (final long value : slots) {
+            out_.writeLong(value);
+        }
+        out_.writeLong(indexOffset);
+        out_.writeInt(index_.size());
+        out_.writeInt(WebArchive.MAGIC);
+    }
+}
@@ -0,0 +1,466 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.util;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.gargoylesoftware.htmlunit.HttpHeader;
+import com.gargoylesoftware.htmlunit.WebConnection;
+import com.gargoylesoftware.htmlunit.WebRequest;
+import com.gargoylesoftware.htmlunit.WebResponse;
+import com.gargoylesoftware.htmlunit.WebResponseData;
+
+/**
+ * A {@link WebConnection} serving the responses from an archive written by a
+ * {@link RecordingWebConnection}; no network access is done at all.<br>
+ * <br>
+ * Example:
+ * <pre>
+ * final WebClient client = new WebClient();
+ * client.setWebConnection(new ReplayWebConnection(new File("site.huar")));
+ * client.getPage("http://www.htmlunit.org/");
+ * </pre>
+ * The archive is memory mapped and the responses are found by http method, URL and
+ * request body using the hash index of the archive, the lookup time does not depend
+ * on the number of recorded responses. Requests not found in the archive are passed to
+ * the fallback connection (if any) or answered with a 404 response.
+ * <p>
+ * This class is thread safe; because of the memory mapping the archive size is limited to 2GB.
+ * The mapping is released by {@link #close()}.
+ *
+ * @author Ronald Brill
+ */
+public class ReplayWebConnection implements WebConnection {
+
+    private static final Log LOG = LogFactory.getLog(ReplayWebConnection.class);
+
+    private final ByteBuffer buffer_;
+    /** Guards the mapping; the buffer must not be accessed after it was unmapped. */
+    private final ReadWriteLock lock_ = new ReentrantReadWriteLock();
+    private boolean closed_;
+    private final int indexOffset_;
+    private final int slotCount_;
+    private final int entryCount_;
+    private final WebConnection fallback_;
+
+    private final AtomicLong hitCount_ = new AtomicLong();
+    private final AtomicLong missCount_ = new AtomicLong();
+
+    /**
+     * Creates a new instance; requests not found in the archive are answered with a 404 response.
+     * @param file the archive
+     * @throws IOException in case of problems reading the archive
+     */
+    public ReplayWebConnection(final File file) throws IOException {
+        this(file, null);
+    }
+
+    /**
+     * Creates a new instance.
+     * @param file the archive
+     * @param fallback the connection used for requests not found in the archive; may be {@code null}
+     * @throws IOException in case of problems reading the archive
+     */
+    public ReplayWebConnection(final File file, final WebConnection fallback) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size < WebArchive.HEADER_SIZE + WebArchive.TRAILER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Invalid archive size " + size + " of " + file);
+            }
+            buffer_ = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        final int trailer = buffer_.limit() - WebArchive.TRAILER_SIZE;
+        if (buffer_.getInt(0) != WebArchive.MAGIC || buffer_.getInt(trailer + 12) != WebArchive.MAGIC) {
+            throw new IOException("File " + file + " is not a (completely written) archive");
+        }
+        if (buffer_.getInt(4) != WebArchive.VERSION) {
+            throw new IOException("Unsupported archive version " + buffer_.getInt(4) + " of " + file);
+        }
+
+        indexOffset_ = (int) buffer_.getLong(trailer);
+        entryCount_ = buffer_.getInt(trailer + 8);
+        slotCount_ = buffer_.getInt(indexOffset_);
+        fallback_ = fallback;
+    }
+
+    /**
+     * Returns the number of different requests in the archive.
+     * @return the number of entries
+     */
+    public int getEntryCount() {
+        return entryCount_;
+    }
+
+    /**
+     * Returns the number of requests answered from the archive.
+     * @return the number of hits
+     */
+    public long getHitCount() {
+        return hitCount_.get();
+    }
+
+    /**
+     * Returns the number of requests not found in the archive.
+     * @return the number of misses
+     */
+    public long getMissCount() {
+        return missCount_.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public WebResponse getResponse(final WebRequest request) throws IOException {
+        final Entry entry;
+        lock_.readLock().lock();
+        try {
+            checkNotClosed();
+            entry = lookup(request);
+        }
+        finally {
+            lock_.readLock().unlock();
+        }
+        if (entry != null) {
+            hitCount_.incrementAndGet();
+            final WebResponseData data = new WebResponseData(entry.body_, entry.status_,
+                    entry.statusMessage_, entry.headers_);
+            return new WebResponse(data, request, entry.loadTime_);
+        }
+
+        missCount_.incrementAndGet();
+        if (fallback_ != null) {
+            return fallback_.getResponse(request);
+        }
+        final WebResponseData data = new WebResponseData(new byte[0], 404, "Not Found",
+                Collections.<NameValuePair>emptyList());
+        return new WebResponse(data, request, 0);
+    }
+
+    private void checkNotClosed() throws IOException {
+        if (closed_) {
+            throw new IOException("ReplayWebConnection already closed");
+        }
+    }
+
+    private Entry lookup(final WebRequest request) {
+        final String method = request.getHttpMethod().name();
+        final String url = WebArchive.normalizeUrl(request.getUrl());
+        final long bodyHash = WebArchive.bodyHash(request);
+        final long keyHash = WebArchive.keyHash(method, url, bodyHash);
+
+        final ByteBuffer buffer = buffer_.duplicate();
+        final int mask = slotCount_ - 1;
+        int slot = (int) keyHash & mask;
+        while (true) {
+            final int slotPosition = indexOffset_ + 4 + slot * WebArchive.SLOT_SIZE;
+            final int offset = (int) buffer.getLong(slotPosition + 8);
+            if (offset == 0) {
+                return null;
+            }
+            if (buffer.getLong(slotPosition) == keyHash) {
+                buffer.position(offset);
+                final Entry entry = Entry.read(buffer);
+                if (entry.bodyHash_ == bodyHash && entry.method_.equals(method) && entry.url_.equals(url)) {
+                    return entry;
+                }
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Writes all responses of the archive in the HTTP Archive (HAR 1.2) format. Like the replay
+     * the export contains only the last response of requests recorded more than once.
+     * @param writer the writer to write to
+     * @throws IOException in case of problems writing
+     */
+    public void exportHar(final Writer writer) throws IOException {
+        writer.write("{\"log\":{\"version\":\"1.2\",\"creator\":{\"name\":\"HtmlUnit\",\"version\":\"\"},"
+                + "\"entries\":[");
+
+        lock_.readLock().lock();
+        try {
+            checkNotClosed();
+            final long[] indexedOffsets = indexedOffsets();
+            final ByteBuffer buffer = buffer_.duplicate();
+            buffer.position(WebArchive.HEADER_SIZE);
+            boolean first = true;
+            while (buffer.position() < indexOffset_) {
+                final int offset = buffer.position();
+                final Entry entry = Entry.read(buffer);
+                if (Arrays.binarySearch(indexedOffsets, offset) < 0) {
+                    // replaced by a later record of the same request
+                    continue;
+                }
+                if (!first) {
+                    writer.write(',');
+                }
+                first = false;
+                writeHarEntry(writer, entry);
+            }
+        }
+        finally {
+            lock_.readLock().unlock();
+        }
+        writer.write("]}}");
+        writer.flush();
+    }
+
+    /**
+     * Returns the offsets of the records referenced by the index, sorted.
+     * @return the offsets
+     */
+    private long[] indexedOffsets() {
+        final long[] offsets = new long[entryCount_];
+        int count = 0;
+        for (int slot = 0; slot < slotCount_; slot++) {
+            final long offset = buffer_.getLong(indexOffset_ + 4 + slot * WebArchive.SLOT_SIZE + 8);
+            if (offset != 0) {
+                offsets[count++] = offset;
+            }
+        }
+        Arrays.sort(offsets, 0, count);
+        return count == offsets.length ? offsets : Arrays.copyOf(offsets, count);
+    }
+
+    private static void writeHarEntry(final Writer writer, final Entry entry) throws IOException {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("{\"startedDateTime\":");
+        appendJsonString(builder, Instant.ofEpochMilli(entry.startTime_).toString());
+        builder.append(",\"time\":").append(entry.loadTime_);
+
+        builder.append(",\"request\":{\"method\":");
+        appendJsonString(builder, entry.method_);
+        builder.append(",\"url\":");
+        appendJsonString(builder, entry.url_);
+        builder.append(",\"httpVersion\":\"HTTP/1.1\",\"cookies\":[],\"headers\":[],\"queryString\":[]");
+        if (entry.requestBody_ != null) {
+            builder.append(",\"postData\":{\"mimeType\":");
+            appendJsonString(builder, entry.requestContentType_ == null ? "" : entry.requestContentType_);
+            builder.append(",\"text\":");
+            appendJsonString(builder, entry.requestBody_);
+            builder.append('}');
+        }
+        builder.append(",\"headersSize\":-1,\"bodySize\":")
+            .append(entry.requestBody_ == null ? 0 : entry.requestBody_.getBytes(UTF_8).length)
+            .append('}');
+
+        String contentType = "";
+        builder.append(",\"response\":{\"status\":").append(entry.status_).append(",\"statusText\":");
+        appendJsonString(builder, entry.statusMessage_ == null ? "" : entry.statusMessage_);
+        builder.append(",\"httpVersion\":\"HTTP/1.1\",\"cookies\":[],\"headers\":[");
+        for (int i = 0; i < entry.headers_.size(); i++) {
+            final NameValuePair header = entry.headers_.get(i);
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append("{\"name\":");
+            appendJsonString(builder, header.getName());
+            builder.append(",\"value\":");
+            appendJsonString(builder, header.getValue());
+            builder.append('}');
+            if (HttpHeader.CONTENT_TYPE.equalsIgnoreCase(header.getName())) {
+                contentType = header.getValue();
+            }
+        }
+        builder.append("],\"content\":{\"size\":").append(entry.body_.length).append(",\"mimeType\":");
+        appendJsonString(builder, contentType);
+        builder.append(",\"text\":");
+        if (isText(contentType)) {
+            Charset charset = EncodingSniffer.sniffEncodingFromHttpHeaders(entry.headers_);
+            if (charset == null) {
+                charset = UTF_8;
+            }
+            appendJsonString(builder, new String(entry.body_, charset));
+        }
+        else {
+            appendJsonString(builder, Base64.getEncoder().encodeToString(entry.body_));
+            builder.append(",\"encoding\":\"base64\"");
+        }
+        builder.append("},\"redirectURL\":\"\",\"headersSize\":-1,\"bodySize\":")
+            .append(entry.body_.length).append('}');
+
+        builder.append(",\"cache\":{},\"timings\":{\"send\":0,\"wait\":")
+            .append(entry.loadTime_).append(",\"receive\":0}}");
+        writer.write(builder.toString());
+    }
+
+    private static boolean isText(final String contentType) {
+        final String lower = contentType.toLowerCase(Locale.ROOT);
+        return lower.startsWith("text/")
+                || lower.contains("javascript")
+                || lower.contains("json")
+                || lower.contains("xml");
+    }
+
+    private static void appendJsonString(final StringBuilder builder, final String value) {
+        builder.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        builder.append(String.format("\\u%04x", (int) c));
+                    }
+                    else {
+                        builder.append(c);
+                    }
+            }
+        }
+        builder.append('"');
+    }
+
+    /**
+     * Releases the mapping of the archive and closes the fallback connection.
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        lock_.writeLock().lock();
+        try {
+            if (!closed_) {
+                closed_ = true;
+                unmap(buffer_);
+            }
+        }
+        finally {
+            lock_.writeLock().unlock();
+        }
+
+        if (fallback_ != null) {
+            fallback_.close();
+        }
+    }
+
+    /**
+     * Releases the mapping right now instead of waiting for the garbage collector; otherwise
+     * the file stays open (and can't be deleted on Windows).
+     * @param buffer the mapped buffer
+     */
+    private static void unmap(final ByteBuffer buffer) {
+        try {
+            try {
+                // Java 9 and later
+                final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                final Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                final Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            }
+            catch (final NoSuchMethodException e) {
+                // Java 8
+                final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                final Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            }
+        }
+        catch (final ReflectiveOperationException | RuntimeException e) {
+            LOG.debug("Unable to unmap the archive, the mapping is released by the garbage collector", e);
+        }
+    }
+
+    /**
+     * A single record of the archive.
+     */
+    private static final class Entry {
+        private String method_;
+        private String url_;
+        private long bodyHash_;
+        private long startTime_;
+        private long loadTime_;
+        private String requestContentType_;
+        private String requestBody_;
+        private int status_;
+        private String statusMessage_;
+        private List<NameValuePair> headers_;
+        private byte[] body_;
+
+        static Entry read(final ByteBuffer buffer) {
+            final Entry entry = new Entry();
+            entry.method_ = readString(buffer);
+            entry.url_ = readString(buffer);
+            entry.bodyHash_ = buffer.getLong();
+            entry.startTime_ = buffer.getLong();
+            entry.loadTime_ = buffer.getLong();
+            entry.requestContentType_ = readString(buffer);
+            entry.requestBody_ = readString(buffer);
+            entry.status_ = buffer.getInt();
+            entry.statusMessage_ = readString(buffer);
+
+            final int headerCount = buffer.getInt();
+            entry.headers_ = new ArrayList<>(headerCount);
+            for (int i = 0; i < headerCount; i++) {
+                entry.headers_.add(new NameValuePair(readString(buffer), readString(buffer)));
+            }
+
+            entry.body_ = new byte[buffer.getInt()];
+            buffer.get(entry.body_);
+            return entry;
+        }
+
+        private static String readString(final ByteBuffer buffer) {
+            final int length = buffer.getInt();
+            if (length < 0) {
+                return null;
+            }
+            final byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            return new String(bytes, UTF_8);
+        }
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.util;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import com.gargoylesoftware.htmlunit.HttpHeader;
+import com.gargoylesoftware.htmlunit.MockWebConnection;
+import com.gargoylesoftware.htmlunit.WebConnection;
+import com.gargoylesoftware.htmlunit.WebRequest;
+import com.gargoylesoftware.htmlunit.WebResponse;
+import com.gargoylesoftware.htmlunit.WebResponseData;
+
+/**
+ * A fake {@link WebConnection} for benchmarks and long running tests.
+ * <p>
+ * In contrast to {@link MockWebConnection}
+ * <ul>
+ *   <li>the responses are routed by exact URL, by URL prefix (the longest prefix wins)
+ *       or by regular expression (the first added pattern wins)</li>
+ *   <li>the {@link WebResponseData} of a route is created once and shared by all responses</li>
+ *   <li>the requests are only counted; keeping the last requests is optional and
+ *       limited by {@link #setRequestHistorySize(int)}</li>
+ *   <li>the class is thread safe</li>
+ * </ul>
+ * Example:
+ * <pre>
+ * final RoutingWebConnection connection = new RoutingWebConnection();
+ * connection.addRoute(new URL("http://localhost/"), RoutingWebConnection.createResponseData(html, "text/html"));
+ * connection.addPrefixRoute("http://localhost/img/", RoutingWebConnection.createResponseData(png, 200, "OK",
+ *         "image/png", null));
+ * webClient.setWebConnection(connection);
+ * </pre>
+ *
+ * @author Ronald Brill
+ */
+public class RoutingWebConnection implements WebConnection {
+
+    private final Map<String, WebResponseData> exactRoutes_ = new ConcurrentHashMap<>();
+    private final Map<String, WebResponseData> prefixRoutes_ = new ConcurrentHashMap<>();
+    private final NavigableSet<Integer> prefixLengths_ = new ConcurrentSkipListSet<>(Collections.reverseOrder());
+    private final List<PatternRoute> patternRoutes_ = new CopyOnWriteArrayList<>();
+    private volatile WebResponseData defaultResponse_;
+
+    private final AtomicLong requestCount_ = new AtomicLong();
+    private volatile WebRequest[] history_;
+    private int historyNext_;
+    private int historyCount_;
+
+    /**
+     * Creates the data for a response with status 200 and the given text content encoded as UTF-8.
+     * @param content the content
+     * @param contentType the content type (without charset)
+     * @return the response data
+     */
+    public static WebResponseData createResponseData(final String content, final String contentType) {
+        return createResponseData(content.getBytes(UTF_8), 200, "OK", contentType + ";charset=UTF-8", null);
+    }
+
+    /**
+     * Creates the data for a response.
+     * @param content the content
+     * @param statusCode the status code
+     * @param statusMessage the status message
+     * @param contentType the content type; may be {@code null}
+     * @param headers additional response headers; may be {@code null}
+     * @return the response data
+     */
+    public static WebResponseData createResponseData(final byte[] content, final int statusCode,
+            final String statusMessage, final String contentType, final List<NameValuePair> headers) {
+        final List<NameValuePair> compiledHeaders = new ArrayList<>();
+        if (headers != null) {
+            compiledHeaders.addAll(headers);
+        }
+        if (contentType != null) {
+            compiledHeaders.add(new NameValuePair(HttpHeader.CONTENT_TYPE, contentType));
+        }
+        return new WebResponseData(content, statusCode, statusMessage,
+                Collections.unmodifiableList(compiledHeaders));
+    }
+
+    /**
+     * Adds a route for the given URL; if there is no route for the URL including the query,
+     * the URL without the query is tried.
+     * @param url the url
+     * @param responseData the response data; must not be backed by a file as it is shared
+     */
+    public void addRoute(final URL url, final WebResponseData responseData) {
+        exactRoutes_.put(url.toExternalForm(), responseData);
+    }
+
+    /**
+     * Adds a route for all URLs starting with the given prefix.
+     * @param prefix the prefix
+     * @param responseData the response data; must not be backed by a file as it is shared
+     */
+    public void addPrefixRoute(final String prefix, final WebResponseData responseData) {
+        prefixRoutes_.put(prefix, responseData);
+        prefixLengths_.add(prefix.length());
+    }
+
+    /**
+     * Adds a route for all URLs matching the given pattern.
+     * @param pattern the pattern the whole URL has to match
+     * @param responseData the response data; must not be backed by a file as it is shared
+     */
+    public void addPatternRoute(final Pattern pattern, final WebResponseData responseData) {
+        patternRoutes_.add(new PatternRoute(pattern, responseData));
+    }
+
+    /**
+     * Sets the response used for all requests without a route.
+     * @param responseData the response data; {@code null} to throw an exception for unknown URLs
+     */
+    public void setDefaultResponse(final WebResponseData responseData) {
+        defaultResponse_ = responseData;
+    }
+
+    /**
+     * Sets the number of requests to keep in the history; older requests are dropped.
+     * The default is 0, no history at all.
+     * @param size the size
+     */
+    public synchronized void setRequestHistorySize(final int size) {
+        if (size <= 0) {
+            history_ = null;
+        }
+        else {
+            history_ = new WebRequest[size];
+        }
+        historyNext_ = 0;
+        historyCount_ = 0;
+    }
+
+    /**
+     * Returns the requests in the history, the oldest first.
+     * @return the requests
+     */
+    public synchronized List<WebRequest> getRequestHistory() {
+        final List<WebRequest> requests = new ArrayList<>(historyCount_);
+        if (history_ != null) {
+            int idx = historyNext_ - historyCount_;
+            if (idx < 0) {
+                idx += history_.length;
+            }
+            for (int i = 0; i < historyCount_; i++) {
+                requests.add(history_[idx]);
+                idx = (idx + 1) % history_.length;
+            }
+        }
+        return requests;
+    }
+
+    /**
+     * Returns the number of requests done so far.
+     * @return the number of requests
+     */
+    public long getRequestCount() {
+        return requestCount_.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public WebResponse getResponse(final WebRequest request) {
+        requestCount_.incrementAndGet();
+        if (history_ != null) {
+            record(request);
+        }
+
+        final String url = request.getUrl().toExternalForm();
+        final WebResponseData responseData = route(url);
+        if (responseData == null) {
+            throw new IllegalStateException("No response specified that can handle URL [" + url + "]");
+        }
+        return new WebResponse(responseData, request, 0);
+    }
+
+    private synchronized void record(final WebRequest request) {
+        if (history_ == null) {
+            return;
+        }
+        history_[historyNext_] = request;
+        historyNext_ = (historyNext_ + 1) % history_.length;
+        if (historyCount_ < history_.length) {
+            historyCount_++;
+        }
+    }
+
+    private WebResponseData route(final String url) {
+        WebResponseData responseData = exactRoutes_.get(url);
+        if (responseData != null) {
+            return responseData;
+        }
+        final int queryStart = url.indexOf('?');
+        if (queryStart > -1) {
+            responseData = exactRoutes_.get(url.substring(0, queryStart));
+            if (responseData != null) {
+                return responseData;
+            }
+        }
+
+        for (final int length : prefixLengths_.tailSet(url.length(), true)) {
+            responseData = prefixRoutes_.get(url.substring(0, length));
+            if (responseData != null) {
+                return responseData;
+            }
+        }
+
+        for (final PatternRoute route : patternRoutes_) {
+            if (route.pattern_.matcher(url).matches()) {
+                return route.responseData_;
+            }
+        }
+
+        return defaultResponse_;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        // nothing to do
+    }
+
+    /**
+     * A route based on a regular expression.
+     */
+    private static final class PatternRoute {
+        private final Pattern pattern_;
+        private final WebResponseData responseData_;
+
+        PatternRoute(final Pattern pattern, final WebResponseData responseData) {
+            pattern_ = pattern;
+            responseData_ = responseData;
+        }
+    }
+}
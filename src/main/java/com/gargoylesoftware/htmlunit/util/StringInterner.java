@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.util;
+
+/**
+ * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
+ *
+ * A bounded intern table shared by all pages, used for element names, attribute names
+ * and short attribute values to avoid keeping thousands of equal strings in the DOM.
+ * <p>
+ * The table is a fixed size, direct mapped cache: a string replaces the previous entry
+ * of its slot. It never grows, needs no locking and the strings are not held forever
+ * (unlike {@link String#intern()}). Racing threads may store different but equal
+ * instances, this only reduces the hit rate.
+ *
+ * @author Ronald Brill
+ */
+public final class StringInterner {
+
+    /** The maximum length of interned names. */
+    static final int MAX_NAME_LENGTH = 64;
+    /** The maximum length of interned values. */
+    static final int MAX_VALUE_LENGTH = 32;
+
+    private static final int TABLE_SIZE = 1 << 13;
+    private static final int MASK = TABLE_SIZE - 1;
+
+    private static final String[] TABLE = new String[TABLE_SIZE];
+
+    private StringInterner() {
+    }
+
+    /**
+     * Returns a shared instance of the given element or attribute name.
+     * @param name the name; may be {@code null}
+     * @return the shared instance or the name itself
+     */
+    public static String internName(final String name) {
+        return intern(name, MAX_NAME_LENGTH);
+    }
+
+    /**
+     * Returns a shared instance of the given value if it is short enough to be
+     * repeated frequently (like {@code class}, {@code type} or {@code rel} values).
+     * @param value the value; may be {@code null}
+     * @return the shared instance or the value itself
+     */
+    public static String internValue(final String value) {
+        return intern(value, MAX_VALUE_LENGTH);
+    }
+
+    private static String intern(final String string, final int maxLength) {
+        if (string == null) {
+            return null;
+        }
+        final int length = string.length();
+        if (length == 0) {
+            return "";
+        }
+        if (length > maxLength) {
+            return string;
+        }
+
+        final int hash = string.hashCode();
+        final int index = (hash ^ (hash >>> 16)) & MASK;
+        final String cached = TABLE[index];
+        if (cached != null && (cached == string || cached.equals(string))) {
+            return cached;
+        }
+        TABLE[index] = string;
+        return string;
+    }
+}
@@ -0,0 +1,410 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * A set of EasyList-style URL filter rules compiled for fast matching.
+ * <p>
+ * Rules anchored to a host ({@code ||example.com^}) are stored in a map keyed by
+ * the host and are found by looking up every domain suffix of the URL host.
+ * All other rules are indexed by their longest literal part in an Aho-Corasick automaton;
+ * only the rules whose literal occurs in the URL are verified. Matching a URL
+ * is therefore linear in the URL length and (nearly) independent of the number of rules.
+ *
+ * @author Ronald Brill
+ */
+final class UrlRuleSet {
+
+    private static final char WILDCARD = '*';
+    private static final char SEPARATOR = '^';
+
+    private final List<Rule> rules_ = new ArrayList<>();
+
+    private Map<String, List<Rule>> hostRules_;
+    private Node root_;
+
+    /**
+     * Adds a rule; the rule must already be stripped from the exception marker and the options.
+     * @param rule the rule text
+     * @return true if the rule was accepted
+     */
+    synchronized boolean add(final String rule) {
+        final Rule parsed = Rule.parse(rule.toLowerCase(Locale.ROOT));
+        if (parsed == null) {
+            return false;
+        }
+        rules_.add(parsed);
+        root_ = null;
+        hostRules_ = null;
+        return true;
+    }
+
+    /**
+     * @return the number of rules
+     */
+    synchronized int size() {
+        return rules_.size();
+    }
+
+    /**
+     * Returns whether one of the rules matches the given URL.
+     * @param url the URL, already in lower case
+     * @param hostStart the index of the first host char in the url
+     * @param hostEnd the index after the last host char in the url
+     * @return true if there is a match
+     */
+    boolean matches(final String url, final int hostStart, final int hostEnd) {
+        final Node root;
+        final Map<String, List<Rule>> hostRules;
+        synchronized (this) {
+            if (rules_.isEmpty()) {
+                return false;
+            }
+            if (root_ == null) {
+                compile();
+            }
+            root = root_;
+            hostRules = hostRules_;
+        }
+
+        // host anchored rules; check the host and all parent domains
+        if (!hostRules.isEmpty() && hostStart < hostEnd) {
+            int labelStart = hostStart;
+            while (labelStart < hostEnd) {
+                final List<Rule> candidates = hostRules.get(url.substring(labelStart, hostEnd));
+                if (candidates != null) {
+                    for (final Rule rule : candidates) {
+                        if (rule.matchesAt(url, labelStart, false)) {
+                            return true;
+                        }
+                    }
+                }
+                final int dot = url.indexOf('.', labelStart);
+                if (dot < 0 || dot >= hostEnd) {
+                    break;
+                }
+                labelStart = dot + 1;
+            }
+        }
+
+        // all other rules; run the automaton and verify the candidates
+        Node state = root;
+        for (int i = 0; i < url.length(); i++) {
+            final char c = url.charAt(i);
+            Node next = state.child(c);
+            while (next == null && state != root) {
+                state = state.fail_;
+                next = state.child(c);
+            }
+            state = next == null ? root : next;
+
+            for (Node out = state.rules_ == null ? state.output_ : state; out != null; out = out.output_) {
+                for (final Rule rule : out.rules_) {
+                    if (rule.matches(url, hostStart, hostEnd)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private void compile() {
+        final Map<String, List<Rule>> hostRules = new HashMap<>();
+        final Node root = new Node();
+        for (final Rule rule : rules_) {
+            if (rule.host_ != null) {
+                hostRules.computeIfAbsent(rule.host_, k -> new ArrayList<>(1)).add(rule);
+            }
+            else {
+                root.add(rule.key_, rule);
+            }
+        }
+
+        // breadth first construction of the failure and output links
+        final Queue<Node> queue = new ArrayDeque<>();
+        root.fail_ = root;
+        for (final Node child : root.children_) {
+            child.fail_ = root;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            final Node node = queue.remove();
+            for (int i = 0; i < node.keys_.length; i++) {
+                final char c = node.keys_[i];
+                final Node child = node.children_[i];
+
+                Node fail = node.fail_;
+                Node target = fail.child(c);
+                while (target == null && fail != root) {
+                    fail = fail.fail_;
+                    target = fail.child(c);
+                }
+                child.fail_ = target == null || target == child ? root : target;
+                child.output_ = child.fail_.rules_ != null ? child.fail_ : child.fail_.output_;
+                queue.add(child);
+            }
+        }
+
+        hostRules_ = hostRules;
+        root_ = root;
+    }
+
+    /**
+     * Returns whether the given char is a separator as defined by the '^' placeholder.
+     */
+    static boolean isSeparator(final char c) {
+        return !(c >= 'a' && c <= 'z'
+                || c >= 'A' && c <= 'Z'
+                || c >= '0' && c <= '9'
+                || c == '_' || c == '-' || c == '.' || c == '%');
+    }
+
+    /**
+     * A node of the Aho-Corasick automaton.
+     */
+    private static final class Node {
+        private static final char[] NO_KEYS = {};
+        private static final Node[] NO_CHILDREN = {};
+
+        private char[] keys_ = NO_KEYS;
+        private Node[] children_ = NO_CHILDREN;
+        private Node fail_;
+        private Node output_;
+        private Rule[] rules_;
+
+        Node child(final char c) {
+            final int idx = Arrays.binarySearch(keys_, c);
+            if (idx < 0) {
+                return null;
+            }
+            return children_[idx];
+        }
+
+        void add(final String key, final Rule rule) {
+            Node node = this;
+            for (int i = 0; i < key.length(); i++) {
+                final char c = key.charAt(i);
+                final int idx = Arrays.binarySearch(node.keys_, c);
+                if (idx >= 0) {
+                    node = node.children_[idx];
+                }
+                else {
+                    final int ins = -idx - 1;
+                    final Node child = new Node();
+
+                    final char[] keys = new char[node.keys_.length + 1];
+                    System.arraycopy(node.keys_, 0, keys, 0, ins);
+                    keys[ins] = c;
+                    System.arraycopy(node.keys_, ins, keys, ins + 1, node.keys_.length - ins);
+
+                    final Node[] children = new Node[node.children_.length + 1];
+                    System.arraycopy(node.children_, 0, children, 0, ins);
+                    children[ins] = child;
+                    System.arraycopy(node.children_, ins, children, ins + 1, node.children_.length - ins);
+
+                    node.keys_ = keys;
+                    node.children_ = children;
+                    node = child;
+                }
+            }
+            if (node.rules_ == null) {
+                node.rules_ = new Rule[] {rule};
+            }
+            else {
+                node.rules_ = Arrays.copyOf(node.rules_, node.rules_.length + 1);
+                node.rules_[node.rules_.length - 1] = rule;
+            }
+        }
+    }
+
+    /**
+     * A single parsed rule.
+     */
+    private static final class Rule {
+        private final String pattern_;
+        private final boolean domainAnchor_;
+        private final boolean startAnchor_;
+        private final boolean endAnchor_;
+        private final String host_;
+        private final String key_;
+
+        private Rule(final String pattern, final boolean domainAnchor, final boolean startAnchor,
+                final boolean endAnchor, final String host, final String key) {
+            pattern_ = pattern;
+            domainAnchor_ = domainAnchor;
+            startAnchor_ = startAnchor;
+            endAnchor_ = endAnchor;
+            host_ = host;
+            key_ = key;
+        }
+
+        static Rule parse(final String rule) {
+            String pattern = rule;
+            boolean domainAnchor = false;
+            boolean startAnchor = false;
+            boolean endAnchor = false;
+
+            if (pattern.startsWith("||")) {
+                domainAnchor = true;
+                pattern = pattern.substring(2);
+            }
+            else if (pattern.startsWith("|")) {
+                startAnchor = true;
+                pattern = pattern.substring(1);
+            }
+            if (pattern.endsWith("|")) {
+                endAnchor = true;
+                pattern = pattern.substring(0, pattern.length() - 1);
+            }
+
+            // collapse the wildcards at the ends, they are implicit
+            while (pattern.startsWith("*")) {
+                pattern = pattern.substring(1);
+                domainAnchor = false;
+                startAnchor = false;
+            }
+            while (pattern.endsWith("*")) {
+                pattern = pattern.substring(0, pattern.length() - 1);
+                endAnchor = false;
+            }
+            if (pattern.isEmpty()) {
+                return null;
+            }
+
+            String host = null;
+            if (domainAnchor) {
+                int end = 0;
+                while (end < pattern.length()) {
+                    final char c = pattern.charAt(end);
+                    if (c >= 'a' && c <= 'z' || c >= '0' && c <= '9' || c == '-' || c == '.') {
+                        end++;
+                    }
+                    else {
+                        break;
+                    }
+                }
+                if (end > 0 && end < pattern.length() && pattern.charAt(end - 1) != '.'
+                        && (pattern.charAt(end) == SEPARATOR
+                            || pattern.charAt(end) == '/'
+                            || pattern.charAt(end) == ':')) {
+                    host = pattern.substring(0, end);
+                }
+            }
+
+            String key = "";
+            if (host == null) {
+                int start = 0;
+                for (int i = 0; i <= pattern.length(); i++) {
+                    if (i == pattern.length() || pattern.charAt(i) == WILDCARD || pattern.charAt(i) == SEPARATOR) {
+                        if (i - start > key.length()) {
+                            key = pattern.substring(start, i);
+                        }
+                        start = i + 1;
+                    }
+                }
+                if (key.isEmpty()) {
+                    return null;
+                }
+            }
+
+            return new Rule(pattern, domainAnchor, startAnchor, endAnchor, host, key);
+        }
+
+        boolean matches(final String url, final int hostStart, final int hostEnd) {
+            if (startAnchor_) {
+                return matchesAt(url, 0, false);
+            }
+            if (domainAnchor_) {
+                int labelStart = hostStart;
+                while (labelStart < hostEnd) {
+                    if (matchesAt(url, labelStart, false)) {
+                        return true;
+                    }
+                    final int dot = url.indexOf('.', labelStart);
+                    if (dot < 0 || dot >= hostEnd) {
+                        return false;
+                    }
+                    labelStart = dot + 1;
+                }
+                return false;
+            }
+            return matchesAt(url, 0, true);
+        }
+
+        /**
+         * Wildcard match of the pattern starting at the given url position.
+         * @param floating if true, the match may start at any position after start
+         */
+        boolean matchesAt(final String url, final int start, final boolean floating) {
+            final String pattern = pattern_;
+            final int pLen = pattern.length();
+            final int uLen = url.length();
+
+            int p = 0;
+            int u = start;
+            int starP = floating ? 0 : -1;
+            int starU = floating ? start : -1;
+            while (true) {
+                if (p == pLen) {
+                    if (!endAnchor_ || u == uLen) {
+                        return true;
+                    }
+                }
+                else {
+                    final char pc = pattern.charAt(p);
+                    if (pc == WILDCARD) {
+                        starP = ++p;
+                        starU = u;
+                        continue;
+                    }
+                    if (pc == SEPARATOR) {
+                        if (u == uLen) {
+                            // the separator also matches the end of the address
+                            p++;
+                            continue;
+                        }
+                        if (isSeparator(url.charAt(u))) {
+                            p++;
+                            u++;
+                            continue;
+                        }
+                    }
+                    else if (u < uLen && pc == url.charAt(u)) {
+                        p++;
+                        u++;
+                        continue;
+                    }
+                }
+
+                // mismatch; backtrack to the last wildcard
+                if (starP < 0 || starU >= uLen) {
+                    return false;
+                }
+                p = starP;
+                u = ++starU;
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.util;
+
+import java.net.URL;
+import java.util.List;
+
+import com.gargoylesoftware.htmlunit.WebRequest;
+
+/**
+ * Constants and helpers shared by {@link RecordingWebConnection} and {@link ReplayWebConnection}.
+ * <p>
+ * The archive file has the following layout (all numbers big endian):
+ * <pre>
+ * header:  int magic, int version
+ * records: (one per recorded response)
+ *          string method, string url, long bodyHash, long startTime, long loadTime,
+ *          string requestContentType, string requestBody,
+ *          int status, string statusMessage,
+ *          int headerCount, (string name, string value) * headerCount,
+ *          int bodyLength, byte[bodyLength] body
+ * index:   int slotCount, (long keyHash, long recordOffset) * slotCount
+ * trailer: long indexOffset, int entryCount, int magic
+ * </pre>
+ * Strings are stored as int length (-1 for {@code null}) followed by the UTF-8 bytes.
+ * The index is an open addressing hash table (linear probing, the slot count is a power of two);
+ * empty slots have the record offset 0.
+ *
+ * @author Ronald Brill
+ */
+final class WebArchive {
+
+    /** The magic number ('HUAR'). */
+    static final int MAGIC = 0x48554152;
+
+    /** The format version. */
+    static final int VERSION = 1;
+
+    /** The size of the header. */
+    static final int HEADER_SIZE = 8;
+
+    /** The size of the trailer. */
+    static final int TRAILER_SIZE = 16;
+
+    /** The size of one index slot. */
+    static final int SLOT_SIZE = 16;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private WebArchive() {
+    }
+
+    /**
+     * Returns the URL used as part of the lookup key (the URL without the reference).
+     * @param url the url
+     * @return the normalized form
+     */
+    static String normalizeUrl(final URL url) {
+        final String external = url.toExternalForm();
+        final int hash = external.indexOf('#');
+        if (hash > -1) {
+            return external.substring(0, hash);
+        }
+        return external;
+    }
+
+    /**
+     * Returns the hash of the request body; this is the body itself or
+     * the request parameters.
+     * @param request the request
+     * @return the hash (0 if there is no body)
+     */
+    static long bodyHash(final WebRequest request) {
+        final String body = request.getRequestBody();
+        if (body != null) {
+            return hash(FNV_OFFSET, body);
+        }
+
+        final List<NameValuePair> parameters = request.getRequestParameters();
+        if (parameters.isEmpty()) {
+            return 0;
+        }
+        long hash = FNV_OFFSET;
+        for (final NameValuePair pair : parameters) {
+            hash = hash(hash, pair.getName());
+            hash = hash(hash, "=");
+            hash = hash(hash, pair.getValue());
+            hash = hash(hash, "&");
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the hash used as index key.
+     * @param method the http method
+     * @param url the normalized url
+     * @param bodyHash the body hash
+     * @return the key hash
+     */
+    static long keyHash(final String method, final String url, final long bodyHash) {
+        long hash = hash(FNV_OFFSET, method);
+        hash = hash(hash, " ");
+        hash = hash(hash, url);
+        hash ^= bodyHash;
+        hash *= FNV_PRIME;
+
+        // final avalanche, the low bits select the slot
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static long hash(long hash, final String value) {
+        if (value == null) {
+            return hash;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the slot count for the given number of entries (load factor at most 0.5).
+     * @param entries the number of entries
+     * @return the slot count
+     */
+    static int slotCount(final int entries) {
+        int slots = 16;
+        while (slots < entries * 2) {
+            slots <<= 1;
+        }
+        return slots;
+    }
+}
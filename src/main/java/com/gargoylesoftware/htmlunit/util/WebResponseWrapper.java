@@ -21,6 +21,7 @@ import java.util.List;
 
 import com.gargoylesoftware.htmlunit.WebRequest;
 import com.gargoylesoftware.htmlunit.WebResponse;
+import com.gargoylesoftware.htmlunit.WebResponseTiming;
 
 /**
  * Provides a convenient implementation of the {@link WebResponse} interface that can be subclassed
@@ -132,6 +133,15 @@ public class WebResponseWrapper extends WebResponse {
         return wrappedWebResponse_.getLoadTime();
     }
 
+    /**
+     * {@inheritDoc}
+     * The default behavior of this method is to return getTiming() on the wrapped webResponse object.
+     */
+    @Override
+    public WebResponseTiming getTiming() {
+        return wrappedWebResponse_.getTiming();
+    }
+
     /**
      * {@inheritDoc}
      * The default behavior of this method is to return getResponseHeaders() on the wrapped webResponse object.
@@ -26,11 +26,14 @@ import java.io.StringWriter;
 import java.io.Writer;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.net.InetAddress;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.Servlet;
 import javax.servlet.ServletException;
@@ -61,6 +64,7 @@ import org.junit.runner.RunWith;
 
 import com.gargoylesoftware.htmlunit.BrowserRunner.Alerts;
 import com.gargoylesoftware.htmlunit.html.HtmlPage;
+import com.gargoylesoftware.htmlunit.httpclient.CachingDnsResolver;
 import com.gargoylesoftware.htmlunit.util.KeyDataPair;
 import com.gargoylesoftware.htmlunit.util.MimeType;
 import com.gargoylesoftware.htmlunit.util.ServletContentWrapper;
@@ -268,6 +272,76 @@ public class HttpWebConnectionTest extends WebServerTestCase {
         }
     }
 
+    /**
+     * Test that a custom {@link org.apache.http.conn.DnsResolver} is used for new connections.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void cachingDnsResolver() throws Exception {
+        startWebServer("./");
+
+        final WebClient webClient = getWebClient();
+        final CachingDnsResolver resolver = new CachingDnsResolver();
+        resolver.addOverride("www.htmlunit.test", InetAddress.getByName("localhost"));
+
+        // the connection manager exists already
+        webClient.getPage(URL_FIRST + "LICENSE.txt");
+
+        final HttpWebConnection webConnection = (HttpWebConnection) webClient.getWebConnection();
+        webConnection.setDnsResolver(resolver);
+        assertSame(resolver, webConnection.getDnsResolver());
+
+        final Page page = webClient.getPage("http://www.htmlunit.test:" + PORT + "/LICENSE.txt");
+        assertEquals(200, page.getWebResponse().getStatusCode());
+        assertTrue(resolver.getHitCount() > 0);
+        assertEquals(0L, resolver.getMissCount());
+    }
+
+    /**
+     * Test the {@link WebResponseTiming} of the responses.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void timing() throws Exception {
+        startWebServer("./");
+
+        final WebClient webClient = getWebClient();
+        final List<WebResponse> received = new ArrayList<>();
+        final HttpWebConnection webConnection = (HttpWebConnection) webClient.getWebConnection();
+        final WebResponseTimingListener listener = new WebResponseTimingListener() {
+            @Override
+            public void responseReceived(final WebResponse webResponse) {
+                received.add(webResponse);
+            }
+        };
+        webConnection.addTimingListener(listener);
+
+        final WebResponse first = webClient.getPage(URL_FIRST + "LICENSE.txt").getWebResponse();
+        final WebResponseTiming timing = first.getTiming();
+        assertNotNull(timing);
+        assertTrue(timing.getStartTime() > 0);
+        assertTrue(timing.getDomainLookupEnd() >= timing.getDomainLookupStart());
+        assertTrue(timing.getConnectStart() >= timing.getDomainLookupEnd());
+        assertTrue(timing.getConnectEnd() >= timing.getConnectStart());
+        assertTrue(timing.getRequestStart() >= timing.getConnectEnd());
+        assertTrue(timing.getResponseStart() >= timing.getRequestEnd());
+        assertTrue(timing.getResponseEnd() >= timing.getResponseStart());
+        assertTrue(timing.getSecureConnectionStart() == 0);
+        assertTrue(timing.getResponseEnd() == timing.getDuration());
+
+        // the second request reuses the connection
+        final WebResponse second = webClient.getPage(URL_FIRST + "pom.xml").getWebResponse();
+        assertTrue(second.getTiming().getConnectDuration() == 0);
+
+        assertEquals(2, received.size());
+        assertSame(first, received.get(0));
+        assertSame(second, received.get(1));
+
+        webConnection.removeTimingListener(listener);
+        webClient.getPage(URL_FIRST + "LICENSE.txt");
+        assertEquals(2, received.size());
+    }
+
     /**
      * Test that the right file part is built for a file that doesn't exist.
      * @throws Exception if the test fails
@@ -411,6 +485,68 @@ public class HttpWebConnectionTest extends WebServerTestCase {
         assertTrue(page.asText().contains("key1=value1"));
     }
 
+    /**
+     * The scripts in the first part of the page have to be executed while the
+     * rest of the page is still loading.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void streamingHtmlParsing() throws Exception {
+        StreamingServlet.FirstPartParsed_ = new CountDownLatch(1);
+        StreamingServlet.ParsedBeforeEnd_ = false;
+
+        final Map<String, Class<? extends Servlet>> servlets = new HashMap<>();
+        servlets.put("/streaming", StreamingServlet.class);
+        startWebServer("./", null, servlets);
+
+        final WebClient webClient = getWebClient();
+        webClient.getOptions().setStreamingHtmlParsing(true);
+        final List<String> collectedAlerts = new ArrayList<>();
+        webClient.setAlertHandler(new AlertHandler() {
+            @Override
+            public void handleAlert(final Page page, final String message) {
+                collectedAlerts.add(message);
+                StreamingServlet.FirstPartParsed_.countDown();
+            }
+        });
+
+        final HtmlPage page = webClient.getPage(URL_FIRST + "streaming");
+        assertTrue(StreamingServlet.ParsedBeforeEnd_);
+        assertEquals(new String[] {"first", "second"}, collectedAlerts);
+        assertNotNull(page.getElementById("last"));
+        assertTrue(page.getWebResponse().getContentAsString().endsWith("</html>"));
+    }
+
+    /**
+     * Servlet for {@link #streamingHtmlParsing()}.
+     */
+    public static class StreamingServlet extends HttpServlet {
+        private static CountDownLatch FirstPartParsed_;
+        private static volatile boolean ParsedBeforeEnd_;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void doGet(final HttpServletRequest request, final HttpServletResponse response) throws IOException {
+            response.setContentType(MimeType.TEXT_HTML + ";charset=UTF-8");
+            final Writer writer = response.getWriter();
+            writer.write("<html><head><script>alert('first');</script></head><body>\n<!-- "
+                    + StringUtils.repeat("padding ", 1000) + " -->\n<div>first part</div>\n");
+            writer.flush();
+            response.flushBuffer();
+
+            try {
+                ParsedBeforeEnd_ = FirstPartParsed_.await(10, TimeUnit.SECONDS);
+            }
+            catch (final InterruptedException e) {
+                throw new IOException(e);
+            }
+
+            writer.write("<div id='last'>last part</div><script>alert('second');</script></body></html>");
+        }
+    }
+
     /**
      * Servlet for {@link #cookiesEnabledAfterDisable()}.
      */
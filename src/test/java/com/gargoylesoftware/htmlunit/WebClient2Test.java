@@ -15,7 +15,11 @@
 package com.gargoylesoftware.htmlunit;
 
 import static com.gargoylesoftware.htmlunit.httpclient.HtmlUnitBrowserCompatCookieSpec.EMPTY_COOKIE_NAME;
+import static org.junit.Assert.fail;
 
+import java.io.File;
+import java.io.NotSerializableException;
+import java.net.InetAddress;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
@@ -24,12 +28,15 @@ import java.util.Locale;
 
 import org.apache.commons.lang3.SerializationUtils;
 import org.apache.commons.lang3.time.DateUtils;
+import org.apache.http.conn.DnsResolver;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import com.gargoylesoftware.htmlunit.BrowserRunner.NotYetImplemented;
 import com.gargoylesoftware.htmlunit.html.HtmlPage;
 import com.gargoylesoftware.htmlunit.util.Cookie;
+import com.gargoylesoftware.htmlunit.util.RecordingWebConnection;
+import com.gargoylesoftware.htmlunit.util.ReplayWebConnection;
 
 /**
  * Tests for {@link WebClient} that run with BrowserRunner.
@@ -323,4 +330,123 @@ public class WebClient2Test extends SimpleWebTestCase {
         // Fails: return 98 (about) instead of 1
         assertEquals(1, page.querySelectorAll("p").size());
     }
+
+    /**
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void fork() throws Exception {
+        final String html = "<html><head><title>c0</title><script>\n"
+            + "  var counter = 0;\n"
+            + "  function inc() {\n"
+            + "    counter++;\n"
+            + "    document.title = 'c' + counter;\n"
+            + "  }\n"
+            + "  document.cookie = 'c=1';\n"
+            + "  localStorage.setItem('k', 'v');\n"
+            + "</script></head><body>\n"
+            + "<button id='b' onclick='inc()'>b</button>\n"
+            + "</body></html>";
+
+        final HtmlPage page = loadPage(html);
+        page.getHtmlElementById("b").click();
+        assertEquals("c1", page.getTitleText());
+
+        final HtmlPage fork = page.fork();
+        try (WebClient forkClient = fork.getWebClient()) {
+            assertNotSame(page.getWebClient(), forkClient);
+            assertSame(getWebClient().getAlertHandler(), forkClient.getAlertHandler());
+            assertEquals("c1", fork.getTitleText());
+
+            fork.getHtmlElementById("b").click();
+            fork.getHtmlElementById("b").click();
+            assertEquals("c3", fork.getTitleText());
+            assertEquals("c1", page.getTitleText());
+
+            page.getHtmlElementById("b").click();
+            assertEquals("c2", page.getTitleText());
+            assertEquals("c3", fork.getTitleText());
+
+            forkClient.getCookieManager().clearCookies();
+            fork.executeJavaScript("localStorage.setItem('k', 'fork');");
+            assertEquals(1, getWebClient().getCookieManager().getCookies().size());
+            assertEquals("v", page.executeJavaScript("localStorage.getItem('k')").getJavaScriptResult());
+            assertEquals("fork", fork.executeJavaScript("localStorage.getItem('k')").getJavaScriptResult());
+        }
+    }
+
+    /**
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void forkCopiesConnectionConfiguration() throws Exception {
+        final DnsResolver resolver = host -> InetAddress.getAllByName(host);
+        try (WebClient webClient = new WebClient(getBrowserVersion())) {
+            final HttpWebConnection connection = (HttpWebConnection) webClient.getWebConnection();
+            connection.setDnsResolver(resolver);
+            connection.setVirtualHost("virtual");
+
+            try (WebClient fork = webClient.fork()) {
+                final HttpWebConnection forkConnection = (HttpWebConnection) fork.getWebConnection();
+                assertNotSame(connection, forkConnection);
+                assertSame(resolver, forkConnection.getDnsResolver());
+                assertEquals("virtual", forkConnection.getVirtualHost());
+            }
+        }
+    }
+
+    /**
+     * Closing the fork must not close the custom connection of the original client.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void forkSharesCustomConnection() throws Exception {
+        final MockWebConnection mockConnection = new MockWebConnection();
+        mockConnection.setResponse(URL_FIRST, "<html><head><title>first</title></head><body></body></html>");
+
+        final File file = File.createTempFile("htmlunit", ".huar");
+        try {
+            try (RecordingWebConnection recording = new RecordingWebConnection(mockConnection, file)) {
+                recording.getResponse(new WebRequest(URL_FIRST));
+            }
+
+            try (WebClient webClient = new WebClient(getBrowserVersion())) {
+                final ReplayWebConnection replay = new ReplayWebConnection(file);
+                webClient.setWebConnection(replay);
+                final HtmlPage page = webClient.getPage(URL_FIRST);
+
+                try (WebClient fork = page.fork().getWebClient()) {
+                    assertEquals("first", ((HtmlPage) fork.getPage(URL_FIRST)).getTitleText());
+                }
+
+                assertEquals("first", ((HtmlPage) webClient.getPage(URL_FIRST)).getTitleText());
+                assertEquals(3L, replay.getHitCount());
+            }
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void forkFailsForUnknownObjects() throws Exception {
+        try (WebClient webClient = new WebClient(getBrowserVersion())) {
+            webClient.setCookieManager(new CookieManager() {
+                @SuppressWarnings("unused")
+                private final Object lock_ = new Object();
+            });
+
+            try {
+                webClient.fork().close();
+                fail("RuntimeException expected");
+            }
+            catch (final RuntimeException e) {
+                assertTrue(e.getCause() instanceof NotSerializableException);
+            }
+        }
+    }
 }
+
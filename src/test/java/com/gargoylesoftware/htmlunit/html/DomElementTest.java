@@ -199,4 +199,31 @@ public final class DomElementTest extends WebDriverTestCase {
         driver.findElement(By.id("myButton")).click();
     }
 
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    @Alerts({"3", "true", "changed", "2 id title", "changed clone"})
+    public void attributes() throws Exception {
+        final String html = "<html><head><script>\n"
+                + "function test() {\n"
+                + "  var d = document.getElementById('d');\n"
+                + "  alert(d.attributes.length);\n"
+                + "  var a = d.getAttributeNode('title');\n"
+                + "  alert(a === d.getAttributeNode('title'));\n"
+                + "  a.value = 'changed';\n"
+                + "  alert(d.getAttribute('title'));\n"
+                + "  d.removeAttribute('class');\n"
+                + "  alert(d.attributes.length + ' ' + d.attributes[0].name + ' ' + d.attributes[1].name);\n"
+                + "  var c = d.cloneNode(false);\n"
+                + "  c.setAttribute('title', 'clone');\n"
+                + "  alert(d.getAttribute('title') + ' ' + c.getAttribute('title'));\n"
+                + "}\n"
+                + "</script></head>\n"
+                + "<body onload='test()'>\n"
+                + "  <div id='d' class='c' title='t'></div>\n"
+                + "</body></html>";
+
+        loadPageWithAlerts2(html);
+    }
 }
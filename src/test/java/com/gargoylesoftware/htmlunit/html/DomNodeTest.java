@@ -17,6 +17,7 @@ package com.gargoylesoftware.htmlunit.html;
 import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.Test;
@@ -884,4 +885,177 @@ public class DomNodeTest extends SimpleWebTestCase {
         assertTrue(elem1.isDisplayed());
         assertTrue(elem2.isDisplayed());
     }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void isDisplayedAfterChange() throws Exception {
+        final String html = "<html><head>\n"
+            + "<style>\n"
+            + ".none { display: none; }\n"
+            + ".hidden { visibility: hidden; }\n"
+            + "#d3 { visibility: visible; }\n"
+            + "</style>\n"
+            + "<div id='d1'><div id='d2'><div id='d3'>hello</div><div id='d4'>world</div></div></div>\n"
+            + "</body></html>";
+
+        final HtmlPage page = loadPage(html);
+        final HtmlElement d1 = page.getHtmlElementById("d1");
+        final HtmlElement d3 = page.getHtmlElementById("d3");
+        final HtmlElement d4 = page.getHtmlElementById("d4");
+        assertTrue(d3.isDisplayed());
+        assertTrue(d4.isDisplayed());
+
+        d1.setAttribute("class", "hidden");
+        assertTrue(d3.isDisplayed());
+        assertFalse(d4.isDisplayed());
+
+        d1.setAttribute("class", "none");
+        assertFalse(d3.isDisplayed());
+        assertFalse(d4.isDisplayed());
+
+        d1.removeAttribute("class");
+        assertTrue(d3.isDisplayed());
+        assertTrue(d4.isDisplayed());
+
+        d1.setAttribute("hidden", "");
+        assertFalse(d3.isDisplayed());
+        assertFalse(d4.isDisplayed());
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void subtreeModificationCount() throws Exception {
+        final String html = "<html><body><div id='d1'><div id='d2'></div></div><div id='d3'></div></body></html>";
+
+        final HtmlPage page = loadPage(html);
+        final HtmlElement d1 = page.getHtmlElementById("d1");
+        final HtmlElement d2 = page.getHtmlElementById("d2");
+        final HtmlElement d3 = page.getHtmlElementById("d3");
+        final int pageCount = page.getSubtreeModificationCount();
+        final int d1Count = d1.getSubtreeModificationCount();
+        final int d3Count = d3.getSubtreeModificationCount();
+
+        d2.appendChild(page.createTextNode("text"));
+        assertEquals(d1Count + 1, d1.getSubtreeModificationCount());
+        assertEquals(pageCount + 1, page.getSubtreeModificationCount());
+        assertEquals(d3Count, d3.getSubtreeModificationCount());
+
+        d2.remove();
+        assertEquals(d1Count + 2, d1.getSubtreeModificationCount());
+        assertEquals(pageCount + 2, page.getSubtreeModificationCount());
+        assertEquals(d3Count, d3.getSubtreeModificationCount());
+    }
+
+    /**
+     * Inserting at the same position again and again exhausts the gap between the labels;
+     * only the labels around the position should be changed, not the labels of the whole page.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void documentOrderInsertBefore() throws Exception {
+        final String html = "<html><body><div id='d1'></div></body></html>";
+
+        final HtmlPage page = loadPage(html);
+        final HtmlElement d1 = page.getHtmlElementById("d1");
+        for (int i = 0; i < 500; i++) {
+            page.getBody().appendChild(page.createElement("div"));
+        }
+
+        final List<DomNode> nodes = new ArrayList<>();
+        int changed = 0;
+        for (int i = 0; i < 1000; i++) {
+            nodes.clear();
+            for (final DomNode node : page.getDescendants()) {
+                nodes.add(node);
+            }
+            final long[] labels = new long[nodes.size()];
+            for (int j = 0; j < labels.length; j++) {
+                labels[j] = nodes.get(j).getDocumentOrder();
+            }
+
+            d1.insertBefore(page.createElement("span"));
+
+            for (int j = 0; j < labels.length; j++) {
+                if (labels[j] != nodes.get(j).getDocumentOrder()) {
+                    changed++;
+                }
+            }
+        }
+
+        // labeling the whole page again every few insertions changes about 60000 labels
+        assertTrue("changed labels: " + changed, changed < 20000);
+
+        DomNode previous = null;
+        for (final DomNode node : page.getDescendants()) {
+            if (previous != null) {
+                assertTrue(previous.getDocumentOrder() < node.getDocumentOrder());
+            }
+            previous = node;
+        }
+        assertTrue(d1.compareDocumentPosition(d1.getPreviousSibling()) == DomNode.DOCUMENT_POSITION_PRECEDING);
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void domChangeBatch() throws Exception {
+        final String html = "<html><body><p id='p1'></p></body></html>";
+
+        final HtmlPage page = loadPage(html);
+        final HtmlElement p1 = page.getHtmlElementById("p1");
+
+        final DomChangeListenerTestImpl listener = new DomChangeListenerTestImpl();
+        final List<Integer> batches = new ArrayList<>();
+        final DomChangeBatchListener batchListener = new DomChangeBatchListener() {
+            @Override
+            public void nodeAdded(final DomChangeEvent event) {
+                batches.add(1);
+            }
+
+            @Override
+            public void nodeDeleted(final DomChangeEvent event) {
+                batches.add(1);
+            }
+
+            @Override
+            public void nodesChanged(final List<DomChangeEvent> events) {
+                batches.add(events.size());
+            }
+        };
+        page.addDomChangeListener(listener);
+        page.addDomChangeListener(batchListener);
+
+        final DomDocumentFragment fragment = page.createDocumentFragment();
+        for (int i = 0; i < 3; i++) {
+            fragment.appendChild(page.createElement("div"));
+        }
+        p1.appendChild(fragment);
+        assertEquals(3, p1.getChildElementCount());
+        assertEquals(new String[] {"nodeAdded: p,div", "nodeAdded: p,div", "nodeAdded: p,div"},
+                listener.getCollectedValues());
+        assertEquals(Arrays.asList(3), batches);
+
+        batches.clear();
+        page.startDomChangeBatch();
+        try {
+            p1.appendChild(page.createElement("span"));
+            p1.getFirstChild().remove();
+            assertTrue(batches.isEmpty());
+            page.flushDomChangeBatch();
+            assertEquals(Arrays.asList(2), batches);
+            p1.getFirstChild().remove();
+        }
+        finally {
+            page.endDomChangeBatch();
+        }
+        assertEquals(Arrays.asList(2, 1), batches);
+
+        p1.getFirstChild().remove();
+        assertEquals(Arrays.asList(2, 1, 1), batches);
+    }
 }
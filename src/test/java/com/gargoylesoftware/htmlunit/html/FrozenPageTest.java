@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.html;
+
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.gargoylesoftware.htmlunit.BrowserRunner;
+import com.gargoylesoftware.htmlunit.SimpleWebTestCase;
+
+/**
+ * Tests for {@link FrozenPage}.
+ *
+ * @author Ronald Brill
+ */
+@RunWith(BrowserRunner.class)
+public class FrozenPageTest extends SimpleWebTestCase {
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void extract() throws Exception {
+        final StringBuilder html = new StringBuilder("<html><body><table id='t'>");
+        for (int i = 0; i < 200; i++) {
+            html.append("<tr class='row r").append(i % 3).append("' data-i='").append(i).append("'>")
+                .append("<td>cell ").append(i).append("</td></tr>");
+        }
+        html.append("</table></body></html>");
+
+        final HtmlPage page = loadPage(html.toString());
+        final FrozenPage frozen = page.freeze();
+        assertSame(frozen, page.freeze());
+        assertTrue(page.isFrozen());
+
+        final List<Function<FrozenPage, Object>> rules = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            final int row = i;
+            rules.add(p -> p.querySelectorAll("tr.r" + (row % 3)).size());
+            rules.add(p -> p.getByXPath("//tr[@data-i='" + row + "']/td/text()").get(0).toString());
+            rules.add(p -> ((DomElement) p.querySelectorAll("tr").get(row)).getAttribute("data-i"));
+            rules.add(p -> p.asText(p.querySelector("tr:nth-child(" + (row + 1) + ")")));
+        }
+
+        final List<Object> expected = new ArrayList<>();
+        for (final Function<FrozenPage, Object> rule : rules) {
+            expected.add(rule.apply(frozen));
+        }
+        assertEquals(67, expected.get(0));
+        assertEquals("cell 1", expected.get(5));
+        assertEquals("2", expected.get(10));
+        assertEquals("cell 3", expected.get(15));
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(expected, frozen.extract(rules));
+        }
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void extractConcurrently() throws Exception {
+        final StringBuilder html = new StringBuilder("<html><body>");
+        for (int i = 0; i < 100; i++) {
+            html.append("<div id='d").append(i).append("' class='c").append(i % 5).append("'>")
+                .append("<span>").append(i).append("</span><p class='c").append(i % 7).append("'></p></div>");
+        }
+        html.append("</body></html>");
+
+        final HtmlPage page = loadPage(html.toString());
+        final FrozenPage frozen = page.freeze();
+
+        final int threads = 8;
+        final CyclicBarrier barrier = new CyclicBarrier(threads);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<String>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    barrier.await();
+                    final StringBuilder result = new StringBuilder();
+                    for (int i = 0; i < 100; i++) {
+                        result.append(frozen.querySelectorAll(".c" + (i % 5)).size())
+                            .append(frozen.querySelectorAll("#d" + i + " span").size())
+                            .append(frozen.querySelectorAll("div#d" + i + " > p.c" + (i % 7)).size())
+                            .append(frozen.querySelectorAll("span").size())
+                            .append(';');
+                    }
+                    return result.toString();
+                }));
+            }
+
+            final StringBuilder expected = new StringBuilder();
+            for (int i = 0; i < 100; i++) {
+                final int divs = 20;
+                final int ps = 100 / 7 + (i % 5 < 100 % 7 ? 1 : 0);
+                expected.append(divs + ps).append("11100;");
+            }
+            for (final Future<String> future : futures) {
+                assertEquals(expected.toString(), future.get(1, TimeUnit.MINUTES));
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void modification() throws Exception {
+        final String html = "<html><body><div id='d' title='t'>text</div></body></html>";
+
+        final HtmlPage page = loadPage(html);
+        final HtmlElement div = page.getHtmlElementById("d");
+        page.freeze();
+
+        try {
+            div.appendChild(page.createElement("span"));
+            fail("IllegalStateException expected");
+        }
+        catch (final IllegalStateException e) {
+            // expected
+        }
+        try {
+            div.setAttribute("title", "changed");
+            fail("IllegalStateException expected");
+        }
+        catch (final IllegalStateException e) {
+            // expected
+        }
+        try {
+            div.getAttributeNode("title").setValue("changed");
+            fail("IllegalStateException expected");
+        }
+        catch (final IllegalStateException e) {
+            // expected
+        }
+        try {
+            ((DomText) div.getFirstChild()).setData("changed");
+            fail("IllegalStateException expected");
+        }
+        catch (final IllegalStateException e) {
+            // expected
+        }
+        try {
+            div.remove();
+            fail("IllegalStateException expected");
+        }
+        catch (final IllegalStateException e) {
+            // expected
+        }
+
+        assertEquals("t", div.getAttribute("title"));
+        assertEquals("text", div.asText());
+
+        // detached nodes can still be built
+        final DomElement span = page.createElement("span");
+        span.setAttribute("class", "free");
+        span.appendChild(page.createTextNode("detached"));
+        assertEquals("free", span.getAttribute("class"));
+    }
+}
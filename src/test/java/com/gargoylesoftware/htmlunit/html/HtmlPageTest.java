@@ -55,6 +55,8 @@ import com.gargoylesoftware.htmlunit.WebRequest;
 import com.gargoylesoftware.htmlunit.WebResponse;
 import com.gargoylesoftware.htmlunit.html.HtmlElementTest.HtmlAttributeChangeListenerTestImpl;
 import com.gargoylesoftware.htmlunit.javascript.host.WebSocket;
+import com.gargoylesoftware.htmlunit.javascript.host.Window;
+import com.gargoylesoftware.htmlunit.javascript.host.css.CSS2Properties;
 import com.gargoylesoftware.htmlunit.util.Cookie;
 import com.gargoylesoftware.htmlunit.util.MimeType;
 import com.gargoylesoftware.htmlunit.util.NameValuePair;
@@ -1944,4 +1946,46 @@ public class HtmlPageTest extends SimpleWebTestCase {
         page = loadPage(getBrowserVersion(), html, null, new URL(URL_FIRST.toString() + path));
         assertEquals(URL_FIRST.toExternalForm() + path, page.getBaseURL().toExternalForm());
     }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void resolveComputedStyles() throws Exception {
+        final StringBuilder html = new StringBuilder("<html><head><style>\n"
+                + "  tr.r1 td { display: none; }\n"
+                + "  #t tr.r2 { color: red; }\n"
+                + "  td[title] { color: blue; }\n"
+                + "  @media print { td { display: none; } }\n"
+                + "</style></head><body><table id='t'>");
+        for (int i = 0; i < 600; i++) {
+            html.append("<tr class='row r").append(i % 3).append("'>")
+                .append("<td").append(i % 7 == 0 ? " title='x'" : "").append(">cell ").append(i).append("</td>")
+                .append("<td>").append(i).append("</td></tr>");
+        }
+        html.append("</table></body></html>");
+
+        final HtmlPage resolved = loadPage(html.toString());
+        resolved.resolveComputedStyles();
+        final Window resolvedWindow = resolved.getEnclosingWindow().getScriptableObject();
+
+        final HtmlPage lazy = loadPage(html.toString());
+        final Window lazyWindow = lazy.getEnclosingWindow().getScriptableObject();
+
+        final List<HtmlElement> resolvedElements = new ArrayList<>();
+        for (final HtmlElement element : resolved.getBody().getHtmlElementDescendants()) {
+            resolvedElements.add(element);
+        }
+        int i = 0;
+        for (final HtmlElement element : lazy.getBody().getHtmlElementDescendants()) {
+            final HtmlElement other = resolvedElements.get(i++);
+            final CSS2Properties expected = lazyWindow.getComputedStyle(element.getScriptableObject(), null);
+            final CSS2Properties actual = resolvedWindow.getComputedStyle(other.getScriptableObject(), null);
+            assertEquals(expected.getDisplay(), actual.getDisplay());
+            assertEquals(expected.getColor(), actual.getColor());
+            assertEquals(element.isDisplayed(), other.isDisplayed());
+        }
+        assertEquals(resolvedElements.size(), i);
+        assertTrue(resolved.getHtmlElementById("t").isDisplayed());
+    }
 }
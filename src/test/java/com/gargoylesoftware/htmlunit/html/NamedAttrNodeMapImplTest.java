@@ -18,6 +18,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -186,4 +187,41 @@ public class NamedAttrNodeMapImplTest {
         assertEquals("Key2", entry.getKey());
         assertEquals("attr2", entry.getValue().getNodeName());
     }
+
+    /**
+     * Test the values stored without attribute nodes.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void values() throws Exception {
+        final DomElement dom = new HtmlBreak("", null, null);
+
+        final NamedAttrNodeMapImpl map = new NamedAttrNodeMapImpl(dom, false);
+        map.putValue(null, "Key1", "Key1", "value1");
+        map.putValue(null, "key2", "key2", "");
+        map.putValue(null, "key3", "key3", "value3");
+        assertEquals(3, map.size());
+        assertEquals("value1", map.getValue("KEY1"));
+        assertSame(DomElement.ATTRIBUTE_VALUE_EMPTY, map.getValue("key2"));
+        assertNull(map.getValue("key4"));
+
+        final DomAttr attr = map.get("key1");
+        assertEquals("Key1", attr.getName());
+        assertEquals("value1", attr.getValue());
+        assertSame(dom, attr.getParentNode());
+        assertSame(attr, map.item(0));
+        attr.setValue("changed");
+        assertEquals("changed", map.getValue("key1"));
+
+        map.removeDirect("key2");
+        assertEquals(2, map.size());
+        assertEquals("key3", map.item(1).getNodeName());
+
+        final NamedAttrNodeMapImpl copy = new NamedAttrNodeMapImpl(dom, false);
+        copy.copyFrom(map);
+        copy.putValue(null, "key1", "key1", "copy");
+        assertEquals("changed", map.getValue("key1"));
+        assertEquals("copy", copy.getValue("key1"));
+        assertEquals("value3", copy.getValue("key3"));
+    }
 }
@@ -15,6 +15,12 @@
 package com.gargoylesoftware.htmlunit.html.parser;
 
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -157,4 +163,51 @@ public class HTMLParserTest extends SimpleWebTestCase {
         final DomElement col = page.getElementsByTagName("col").get(0);
         assertEquals(col.getParentNode().getNodeName(), HtmlTableColumnGroup.TAG_NAME);
     }
+
+    /**
+     * The parser reuses its internal builders; an unbalanced document must not influence
+     * the next one.
+     * @throws Exception failure
+     */
+    @Test
+    public void reuseAfterUnbalancedContent() throws Exception {
+        final String unbalanced = "<html><body><form><b><i>unclosed";
+        final String html = "<html><body><p id='p'>text</p></body></html>";
+
+        final WebClient webClient = getWebClient();
+        final HTMLParser parser = webClient.getPageCreator().getHtmlParser();
+        final String expected = parser.parseHtml(new StringWebResponse(html, URL_SECOND),
+                webClient.getCurrentWindow()).asXml();
+
+        for (int i = 0; i < 10; i++) {
+            parser.parseHtml(new StringWebResponse(unbalanced, URL_FIRST), webClient.getCurrentWindow());
+            final List<Object> idle = idleBuilders();
+            assertFalse(idle.isEmpty());
+
+            final HtmlPage page = parser.parseHtml(new StringWebResponse(html, URL_SECOND),
+                    webClient.getCurrentWindow());
+            // the builder released by the unbalanced document was taken and released again
+            assertEquals(idle, idleBuilders());
+
+            assertEquals(expected, page.asXml());
+            assertSame(page.getBody(), page.getElementById("p").getParentNode());
+            assertEquals(1, page.getBody().getChildElementCount());
+            assertEquals(0, page.getElementsByTagName("form").size());
+            assertEquals(0, page.getElementsByTagName("b").size());
+            assertEquals(0, page.getElementsByTagName("i").size());
+        }
+    }
+
+    private static List<Object> idleBuilders() throws Exception {
+        final Class<?> builderClass =
+                Class.forName("com.gargoylesoftware.htmlunit.html.parser.neko.HtmlUnitNekoDOMBuilder");
+        final Map<?, ?> pool = (Map<?, ?>) FieldUtils.readStaticField(builderClass, "IDLE_BUILDERS", true);
+        synchronized (pool) {
+            final List<Object> builders = new ArrayList<>();
+            for (final Object idle : pool.values()) {
+                builders.addAll((Collection<?>) idle);
+            }
+            return builders;
+        }
+    }
 }
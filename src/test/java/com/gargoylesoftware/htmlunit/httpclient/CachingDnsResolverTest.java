@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.httpclient;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.conn.DnsResolver;
+import org.junit.Test;
+
+/**
+ * Tests for {@link CachingDnsResolver}.
+ *
+ * @author Ronald Brill
+ */
+public class CachingDnsResolverTest {
+
+    /**
+     * Resolver counting the lookups; knows only 'localhost'.
+     */
+    private static final class CountingResolver implements DnsResolver {
+        private int count_;
+
+        @Override
+        public InetAddress[] resolve(final String host) throws UnknownHostException {
+            count_++;
+            if ("localhost".equalsIgnoreCase(host)) {
+                return new InetAddress[] {InetAddress.getByAddress("localhost", new byte[] {127, 0, 0, 1})};
+            }
+            throw new UnknownHostException(host);
+        }
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void cache() throws Exception {
+        final CountingResolver counting = new CountingResolver();
+        final CachingDnsResolver resolver = new CachingDnsResolver(counting);
+
+        final InetAddress[] first = resolver.resolve("localhost");
+        final InetAddress[] second = resolver.resolve("LocalHost");
+        assertArrayEquals(first, second);
+
+        assertEquals(1, counting.count_);
+        assertEquals(1, resolver.getHitCount());
+        assertEquals(1, resolver.getMissCount());
+        assertEquals(0.5, resolver.getHitRate(), 0.0001);
+        assertEquals(1, resolver.getCacheSize());
+
+        resolver.clearCache();
+        resolver.resolve("localhost");
+        assertEquals(2, counting.count_);
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void negativeCache() throws Exception {
+        final CountingResolver counting = new CountingResolver();
+        final CachingDnsResolver resolver = new CachingDnsResolver(counting);
+
+        for (int i = 0; i < 3; i++) {
+            try {
+                resolver.resolve("unknown.htmlunit.org");
+                fail("UnknownHostException expected");
+            }
+            catch (final UnknownHostException e) {
+                // expected
+            }
+        }
+        assertEquals(1, counting.count_);
+        assertEquals(2, resolver.getHitCount());
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void noCaching() throws Exception {
+        final CountingResolver counting = new CountingResolver();
+        final CachingDnsResolver resolver = new CachingDnsResolver(counting, 0, 0, 10);
+
+        resolver.resolve("localhost");
+        resolver.resolve("localhost");
+        try {
+            resolver.resolve("unknown.htmlunit.org");
+            fail("UnknownHostException expected");
+        }
+        catch (final UnknownHostException e) {
+            // expected
+        }
+        assertEquals(3, counting.count_);
+        assertEquals(0, resolver.getHitCount());
+        assertEquals(0, resolver.getCacheSize());
+        assertEquals(0.0, resolver.getHitRate(), 0.0001);
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void maxEntries() throws Exception {
+        final int[] count = new int[1];
+        final DnsResolver any = new DnsResolver() {
+            @Override
+            public InetAddress[] resolve(final String host) throws UnknownHostException {
+                count[0]++;
+                return new InetAddress[] {InetAddress.getByAddress(host, new byte[] {127, 0, 0, 1})};
+            }
+        };
+        final CachingDnsResolver resolver = new CachingDnsResolver(any, 60_000, 0, 3);
+        for (int i = 0; i < 10; i++) {
+            resolver.resolve("host" + i);
+            // host0 is used all the time and never evicted
+            resolver.resolve("host0");
+        }
+        assertEquals(3, resolver.getCacheSize());
+        assertEquals(10, count[0]);
+
+        // the least recently used host is dropped, one at a time
+        resolver.resolve("host9");
+        resolver.resolve("host8");
+        assertEquals(10, count[0]);
+        resolver.resolve("host7");
+        assertEquals(11, count[0]);
+        resolver.resolve("host9");
+        resolver.resolve("host8");
+        assertEquals(11, count[0]);
+        resolver.resolve("host0");
+        assertEquals(12, count[0]);
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void override() throws Exception {
+        final CountingResolver counting = new CountingResolver();
+        final CachingDnsResolver resolver = new CachingDnsResolver(counting);
+
+        final InetAddress address = InetAddress.getByAddress("www.htmlunit.org", new byte[] {10, 0, 0, 1});
+        resolver.addOverride("www.HtmlUnit.org", address);
+
+        assertArrayEquals(new InetAddress[] {address}, resolver.resolve("www.htmlunit.org"));
+        assertEquals(0, counting.count_);
+
+        resolver.removeOverride("www.htmlunit.org");
+        try {
+            resolver.resolve("www.htmlunit.org");
+            fail("UnknownHostException expected");
+        }
+        catch (final UnknownHostException e) {
+            // expected
+        }
+        assertEquals(1, counting.count_);
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void statistics() throws Exception {
+        final CountingResolver counting = new CountingResolver();
+        final CachingDnsResolver resolver = new CachingDnsResolver(counting);
+        assertEquals(0, resolver.getAverageLookupTime(TimeUnit.NANOSECONDS));
+
+        resolver.resolve("localhost");
+        assertEquals(resolver.getTotalLookupTime(TimeUnit.NANOSECONDS),
+                resolver.getAverageLookupTime(TimeUnit.NANOSECONDS));
+
+        resolver.resetStatistics();
+        assertEquals(0, resolver.getMissCount());
+        assertEquals(0, resolver.getTotalLookupTime(TimeUnit.NANOSECONDS));
+    }
+}
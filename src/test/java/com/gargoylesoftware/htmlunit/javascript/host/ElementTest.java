@@ -1364,4 +1364,116 @@ public class ElementTest extends WebDriverTestCase {
 
         loadPageWithAlerts2(html);
     }
+
+    /**
+     * @throws Exception if an error occurs
+     */
+    @Test
+    @Alerts({"2 1 2 1", "3 1 3 1", "3 0 3 1", "3 0 4 0", "3 0 3 0", "4", "3 0 3 0",
+                "s2 s1 s3", "0 0 0 0"})
+    public void getElementsByTagNameAndClassNameAfterMutation() throws Exception {
+        final String html = "<html><head>\n"
+            + "<script>\n"
+            + "  function test() {\n"
+            + "    var d1 = document.getElementById('d1');\n"
+            + "    var d2 = document.getElementById('d2');\n"
+            + "    var spans = document.getElementsByTagName('span');\n"
+            + "    var spansInD1 = d1.getElementsByTagName('SPAN');\n"
+            + "    var as = document.getElementsByClassName('a');\n"
+            + "    var bsInD2 = d2.getElementsByClassName('b');\n"
+            + "    function log() {\n"
+            + "      alert(spans.length + ' ' + spansInD1.length + ' ' + as.length + ' ' + bsInD2.length);\n"
+            + "    }\n"
+            + "    log();\n"
+            + "    var s = document.createElement('span');\n"
+            + "    s.id = 's3';\n"
+            + "    s.className = 'a';\n"
+            + "    d2.appendChild(s);\n"
+            + "    log();\n"
+            + "    d2.insertBefore(d1.firstChild, s);\n"
+            + "    log();\n"
+            + "    d2.firstChild.className = 'a';\n"
+            + "    log();\n"
+            + "    d1.setAttribute('class', 'b');\n"
+            + "    log();\n"
+            + "    d1.getAttributeNode('class').value = 'a';\n"
+            + "    alert(document.getElementsByClassName('a').length);\n"
+            + "    d1.removeAttribute('class');\n"
+            + "    log();\n"
+            + "    alert(spans[0].id + ' ' + spans[1].id + ' ' + spans[2].id);\n"
+            + "    document.body.removeChild(d2);\n"
+            + "    document.body.removeChild(d1);\n"
+            + "    log();\n"
+            + "  }\n"
+            + "</script>\n"
+            + "</head>\n"
+            + "<body onload='test()'>\n"
+            + "<div id='d1' class='a b'><span id='s1' class='a'></span><p class='b'>x</p></div>\n"
+            + "<div id='d2'><span id='s2' class='b'></span></div>\n"
+            + "</body></html>";
+
+        loadPageWithAlerts2(html);
+    }
+
+    /**
+     * @throws Exception if an error occurs
+     */
+    @Test
+    @Alerts({"s2,s3", "s3", "s2,s3,s4", "", "s5"})
+    public void getElementsByTagNameOfSubtree() throws Exception {
+        final String html = "<html><head>\n"
+            + "<script>\n"
+            + "  function ids(list) {\n"
+            + "    var result = [];\n"
+            + "    for (var i = 0; i < list.length; i++) {\n"
+            + "      result.push(list[i].id);\n"
+            + "    }\n"
+            + "    return result.join(',');\n"
+            + "  }\n"
+            + "  function test() {\n"
+            + "    var d1 = document.getElementById('d1');\n"
+            + "    var d2 = document.getElementById('d2');\n"
+            + "    alert(ids(d1.getElementsByTagName('span')));\n"
+            + "    alert(ids(d2.getElementsByTagName('span')));\n"
+            + "    var s = document.createElement('span');\n"
+            + "    s.id = 's4';\n"
+            + "    d1.appendChild(s);\n"
+            + "    alert(ids(d1.getElementsByTagName('span')));\n"
+            + "    alert(ids(s.getElementsByTagName('span')));\n"
+            + "    var detached = document.createElement('div');\n"
+            + "    detached.innerHTML = '<span id=\"s5\"></span>';\n"
+            + "    alert(ids(detached.getElementsByTagName('span')));\n"
+            + "  }\n"
+            + "</script>\n"
+            + "</head>\n"
+            + "<body onload='test()'>\n"
+            + "<span id='s1'></span>\n"
+            + "<div id='d1'><span id='s2'></span><div id='d2'><span id='s3'></span></div></div>\n"
+            + "<div><span id='s6'></span></div>\n"
+            + "</body></html>";
+
+        loadPageWithAlerts2(html);
+    }
+
+    /**
+     * @throws Exception if an error occurs
+     */
+    @Test
+    @Alerts({"2", "2"})
+    public void getElementsByTagNameContentBeforeBody() throws Exception {
+        final String html = "<html><head></head>\n"
+            + "<div id='d1'><span></span></div>\n"
+            + "<body onload='test()'>\n"
+            + "<script>\n"
+            + "  function test() {\n"
+            + "    var d1 = document.getElementById('d1');\n"
+            + "    d1.appendChild(document.createElement('span'));\n"
+            + "    alert(document.getElementsByTagName('span').length);\n"
+            + "    alert(d1.getElementsByTagName('span').length);\n"
+            + "  }\n"
+            + "</script>\n"
+            + "</body></html>";
+
+        loadPageWithAlerts2(html);
+    }
 }
@@ -2332,6 +2332,118 @@ public class Window2Test extends WebDriverTestCase {
         loadPageWithAlerts2(html);
     }
 
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    @Alerts({"inline", "none", "none", "inline"})
+    public void getComputedStyleCacheDescendants() throws Exception {
+        final String html =
+            "<html>\n"
+            + "<head>\n"
+            + "  <style>\n"
+            + "    .hide span { display: none; }\n"
+            + "  </style>\n"
+            + "  <script>\n"
+            + "    function test() {\n"
+            + "      var div = document.getElementById('mydiv');\n"
+            + "      var span = document.getElementById('myspan');\n"
+            + "      alert(window.getComputedStyle(span, '').display);\n"
+            + "      div.className = 'hide';\n"
+            + "      alert(window.getComputedStyle(span, '').display);\n"
+            + "      var other = document.createElement('span');\n"
+            + "      div.appendChild(other);\n"
+            + "      alert(window.getComputedStyle(other, '').display);\n"
+            + "      document.body.appendChild(other);\n"
+            + "      alert(window.getComputedStyle(other, '').display);\n"
+            + "    }\n"
+            + "  </script>\n"
+            + "</head>\n"
+            + "<body onload='test()'>\n"
+            + "  <div id='mydiv'><p><span id='myspan'>x</span></p></div>\n"
+            + "</body>\n"
+            + "</html>";
+
+        loadPageWithAlerts2(html);
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    @Alerts({"inline", "none", "none", "inline", "none"})
+    public void getComputedStyleCacheSiblings() throws Exception {
+        final String html =
+            "<html>\n"
+            + "<head>\n"
+            + "  <style>\n"
+            + "    .marker + div span { display: none; }\n"
+            + "    i:first-child { display: none; }\n"
+            + "  </style>\n"
+            + "  <script>\n"
+            + "    function test() {\n"
+            + "      var span = document.getElementById('myspan');\n"
+            + "      alert(window.getComputedStyle(span, '').display);\n"
+            + "      document.getElementById('first').className = 'marker';\n"
+            + "      alert(window.getComputedStyle(span, '').display);\n"
+            + "      var second = document.getElementById('i2');\n"
+            + "      alert(window.getComputedStyle(document.getElementById('i1'), '').display);\n"
+            + "      alert(window.getComputedStyle(second, '').display);\n"
+            + "      second.parentNode.removeChild(document.getElementById('i1'));\n"
+            + "      alert(window.getComputedStyle(second, '').display);\n"
+            + "    }\n"
+            + "  </script>\n"
+            + "</head>\n"
+            + "<body onload='test()'>\n"
+            + "  <div id='first'></div><div><p><span id='myspan'>x</span></p></div>\n"
+            + "  <p><i id='i1'>1</i><i id='i2'>2</i></p>\n"
+            + "</body>\n"
+            + "</html>";
+
+        loadPageWithAlerts2(html);
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    @Alerts({"rgb(255, 0, 0)", "rgb(255, 0, 0)", "rgb(0, 0, 255)", "none", "list-item", "list-item",
+                "rgb(255, 0, 0)"})
+    public void getComputedStyleSharedBySiblings() throws Exception {
+        final String html =
+            "<html>\n"
+            + "<head>\n"
+            + "  <style>\n"
+            + "    li.item { color: red; }\n"
+            + "    li.hidden { display: none; }\n"
+            + "  </style>\n"
+            + "  <script>\n"
+            + "    function test() {\n"
+            + "      var items = document.getElementsByTagName('li');\n"
+            + "      alert(window.getComputedStyle(items[0], '').color);\n"
+            + "      alert(window.getComputedStyle(items[1], '').color);\n"
+            + "      alert(window.getComputedStyle(items[2], '').color);\n"
+            + "      items[1].className = 'hidden';\n"
+            + "      alert(window.getComputedStyle(items[1], '').display);\n"
+            + "      alert(window.getComputedStyle(items[0], '').display);\n"
+            + "      alert(window.getComputedStyle(items[3], '').display);\n"
+            + "      alert(window.getComputedStyle(items[3], '').color);\n"
+            + "    }\n"
+            + "  </script>\n"
+            + "</head>\n"
+            + "<body onload='test()'>\n"
+            + "  <ul>\n"
+            + "    <li class='item'>1</li>\n"
+            + "    <li class='item'>2</li>\n"
+            + "    <li class='item' style='color: blue'>3</li>\n"
+            + "    <li class='item'>4</li>\n"
+            + "  </ul>\n"
+            + "</body>\n"
+            + "</html>";
+
+        loadPageWithAlerts2(html);
+    }
+
     /**
      * @throws Exception if an error occurs
      */
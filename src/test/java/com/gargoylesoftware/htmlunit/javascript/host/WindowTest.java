@@ -1483,6 +1483,29 @@ public class WindowTest extends SimpleWebTestCase {
         assertEquals(getExpectedAlerts(), collectedAlerts);
     }
 
+    /**
+     * The media query results are cached per window, but not across changes of the window or screen size.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void matchMediaAfterResize() throws Exception {
+        final HtmlPage page = loadPage("<html><head></head><body></body></html>");
+        final WebWindow window = page.getEnclosingWindow();
+        final String maxWidth = "window.matchMedia('(max-width: 500px)').matches";
+        final String minDeviceWidth = "window.matchMedia('(min-device-width: 2000px)').matches";
+
+        window.setInnerWidth(1000);
+        assertEquals(Boolean.FALSE, page.executeJavaScript(maxWidth).getJavaScriptResult());
+        assertEquals(Boolean.FALSE, page.executeJavaScript(maxWidth).getJavaScriptResult());
+        window.setInnerWidth(400);
+        assertEquals(Boolean.TRUE, page.executeJavaScript(maxWidth).getJavaScriptResult());
+
+        getWebClient().getOptions().setScreenWidth(1024);
+        assertEquals(Boolean.FALSE, page.executeJavaScript(minDeviceWidth).getJavaScriptResult());
+        getWebClient().getOptions().setScreenWidth(2048);
+        assertEquals(Boolean.TRUE, page.executeJavaScript(minDeviceWidth).getJavaScriptResult());
+    }
+
     /**
      * @throws Exception if the test fails
      */
@@ -1616,6 +1616,209 @@ public class CSSSelectorTest extends WebDriverTestCase {
         emptyAndDetached(":visited");
     }
 
+    /**
+     * @throws Exception if an error occurs
+     */
+    @Test
+    @Alerts({"2", "1", "s2", "s3", "1", "0", "0", "s2"})
+    public void combinatorsWithAncestorsOutsideOfRoot() throws Exception {
+        final String html = HtmlPageTest.STANDARDS_MODE_PREFIX_
+            + "<html><head>\n"
+            + "<meta http-equiv='X-UA-Compatible' content='IE=edge'>\n"
+            + "<script>\n"
+            + "function test() {\n"
+            + "  alert(document.querySelectorAll('.o span').length);\n"
+            + "  alert(document.querySelector('.b').querySelectorAll('.o p > span').length);\n"
+            + "  alert(document.querySelectorAll('div.a + div span.x')[0].id);\n"
+            + "  alert(document.querySelectorAll('body > span.x')[0].id);\n"
+
+            + "  var d = document.createElement('div');\n"
+            + "  d.innerHTML = \"<ul class='l'><li><b class='x'></b></li></ul>\";\n"
+            + "  alert(d.querySelectorAll('.l b').length);\n"
+            + "  alert(d.querySelectorAll('.o b').length);\n"
+
+            + "  alert(document.querySelectorAll('span:not(.x)').length);\n"
+            + "  alert(document.querySelectorAll('div:nth-child(2) span')[0].id);\n"
+            + "}\n"
+            + "</script></head>\n"
+            + "<body onload='test()'>\n"
+            + "  <div id='outer' class='o'>\n"
+            + "    <div class='a'><span id='s1' class='x'></span></div>\n"
+            + "    <div class='b'><p><span id='s2' class='x'></span></p></div>\n"
+            + "  </div>\n"
+            + "  <span id='s3' class='x'></span>\n"
+            + "</body></html>";
+
+        loadPageWithAlerts2(html);
+    }
+
+    /**
+     * @throws Exception if an error occurs
+     */
+    @Test
+    @Alerts({"2", "2", "exception", "exception", "true", "true", "0"})
+    public void sameSelectorsAgain() throws Exception {
+        final String html = HtmlPageTest.STANDARDS_MODE_PREFIX_
+            + "<html><head>\n"
+            + "<meta http-equiv='X-UA-Compatible' content='IE=edge'>\n"
+            + "<script>\n"
+            + "function test() {\n"
+            + "  for (var i = 0; i < 2; i++) {\n"
+            + "    alert(document.querySelectorAll('div > span.x').length);\n"
+            + "  }\n"
+            + "  for (var i = 0; i < 2; i++) {\n"
+            + "    try {\n"
+            + "      document.querySelectorAll('div >> span');\n"
+            + "      alert('no exception');\n"
+            + "    } catch(e) { alert('exception'); }\n"
+            + "  }\n"
+            + "  var span = document.getElementById('s1');\n"
+            + "  alert(span.matches ? span.matches('div > span.x') : span.msMatchesSelector('div > span.x'));\n"
+            + "  alert(span.matches ? span.matches('div > span.x') : span.msMatchesSelector('div > span.x'));\n"
+            + "  alert(document.createElement('div').querySelectorAll('div > span.x').length);\n"
+            + "}\n"
+            + "</script></head>\n"
+            + "<body onload='test()'>\n"
+            + "  <div><span id='s1' class='x'></span><span class='x'></span></div>\n"
+            + "</body></html>";
+
+        loadPageWithAlerts2(html);
+    }
+
+    /**
+     * @throws Exception if an error occurs
+     */
+    @Test
+    @Alerts({"2", "d1", "1", "0", "s2", "3", "s1", "s3", "0", "1", "s1", "null", "1"})
+    public void simpleSelectorsAfterChanges() throws Exception {
+        final String html = HtmlPageTest.STANDARDS_MODE_PREFIX_
+            + "<html><head>\n"
+            + "<meta http-equiv='X-UA-Compatible' content='IE=edge'>\n"
+            + "<script>\n"
+            + "function test() {\n"
+            + "  var d2 = document.getElementById('d2');\n"
+            + "  alert(document.querySelectorAll('#d1').length);\n"
+            + "  alert(document.querySelector('div#d1 ~ div').id);\n"
+            + "  alert(d2.querySelectorAll('span.x').length);\n"
+            + "  alert(d2.querySelectorAll('#d1').length);\n"
+            + "  alert(d2.querySelector('SPAN').id);\n"
+
+            + "  document.getElementById('s3').className = 'x';\n"
+            + "  alert(document.querySelectorAll('span.x').length);\n"
+            + "  alert(document.querySelector('.x').id);\n"
+            + "  alert(document.querySelectorAll('.x')[1].id);\n"
+
+            + "  var s2 = document.getElementById('s2');\n"
+            + "  s2.parentNode.removeChild(s2);\n"
+            + "  alert(d2.querySelectorAll('span').length);\n"
+            + "  alert(s2.querySelectorAll('*').length + s2.ownerDocument.querySelectorAll('#s2').length + 1);\n"
+
+            + "  s2.id = 's9';\n"
+            + "  alert(document.querySelector('#d1 span').id);\n"
+            + "  alert(document.querySelector('#s9'));\n"
+            + "  d2.appendChild(s2);\n"
+            + "  alert(document.querySelectorAll('#s9').length);\n"
+            + "}\n"
+            + "</script></head>\n"
+            + "<body onload='test()'>\n"
+            + "  <div id='d1'><span id='s1' class='x'></span></div>\n"
+            + "  <div id='d1'><span id='s3'></span></div>\n"
+            + "  <div id='d2'><span id='s2' class='x y'></span></div>\n"
+            + "</body></html>";
+
+        loadPageWithAlerts2(html);
+    }
+
+    /**
+     * @throws Exception if an error occurs
+     */
+    @Test
+    @Alerts({"1", "0 1", "0 1", "0", "0", "1"})
+    public void idSelectorAfterSvgIdChanges() throws Exception {
+        final String html = HtmlPageTest.STANDARDS_MODE_PREFIX_
+            + "<html><head>\n"
+            + "<meta http-equiv='X-UA-Compatible' content='IE=edge'>\n"
+            + "<script>\n"
+            + "function test() {\n"
+            + "  var c = document.querySelector('circle');\n"
+            + "  alert(document.querySelectorAll('#c1').length);\n"
+            + "  c.setAttribute('id', 'c2');\n"
+            + "  alert(document.querySelectorAll('#c1').length + ' ' + document.querySelectorAll('#c2').length);\n"
+            + "  c.getAttributeNode('id').value = 'c3';\n"
+            + "  alert(document.querySelectorAll('#c2').length + ' ' + document.querySelectorAll('#c3').length);\n"
+            + "  c.removeAttribute('id');\n"
+            + "  alert(document.querySelectorAll('#c3').length);\n"
+            + "  c.setAttribute('id', 'c4');\n"
+            + "  var svg = c.parentNode;\n"
+            + "  svg.parentNode.removeChild(svg);\n"
+            + "  alert(document.querySelectorAll('#c4').length);\n"
+            + "  document.body.appendChild(svg);\n"
+            + "  alert(document.querySelectorAll('#c4').length);\n"
+            + "}\n"
+            + "</script></head>\n"
+            + "<body onload='test()'>\n"
+            + "  <svg><circle id='c1' r='1'></circle></svg>\n"
+            + "</body></html>";
+
+        loadPageWithAlerts2(html);
+    }
+
+    /**
+     * @throws Exception if an error occurs
+     */
+    @Test
+    @Alerts({"0 DIV", "1", "0 SPAN"})
+    public void idSelectorAfterAttrValueChange() throws Exception {
+        final String html = HtmlPageTest.STANDARDS_MODE_PREFIX_
+            + "<html><head>\n"
+            + "<meta http-equiv='X-UA-Compatible' content='IE=edge'>\n"
+            + "<script>\n"
+            + "function test() {\n"
+            + "  var d = document.querySelector('#d1');\n"
+            + "  d.getAttributeNode('id').value = 'd9';\n"
+            + "  alert(document.querySelectorAll('#d1').length + ' ' + document.querySelector('#d9').tagName);\n"
+            + "  alert(d.querySelectorAll('#s1').length);\n"
+            + "  var attr = document.createAttribute('id');\n"
+            + "  attr.value = 's2';\n"
+            + "  d.firstChild.setAttributeNode(attr);\n"
+            + "  attr.value = 's3';\n"
+            + "  alert(d.querySelectorAll('#s1, #s2').length + ' ' + d.querySelector('#s3').tagName);\n"
+            + "}\n"
+            + "</script></head>\n"
+            + "<body onload='test()'>\n"
+            + "  <div id='d1'><span id='s1'></span></div>\n"
+            + "</body></html>";
+
+        loadPageWithAlerts2(html);
+    }
+
+    /**
+     * @throws Exception if an error occurs
+     */
+    @Test
+    @Alerts({"1", "1", "rect", "1"})
+    public void selectorsOfPrefixedElement() throws Exception {
+        final String html = HtmlPageTest.STANDARDS_MODE_PREFIX_
+            + "<html><head>\n"
+            + "<meta http-equiv='X-UA-Compatible' content='IE=edge'>\n"
+            + "<script>\n"
+            + "function test() {\n"
+            + "  var r = document.createElementNS('http://www.w3.org/2000/svg', 'svg:rect');\n"
+            + "  document.getElementById('sv').appendChild(r);\n"
+            + "  alert(document.querySelectorAll('rect').length);\n"
+            + "  alert(document.getElementsByTagName('svg:rect').length);\n"
+            + "  r.setAttribute('id', 'r1');\n"
+            + "  alert(document.querySelector('#r1').localName);\n"
+            + "  alert(document.getElementById('sv').querySelectorAll('rect').length);\n"
+            + "}\n"
+            + "</script></head>\n"
+            + "<body onload='test()'>\n"
+            + "  <svg id='sv'></svg>\n"
+            + "</body></html>";
+
+        loadPageWithAlerts2(html);
+    }
+
     private void emptyAndDetached(final String selector) throws Exception {
         final String html =
             HtmlPageTest.STANDARDS_MODE_PREFIX_
@@ -1985,4 +1985,123 @@ public class CSSStyleSheetTest extends WebDriverTestCase {
         final WebDriver webDriver = loadPage2(html);
         assertFalse(webDriver.findElement(By.id("di")).isDisplayed());
     }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void indexId() throws Exception {
+        final String html = "<!DOCTYPE html>\n"
+                + "<head>\n"
+                + "<style>\n"
+                + "  div#di.cls { display: none; }\n"
+                + "  #other { display: none; }\n"
+                + "</style>"
+                + "</head>\n"
+                + "<body>\n"
+                + "  <div id='di' class='cls'>\n"
+                + "    <p>Content</p>\n"
+                + "  </div>\n"
+                + "  <div id='di2' class='cls'>\n"
+                + "    <p>Content</p>\n"
+                + "  </div>\n"
+                + "</body></html>";
+
+        final WebDriver webDriver = loadPage2(html);
+        assertFalse(webDriver.findElement(By.id("di")).isDisplayed());
+        assertTrue(webDriver.findElement(By.id("di2")).isDisplayed());
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void indexMultiClass() throws Exception {
+        final String html = "<!DOCTYPE html>\n"
+                + "<head>\n"
+                + "<style>\n"
+                + "  .a.b { display: none; }\n"
+                + "</style>"
+                + "</head>\n"
+                + "<body>\n"
+                + "  <div id='d1' class='b a'>\n"
+                + "    <p>Content</p>\n"
+                + "  </div>\n"
+                + "  <div id='d2' class='a'>\n"
+                + "    <p>Content</p>\n"
+                + "  </div>\n"
+                + "  <div id='d3' class='b'>\n"
+                + "    <p>Content</p>\n"
+                + "  </div>\n"
+                + "</body></html>";
+
+        final WebDriver webDriver = loadPage2(html);
+        assertFalse(webDriver.findElement(By.id("d1")).isDisplayed());
+        assertTrue(webDriver.findElement(By.id("d2")).isDisplayed());
+        assertTrue(webDriver.findElement(By.id("d3")).isDisplayed());
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void indexAttribute() throws Exception {
+        final String html = "<!DOCTYPE html>\n"
+                + "<head>\n"
+                + "<style>\n"
+                + "  [data-hidden] { display: none; }\n"
+                + "  div[title='x'] { display: none; }\n"
+                + "</style>"
+                + "</head>\n"
+                + "<body>\n"
+                + "  <div id='d1' DATA-HIDDEN>\n"
+                + "    <p>Content</p>\n"
+                + "  </div>\n"
+                + "  <div id='d2' title='x'>\n"
+                + "    <p>Content</p>\n"
+                + "  </div>\n"
+                + "  <div id='d3' title='y'>\n"
+                + "    <p>Content</p>\n"
+                + "  </div>\n"
+                + "</body></html>";
+
+        final WebDriver webDriver = loadPage2(html);
+        assertFalse(webDriver.findElement(By.id("d1")).isDisplayed());
+        assertFalse(webDriver.findElement(By.id("d2")).isDisplayed());
+        assertTrue(webDriver.findElement(By.id("d3")).isDisplayed());
+    }
+
+    /**
+     * Rules with the same specificity from different buckets have to be applied in source order.
+     * @throws Exception if the test fails
+     */
+    @Test
+    @Alerts({"inline-block", "table", "list-item"})
+    public void indexSourceOrder() throws Exception {
+        final String html = "<!DOCTYPE html>\n"
+                + "<head>\n"
+                + "<style>\n"
+                + "  [title] { display: inline; }\n"
+                + "  .a { display: inline-block; }\n"
+                + "  .b { display: inline; }\n"
+                + "  [lang] { display: table; }\n"
+                + "  div.c { display: table-cell; }\n"
+                + "  div[dir] { display: list-item; }\n"
+                + "</style>"
+                + "<script>\n"
+                + "  function test() {\n"
+                + "    alert(window.getComputedStyle(document.getElementById('d1'), '').display);\n"
+                + "    alert(window.getComputedStyle(document.getElementById('d2'), '').display);\n"
+                + "    alert(window.getComputedStyle(document.getElementById('d3'), '').display);\n"
+                + "  }\n"
+                + "</script>\n"
+                + "</head>\n"
+                + "<body onload='test()'>\n"
+                + "  <div id='d1' class='a' title='t'></div>\n"
+                + "  <div id='d2' class='b' lang='en'></div>\n"
+                + "  <div id='d3' class='c' dir='ltr'></div>\n"
+                + "</body></html>";
+
+        loadPageWithAlerts2(html);
+    }
 }
@@ -667,6 +667,44 @@ public class NodeTest extends WebDriverTestCase {
         loadPageWithAlerts2(html);
     }
 
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    @Alerts({"4", "4", "4", "2", "20", "4", "2", "new"})
+    public void compareDocumentPositionAfterMutation() throws Exception {
+        final String html = "<html><head><script>\n"
+            + "  function test() {\n"
+            + "    var body = document.body;\n"
+            + "    var first = document.getElementById('first');\n"
+            + "    var last = document.getElementById('last');\n"
+            + "    var inserted = [];\n"
+            + "    for (var i = 0; i < 40; i++) {\n"
+            + "      var d = document.createElement('div');\n"
+            + "      body.insertBefore(d, i % 2 == 0 ? last : first.nextSibling);\n"
+            + "      inserted.push(d);\n"
+            + "    }\n"
+            + "    alert(first.compareDocumentPosition(inserted[0]));\n"
+            + "    alert(inserted[0].compareDocumentPosition(inserted[2]));\n"
+            + "    alert(inserted[38].compareDocumentPosition(last));\n"
+            + "    alert(inserted[0].compareDocumentPosition(inserted[1]));\n"
+            + "    first.appendChild(last);\n"
+            + "    alert(first.compareDocumentPosition(last));\n"
+            + "    alert(last.compareDocumentPosition(inserted[0]));\n"
+            + "    alert(inserted[0].compareDocumentPosition(last));\n"
+            + "    var dup = document.createElement('div');\n"
+            + "    dup.id = 'dup';\n"
+            + "    dup.innerHTML = 'new';\n"
+            + "    body.insertBefore(dup, first);\n"
+            + "    alert(document.getElementById('dup').innerHTML);\n"
+            + "  }\n"
+            + "</script></head><body onload='test()'>"
+            + "<div id='first'></div><div id='dup'>old</div><div id='last'></div>"
+            + "</body></html>";
+
+        loadPageWithAlerts2(html);
+    }
+
     /**
      * @throws Exception if the test fails
      */
@@ -861,4 +861,57 @@ public class HTMLCollectionTest extends WebDriverTestCase {
 
         loadPageWithAlerts2(html);
     }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    @Alerts({"2 s1,s2 2", "3 s1,s2,s3 3", "4 s1,s2,s3,s4 5", "5 s0,s1,s2,s3,s4 6", "5 s0,s1,s2,s3,s4 7",
+                "6 s0,s1,s5,s2,s3,s4 8", "5 s0,s1,s5,s2,s3 6", "5 s0,s1,s5,s2,s3 5"})
+    public void liveAfterMutations() throws Exception {
+        final String html = "<html><head>\n"
+            + "<script>\n"
+            + "  function span(id) {\n"
+            + "    var s = document.createElement('span');\n"
+            + "    s.id = id;\n"
+            + "    return s;\n"
+            + "  }\n"
+            + "  function test() {\n"
+            + "    var c = document.getElementById('c');\n"
+            + "    var spans = c.getElementsByTagName('span');\n"
+            + "    var all = c.getElementsByTagName('*');\n"
+            + "    function log() {\n"
+            + "      var ids = [];\n"
+            + "      for (var i = 0; i < spans.length; i++) {\n"
+            + "        ids.push(spans[i].id);\n"
+            + "      }\n"
+            + "      alert(spans.length + ' ' + ids.join(',') + ' ' + all.length);\n"
+            + "    }\n"
+            + "    log();\n"
+            + "    c.appendChild(span('s3'));\n"
+            + "    log();\n"
+            + "    var d = document.createElement('div');\n"
+            + "    d.appendChild(span('s4'));\n"
+            + "    c.appendChild(d);\n"
+            + "    log();\n"
+            + "    c.insertBefore(span('s0'), c.firstChild);\n"
+            + "    log();\n"
+            + "    c.appendChild(document.createTextNode('text'));\n"
+            + "    var p = document.createElement('p');\n"
+            + "    c.appendChild(p);\n"
+            + "    log();\n"
+            + "    document.getElementById('s1').appendChild(span('s5'));\n"
+            + "    log();\n"
+            + "    c.removeChild(d);\n"
+            + "    log();\n"
+            + "    c.removeChild(p);\n"
+            + "    log();\n"
+            + "  }\n"
+            + "</script></head>\n"
+            + "<body onload='test()'>\n"
+            + "<div id='c'><span id='s1'></span><span id='s2'></span></div>\n"
+            + "</body></html>";
+
+        loadPageWithAlerts2(html);
+    }
 }
@@ -469,6 +469,39 @@ public class HTMLElement2Test extends WebDriverTestCase {
         loadPageWithAlerts2(html, 8 * DEFAULT_WAIT_TIME);
     }
 
+    /**
+     * @throws Exception if an error occurs
+     */
+    @Test
+    @Alerts({"30", "30", "35", "20", "25"})
+    public void offsetTopAfterChange() throws Exception {
+        final String html
+            = "<html><head>\n"
+            + "<style>.red { color: red; }</style>\n"
+            + "<script>\n"
+            + "  function test() {\n"
+            + "    var d1 = document.getElementById('d1');\n"
+            + "    var d3 = document.getElementById('d3');\n"
+            + "    alert(d3.offsetTop);\n"
+            + "    d1.className = 'red';\n"
+            + "    alert(d3.offsetTop);\n"
+            + "    d1.style.height = '15px';\n"
+            + "    alert(d3.offsetTop);\n"
+            + "    d1.parentNode.removeChild(d1);\n"
+            + "    alert(d3.offsetTop);\n"
+            + "    document.getElementById('d2').style.height = '25px';\n"
+            + "    alert(d3.offsetTop);\n"
+            + "  }\n"
+            + "</script>\n"
+            + "</head>\n"
+            + "<body style='padding: 0px; margin: 0px;' onload='test()'>\n"
+            + "  <div id='d1' style='height: 10px'></div>\n"
+            + "  <div id='d2' style='height: 20px'></div>\n"
+            + "  <div id='d3' style='height: 30px'></div>\n"
+            + "</body></html>";
+        loadPageWithAlerts2(html);
+    }
+
     /**
      * Partial regression test for Bug #968.
      * @throws Exception if an error occurs
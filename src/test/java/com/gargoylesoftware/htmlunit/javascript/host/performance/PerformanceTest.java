@@ -14,6 +14,8 @@
  */
 package com.gargoylesoftware.htmlunit.javascript.host.performance;
 
+import java.net.URL;
+
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.openqa.selenium.WebDriver;
@@ -22,6 +24,7 @@ import com.gargoylesoftware.htmlunit.BrowserRunner;
 import com.gargoylesoftware.htmlunit.BrowserRunner.Alerts;
 import com.gargoylesoftware.htmlunit.WebDriverTestCase;
 import com.gargoylesoftware.htmlunit.html.HtmlPageTest;
+import com.gargoylesoftware.htmlunit.util.MimeType;
 
 /**
  * Tests for {@link Performance}.
@@ -102,4 +105,104 @@ public class PerformanceTest extends WebDriverTestCase {
 
         loadPageWithAlerts2(html);
     }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    @Alerts(DEFAULT = {"1", "1", "0", "navigation", "true", "0", "true", "true", "true", "navigate"},
+            IE = {"0", "0", "0"})
+    public void navigationEntry() throws Exception {
+        final String html =
+                HtmlPageTest.STANDARDS_MODE_PREFIX_
+                + "<html>\n"
+                + "<head>\n"
+                + "<script>\n"
+                + "  function test() {\n"
+                + "    var entries = performance.getEntriesByType('navigation');\n"
+                + "    alert(entries.length);\n"
+                + "    alert(performance.getEntriesByName(document.URL).length);\n"
+                + "    alert(performance.getEntriesByType('resource').length);\n"
+                + "    if (entries.length == 0) {\n"
+                + "      return;\n"
+                + "    }\n"
+                + "    var nav = entries[0];\n"
+                + "    alert(nav.entryType);\n"
+                + "    alert(nav.name == document.URL);\n"
+                + "    alert(nav.startTime);\n"
+                + "    alert(nav.connectEnd >= nav.connectStart);\n"
+                + "    alert(nav.responseStart >= nav.requestStart);\n"
+                + "    alert(nav.responseEnd >= nav.responseStart);\n"
+                + "    alert(nav.type);\n"
+                + "  }\n"
+                + "  test();\n"
+                + "</script>\n"
+                + "</head>\n"
+                + "<body></body>\n"
+                + "</html>";
+
+        loadPageWithAlerts2(html);
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    @Alerts({"1", "true", "resource", "script", "true", "true", "1"})
+    public void resourceEntry() throws Exception {
+        final String html =
+                HtmlPageTest.STANDARDS_MODE_PREFIX_
+                + "<html>\n"
+                + "<head>\n"
+                + "<script src='script.js'></script>\n"
+                + "<script>\n"
+                + "  function test() {\n"
+                + "    var entries = performance.getEntriesByType('resource');\n"
+                + "    alert(entries.length);\n"
+                + "    var entry = entries[0];\n"
+                + "    alert(entry.name.indexOf('script.js') > 0);\n"
+                + "    alert(entry.entryType);\n"
+                + "    alert(entry.initiatorType);\n"
+                + "    alert(entry.startTime >= 0);\n"
+                + "    alert(entry.responseEnd >= entry.fetchStart);\n"
+                + "    alert(performance.getEntriesByName(entry.name, 'resource').length);\n"
+                + "  }\n"
+                + "</script>\n"
+                + "</head>\n"
+                + "<body onload='test()'></body>\n"
+                + "</html>";
+
+        getMockWebConnection().setResponse(new URL(URL_FIRST, "script.js"), "var x = 1;",
+                MimeType.APPLICATION_JAVASCRIPT);
+        loadPageWithAlerts2(html);
+    }
+
+    /**
+     * The number of resource entries is limited.
+     * @throws Exception if the test fails
+     */
+    @Test
+    @Alerts("150")
+    public void resourceEntriesLimit() throws Exception {
+        final String html =
+                HtmlPageTest.STANDARDS_MODE_PREFIX_
+                + "<html>\n"
+                + "<head>\n"
+                + "<script>\n"
+                + "  function test() {\n"
+                + "    for (var i = 0; i < 160; i++) {\n"
+                + "      var xhr = new XMLHttpRequest();\n"
+                + "      xhr.open('GET', 'data.txt?i=' + i, false);\n"
+                + "      xhr.send('');\n"
+                + "    }\n"
+                + "    alert(performance.getEntriesByType('resource').length);\n"
+                + "  }\n"
+                + "</script>\n"
+                + "</head>\n"
+                + "<body onload='test()'></body>\n"
+                + "</html>";
+
+        getMockWebConnection().setDefaultResponse("data", MimeType.TEXT_PLAIN);
+        loadPageWithAlerts2(html);
+    }
 }
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.util;
+
+import java.io.StringReader;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.gargoylesoftware.htmlunit.BrowserRunner;
+import com.gargoylesoftware.htmlunit.CollectingAlertHandler;
+import com.gargoylesoftware.htmlunit.MockWebConnection;
+import com.gargoylesoftware.htmlunit.SimpleWebTestCase;
+import com.gargoylesoftware.htmlunit.WebClient;
+
+/**
+ * Tests for {@link BlockingWebConnection}.
+ *
+ * @author Ronald Brill
+ */
+@RunWith(BrowserRunner.class)
+public class BlockingWebConnectionTest extends SimpleWebTestCase {
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void blockSomeRequests() throws Exception {
+        final WebClient webClient = getWebClient();
+
+        final String html = "<html><head>\n"
+            + "<script src='http://www.google-analytics.com/ga.js'></script>\n"
+            + "<script src='myJs.js'></script>\n"
+            + "<script src='ads/banner.js'></script>\n"
+            + "</head><body>\n"
+            + "hello world!"
+            + "<body></html>";
+
+        final MockWebConnection mockConnection = new MockWebConnection();
+        mockConnection.setResponse(URL_FIRST, html);
+        mockConnection.setResponse(new URL(URL_FIRST, "myJs.js"), "alert('hello');");
+        mockConnection.setResponse(new URL(URL_FIRST, "ads/banner.js"), "alert('ad');");
+        webClient.setWebConnection(mockConnection);
+
+        final List<String> collectedAlerts = new ArrayList<>();
+        webClient.setAlertHandler(new CollectingAlertHandler(collectedAlerts));
+
+        try (BlockingWebConnection connection = new BlockingWebConnection(webClient)) {
+            connection.addRule("||google-analytics.com^");
+            connection.addRule("/ads/*");
+
+            webClient.getPage(URL_FIRST);
+
+            assertEquals(2, mockConnection.getRequestCount());
+            assertEquals(2L, connection.getBlockedCount());
+            final String[] expectedAlerts = {"hello"};
+            assertEquals(expectedAlerts, collectedAlerts);
+        }
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void hostRules() throws Exception {
+        try (BlockingWebConnection connection = new BlockingWebConnection(new MockWebConnection())) {
+            connection.addRule("||ads.example.com^");
+            connection.addRule("||tracker.org/pixel");
+
+            assertTrue(connection.isBlocked(new URL("http://ads.example.com/")));
+            assertTrue(connection.isBlocked(new URL("https://eu.ads.example.com:8080/x.js")));
+            assertTrue(connection.isBlocked(new URL("http://ADS.Example.com")));
+            assertFalse(connection.isBlocked(new URL("http://badads.example.com/")));
+            assertFalse(connection.isBlocked(new URL("http://ads.example.com.evil.net/")));
+            assertFalse(connection.isBlocked(new URL("http://www.example.com/ads.example.com/")));
+
+            assertTrue(connection.isBlocked(new URL("http://tracker.org/pixel.gif")));
+            assertTrue(connection.isBlocked(new URL("http://cdn.tracker.org/pixel?id=1")));
+            assertFalse(connection.isBlocked(new URL("http://tracker.org/index.html")));
+        }
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void patternRules() throws Exception {
+        try (BlockingWebConnection connection = new BlockingWebConnection(new MockWebConnection())) {
+            connection.addRule("/banner/*/img^");
+            connection.addRule("|http://start.org/");
+            connection.addRule(".swf|");
+            connection.addRule("||ad.");
+
+            assertTrue(connection.isBlocked(new URL("http://example.com/banner/foo/img")));
+            assertTrue(connection.isBlocked(new URL("http://example.com/banner/foo/bar/img?x")));
+            assertFalse(connection.isBlocked(new URL("http://example.com/banner/img")));
+            assertFalse(connection.isBlocked(new URL("http://example.com/banner/foo/imgs")));
+
+            assertTrue(connection.isBlocked(new URL("http://start.org/index.html")));
+            assertFalse(connection.isBlocked(new URL("http://www.start.org/index.html")));
+            assertFalse(connection.isBlocked(new URL("http://example.com/?u=http://start.org/")));
+
+            assertTrue(connection.isBlocked(new URL("http://example.com/movie.swf")));
+            assertFalse(connection.isBlocked(new URL("http://example.com/movie.swf?x=1")));
+
+            assertTrue(connection.isBlocked(new URL("http://ad.example.com/")));
+            assertTrue(connection.isBlocked(new URL("http://www.ad.example.com/")));
+            assertFalse(connection.isBlocked(new URL("http://bad.example.com/")));
+        }
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void exceptionRules() throws Exception {
+        try (BlockingWebConnection connection = new BlockingWebConnection(new MockWebConnection())) {
+            final String list = "[Adblock Plus 2.0]\n"
+                    + "! comment\n"
+                    + "||example.com^\n"
+                    + "@@||example.com/allowed/\n"
+                    + "example.org##.ad\n"
+                    + "/^regex$/\n"
+                    + "||third.com^$third-party\n"
+                    + "\n";
+            assertEquals(2, connection.addRules(new StringReader(list)));
+            assertEquals(2, connection.getRuleCount());
+
+            assertTrue(connection.isBlocked(new URL("http://example.com/ads.js")));
+            assertFalse(connection.isBlocked(new URL("http://example.com/allowed/ads.js")));
+            assertFalse(connection.isBlocked(new URL("http://third.com/")));
+        }
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void manyRules() throws Exception {
+        try (BlockingWebConnection connection = new BlockingWebConnection(new MockWebConnection())) {
+            for (int i = 0; i < 5_000; i++) {
+                connection.addRule("||host" + i + ".com^");
+                connection.addRule("/path" + i + "/ad");
+            }
+
+            assertTrue(connection.isBlocked(new URL("http://www.host4711.com/")));
+            assertTrue(connection.isBlocked(new URL("http://example.com/path4711/ad.js")));
+            assertTrue(connection.isBlocked(new URL("http://example.com/x/path4711/ad.js")));
+            assertFalse(connection.isBlocked(new URL("http://host5000.com/")));
+            assertFalse(connection.isBlocked(new URL("http://example.com/path4711/")));
+        }
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.gargoylesoftware.htmlunit.BrowserRunner;
+import com.gargoylesoftware.htmlunit.CollectingAlertHandler;
+import com.gargoylesoftware.htmlunit.HttpHeader;
+import com.gargoylesoftware.htmlunit.HttpMethod;
+import com.gargoylesoftware.htmlunit.MockWebConnection;
+import com.gargoylesoftware.htmlunit.SimpleWebTestCase;
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.WebRequest;
+import com.gargoylesoftware.htmlunit.WebResponse;
+
+/**
+ * Tests for {@link RecordingWebConnection} and {@link ReplayWebConnection}.
+ *
+ * @author Ronald Brill
+ */
+@RunWith(BrowserRunner.class)
+public class RecordingWebConnectionTest extends SimpleWebTestCase {
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void recordAndReplay() throws Exception {
+        final String html = "<html><head>\n"
+            + "<script src='myJs.js'></script>\n"
+            + "</head><body>\n"
+            + "hello world!"
+            + "<body></html>";
+
+        final MockWebConnection mockConnection = new MockWebConnection();
+        mockConnection.setResponse(URL_FIRST, html);
+        mockConnection.setResponse(new URL(URL_FIRST, "myJs.js"), "alert('hello');",
+                MimeType.APPLICATION_JAVASCRIPT);
+
+        final File file = File.createTempFile("htmlunit", ".huar");
+        try {
+            final WebClient webClient = getWebClient();
+            webClient.setWebConnection(mockConnection);
+            try (RecordingWebConnection recording = new RecordingWebConnection(webClient, file)) {
+                webClient.getPage(URL_FIRST);
+                assertEquals(2, recording.getEntryCount());
+            }
+            assertEquals(2, mockConnection.getRequestCount());
+
+            try (WebClient replayClient = new WebClient(getBrowserVersion())) {
+                final List<String> collectedAlerts = new ArrayList<>();
+                replayClient.setAlertHandler(new CollectingAlertHandler(collectedAlerts));
+                try (ReplayWebConnection replay = new ReplayWebConnection(file)) {
+                    replayClient.setWebConnection(replay);
+                    assertEquals(2, replay.getEntryCount());
+
+                    for (int i = 0; i < 3; i++) {
+                        replayClient.getPage(URL_FIRST);
+                    }
+                    assertEquals(6L, replay.getHitCount());
+                    assertEquals(0L, replay.getMissCount());
+
+                    final WebResponse notFound = replay.getResponse(new WebRequest(URL_SECOND));
+                    assertEquals(404, notFound.getStatusCode());
+                    assertEquals(1L, replay.getMissCount());
+                }
+                final String[] expectedAlerts = {"hello", "hello", "hello"};
+                assertEquals(expectedAlerts, collectedAlerts);
+            }
+            assertEquals(2, mockConnection.getRequestCount());
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void requestBody() throws Exception {
+        final MockWebConnection mockConnection = new MockWebConnection();
+        mockConnection.setDefaultResponse("first");
+
+        final File file = File.createTempFile("htmlunit", ".huar");
+        try {
+            try (RecordingWebConnection recording = new RecordingWebConnection(mockConnection, file)) {
+                recording.getResponse(post("a=1"));
+                mockConnection.setDefaultResponse("second");
+                recording.getResponse(post("a=2"));
+                recording.getResponse(new WebRequest(URL_FIRST));
+                assertEquals(3, recording.getEntryCount());
+            }
+
+            try (ReplayWebConnection replay = new ReplayWebConnection(file)) {
+                assertEquals("second", replay.getResponse(post("a=2")).getContentAsString());
+                assertEquals("first", replay.getResponse(post("a=1")).getContentAsString());
+                assertEquals("second", replay.getResponse(new WebRequest(URL_FIRST)).getContentAsString());
+                assertEquals(404, replay.getResponse(post("a=3")).getStatusCode());
+            }
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    private static WebRequest post(final String body) {
+        final WebRequest request = new WebRequest(URL_FIRST, HttpMethod.POST);
+        request.setRequestBody(body);
+        return request;
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void manyEntries() throws Exception {
+        final MockWebConnection mockConnection = new MockWebConnection();
+        for (int i = 0; i < 1_000; i++) {
+            mockConnection.setResponse(new URL(URL_FIRST, "page" + i + ".html"), "content" + i);
+        }
+
+        final File file = File.createTempFile("htmlunit", ".huar");
+        try {
+            try (RecordingWebConnection recording = new RecordingWebConnection(mockConnection, file)) {
+                for (int i = 0; i < 1_000; i++) {
+                    recording.getResponse(new WebRequest(new URL(URL_FIRST, "page" + i + ".html")));
+                }
+            }
+
+            try (ReplayWebConnection replay = new ReplayWebConnection(file)) {
+                assertEquals(1_000, replay.getEntryCount());
+                for (int i = 999; i >= 0; i--) {
+                    final WebResponse response = replay.getResponse(
+                            new WebRequest(new URL(URL_FIRST, "page" + i + ".html#ref")));
+                    assertEquals("content" + i, response.getContentAsString());
+                }
+                assertEquals(0L, replay.getMissCount());
+            }
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void exportHar() throws Exception {
+        final MockWebConnection mockConnection = new MockWebConnection();
+        mockConnection.setResponse(URL_FIRST, "<html>replaced</html>");
+        mockConnection.setResponse(URL_SECOND, new byte[] {1, 2, 3}, 200, "OK", "image/png", null);
+
+        final File file = File.createTempFile("htmlunit", ".huar");
+        try {
+            try (RecordingWebConnection recording = new RecordingWebConnection(mockConnection, file)) {
+                recording.getResponse(new WebRequest(URL_FIRST));
+                recording.getResponse(new WebRequest(URL_SECOND));
+                mockConnection.setResponse(URL_FIRST, "<html>\"quoted\"\n</html>");
+                recording.getResponse(new WebRequest(URL_FIRST));
+            }
+
+            try (ReplayWebConnection replay = new ReplayWebConnection(file)) {
+                final StringWriter writer = new StringWriter();
+                replay.exportHar(writer);
+                final String har = writer.toString();
+
+                assertTrue(har, har.startsWith("{\"log\":{\"version\":\"1.2\""));
+                assertEquals(har, 2, StringUtils.countMatches(har, "\"startedDateTime\""));
+                assertEquals(har, 1, StringUtils.countMatches(har, "\"url\":\"" + URL_FIRST + "\""));
+                assertTrue(har, har.contains("\"text\":\"<html>\\\"quoted\\\"\\n</html>\""));
+                assertTrue(har, har.contains("\"mimeType\":\"image/png\",\"text\":\"AQID\",\"encoding\":\"base64\""));
+                assertTrue(har, har.endsWith("]}}"));
+            }
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void decodedBodyHeaders() throws Exception {
+        final MockWebConnection mockConnection = new MockWebConnection();
+        final List<NameValuePair> headers = Arrays.asList(
+                new NameValuePair("Content-Encoding", "gzip"),
+                new NameValuePair(HttpHeader.CONTENT_LENGTH, "99"));
+        mockConnection.setResponse(URL_FIRST, "hello", 200, "OK", MimeType.TEXT_PLAIN, headers);
+
+        final File file = File.createTempFile("htmlunit", ".huar");
+        try {
+            try (RecordingWebConnection recording = new RecordingWebConnection(mockConnection, file)) {
+                recording.getResponse(new WebRequest(URL_FIRST));
+            }
+
+            final ReplayWebConnection replay = new ReplayWebConnection(file);
+            try {
+                final WebResponse response = replay.getResponse(new WebRequest(URL_FIRST));
+                assertEquals("hello", response.getContentAsString());
+                assertEquals("5", response.getResponseHeaderValue(HttpHeader.CONTENT_LENGTH));
+                assertNull(response.getResponseHeaderValue("Content-Encoding"));
+            }
+            finally {
+                replay.close();
+            }
+
+            try {
+                replay.getResponse(new WebRequest(URL_FIRST));
+                fail("IOException expected");
+            }
+            catch (final IOException e) {
+                // expected
+            }
+            // the mapping was released
+            assertTrue(file.delete());
+        }
+        finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.util;
+
+import static org.junit.Assert.fail;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.gargoylesoftware.htmlunit.BrowserRunner;
+import com.gargoylesoftware.htmlunit.CollectingAlertHandler;
+import com.gargoylesoftware.htmlunit.SimpleWebTestCase;
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.WebRequest;
+import com.gargoylesoftware.htmlunit.WebResponseData;
+
+/**
+ * Tests for {@link RoutingWebConnection}.
+ *
+ * @author Ronald Brill
+ */
+@RunWith(BrowserRunner.class)
+public class RoutingWebConnectionTest extends SimpleWebTestCase {
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void loadPage() throws Exception {
+        final String html = "<html><head>\n"
+            + "<script src='js/first.js'></script>\n"
+            + "<script src='js/second.js?v=1'></script>\n"
+            + "</head><body></body></html>";
+
+        final RoutingWebConnection connection = new RoutingWebConnection();
+        connection.addRoute(URL_FIRST, RoutingWebConnection.createResponseData(html, MimeType.TEXT_HTML));
+        connection.addPrefixRoute(URL_FIRST + "js/",
+                RoutingWebConnection.createResponseData("alert('js');", MimeType.APPLICATION_JAVASCRIPT));
+
+        final WebClient webClient = getWebClient();
+        webClient.setWebConnection(connection);
+        final List<String> collectedAlerts = new ArrayList<>();
+        webClient.setAlertHandler(new CollectingAlertHandler(collectedAlerts));
+
+        for (int i = 0; i < 5; i++) {
+            webClient.getPage(URL_FIRST);
+        }
+
+        assertEquals(15L, connection.getRequestCount());
+        assertEquals(10, collectedAlerts.size());
+        assertTrue(connection.getRequestHistory().isEmpty());
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void routing() throws Exception {
+        final WebResponseData exact = RoutingWebConnection.createResponseData("exact", MimeType.TEXT_PLAIN);
+        final WebResponseData shortPrefix = RoutingWebConnection.createResponseData("short", MimeType.TEXT_PLAIN);
+        final WebResponseData longPrefix = RoutingWebConnection.createResponseData("long", MimeType.TEXT_PLAIN);
+        final WebResponseData pattern = RoutingWebConnection.createResponseData("pattern", MimeType.TEXT_PLAIN);
+        final WebResponseData def = RoutingWebConnection.createResponseData("default", MimeType.TEXT_PLAIN);
+
+        final RoutingWebConnection connection = new RoutingWebConnection();
+        connection.addRoute(new URL("http://localhost/a/index.html"), exact);
+        connection.addPrefixRoute("http://localhost/a/", shortPrefix);
+        connection.addPrefixRoute("http://localhost/a/b/", longPrefix);
+        connection.addPatternRoute(Pattern.compile(".*\\.png"), pattern);
+
+        assertEquals("exact", content(connection, "http://localhost/a/index.html"));
+        assertEquals("exact", content(connection, "http://localhost/a/index.html?x=1"));
+        assertEquals("short", content(connection, "http://localhost/a/other.html"));
+        assertEquals("long", content(connection, "http://localhost/a/b/c.html"));
+        assertEquals("long", content(connection, "http://localhost/a/b/c.png"));
+        assertEquals("pattern", content(connection, "http://localhost/c.png"));
+
+        try {
+            content(connection, "http://localhost/unknown");
+            fail("IllegalStateException expected");
+        }
+        catch (final IllegalStateException e) {
+            // expected
+        }
+
+        connection.setDefaultResponse(def);
+        assertEquals("default", content(connection, "http://localhost/unknown"));
+    }
+
+    private static String content(final RoutingWebConnection connection, final String url) throws Exception {
+        return connection.getResponse(new WebRequest(new URL(url))).getContentAsString();
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void requestHistory() throws Exception {
+        final RoutingWebConnection connection = new RoutingWebConnection();
+        connection.setDefaultResponse(RoutingWebConnection.createResponseData("", MimeType.TEXT_PLAIN));
+        connection.setRequestHistorySize(3);
+
+        for (int i = 0; i < 2; i++) {
+            content(connection, "http://localhost/" + i);
+        }
+        List<WebRequest> history = connection.getRequestHistory();
+        assertEquals(2, history.size());
+        assertEquals("http://localhost/0", history.get(0).getUrl().toExternalForm());
+
+        for (int i = 2; i < 10; i++) {
+            content(connection, "http://localhost/" + i);
+        }
+        history = connection.getRequestHistory();
+        assertEquals(3, history.size());
+        assertEquals("http://localhost/7", history.get(0).getUrl().toExternalForm());
+        assertEquals("http://localhost/9", history.get(2).getUrl().toExternalForm());
+        assertEquals(10L, connection.getRequestCount());
+
+        connection.setRequestHistorySize(0);
+        content(connection, "http://localhost/10");
+        assertTrue(connection.getRequestHistory().isEmpty());
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.util;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.gargoylesoftware.htmlunit.BrowserRunner;
+import com.gargoylesoftware.htmlunit.SimpleWebTestCase;
+import com.gargoylesoftware.htmlunit.html.DomElement;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+
+/**
+ * Tests for {@link StringInterner}.
+ *
+ * @author Ronald Brill
+ */
+@RunWith(BrowserRunner.class)
+public class StringInternerTest extends SimpleWebTestCase {
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void intern() throws Exception {
+        assertNull(StringInterner.internName(null));
+        assertSame("", StringInterner.internValue(new String("")));
+
+        final String first = new String("stylesheet");
+        final String second = new String("stylesheet");
+        final String shared = StringInterner.internValue(first);
+        assertEquals(first, shared);
+        assertSame(shared, StringInterner.internValue(second));
+        assertSame(shared, StringInterner.internName(second));
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void tooLong() throws Exception {
+        final String value = org.apache.commons.lang3.StringUtils.repeat('x', StringInterner.MAX_VALUE_LENGTH + 1);
+        final String other = new String(value);
+        assertSame(value, StringInterner.internValue(value));
+        assertSame(other, StringInterner.internValue(other));
+
+        final String name = org.apache.commons.lang3.StringUtils.repeat('y', StringInterner.MAX_NAME_LENGTH + 1);
+        final String otherName = new String(name);
+        assertSame(name, StringInterner.internName(name));
+        assertSame(otherName, StringInterner.internName(otherName));
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void sharedByPages() throws Exception {
+        final String html = "<html><body><div class='box' data-Test='x'></div></body></html>";
+
+        final HtmlPage first = loadPage(html);
+        final HtmlPage second = loadPage(html);
+
+        final DomElement div1 = first.getBody().getFirstElementChild();
+        final DomElement div2 = second.getBody().getFirstElementChild();
+        assertSame(div1.getTagName(), div2.getTagName());
+        assertSame(div1.getAttribute("class"), div2.getAttribute("class"));
+        assertSame(div1.getAttributeNode("class").getName(), div2.getAttributeNode("class").getName());
+    }
+}